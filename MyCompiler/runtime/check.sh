@@ -0,0 +1,45 @@
+#!/bin/sh
+# compiles every test/PA4 program to x86-64 assembly (or to C, with
+# BACKEND=c), links it with the runtime, and compares its output and exit
+# code with the LIR interpreter's.
+# usage: [BACKEND=asm|c] check.sh [compiler flags...]
+
+cd "$(dirname "$0")" || exit 1
+ROOT=..
+OUT=check
+CP="$OUT/classes:$ROOT/lib/java-cup-11a-runtime.jar"
+BACKEND=${BACKEND:-asm}
+
+rm -rf "$OUT"
+mkdir -p "$OUT/classes"
+javac -nowarn -d "$OUT/classes" -cp "$ROOT/lib/java-cup-11a-runtime.jar" $(find "$ROOT/src" -name '*.java') || exit 1
+
+failed=0
+for f in "$ROOT"/test/PA4/*.ic; do
+	name=$(basename "$f" .ic)
+	cp "$f" "$OUT/$name.ic"
+	if [ "$BACKEND" = c ]; then
+		flag=-c
+		link="gcc -O2 -I. -o $OUT/$name $OUT/$name.c ic_runtime.o -pthread"
+	else
+		flag=-asm
+		link="gcc -o $OUT/$name $OUT/$name.s ic_runtime.o -pthread"
+	fi
+	if ! java -cp "$CP" IC.Compiler "$OUT/$name.ic" -L"$ROOT/libic.sig" -print-lir $flag "$@" > "$OUT/$name.log" 2>&1 ||
+	   ! $link >> "$OUT/$name.log" 2>&1; then
+		echo "$name: build failed (see $OUT/$name.log)"
+		failed=1
+		continue
+	fi
+	java -cp "$CP" IC.Simulator.LIRInterpreter "$OUT/$name.lir" < /dev/null > "$OUT/$name.expected"
+	expected=$?
+	"./$OUT/$name" < /dev/null > "$OUT/$name.out"
+	actual=$?
+	if cmp -s "$OUT/$name.expected" "$OUT/$name.out" && [ $expected -eq $actual ]; then
+		echo "$name: ok"
+	else
+		echo "$name: FAILED (exit code $actual, expected $expected)"
+		failed=1
+	fi
+done
+exit $failed
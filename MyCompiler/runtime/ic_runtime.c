@@ -0,0 +1,890 @@
+/*
+ * ic_runtime.c
+ * ============
+ * the C runtime of natively compiled IC programs: the library methods,
+ * buffered standard input / output, and a garbage collected heap.
+ *
+ * the program's main method runs on a thread with a large stack, so deep
+ * recursion behaves as in the LIR interpreter.
+ *
+ * with IC_GC_STATS set in the environment, the garbage collector's metrics
+ * (collections, pause times, allocation rate, heap size) are printed to
+ * stderr when the program exits.
+ *
+ * build: gcc -O2 -c ic_runtime.c
+ * link:  gcc -o prog prog.s ic_runtime.o -pthread
+ */
+#include <errno.h>
+#include <pthread.h>
+#include <signal.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <sys/mman.h>
+#include <time.h>
+#include <unistd.h>
+
+#include "ic_runtime.h"
+
+#define WORD ((ic_word)sizeof(ic_word))
+/* LIR sizes count 4 bytes per word */
+#define LIR_WORD 4
+
+#define IO_BUFFER_SIZE (1 << 16)
+#define STACK_SIZE ((size_t)1 << 30)
+
+#define LENGTH(p) (((const ic_word *)(p))[-1])
+
+static void fatal_error(const char *msg);
+
+/******************
+ *  heap          *
+ ******************/
+
+/*
+ * the heap is managed by a mark-sweep garbage collector:
+ * - memory comes from the system in aligned 64K pages. a small page holds
+ *   blocks of a single size class, and a large block gets a run of pages
+ *   of its own. a page table maps every address to its page, so a pointer
+ *   anywhere into a block finds the block.
+ * - every block starts with a header word (its kind and mark bit). objects
+ *   follow the header, strings and arrays follow their length word.
+ * - the roots are the stack and registers of the IC thread. the compiled
+ *   code keeps no types for its frames, so they are scanned conservatively,
+ *   and blocks never move.
+ * - objects are scanned by the pointer map of their class (the word before
+ *   the dispatch vector points to the offsets of the reference fields,
+ *   ending with 0). arrays carry no element type and are scanned
+ *   conservatively, and strings are not scanned.
+ * - a collection starts when the bytes allocated since the last one exceed
+ *   the live bytes (and GC_MIN_BYTES), so the heap stays within about twice
+ *   the live data. empty pages are returned to the system.
+ */
+
+#define PAGE_BITS 16
+#define PAGE_SIZE ((size_t)1 << PAGE_BITS)
+#define CHUNK_PAGES 64
+#define LARGE_BLOCK (PAGE_SIZE / 8)
+#ifndef GC_MIN_BYTES
+#define GC_MIN_BYTES ((size_t)8 << 20)
+#endif
+
+/* page table: 2^15 x 2^16 pages cover the 47-bit user address space */
+#define ADDRESS_BITS 47
+#define TABLE_BITS 16
+
+enum { KIND_FREE = 0, KIND_OBJECT = 1, KIND_ARRAY = 2, KIND_STRING = 3 };
+#define KIND_MASK 3
+#define MARK_BIT 4
+
+#define CLASS_FREE_PAGE (-2)
+#define CLASS_LARGE (-1)
+#define MAX_CLASSES 64
+
+struct page {
+	char *start;          /* first block */
+	size_t block_size;    /* bytes per block, header included */
+	size_t blocks;
+	size_t pages;         /* length of the run */
+	int size_class;       /* CLASS_LARGE, CLASS_FREE_PAGE or a size class */
+	struct page *next;    /* pages in use, or free pages */
+};
+
+static struct page **page_table[1 << (ADDRESS_BITS - PAGE_BITS - TABLE_BITS)];
+
+static struct page *used_pages = NULL;
+static struct page *free_pages = NULL;
+
+static size_t class_sizes[MAX_CLASSES];
+static int class_count = 0;
+static unsigned char class_index[LARGE_BLOCK / 16 + 1];
+static char *free_lists[MAX_CLASSES];
+
+static size_t allocated_since_gc = 0;
+static size_t gc_threshold = GC_MIN_BYTES;
+static char *stack_top = NULL;
+
+static char **mark_stack = NULL;
+static size_t mark_count = 0;
+static size_t mark_capacity = 0;
+
+/* GC metrics (IC_GC_STATS) */
+static struct {
+	int enabled;
+	size_t collections;
+	uint64_t bytes_allocated;
+	uint64_t blocks_allocated;
+	uint64_t pause_total_ns;
+	uint64_t pause_max_ns;
+	size_t live_bytes;
+	size_t heap_bytes;
+	size_t heap_peak;
+} gc_stats;
+
+static uint64_t now_ns(void)
+{
+	struct timespec t;
+	clock_gettime(CLOCK_MONOTONIC, &t);
+	return (uint64_t)t.tv_sec * 1000000000u + t.tv_nsec;
+}
+
+/*
+ * computes the size classes: 16 byte steps up to 128, then about 25% apart
+ */
+static void init_size_classes(void)
+{
+	size_t size = 16;
+	size_t n;
+
+	while (size <= LARGE_BLOCK && class_count < MAX_CLASSES) {
+		class_sizes[class_count++] = size;
+		size = size < 128 ? size + 16 : ((size * 5 / 4) + 15) & ~(size_t)15;
+	}
+	if (class_sizes[class_count - 1] != LARGE_BLOCK)
+		class_sizes[class_count++] = LARGE_BLOCK;
+	for (n = 0; n <= LARGE_BLOCK / 16; n++) {
+		int c = 0;
+		while (class_sizes[c] < n * 16)
+			c++;
+		class_index[n] = (unsigned char)c;
+	}
+}
+
+static struct page *page_of(uintptr_t address)
+{
+	struct page **level;
+
+	if (address >> ADDRESS_BITS)
+		return NULL;
+	level = page_table[address >> (PAGE_BITS + TABLE_BITS)];
+	return level == NULL ? NULL : level[(address >> PAGE_BITS) & ((1 << TABLE_BITS) - 1)];
+}
+
+static void set_pages(char *start, size_t pages, struct page *page)
+{
+	uintptr_t address = (uintptr_t)start;
+	size_t i;
+
+	for (i = 0; i < pages; i++, address += PAGE_SIZE) {
+		struct page ***level = &page_table[address >> (PAGE_BITS + TABLE_BITS)];
+		if (*level == NULL) {
+			*level = calloc((size_t)1 << TABLE_BITS, sizeof(struct page *));
+			if (*level == NULL)
+				fatal_error("Runtime Error: Out of memory!\n");
+		}
+		(*level)[(address >> PAGE_BITS) & ((1 << TABLE_BITS) - 1)] = page;
+	}
+}
+
+/*
+ * returns n zeroed, page aligned pages from the system
+ */
+static char *map_pages(size_t n)
+{
+	size_t size = n * PAGE_SIZE;
+	char *p = mmap(NULL, size + PAGE_SIZE, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+	char *aligned;
+
+	if (p == MAP_FAILED)
+		fatal_error("Runtime Error: Out of memory!\n");
+	aligned = (char *)(((uintptr_t)p + PAGE_SIZE - 1) & ~(uintptr_t)(PAGE_SIZE - 1));
+	if (aligned > p)
+		munmap(p, aligned - p);
+	munmap(aligned + size, p + PAGE_SIZE - aligned);
+	return aligned;
+}
+
+static struct page *new_page(char *start, size_t pages, int size_class)
+{
+	struct page *page = malloc(sizeof(struct page));
+
+	if (page == NULL)
+		fatal_error("Runtime Error: Out of memory!\n");
+	page->start = start;
+	page->pages = pages;
+	page->size_class = size_class;
+	set_pages(start, pages, page);
+	return page;
+}
+
+/*
+ * gives a page to a size class, and puts its blocks on the class's free list
+ */
+static void refill(int c)
+{
+	struct page *page = free_pages;
+	size_t i;
+
+	if (page == NULL) {
+		char *chunk = map_pages(CHUNK_PAGES);
+		for (i = 0; i < CHUNK_PAGES; i++) {
+			page = new_page(chunk + i * PAGE_SIZE, 1, CLASS_FREE_PAGE);
+			page->next = free_pages;
+			free_pages = page;
+		}
+		gc_stats.heap_bytes += CHUNK_PAGES * PAGE_SIZE;
+		page = free_pages;
+	}
+	free_pages = page->next;
+
+	page->size_class = c;
+	page->block_size = class_sizes[c];
+	page->blocks = PAGE_SIZE / page->block_size;
+	for (i = page->blocks; i-- > 0;) {
+		char *block = page->start + i * page->block_size;
+		*(ic_word *)block = KIND_FREE;
+		*(char **)(block + WORD) = free_lists[c];
+		free_lists[c] = block;
+	}
+	page->next = used_pages;
+	used_pages = page;
+}
+
+static char *allocate_large(size_t n)
+{
+	size_t pages = (n + PAGE_SIZE - 1) / PAGE_SIZE;
+	struct page *page = new_page(map_pages(pages), pages, CLASS_LARGE);
+
+	page->block_size = pages * PAGE_SIZE;
+	page->blocks = 1;
+	page->next = used_pages;
+	used_pages = page;
+	gc_stats.heap_bytes += page->block_size;
+	return page->start;
+}
+
+static void collect(void);
+
+/*
+ * allocates a zeroed block of the given kind, with room for n bytes after
+ * its header, and returns the block
+ */
+static char *allocate(int kind, size_t n)
+{
+	char *block;
+
+	n = (n + WORD + 15) & ~(size_t)15;
+	if (allocated_since_gc >= gc_threshold)
+		collect();
+
+	if (n > LARGE_BLOCK) {
+		block = allocate_large(n);
+		n = ((n + PAGE_SIZE - 1) / PAGE_SIZE) * PAGE_SIZE;
+	} else {
+		int c = class_index[n / 16];
+		if (free_lists[c] == NULL)
+			refill(c);
+		block = free_lists[c];
+		free_lists[c] = *(char **)(block + WORD);
+		n = class_sizes[c];
+		memset(block, 0, n);
+	}
+	*(ic_word *)block = kind;
+
+	allocated_since_gc += n;
+	gc_stats.bytes_allocated += n;
+	gc_stats.blocks_allocated++;
+	if (gc_stats.heap_bytes > gc_stats.heap_peak)
+		gc_stats.heap_peak = gc_stats.heap_bytes;
+	return block;
+}
+
+/*
+ * allocates a block preceded by its length word, and returns the block
+ */
+static ic_word *allocate_block(int kind, ic_word length, size_t bytes)
+{
+	ic_word *p = (ic_word *)allocate(kind, WORD + bytes) + 1;
+	p[0] = length;
+	return p + 1;
+}
+
+/*
+ * allocates an (uninitialized) string of the given length
+ */
+static char *new_string(ic_word length)
+{
+	return (char *)allocate_block(KIND_STRING, length, length + 1);
+}
+
+ic_word ic_allocateObject(ic_word size)
+{
+	return (ic_word)((ic_word *)allocate(KIND_OBJECT, (size / LIR_WORD) * WORD) + 1);
+}
+
+ic_word ic_allocateArray(ic_word size)
+{
+	ic_word length = size / LIR_WORD;
+	return (ic_word)allocate_block(KIND_ARRAY, length, length * WORD);
+}
+
+/*
+ * marks the block that a word points into (if any), and pushes it on the mark stack
+ */
+static void mark(ic_word word)
+{
+	struct page *page = page_of((uintptr_t)word);
+	size_t i;
+	char *block;
+	ic_word header;
+
+	if (page == NULL || page->size_class == CLASS_FREE_PAGE)
+		return;
+	i = (size_t)((char *)word - page->start) / page->block_size;
+	if (i >= page->blocks)
+		return;   /* the unused end of a page */
+	block = page->start + i * page->block_size;
+	header = *(ic_word *)block;
+	if ((header & KIND_MASK) == KIND_FREE || (header & MARK_BIT))
+		return;
+	*(ic_word *)block = header | MARK_BIT;
+
+	if (mark_count == mark_capacity) {
+		mark_capacity = mark_capacity == 0 ? 1024 : mark_capacity * 2;
+		mark_stack = realloc(mark_stack, mark_capacity * sizeof(char *));
+		if (mark_stack == NULL)
+			fatal_error("Runtime Error: Out of memory!\n");
+	}
+	mark_stack[mark_count++] = block;
+}
+
+/*
+ * marks the blocks referenced by a marked block
+ */
+static void scan(char *block)
+{
+	ic_word *words = (ic_word *)block + 1;
+	ic_word i;
+
+	switch (*(ic_word *)block & KIND_MASK) {
+	case KIND_OBJECT: {
+		const ic_word *dv = (const ic_word *)words[0];
+		const ic_word *offsets;
+		if (dv == NULL)
+			return;   /* allocated, not initialized yet */
+		offsets = (const ic_word *)dv[-1];
+		if (offsets != NULL) {
+			for (; *offsets != 0; offsets++)
+				mark(words[*offsets]);
+		} else {
+			/* no pointer map: every field may be a reference */
+			ic_word n = (ic_word)(page_of((uintptr_t)block)->block_size / WORD) - 1;
+			for (i = 1; i < n; i++)
+				mark(words[i]);
+		}
+		return;
+	}
+	case KIND_ARRAY:
+		for (i = 0; i < words[0]; i++)
+			mark(words[i + 1]);
+		return;
+	default:
+		return;
+	}
+}
+
+/*
+ * marks the blocks referenced from the stack, from the caller's frames up
+ * to the top of the IC thread's stack
+ */
+static void __attribute__((noinline)) scan_stack(void)
+{
+	ic_word *p = (ic_word *)__builtin_frame_address(0);
+
+	for (; (char *)p < stack_top; p++)
+		mark(*p);
+}
+
+/*
+ * frees the unmarked blocks, rebuilds the free lists, and returns the live bytes
+ */
+static size_t sweep(void)
+{
+	struct page *page = used_pages;
+	size_t live = 0;
+	int c;
+
+	used_pages = NULL;
+	for (c = 0; c < class_count; c++)
+		free_lists[c] = NULL;
+
+	while (page != NULL) {
+		struct page *next = page->next;
+
+		if (page->size_class == CLASS_LARGE) {
+			ic_word *header = (ic_word *)page->start;
+			if (*header & MARK_BIT) {
+				*header &= ~(ic_word)MARK_BIT;
+				live += page->block_size;
+				page->next = used_pages;
+				used_pages = page;
+			} else {
+				gc_stats.heap_bytes -= page->block_size;
+				set_pages(page->start, page->pages, NULL);
+				munmap(page->start, page->block_size);
+				free(page);
+			}
+		} else {
+			char *free_list = free_lists[page->size_class];
+			size_t live_blocks = 0;
+			size_t i;
+			for (i = page->blocks; i-- > 0;) {
+				char *block = page->start + i * page->block_size;
+				ic_word *header = (ic_word *)block;
+				if (*header & MARK_BIT) {
+					*header &= ~(ic_word)MARK_BIT;
+					live_blocks++;
+				} else {
+					*header = KIND_FREE;
+					*(char **)(block + WORD) = free_list;
+					free_list = block;
+				}
+			}
+			if (live_blocks == 0) {
+				/* the page goes back to the system until it is used again */
+				madvise(page->start, PAGE_SIZE, MADV_DONTNEED);
+				page->size_class = CLASS_FREE_PAGE;
+				page->next = free_pages;
+				free_pages = page;
+			} else {
+				free_lists[page->size_class] = free_list;
+				live += live_blocks * page->block_size;
+				page->next = used_pages;
+				used_pages = page;
+			}
+		}
+		page = next;
+	}
+	return live;
+}
+
+/*
+ * collects the garbage. the callee-saved registers are spilled to this
+ * frame, so the stack scan finds the references they hold
+ */
+static void __attribute__((noinline)) collect(void)
+{
+	uint64_t start = now_ns();
+	uint64_t pause;
+
+	__builtin_unwind_init();
+	scan_stack();
+	while (mark_count > 0)
+		scan(mark_stack[--mark_count]);
+
+	gc_stats.live_bytes = sweep();
+	allocated_since_gc = 0;
+	gc_threshold = gc_stats.live_bytes > GC_MIN_BYTES ? gc_stats.live_bytes : GC_MIN_BYTES;
+
+	pause = now_ns() - start;
+	gc_stats.collections++;
+	gc_stats.pause_total_ns += pause;
+	if (pause > gc_stats.pause_max_ns)
+		gc_stats.pause_max_ns = pause;
+}
+
+/******************
+ *  output        *
+ ******************/
+
+static char out_buffer[IO_BUFFER_SIZE];
+static size_t out_length = 0;
+
+static void flush_output(void)
+{
+	size_t done = 0;
+	while (done < out_length) {
+		ssize_t n = write(1, out_buffer + done, out_length - done);
+		if (n < 0) {
+			if (errno == EINTR) continue;
+			break;
+		}
+		done += n;
+	}
+	out_length = 0;
+}
+
+static void write_output(const char *s, size_t n)
+{
+	if (n > IO_BUFFER_SIZE - out_length) {
+		flush_output();
+		if (n > IO_BUFFER_SIZE) {
+			size_t done = 0;
+			while (done < n) {
+				ssize_t w = write(1, s + done, n - done);
+				if (w < 0) {
+					if (errno == EINTR) continue;
+					return;
+				}
+				done += w;
+			}
+			return;
+		}
+	}
+	memcpy(out_buffer + out_length, s, n);
+	out_length += n;
+}
+
+ic_word ic_print(const char *s)
+{
+	if (s == NULL)
+		write_output("null", 4);
+	else
+		write_output(s, LENGTH(s));
+	return 0;
+}
+
+ic_word ic_println(const char *s)
+{
+	ic_print(s);
+	write_output("\n", 1);
+	return 0;
+}
+
+ic_word ic_printi(ic_word i)
+{
+	char buf[16];
+	int n = snprintf(buf, sizeof(buf), "%d", (int)i);
+	write_output(buf, n);
+	return 0;
+}
+
+ic_word ic_printb(ic_word b)
+{
+	if (b)
+		write_output("true", 4);
+	else
+		write_output("false", 5);
+	return 0;
+}
+
+/******************
+ *  input         *
+ ******************/
+
+static char in_buffer[IO_BUFFER_SIZE];
+static size_t in_pos = 0;
+static size_t in_length = 0;
+
+/*
+ * returns the next input character without consuming it, -1 at end of file
+ */
+static int peek_input(void)
+{
+	if (in_pos == in_length) {
+		ssize_t n;
+		do {
+			n = read(0, in_buffer, IO_BUFFER_SIZE);
+		} while (n < 0 && errno == EINTR);
+		if (n <= 0)
+			return -1;
+		in_pos = 0;
+		in_length = n;
+	}
+	return (unsigned char)in_buffer[in_pos];
+}
+
+static int read_input(void)
+{
+	int c = peek_input();
+	if (c >= 0)
+		in_pos++;
+	return c;
+}
+
+static int is_space(int c)
+{
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\v';
+}
+
+/*
+ * parses a decimal int as Java's Integer.parseInt does: an optional sign
+ * followed by digits, no overflow. returns 0 on failure
+ */
+static int parse_int(const char *s, size_t n, int *result)
+{
+	size_t i = 0;
+	int negative = 0;
+	int64_t value = 0;
+
+	if (n > 0 && (s[0] == '-' || s[0] == '+')) {
+		negative = s[0] == '-';
+		i++;
+	}
+	if (i == n)
+		return 0;
+	for (; i < n; i++) {
+		if (s[i] < '0' || s[i] > '9')
+			return 0;
+		value = value * 10 + (s[i] - '0');
+		if (value > (int64_t)1 << 31)
+			return 0;
+	}
+	if (negative)
+		value = -value;
+	if (value > 0x7fffffff || value < -((int64_t)1 << 31))
+		return 0;
+	*result = (int)value;
+	return 1;
+}
+
+ic_word ic_readi(void)
+{
+	char token[64];
+	size_t n = 0;
+	int c;
+	int value;
+
+	while ((c = read_input()) >= 0 && is_space(c))
+		;
+	while (c >= 0 && !is_space(c)) {
+		if (n < sizeof(token))
+			token[n++] = (char)c;
+		else
+			n = sizeof(token) + 1;   /* too long to be an int */
+		c = read_input();
+	}
+	if (n > sizeof(token) || !parse_int(token, n, &value))
+		return 0;
+	return value;
+}
+
+ic_word ic_readln(void)
+{
+	size_t capacity = 128;
+	size_t n = 0;
+	char *line;
+	char *s;
+	int c;
+
+	if (peek_input() < 0)
+		return 0;
+	line = malloc(capacity);
+	while ((c = read_input()) >= 0 && c != '\n' && c != '\r') {
+		if (n == capacity) {
+			capacity *= 2;
+			line = realloc(line, capacity);
+		}
+		line[n++] = (char)c;
+	}
+	/* "\r\n" ends a line too */
+	if (c == '\r' && peek_input() == '\n')
+		read_input();
+
+	s = new_string(n);
+	memcpy(s, line, n);
+	free(line);
+	return (ic_word)s;
+}
+
+ic_word ic_eof(void)
+{
+	return peek_input() < 0;
+}
+
+/******************
+ *  conversions   *
+ ******************/
+
+ic_word ic_stoi(const char *s, ic_word n)
+{
+	size_t start = 0;
+	size_t end;
+	int value;
+
+	if (s == NULL)
+		return n;
+	/* trim as Java does */
+	end = LENGTH(s);
+	while (start < end && (unsigned char)s[start] <= ' ')
+		start++;
+	while (end > start && (unsigned char)s[end - 1] <= ' ')
+		end--;
+	if (!parse_int(s + start, end - start, &value))
+		return n;
+	return value;
+}
+
+ic_word ic_itos(ic_word i)
+{
+	char buf[16];
+	int n = snprintf(buf, sizeof(buf), "%d", (int)i);
+	char *s = new_string(n);
+	memcpy(s, buf, n);
+	return (ic_word)s;
+}
+
+ic_word ic_stoa(const char *s)
+{
+	ic_word length;
+	ic_word *a;
+	ic_word i;
+
+	if (s == NULL)
+		s = "null", length = 4;
+	else
+		length = LENGTH(s);
+	a = allocate_block(KIND_ARRAY, length, length * WORD);
+	for (i = 0; i < length; i++)
+		a[i] = (unsigned char)s[i];
+	return (ic_word)a;
+}
+
+ic_word ic_atos(const ic_word *a)
+{
+	ic_word length = LENGTH(a);
+	char *s = new_string(length);
+	ic_word i;
+
+	for (i = 0; i < length; i++)
+		s[i] = (char)a[i];
+	return (ic_word)s;
+}
+
+ic_word ic_stringCat(const char *s1, const char *s2)
+{
+	ic_word n1 = s1 == NULL ? 4 : LENGTH(s1);
+	ic_word n2 = s2 == NULL ? 4 : LENGTH(s2);
+	char *s = new_string(n1 + n2);
+
+	memcpy(s, s1 == NULL ? "null" : s1, n1);
+	memcpy(s + n1, s2 == NULL ? "null" : s2, n2);
+	return (ic_word)s;
+}
+
+/******************
+ *  system        *
+ ******************/
+
+static struct timespec start_time;
+static uint64_t random_state;
+
+/*
+ * returns a random number between 0 and n-1 (xorshift64*), 0 if n <= 0
+ */
+ic_word ic_random(ic_word n)
+{
+	random_state ^= random_state >> 12;
+	random_state ^= random_state << 25;
+	random_state ^= random_state >> 27;
+	if (n <= 0)
+		return 0;
+	return (ic_word)(((random_state * 2685821657736338717ULL) >> 33) % (uint64_t)n);
+}
+
+ic_word ic_time(void)
+{
+	struct timespec now;
+	clock_gettime(CLOCK_MONOTONIC, &now);
+	return (int)((now.tv_sec - start_time.tv_sec) * 1000 + (now.tv_nsec - start_time.tv_nsec) / 1000000);
+}
+
+/*
+ * prints the GC metrics to stderr (when IC_GC_STATS is set)
+ */
+static void print_gc_stats(void)
+{
+	char buf[512];
+	uint64_t elapsed = now_ns() - ((uint64_t)start_time.tv_sec * 1000000000u + start_time.tv_nsec);
+	double seconds = elapsed / 1e9;
+	int n;
+
+	if (!gc_stats.enabled)
+		return;
+	n = snprintf(buf, sizeof(buf),
+		"GC statistics:\n"
+		"  collections         %zu\n"
+		"  pause total / max   %.3f ms / %.3f ms\n"
+		"  allocated           %.1f MB in %llu blocks\n"
+		"  allocation rate     %.1f MB/s\n"
+		"  live (last GC)      %.1f MB\n"
+		"  heap (peak)         %.1f MB\n",
+		gc_stats.collections,
+		gc_stats.pause_total_ns / 1e6, gc_stats.pause_max_ns / 1e6,
+		gc_stats.bytes_allocated / 1048576.0, (unsigned long long)gc_stats.blocks_allocated,
+		seconds > 0 ? gc_stats.bytes_allocated / 1048576.0 / seconds : 0.0,
+		gc_stats.live_bytes / 1048576.0,
+		gc_stats.heap_peak / 1048576.0);
+	if (n > 0 && write(2, buf, n < (int)sizeof(buf) ? (size_t)n : sizeof(buf) - 1) < 0)
+		return;
+}
+
+ic_word ic_exit(ic_word i)
+{
+	flush_output();
+	print_gc_stats();
+	_exit((int)i);
+}
+
+/*
+ * prints an error message after the output written so far, and exits
+ */
+static void fatal_error(const char *msg)
+{
+	flush_output();
+	write_output(msg, strlen(msg));
+	flush_output();
+	_exit(1);
+}
+
+/*
+ * reports a fault of the program (division by zero, stack overflow, ...)
+ */
+static void fault_handler(int sig)
+{
+	if (sig == SIGFPE)
+		fatal_error("Runtime Error: Division by zero!\n");
+	fatal_error("Runtime Error: Stack overflow or invalid memory access!\n");
+}
+
+static void install_fault_handlers(void)
+{
+	static char alternate_stack[1 << 16];
+	stack_t ss;
+	struct sigaction sa;
+
+	/* a stack overflow is reported on an alternate signal stack */
+	ss.ss_sp = alternate_stack;
+	ss.ss_size = sizeof(alternate_stack);
+	ss.ss_flags = 0;
+	sigaltstack(&ss, NULL);
+
+	memset(&sa, 0, sizeof(sa));
+	sa.sa_handler = fault_handler;
+	sa.sa_flags = SA_ONSTACK;
+	sigemptyset(&sa.sa_mask);
+	sigaction(SIGFPE, &sa, NULL);
+	sigaction(SIGSEGV, &sa, NULL);
+	sigaction(SIGBUS, &sa, NULL);
+}
+
+static void *run_main(void *arg)
+{
+	char top;
+
+	(void)arg;
+	stack_top = &top;   /* the garbage collector scans the stack up to here */
+	install_fault_handlers();   /* the alternate stack is per thread */
+	_ic_main(0);
+	ic_exit(0);
+	return NULL;
+}
+
+int main(void)
+{
+	pthread_attr_t attr;
+	pthread_t thread;
+
+	clock_gettime(CLOCK_MONOTONIC, &start_time);
+	init_size_classes();
+	gc_stats.enabled = getenv("IC_GC_STATS") != NULL;
+	random_state = (uint64_t)start_time.tv_nsec * 0x9e3779b97f4a7c15ULL + (uint64_t)start_time.tv_sec + 1;
+
+	/* run main with a large stack */
+	pthread_attr_init(&attr);
+	pthread_attr_setstacksize(&attr, STACK_SIZE);
+	if (pthread_create(&thread, &attr, run_main, NULL) != 0)
+		run_main(NULL);   /* never returns */
+	pthread_join(thread, NULL);
+	return 0;
+}
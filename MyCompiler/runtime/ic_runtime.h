@@ -0,0 +1,51 @@
+/*
+ * ic_runtime.h
+ * ============
+ * the C runtime of natively compiled IC programs (see IC.Asm.X86Translator
+ * and IC.C.CTranslator).
+ *
+ * - all values are 64-bit words: ints are sign-extended, booleans are 0 / 1
+ *   and references are pointers (0 is null).
+ * - a string points to its characters, which are followed by a terminating
+ *   zero and preceded by a length word.
+ * - an array points to its first element word, and is preceded by a length
+ *   word (ArrayLength reads the word before the array).
+ * - an object is a dispatch vector pointer followed by its fields, a word each.
+ *   the word before a dispatch vector points to the class's pointer map:
+ *   the offsets of its reference fields, ending with 0 (or is 0, and all the
+ *   fields are scanned by the garbage collector).
+ * - the Library methods of libic.sig and the internal LIR helpers are named
+ *   ic_<name>, and take their LIR arguments as they are.
+ */
+#ifndef IC_RUNTIME_H
+#define IC_RUNTIME_H
+
+#include <stdint.h>
+
+typedef int64_t ic_word;
+
+/* libic.sig */
+ic_word ic_println(const char *s);
+ic_word ic_print(const char *s);
+ic_word ic_printi(ic_word i);
+ic_word ic_printb(ic_word b);
+ic_word ic_readi(void);
+ic_word ic_readln(void);
+ic_word ic_eof(void);
+ic_word ic_stoi(const char *s, ic_word n);
+ic_word ic_itos(ic_word i);
+ic_word ic_stoa(const char *s);
+ic_word ic_atos(const ic_word *a);
+ic_word ic_random(ic_word n);
+ic_word ic_time(void);
+ic_word ic_exit(ic_word i);
+
+/* internal helpers */
+ic_word ic_stringCat(const char *s1, const char *s2);
+ic_word ic_allocateObject(ic_word size);   /* size in LIR bytes (ClassLayout.getAllocSize()) */
+ic_word ic_allocateArray(ic_word size);    /* size in LIR bytes (4 per element) */
+
+/* the program's main method */
+extern ic_word _ic_main(ic_word args);
+
+#endif
@@ -1,4 +1,7 @@
 package IC.AST;
+import java.util.concurrent.Callable;
+
+import IC.StackGuard;
 import IC.LIR.*;
 import IC.SymbolTable.*;
 
@@ -24,6 +27,30 @@ public abstract class ASTNode {
 	public void setRequiredRegs(int requiredRegs) {
 		this.requiredRegs = requiredRegs;
 	}
+
+	/**
+	 * will hold whether evaluating the node may have side effects or fail
+	 * (calls, runtime checks), and whether its value is read from the heap
+	 * (fields, array elements) - for ordering the evaluation of expressions
+	 */
+	private boolean sideEffects;
+	private boolean heapRead;
+
+	public boolean hasSideEffects() {
+		return sideEffects;
+	}
+
+	public void setSideEffects(boolean sideEffects) {
+		this.sideEffects = sideEffects;
+	}
+
+	public boolean isHeapRead() {
+		return heapRead;
+	}
+
+	public void setHeapRead(boolean heapRead) {
+		this.heapRead = heapRead;
+	}
 	
 	// Reference to symbol table of enclosing scope.
 	private SymbolTable enclosingScope;
@@ -40,6 +67,40 @@ public abstract class ASTNode {
 	public abstract Object accept(PropagatingVisitor visitor, SymbolTable context);
 
 	public abstract LIRUpType accept(LIRPropagatingVisitor<Integer,LIRUpType> visitor, Integer downInt);
+
+	/**
+	 * Accepts a visitor on a fresh stack (see IC.StackGuard): the nodes that nest
+	 * (statements of statements, expressions of expressions) count their accepts with
+	 * StackGuard.enter(), and call this when the current stack is as deep as it may go.
+	 * 
+	 * @param visitor
+	 *            The visitor.
+	 * @return A value propagated by the visitor.
+	 */
+	protected Object acceptOnFreshStack(final Visitor visitor) {
+		return StackGuard.onFreshStackUnchecked(new Callable<Object>() {
+			public Object call() {
+				return accept(visitor);
+			}
+		});
+	}
+
+	protected Object acceptOnFreshStack(final PropagatingVisitor visitor, final SymbolTable context) {
+		return StackGuard.onFreshStackUnchecked(new Callable<Object>() {
+			public Object call() {
+				return accept(visitor, context);
+			}
+		});
+	}
+
+	protected LIRUpType acceptOnFreshStack(final LIRPropagatingVisitor<Integer,LIRUpType> visitor, final Integer downInt) {
+		return StackGuard.onFreshStackUnchecked(new Callable<LIRUpType>() {
+			public LIRUpType call() {
+				return accept(visitor, downInt);
+			}
+		});
+	}
+
 	/**
 	 * Constructs an AST node corresponding to a line number in the original
 	 * code. Used by subclasses.
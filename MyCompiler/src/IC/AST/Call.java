@@ -2,6 +2,7 @@ package IC.AST;
 
 import java.util.List;
 
+import IC.Name;
 import IC.SymbolTable.SymbolTable;
 
 /**
@@ -13,6 +14,8 @@ public abstract class Call extends Expression {
 
 	private String name;
 
+	private Name identifier;
+
 	private List<Expression> arguments;
 
 	/**
@@ -28,6 +31,7 @@ public abstract class Call extends Expression {
 	protected Call(int line, String name, List<Expression> arguments) {
 		super(line);
 		this.name = name;
+		this.identifier = Name.of(name);
 		this.arguments = arguments;
 	}
 
@@ -35,6 +39,11 @@ public abstract class Call extends Expression {
 		return name;
 	}
 
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
+
 	public List<Expression> getArguments() {
 		return arguments;
 	}
@@ -10,6 +10,26 @@ import IC.SymbolTable.SymbolTable;
  */
 public abstract class Expression extends ASTNode {
 
+	/**
+	 * will hold the integer constant the expression folds to (null if it is not constant),
+	 * once it is folded (see IC.LIR.InductionVariableVisitor.getIntConstant)
+	 */
+	private boolean folded = false;
+	private Integer constant = null;
+
+	public boolean isFolded() {
+		return folded;
+	}
+
+	public Integer getConstant() {
+		return constant;
+	}
+
+	public void setConstant(Integer constant) {
+		this.constant = constant;
+		this.folded = true;
+	}
+
 	/**
 	 * Constructs a new expression node. Used by subclasses.
 	 * 
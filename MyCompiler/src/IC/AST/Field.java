@@ -1,5 +1,6 @@
 package IC.AST;
 
+import IC.Name;
 import IC.LIR.*;
 import IC.SymbolTable.BlockSymbolTable;
 import IC.SymbolTable.ClassSymbolTable;
@@ -16,6 +17,8 @@ public class Field extends ASTNode {
 
 	private String name;
 
+	private Name identifier;
+
 	public Object accept(Visitor visitor) {
 		return visitor.visit(this);
 	}
@@ -40,6 +43,7 @@ public class Field extends ASTNode {
 		super(type.getLine());
 		this.type = type;
 		this.name = name;
+		this.identifier = Name.of(name);
 	}
 
 	public Type getType() {
@@ -49,9 +53,14 @@ public class Field extends ASTNode {
 	public String getName() {
 		return name;
 	}
+
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
 	
 	public String getNameDepth() {
-		return name+((ClassSymbolTable)this.getEnclosingScope()).getFieldDepthRec(name);
+		return name+((ClassSymbolTable)this.getEnclosingScope()).getFieldDepthRec(identifier);
 	}
 
 }
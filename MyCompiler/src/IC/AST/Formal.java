@@ -1,5 +1,6 @@
 package IC.AST;
 
+import IC.Name;
 import IC.LIR.*;
 import IC.SymbolTable.SymbolTable;
 
@@ -14,6 +15,8 @@ public class Formal extends ASTNode {
 
 	private String name;
 
+	private Name identifier;
+
 	public Object accept(Visitor visitor) {
 		return visitor.visit(this);
 	}
@@ -38,6 +41,7 @@ public class Formal extends ASTNode {
 		super(type.getLine());
 		this.type = type;
 		this.name = name;
+		this.identifier = Name.of(name);
 	}
 
 	public Type getType() {
@@ -47,6 +51,11 @@ public class Formal extends ASTNode {
 	public String getName() {
 		return name;
 	}
+
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
 	
 	public String getNameDepth() {
 		return name+this.getEnclosingScope().getDepth();
@@ -2,6 +2,7 @@ package IC.AST;
 
 import java.util.List;
 
+import IC.Name;
 import IC.LIR.*;
 import IC.SymbolTable.*;
 
@@ -14,12 +15,18 @@ public class ICClass extends ASTNode {
 
 	private String name;
 
+	private Name identifier;
+
 	private String superClassName = null;
 
+	private Name superClassIdentifier = null;
+
 	private List<Field> fields;
 
 	private List<Method> methods;
 
+	private String sourceFile = null;
+
 	public Object accept(Visitor visitor) {
 		return visitor.visit(this);
 	}
@@ -48,6 +55,7 @@ public class ICClass extends ASTNode {
 			List<Method> methods) {
 		super(line);
 		this.name = name;
+		this.identifier = (name == null ? null : Name.of(name));
 		this.fields = fields;
 		this.methods = methods;
 	}
@@ -70,12 +78,18 @@ public class ICClass extends ASTNode {
 			List<Field> fields, List<Method> methods) {
 		this(line, name, fields, methods);
 		this.superClassName = superClassName;
+		this.superClassIdentifier = (superClassName == null ? null : Name.of(superClassName));
 	}
 
 	public String getName() {
 		return name;
 	}
 
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
+
 	public boolean hasSuperClass() {
 		return (superClassName != null);
 	}
@@ -84,6 +98,19 @@ public class ICClass extends ASTNode {
 		return superClassName;
 	}
 
+	public Name getSuperClassIdentifier() {
+		return superClassIdentifier;
+	}
+
+	/* the source file of the class, in a program of several files (null otherwise). */
+	public String getSourceFile() {
+		return sourceFile;
+	}
+
+	public void setSourceFile(String sourceFile) {
+		this.sourceFile = sourceFile;
+	}
+
 	public List<Field> getFields() {
 		return fields;
 	}
@@ -1,5 +1,6 @@
 package IC.AST;
 
+import IC.StackGuard;
 import IC.LIR.*;
 import IC.SymbolTable.SymbolTable;
 
@@ -17,15 +18,33 @@ public class If extends Statement {
 	private Statement elseOperation = null;
 
 	public Object accept(Visitor visitor) {
-		return visitor.visit(this);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor);
+		try {
+			return visitor.visit(this);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 	
 	public Object accept(PropagatingVisitor visitor, SymbolTable context) {
-		return visitor.visit(this, context);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor, context);
+		try {
+			return visitor.visit(this, context);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 	
 	public LIRUpType accept(LIRPropagatingVisitor<Integer,LIRUpType> visitor, Integer downInt) {
-		return visitor.visit(this, downInt);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor, downInt);
+		try {
+			return visitor.visit(this, downInt);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 
 	/**
@@ -1,5 +1,6 @@
 package IC.AST;
 
+import IC.Name;
 import IC.LIR.*;
 import IC.SymbolTable.SymbolTable;
 
@@ -14,6 +15,8 @@ public class LocalVariable extends Statement {
 
 	private String name;
 
+	private Name identifier;
+
 	private Expression initValue = null;
 
 	public Object accept(Visitor visitor) {
@@ -40,6 +43,7 @@ public class LocalVariable extends Statement {
 		super(type.getLine());
 		this.type = type;
 		this.name = name;
+		this.identifier = Name.of(name);
 	}
 
 	/**
@@ -66,6 +70,11 @@ public class LocalVariable extends Statement {
 		return name;
 	}
 
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
+
 	public boolean hasInitValue() {
 		return (initValue != null);
 	}
@@ -2,6 +2,7 @@ package IC.AST;
 
 import java.util.List;
 
+import IC.Name;
 import IC.SymbolTable.*;
 
 /**
@@ -15,6 +16,8 @@ public abstract class Method extends ASTNode {
 
 	protected String name;
 
+	protected Name identifier;
+
 	protected List<Formal> formals;
 
 	protected List<Statement> statements;
@@ -36,6 +39,7 @@ public abstract class Method extends ASTNode {
 		super(type.getLine());
 		this.type = type;
 		this.name = name;
+		this.identifier = Name.of(name);
 		this.formals = formals;
 		this.statements = statements;
 	}
@@ -49,6 +53,11 @@ public abstract class Method extends ASTNode {
 		return name;
 	}
 
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
+
 	public List<Formal> getFormals() {
 		return formals;
 	}
@@ -56,6 +65,16 @@ public abstract class Method extends ASTNode {
 	public List<Statement> getStatements() {
 		return statements;
 	}
+
+	/**
+	 * Sets the method's statements (for a body parsed after its signature).
+	 * 
+	 * @param statements
+	 *            List of method's statements.
+	 */
+	public void setStatements(List<Statement> statements) {
+		this.statements = statements;
+	}
 	
 	public boolean isStatic() {  
 		return !(this instanceof VirtualMethod);  //static or library method instance.
@@ -2,6 +2,8 @@ package IC.AST;
 
 import java.util.List;
 
+import IC.Name;
+import IC.StackGuard;
 import IC.LIR.*;
 import IC.SymbolTable.SymbolTable;
 
@@ -14,16 +16,36 @@ public class StaticCall extends Call {
 
 	private String className;
 
+	private Name classIdentifier;
+
 	public Object accept(Visitor visitor) {
-		return visitor.visit(this);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor);
+		try {
+			return visitor.visit(this);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 	
 	public Object accept(PropagatingVisitor visitor, SymbolTable context) {
-		return visitor.visit(this, context);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor, context);
+		try {
+			return visitor.visit(this, context);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 	
 	public LIRUpType accept(LIRPropagatingVisitor<Integer,LIRUpType> visitor, Integer downInt) {
-		return visitor.visit(this, downInt);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor, downInt);
+		try {
+			return visitor.visit(this, downInt);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 
 	/**
@@ -42,10 +64,15 @@ public class StaticCall extends Call {
 			List<Expression> arguments) {
 		super(line, name, arguments);
 		this.className = className;
+		this.classIdentifier = Name.of(className);
 	}
 
 	public String getClassName() {
 		return className;
 	}
 
+	public Name getClassIdentifier() {
+		return classIdentifier;
+	}
+
 }
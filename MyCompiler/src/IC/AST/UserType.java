@@ -1,5 +1,6 @@
 package IC.AST;
 
+import IC.Name;
 import IC.LIR.*;
 import IC.SymbolTable.SymbolTable;
 
@@ -12,6 +13,8 @@ public class UserType extends Type {
 
 	private String name;
 
+	private Name identifier;
+
 	public Object accept(Visitor visitor) {
 		return visitor.visit(this);
 	}
@@ -35,10 +38,16 @@ public class UserType extends Type {
 	public UserType(int line, String name) {
 		super(line);
 		this.name = name;
+		this.identifier = Name.of(name);
 	}
 
 	public String getName() {
 		return name;
 	}
 
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
+
 }
@@ -1,5 +1,7 @@
 package IC.AST;
  
+import IC.Name;
+import IC.StackGuard;
 import IC.LIR.*;
 import IC.SymbolTable.BlockSymbolTable;
 import IC.SymbolTable.SymbolTable; 
@@ -15,20 +17,40 @@ public class VariableLocation extends Location {
 	private Expression location = null;
 
 	private String name;
+
+	private Name identifier;
 	
 	//to deal with shadowing on semantic checks of VariableLocation.
 	private SymbolTable varDeclarationScope;
 
 	public Object accept(Visitor visitor) {
-		return visitor.visit(this);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor);
+		try {
+			return visitor.visit(this);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 	
 	public Object accept(PropagatingVisitor visitor, SymbolTable context) {
-		return visitor.visit(this, context);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor, context);
+		try {
+			return visitor.visit(this, context);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 	
 	public LIRUpType accept(LIRPropagatingVisitor<Integer,LIRUpType> visitor, Integer downInt) {
-		return visitor.visit(this, downInt);
+		if (!StackGuard.enter())
+			return acceptOnFreshStack(visitor, downInt);
+		try {
+			return visitor.visit(this, downInt);
+		} finally {
+			StackGuard.exit();
+		}
 	}
 
 	/**
@@ -42,6 +64,7 @@ public class VariableLocation extends Location {
 	public VariableLocation(int line, String name) {
 		super(line);
 		this.name = name;
+		this.identifier = Name.of(name);
 	}
 
 	/**
@@ -70,6 +93,11 @@ public class VariableLocation extends Location {
 	public String getName() {
 		return name;
 	}
+
+	/* the canonical name: lookups in the symbol tables and the type table are by it. */
+	public Name getIdentifier() {
+		return identifier;
+	}
 	
 	
 	//to deal with shadowing on semantic checks of VariableLocation.
@@ -82,7 +110,7 @@ public class VariableLocation extends Location {
 	}
 	
 	public String getNameDepth() {
-		return name+((BlockSymbolTable)this.getEnclosingScope()).getVarDepthRec(name);
+		return name+((BlockSymbolTable)this.getEnclosingScope()).getVarDepthRec(identifier);
 	}
 
 }
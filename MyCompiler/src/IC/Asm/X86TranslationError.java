@@ -0,0 +1,27 @@
+package IC.Asm;
+
+/**
+ * Exception class for LIR code that cannot be translated to x86-64 assembly
+ * (e.g. a conditional jump whose condition flags were not set by a Compare).
+ *
+ */
+
+public class X86TranslationError extends Exception {
+
+	private static final long serialVersionUID = 49L;  /* impl. serializable. */
+
+
+	public X86TranslationError(String message) {
+		super(message);
+	}
+
+
+	/**
+	 * Returns error string message.
+	 */
+	@Override
+	public String toString() {
+		return ("x86-64 translation error: " + super.getMessage());
+	}
+
+}
@@ -0,0 +1,626 @@
+package IC.Asm;
+
+import java.util.*;
+
+import IC.AST.*;
+import IC.LIR.ClassLayout;
+import IC.Simulator.LIRLoader;
+import IC.Simulator.LIRProgram;
+import IC.Simulator.LIRProgram.CallSite;
+import IC.Simulator.LIRProgram.Function;
+
+/**
+ * X86Translator
+ * =============
+ * lowers a LIR program (as decoded by the LIRLoader) to GNU-as x86-64
+ * assembly, to be linked with the C runtime by gcc on Linux.
+ *
+ * - every LIR register and variable gets an 8-byte stack slot in its
+ *   method's frame (rbp based). the frame is zeroed on entry, as in the
+ *   LIR interpreter.
+ * - values are 64-bit: ints are kept sign-extended, and int arithmetic is
+ *   done in 32 bits, so overflow wraps as in the interpreter.
+ * - methods follow the System V calling convention: the parameters are
+ *   passed by position in rdi, rsi, rdx, rcx, r8, r9 and then on the stack,
+ *   with 'this' first for virtual methods, and the result returns in rax.
+ *   the parameter names of every method are taken from its AST formals
+ *   (the runtime checks take theirs from their call sites).
+ * - objects and arrays are built of 8-byte words: the dispatch vector of an
+ *   object is at offset 0 and field i at offset 8*i, and the length of an array
+ *   is stored in the word before its first element. string literals are
+ *   length-prefixed the same way.
+ * - the word before every dispatch vector points to the class's pointer
+ *   map: the offsets of its reference fields, ending with 0, which the
+ *   runtime's garbage collector follows (0 when the map is unknown, and
+ *   all the fields are scanned).
+ * - Library methods are calls to the C runtime symbols "ic_<name>" (e.g.
+ *   ic_println), with the LIR arguments as they are (allocation sizes are in
+ *   LIR bytes, see ClassLayout.getAllocSize()).
+ * - _ic_main is the entry point called by the runtime. the runtime checks
+ *   are translated like any other method, and jump to _error_exit, which exits
+ *   through the runtime.
+ */
+public class X86Translator {
+
+	// System V integer argument registers
+	private static final String[] ARG_REGS = {"%rdi", "%rsi", "%rdx", "%rcx", "%r8", "%r9"};
+	private static final int WORD = 8;
+
+	// prefix of the C runtime symbols
+	public static final String RUNTIME_PREFIX = "ic_";
+	// the program exit routine
+	public static final String EXIT_LABEL = "_error_exit";
+
+	private LIRProgram program;
+	// method label -> parameter names, by position
+	private Map<String,List<String>> parameters = new HashMap<String,List<String>>();
+	// class name -> offsets of its reference fields
+	private Map<String,List<Integer>> pointerFields = new HashMap<String,List<Integer>>();
+	private StringBuilder asm = new StringBuilder();
+	private boolean[] jumpTargets;
+	private int labelCounter = 0;
+
+	// the method being translated: its code range and frame
+	private Function function;
+	private int functionEnd;
+	// true when the condition flags hold the result of the last Compare
+	private boolean flagsSet;
+
+	/**
+	 * constructor
+	 * @param program: the decoded LIR program
+	 * @param parameters: method label -> parameter names (see getMethodParameters)
+	 */
+	public X86Translator(LIRProgram program, Map<String,List<String>> parameters){
+		this.program = program;
+		this.parameters.putAll(parameters);
+	}
+
+	/**
+	 * constructor
+	 * @param program: the decoded LIR program
+	 * @param parameters: method label -> parameter names (see getMethodParameters)
+	 * @param pointerFields: class name -> reference field offsets (see getPointerFields)
+	 */
+	public X86Translator(LIRProgram program, Map<String,List<String>> parameters, Map<String,List<Integer>> pointerFields){
+		this(program, parameters);
+		this.pointerFields.putAll(pointerFields);
+	}
+
+	/**
+	 * returns the offsets of the reference fields of all the program's classes
+	 * (by their ClassLayout), by class name
+	 * @param root
+	 * @return
+	 */
+	public static Map<String,List<Integer>> getPointerFields(Program root){
+		Map<String,ClassLayout> layouts = new HashMap<String,ClassLayout>();
+		Map<String,List<Integer>> pointerFields = new HashMap<String,List<Integer>>();
+		for (ICClass c: root.getClasses()){
+			// skip library method
+			if (c.getName().equals("Library")) continue;
+
+			ClassLayout layout = c.hasSuperClass() ? new ClassLayout(c, layouts.get(c.getSuperClassName())) : new ClassLayout(c);
+			layouts.put(c.getName(), layout);
+			pointerFields.put(c.getName(), layout.getPointerFieldOffsets());
+		}
+		return pointerFields;
+	}
+
+	/**
+	 * returns the parameter names of all the program's methods, by their LIR labels:
+	 * 'this' followed by the formals for virtual methods, the formals for static methods
+	 * @param root
+	 * @return
+	 */
+	public static Map<String,List<String>> getMethodParameters(Program root){
+		Map<String,List<String>> parameters = new HashMap<String,List<String>>();
+		for (ICClass c: root.getClasses()){
+			// skip library method
+			if (c.getName().equals("Library")) continue;
+
+			for (Method m: c.getMethods()){
+				// check if this method is the program's main method
+				boolean isMain = m.isStatic() &&
+								 m.getName().equals("main") &&
+								 m.getType().getName().equals("void") &&
+								 m.getFormals().size() == 1 &&
+								 m.getFormals().get(0).getType().toString().equals("string[]");
+				String label = isMain ? "_ic_main" : "_"+c.getName()+"_"+m.getName();
+
+				List<String> params = new ArrayList<String>();
+				if (!m.isStatic()) params.add("this");
+				for (Formal f: m.getFormals()){
+					params.add(f.getNameDepth());
+				}
+				parameters.put(label, params);
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * translates the program and returns its assembly code
+	 * @return
+	 * @throws X86TranslationError
+	 */
+	public String translate() throws X86TranslationError {
+		int[] code = program.code;
+		int S = LIRProgram.STRIDE;
+
+		// find jump targets, and the parameters of methods that are not in the AST (runtime checks)
+		jumpTargets = new boolean[program.instructionCount+1];
+		for (int pc = 0; pc < program.instructionCount; pc++){
+			int op = code[pc*S];
+			if (op >= LIRProgram.JUMP && op <= LIRProgram.JUMP_LE){
+				jumpTargets[code[pc*S+7]] = true;
+			} else if (op == LIRProgram.STATIC_CALL){
+				CallSite site = program.callSites.get(code[pc*S+7]);
+				String label = program.functions.get(site.target).label;
+				if (!parameters.containsKey(label)) parameters.put(label, Arrays.asList(site.formals));
+			}
+		}
+
+		asm.append("# x86-64 assembly, generated from LIR\n\n");
+		translateData();
+
+		asm.append("\t.text\n");
+		asm.append("\t.globl _ic_main\n");
+		for (int i = 0; i < program.functions.size(); i++){
+			translateFunction(i);
+		}
+
+		// the program exit routine (main falls through to it)
+		asm.append("\n").append(EXIT_LABEL).append(":\n");
+		emit("andq $-16, %rsp");
+		emit("xorl %edi, %edi");
+		emit("call "+RUNTIME_PREFIX+"exit");
+
+		asm.append("\n\t.section .note.GNU-stack,\"\",@progbits\n");
+		return asm.toString();
+	}
+
+	/**
+	 * translates the string literals and the dispatch tables
+	 */
+	private void translateData(){
+		// string literals: length word followed by the characters (and a terminating zero)
+		asm.append("\t.section .rodata\n");
+		for (int i = 0; i < program.stringLiterals.size(); i++){
+			String s = program.stringLiterals.get(i);
+			emit(".align 8");
+			emit(".quad "+s.length());
+			asm.append(".Lstr").append(i).append(":\n");
+			emit(".ascii \""+escape(s)+"\"");
+			emit(".byte 0");
+		}
+		asm.append("\n");
+
+		// pointer maps: reference field offsets, ending with 0
+		for (int t = 0; t < program.dispatchTables.size(); t++){
+			List<Integer> offsets = pointerFields.get(className(t));
+			if (offsets == null) continue;
+			emit(".align 8");
+			asm.append(".Lptrs").append(t).append(":\n");
+			for (int offset: offsets){
+				emit(".quad "+offset);
+			}
+			emit(".quad 0");
+		}
+		asm.append("\n");
+
+		// dispatch tables (relocated, so read-only after loading), preceded by their pointer maps
+		asm.append("\t.section .data.rel.ro,\"aw\"\n");
+		for (int t = 0; t < program.dispatchTables.size(); t++){
+			emit(".align 8");
+			emit(".quad "+(pointerFields.containsKey(className(t)) ? ".Lptrs"+t : "0"));
+			asm.append(program.dispatchTableNames.get(t)).append(":\n");
+			for (int f: program.dispatchTables.get(t)){
+				emit(".quad "+program.functions.get(f).label);
+			}
+		}
+		asm.append("\n");
+	}
+
+	/**
+	 * returns the class name of dispatch table t ("_DV_<class name>")
+	 */
+	private String className(int t){
+		return program.dispatchTableNames.get(t).substring(4);
+	}
+
+	/**
+	 * translates a single method: prologue, parameters and code
+	 * @param index
+	 * @throws X86TranslationError
+	 */
+	private void translateFunction(int index) throws X86TranslationError {
+		function = program.functions.get(index);
+		functionEnd = index+1 < program.functions.size() ? program.functions.get(index+1).entry : program.instructionCount;
+		List<String> params = getParameters(function.label);
+		int frameSlots = function.getFrameSize();
+		int frameSize = (WORD*frameSlots+15) & ~15;
+
+		// prologue
+		asm.append("\n\t.p2align 4\n");
+		asm.append(function.label).append(":\n");
+		emit("pushq %rbp");
+		emit("movq %rsp, %rbp");
+		if (frameSize > 0) emit("subq $"+frameSize+", %rsp");
+
+		// zero the frame
+		if (frameSlots <= 8){
+			for (int i = 0; i < frameSlots; i++){
+				emit("movq $0, "+slot(i));
+			}
+		} else {
+			String loop = newLabel();
+			emit("leaq "+slot(frameSlots-1)+", %r10");
+			emit("movl $"+frameSlots+", %r11d");
+			asm.append(loop).append(":\n");
+			emit("movq $0, (%r10)");
+			emit("addq $8, %r10");
+			emit("decl %r11d");
+			emit("jnz "+loop);
+		}
+
+		// store the parameters the method uses in their slots
+		for (int i = 0; i < params.size(); i++){
+			Integer s = function.slots.get(params.get(i));
+			if (s == null) continue;
+			if (i < ARG_REGS.length){
+				emit("movq "+ARG_REGS[i]+", "+slot(s));
+			} else {
+				emit("movq "+(2*WORD+WORD*(i-ARG_REGS.length))+"(%rbp), %rax");
+				emit("movq %rax, "+slot(s));
+			}
+		}
+
+		// code
+		flagsSet = false;
+		int last = -1;
+		for (int pc = function.entry; pc < functionEnd; pc++){
+			if (jumpTargets[pc]){
+				asm.append(".L").append(pc).append(":\n");
+				flagsSet = false;
+			}
+			translateInstruction(pc);
+			last = program.code[pc*LIRProgram.STRIDE];
+		}
+
+		// a method that falls off its end exits the program (as main does)
+		if (last != LIRProgram.JUMP && last != LIRProgram.RETURN){
+			emit("jmp "+EXIT_LABEL);
+		}
+	}
+
+	/**
+	 * translates a single instruction
+	 * @param pc
+	 * @throws X86TranslationError
+	 */
+	private void translateInstruction(int pc) throws X86TranslationError {
+		int[] code = program.code;
+		int b = pc*LIRProgram.STRIDE;
+		int op = code[b];
+		boolean keepFlags = false;
+
+		switch (op){
+		case LIRProgram.MOVE:
+			if (code[b+1] == LIRProgram.IMM){
+				emit("movq $"+code[b+2]+", "+slot(code[b+4]));
+			} else {
+				load(code[b+1], code[b+2], "%rax");
+				emit("movq %rax, "+slot(code[b+4]));
+			}
+			// moves do not change the condition flags
+			keepFlags = true;
+			break;
+		case LIRProgram.LOAD_FIELD:
+		case LIRProgram.LOAD_ARRAY:
+			emit("movq "+slot(code[b+2])+", %rax");
+			emit("movq "+element(code[b+3], code[b+4])+", %rax");
+			emit("movq %rax, "+slot(code[b+6]));
+			break;
+		case LIRProgram.STORE_FIELD:
+		case LIRProgram.STORE_ARRAY: {
+			String val = code[b+1] == LIRProgram.IMM ? "$"+code[b+2] : load(code[b+1], code[b+2], "%rdx");
+			emit("movq "+slot(code[b+4])+", %rax");
+			emit("movq "+val+", "+element(code[b+5], code[b+6]));
+			break;
+		}
+		case LIRProgram.ARRAY_LENGTH:
+			load(code[b+1], code[b+2], "%rax");
+			emit("movq -"+WORD+"(%rax), %rax");
+			emit("movq %rax, "+slot(code[b+4]));
+			break;
+		case LIRProgram.ADD:
+			intOp("addl", code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.SUB:
+			intOp("subl", code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.MUL:
+			intOp("imull", code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.AND:
+			intOp("andl", code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.OR:
+			intOp("orl", code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.XOR:
+			intOp("xorl", code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.DIV:
+		case LIRProgram.MOD:
+			divOp(op == LIRProgram.MOD, code[b+1], code[b+2], code[b+4]);
+			break;
+		case LIRProgram.INC:
+		case LIRProgram.DEC:
+		case LIRProgram.NEG:
+		case LIRProgram.NOT: {
+			String inst = op == LIRProgram.INC ? "incl" : op == LIRProgram.DEC ? "decl" : op == LIRProgram.NEG ? "negl" : "notl";
+			emit("movl "+slot(code[b+2])+", %eax");
+			emit(inst+" %eax");
+			emit("cltq");
+			emit("movq %rax, "+slot(code[b+2]));
+			break;
+		}
+		case LIRProgram.COMPARE: {
+			// Compare a,b sets the flags by b-a
+			load(code[b+3], code[b+4], "%rax");
+			String a = code[b+1] == LIRProgram.IMM ? "$"+code[b+2] : load(code[b+1], code[b+2], "%rcx");
+			emit("cmpq "+a+", %rax");
+			keepFlags = true;
+			break;
+		}
+		case LIRProgram.JUMP:
+			emit("jmp "+jumpLabel(code[b+7]));
+			break;
+		case LIRProgram.JUMP_TRUE:
+		case LIRProgram.JUMP_FALSE:
+		case LIRProgram.JUMP_G:
+		case LIRProgram.JUMP_GE:
+		case LIRProgram.JUMP_L:
+		case LIRProgram.JUMP_LE: {
+			if (!flagsSet)
+				throw new X86TranslationError("conditional jump without a preceding Compare in "+function.label);
+			String[] jcc = {"je", "jne", "jg", "jge", "jl", "jle"};
+			emit(jcc[op-LIRProgram.JUMP_TRUE]+" "+jumpLabel(code[b+7]));
+			// the flags are not changed by a jump that is not taken
+			keepFlags = true;
+			break;
+		}
+		case LIRProgram.LIBRARY: {
+			CallSite site = program.callSites.get(code[b+7]);
+			for (int i = 0; i < site.argKinds.length; i++){
+				load(site.argKinds[i], site.argValues[i], ARG_REGS[i]);
+			}
+			emit("call "+RUNTIME_PREFIX+LIRLoader.LIBRARY_METHODS[site.target].substring(2));
+			emit("movq %rax, "+slot(site.dstSlot));
+			break;
+		}
+		case LIRProgram.STATIC_CALL: {
+			CallSite site = program.callSites.get(code[b+7]);
+			String callee = program.functions.get(site.target).label;
+			List<String> params = getParameters(callee);
+			// order the arguments by the callee's parameters
+			int[] kinds = new int[params.size()];
+			int[] values = new int[params.size()];
+			for (int i = 0; i < site.formals.length; i++){
+				int pos = params.indexOf(site.formals[i]);
+				if (pos < 0) throw new X86TranslationError("unknown parameter "+site.formals[i]+" of "+callee);
+				kinds[pos] = site.argKinds[i];
+				values[pos] = site.argValues[i];
+			}
+			int stackArgs = passArguments(kinds, values);
+			emit("call "+callee);
+			popArguments(stackArgs);
+			emit("movq %rax, "+slot(site.dstSlot));
+			break;
+		}
+		case LIRProgram.VIRTUAL_CALL: {
+			CallSite site = program.callSites.get(code[b+7]);
+			// the receiver is the first argument
+			int n = site.argKinds.length;
+			int[] kinds = new int[n+1];
+			int[] values = new int[n+1];
+			kinds[0] = LIRProgram.SLOT;
+			values[0] = site.receiverSlot;
+			System.arraycopy(site.argKinds, 0, kinds, 1, n);
+			System.arraycopy(site.argValues, 0, values, 1, n);
+			int stackArgs = passArguments(kinds, values);
+			emit("movq (%rdi), %rax");
+			emit("call *"+(WORD*site.target)+"(%rax)");
+			popArguments(stackArgs);
+			emit("movq %rax, "+slot(site.dstSlot));
+			break;
+		}
+		case LIRProgram.RETURN:
+			load(code[b+1], code[b+2], "%rax");
+			emit("leave");
+			emit("ret");
+			break;
+		default:
+			throw new X86TranslationError("unknown opcode "+op+" at instruction "+pc);
+		}
+
+		flagsSet = keepFlags && (flagsSet || op == LIRProgram.COMPARE);
+	}
+
+	/**
+	 * translates an int operation b = b op a, in 32 bits
+	 */
+	private void intOp(String inst, int kind, int value, int dst){
+		emit("movl "+slot(dst)+", %eax");
+		emit(inst+" "+operand32(kind, value)+", %eax");
+		emit("cltq");
+		emit("movq %rax, "+slot(dst));
+	}
+
+	/**
+	 * translates b = b / a or b = b % a. division of MIN_INT by -1 overflows
+	 * (and traps in idiv), so -1 is handled on its own, wrapping as in Java
+	 */
+	private void divOp(boolean mod, int kind, int value, int dst){
+		emit("movl "+slot(dst)+", %eax");
+		if (kind == LIRProgram.IMM && value == -1){
+			emit(mod ? "xorl %eax, %eax" : "negl %eax");
+		} else {
+			String minusOne = null;
+			String done = null;
+			if (kind == LIRProgram.IMM){
+				emit("movl $"+value+", %ecx");
+			} else {
+				minusOne = newLabel();
+				done = newLabel();
+				emit("movl "+operand32(kind, value)+", %ecx");
+				emit("cmpl $-1, %ecx");
+				emit("je "+minusOne);
+			}
+			emit("cltd");
+			emit("idivl %ecx");
+			if (mod) emit("movl %edx, %eax");
+			if (minusOne != null){
+				emit("jmp "+done);
+				asm.append(minusOne).append(":\n");
+				emit(mod ? "xorl %eax, %eax" : "negl %eax");
+				asm.append(done).append(":\n");
+			}
+		}
+		emit("cltq");
+		emit("movq %rax, "+slot(dst));
+	}
+
+	/**
+	 * moves the call arguments (by position) to the argument registers and the stack,
+	 * keeping the stack 16-byte aligned at the call
+	 * @return the number of words pushed
+	 */
+	private int passArguments(int[] kinds, int[] values){
+		int pushed = 0;
+		if (kinds.length > ARG_REGS.length){
+			int stackArgs = kinds.length-ARG_REGS.length;
+			if (stackArgs % 2 != 0){
+				emit("subq $"+WORD+", %rsp");
+				pushed++;
+			}
+			for (int i = kinds.length-1; i >= ARG_REGS.length; i--){
+				if (kinds[i] == LIRProgram.IMM) emit("pushq $"+values[i]);
+				else if (kinds[i] == LIRProgram.SLOT) emit("pushq "+slot(values[i]));
+				else emit("pushq "+load(kinds[i], values[i], "%rax"));
+				pushed++;
+			}
+		}
+		for (int i = 0; i < kinds.length && i < ARG_REGS.length; i++){
+			load(kinds[i], values[i], ARG_REGS[i]);
+		}
+		return pushed;
+	}
+
+	/**
+	 * releases the stack arguments after a call
+	 */
+	private void popArguments(int pushed){
+		if (pushed > 0) emit("addq $"+(WORD*pushed)+", %rsp");
+	}
+
+	// helpers
+	//////////
+
+	/**
+	 * returns the parameter names of a method
+	 */
+	private List<String> getParameters(String label){
+		List<String> params = parameters.get(label);
+		return params != null ? params : new ArrayList<String>();
+	}
+
+	/**
+	 * returns the frame address of a slot
+	 */
+	private static String slot(int s){
+		return (-WORD*(s+1))+"(%rbp)";
+	}
+
+	/**
+	 * returns the address of word [%rax + offset], where the offset is an
+	 * immediate or a slot (loaded to %rcx)
+	 */
+	private String element(int kind, int value){
+		if (kind == LIRProgram.IMM) return (WORD*value)+"(%rax)";
+		load(kind, value, "%rcx");
+		return "(%rax,%rcx,"+WORD+")";
+	}
+
+	/**
+	 * loads an operand to a 64-bit register
+	 * @return the register
+	 */
+	private String load(int kind, int value, String reg){
+		switch (kind){
+		case LIRProgram.IMM:
+			emit("movq $"+value+", "+reg);
+			break;
+		case LIRProgram.SLOT:
+			emit("movq "+slot(value)+", "+reg);
+			break;
+		case LIRProgram.STR:
+			emit("leaq .Lstr"+value+"(%rip), "+reg);
+			break;
+		default:
+			emit("leaq "+program.dispatchTableNames.get(value)+"(%rip), "+reg);
+		}
+		return reg;
+	}
+
+	/**
+	 * returns a 32-bit source operand for an int operation
+	 */
+	private String operand32(int kind, int value){
+		if (kind == LIRProgram.IMM) return "$"+value;
+		if (kind == LIRProgram.SLOT) return slot(value);
+		load(kind, value, "%rcx");
+		return "%ecx";
+	}
+
+	/**
+	 * returns the assembly label of a jump target. jumps out of the method
+	 * (to _error_exit, or past its last instruction) exit the program
+	 * @throws X86TranslationError
+	 */
+	private String jumpLabel(int target) throws X86TranslationError {
+		if (target >= function.entry && target < functionEnd) return ".L"+target;
+		if (target == functionEnd || target == program.instructionCount) return EXIT_LABEL;
+		throw new X86TranslationError("jump out of method "+function.label);
+	}
+
+	/**
+	 * returns a new local label
+	 */
+	private String newLabel(){
+		return ".Lx"+(labelCounter++);
+	}
+
+	/**
+	 * appends an instruction (or directive)
+	 */
+	private void emit(String inst){
+		asm.append('\t').append(inst).append('\n');
+	}
+
+	/**
+	 * escapes a string for an .ascii directive
+	 */
+	private static String escape(String s){
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') sb.append('\\').append(c);
+			else if (c >= 32 && c < 127) sb.append(c);
+			else sb.append(String.format("\\%03o", c & 0xff));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,729 @@
+package IC.C;
+
+import java.util.*;
+
+import IC.BinaryOps;
+import IC.LiteralTypes;
+import IC.UnaryOps;
+import IC.AST.*;
+import IC.LIR.ClassLayout;
+import IC.Simulator.LIRLoader;
+import IC.SymbolTable.BlockSymbolTable;
+import IC.SymbolTable.ClassSymbolTable;
+import IC.SymbolTable.Kind;
+import IC.SymbolTable.Symbol;
+
+/**
+ * CTranslator
+ * ===========
+ * compiles a checked IC program to a single C translation unit, to be
+ * compiled by gcc and linked with the C runtime (runtime/ic_runtime.o):
+ *   gcc -O2 -I runtime -o prog prog.c runtime/ic_runtime.o -pthread
+ *
+ * - the values are the runtime's 64-bit words (see ic_runtime.h): int
+ *   results are truncated to 32 bits, and references are pointers.
+ * - every class is a struct laid out by its ClassLayout: the dispatch
+ *   vector pointer, followed by the fields by offset.
+ * - dispatch vectors are static arrays of method pointers, ordered by the
+ *   ClassLayout method offsets, and preceded by the class's pointer map.
+ * - methods are static C functions named by their LIR labels (main is
+ *   _ic_main, called by the runtime), and Library calls
+ *   call the runtime's ic_<name> functions.
+ * - the runtime checks are inline branches, which print the LIR check's
+ *   message and exit as _error_exit does.
+ *
+ * expressions are evaluated left to right into temporaries (C leaves the
+ * order of operands unspecified), and && and || short-circuit. every
+ * expression visitor returns the Value holding its result.
+ *
+ * a program need not use all of its methods, literals, dispatch vectors
+ * and variables: they are declared __attribute__((unused)) (as ic_fail is),
+ * so the C code compiles cleanly with -Wall.
+ */
+public class CTranslator implements Visitor {
+
+	/**
+	 * the C expression of a computed value (a literal, a variable or a
+	 * temporary), and its IC type name
+	 */
+	private static class Value {
+		String code;
+		String type;
+
+		Value(String code, String type){
+			this.code = code;
+			this.type = type;
+		}
+	}
+
+	private static final String PRELUDE =
+		"#include <stdint.h>\n" +
+		"#include \"ic_runtime.h\"\n\n" +
+		"typedef ic_word (*ic_method)(void);\n\n" +
+		"#define IC_INT(x) ((ic_word)(int32_t)(uint32_t)(x))\n" +
+		"#define IC_LENGTH(a) (((const ic_word *)(a))[-1])\n" +
+		"#define IC_CHECK(ok, msg) do { if (__builtin_expect(!(ok), 0)) ic_fail(msg); } while (0)\n\n";
+
+	private ICClass library;
+	// class name -> layout
+	private Map<String,ClassLayout> classLayouts = new LinkedHashMap<String,ClassLayout>();
+	// string literal (unescaped) -> its C name
+	private Map<String,String> stringLiterals = new LinkedHashMap<String,String>();
+
+	private StringBuilder declarations = new StringBuilder();
+	private StringBuilder functions = new StringBuilder();
+
+	// current method
+	private ICClass currClass;
+	private StringBuilder body;
+	private int indent;
+	private int tempCounter;
+
+	// runtime check messages
+	private String nullRefMessage;
+	private String arrayAccessMessage;
+	private String sizeMessage;
+	private String zeroMessage;
+
+	/**
+	 * compiles the program to C source code
+	 * @param program
+	 * @return
+	 */
+	public String translate(Program program){
+		nullRefMessage = stringLiteral("Runtime Error: Null pointer dereference!");
+		arrayAccessMessage = stringLiteral("Runtime Error: Array index out of bounds!");
+		sizeMessage = stringLiteral("Runtime Error: Array allocation with negative array size!");
+		zeroMessage = stringLiteral("Runtime Error: Division by zero!");
+
+		program.accept(this);
+
+		StringBuilder c = new StringBuilder();
+		c.append("/* generated by the IC compiler */\n");
+		c.append(PRELUDE);
+
+		// string literals, preceded by their length words
+		for (Map.Entry<String,String> entry: stringLiterals.entrySet()){
+			String s = entry.getKey();
+			c.append("static const struct { ic_word length; char chars[").append(s.length()+1);
+			c.append("]; } __attribute__((unused)) ").append(entry.getValue()).append(" = { ").append(s.length());
+			c.append(", ").append(cString(s)).append(" };\n");
+		}
+		c.append("\n");
+
+		c.append("static void __attribute__((noreturn, cold, noinline, unused)) ic_fail(const char *msg)\n{\n");
+		c.append("\tic_println(msg);\n\tic_exit(0);\n\t__builtin_unreachable();\n}\n\n");
+
+		c.append(declarations).append("\n");
+		c.append(dispatchTables()).append("\n");
+		c.append(functions);
+		return c.toString();
+	}
+
+	// names
+	////////
+
+	/**
+	 * returns the C name of a string literal (its characters)
+	 */
+	private String stringLiteral(String s){
+		String name = stringLiterals.get(s);
+		if (name == null){
+			name = "str"+stringLiterals.size();
+			stringLiterals.put(s, name);
+		}
+		return "("+name+".chars)";
+	}
+
+	/**
+	 * returns a C string literal of s (non-printable characters as octal escapes)
+	 */
+	private static String cString(String s){
+		StringBuilder b = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++){
+			char ch = s.charAt(i);
+			if (ch == '"' || ch == '\\') b.append('\\').append(ch);
+			else if (ch >= 32 && ch < 127 && ch != '?') b.append(ch);
+			else b.append(String.format("\\%03o", ch & 0xff));
+		}
+		return b.append('"').toString();
+	}
+
+	private static String methodLabel(String className, Method m){
+		if (isMain(m)) return "_ic_main";
+		return "_"+className+"_"+m.getName();
+	}
+
+	/**
+	 * returns the label of a method, by the class declaring it
+	 */
+	private static String methodLabel(Method m){
+		return methodLabel(((ClassSymbolTable) m.getEnclosingScope()).getMyClassSymbol().getID(), m);
+	}
+
+	private static boolean isMain(Method m){
+		return m.isStatic() && m.getName().equals("main") && m.getType().toString().equals("void") &&
+			m.getFormals().size() == 1 && m.getFormals().get(0).getType().toString().equals("string[]");
+	}
+
+	/**
+	 * returns the C function pointer type of a method with the given number of parameters
+	 */
+	private static String functionType(int params){
+		StringBuilder b = new StringBuilder("ic_word (*)(");
+		for (int i = 0; i < params; i++){
+			b.append(i == 0 ? "" : ", ").append("ic_word");
+		}
+		if (params == 0) b.append("void");
+		return b.append(")").toString();
+	}
+
+	private static String parameters(Method m){
+		StringBuilder b = new StringBuilder("(");
+		if (!m.isStatic()) b.append("ic_word self");
+		for (Formal f: m.getFormals()){
+			b.append(b.length() > 1 ? ", " : "").append("ic_word v_").append(f.getName());
+		}
+		if (b.length() == 1) b.append("void");
+		return b.append(")").toString();
+	}
+
+	private Field findField(String className, String name){
+		for (Field f: classLayouts.get(className).getFieldToOffsetMap().keySet()){
+			if (f.getName().equals(name)) return f;
+		}
+		throw new IllegalStateException("no field "+name+" in class "+className);
+	}
+
+	// program structure
+	////////////////////
+
+	public Object visit(Program program){
+		for (ICClass c: program.getClasses()){
+			// skip library method
+			if (c.getName().equals("Library")){
+				library = c;
+				continue;
+			}
+			ClassLayout layout = c.hasSuperClass() ? new ClassLayout(c, classLayouts.get(c.getSuperClassName())) : new ClassLayout(c);
+			classLayouts.put(c.getName(), layout);
+			classStruct(layout);
+		}
+		for (ICClass c: program.getClasses()){
+			if (c.getName().equals("Library")) continue;
+			c.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * declares the class struct: the dispatch vector, then the fields by offset
+	 */
+	private void classStruct(ClassLayout layout){
+		Map<Field,Integer> offsets = layout.getFieldToOffsetMap();
+		Field[] fields = new Field[offsets.size()+1];
+		for (Map.Entry<Field,Integer> entry: offsets.entrySet()){
+			fields[entry.getValue()] = entry.getKey();
+		}
+		declarations.append("struct ").append(layout.getClassName()).append(" {\n\tconst ic_method *dv;\n");
+		for (int i = 1; i < fields.length; i++){
+			declarations.append("\tic_word f_").append(fields[i].getName()).append(";\n");
+		}
+		declarations.append("};\n");
+	}
+
+	/**
+	 * returns the dispatch vectors, the virtual methods ordered by offset.
+	 * every vector is preceded by its class's pointer map (the reference
+	 * field offsets, ending with 0), for the garbage collector
+	 */
+	private String dispatchTables(){
+		StringBuilder b = new StringBuilder();
+		for (ClassLayout layout: classLayouts.values()){
+			Map<Method,Integer> offsets = layout.getMethodToOffsetMap();
+			Method[] methods = new Method[offsets.size()];
+			for (Map.Entry<Method,Integer> entry: offsets.entrySet()){
+				methods[entry.getValue()] = entry.getKey();
+			}
+			String name = layout.getClassName();
+			b.append("static const ic_word _PTRS_").append(name).append("[] = {");
+			for (int offset: layout.getPointerFieldOffsets()){
+				b.append(" ").append(offset).append(",");
+			}
+			b.append(" 0 };\n");
+
+			b.append("static const struct { const ic_word *ptrs; ic_method methods[").append(Math.max(methods.length, 1));
+			b.append("]; } __attribute__((unused)) _DV_").append(name).append(" = { _PTRS_").append(name).append(", {");
+			for (int i = 0; i < methods.length; i++){
+				b.append(i == 0 ? " " : ", ").append("(ic_method)").append(methodLabel(methods[i]));
+			}
+			b.append(methods.length == 0 ? " 0 } };\n" : " } };\n");
+		}
+		return b.toString();
+	}
+
+	public Object visit(ICClass icClass){
+		currClass = icClass;
+		for (Method m: icClass.getMethods()){
+			m.accept(this);
+		}
+		return null;
+	}
+
+	public Object visit(Field field){
+		return null;
+	}
+
+	public Object visit(VirtualMethod method){
+		methodVisitHelper(method);
+		return null;
+	}
+
+	public Object visit(StaticMethod method){
+		methodVisitHelper(method);
+		return null;
+	}
+
+	public Object visit(LibraryMethod method){
+		return null;
+	}
+
+	/**
+	 * compiles a method to a C function; every function returns a word
+	 * (0 for void methods and for methods falling off their end)
+	 */
+	private void methodVisitHelper(Method method){
+		// methods are static, so gcc sees the whole program
+		String signature = (isMain(method) ? "" : "static __attribute__((unused)) ")+"ic_word "+methodLabel(currClass.getName(), method)+parameters(method);
+		if (!isMain(method)) declarations.append(signature).append(";\n");
+
+		body = new StringBuilder();
+		indent = 1;
+		tempCounter = 0;
+		for (Statement s: method.getStatements()){
+			s.accept(this);
+		}
+		List<Statement> statements = method.getStatements();
+		if (statements.isEmpty() || !(statements.get(statements.size()-1) instanceof Return)){
+			emit("return 0;");
+		}
+		functions.append(signature).append("\n{\n").append(body).append("}\n\n");
+	}
+
+	public Object visit(Formal formal){
+		return null;
+	}
+
+	public Object visit(PrimitiveType type){
+		return null;
+	}
+
+	public Object visit(UserType type){
+		return null;
+	}
+
+	// emission
+	///////////
+
+	private void emit(String line){
+		for (int i = 0; i < indent; i++){
+			body.append('\t');
+		}
+		body.append(line).append('\n');
+	}
+
+	/**
+	 * emits a temporary holding the given C expression, and returns it
+	 */
+	private Value temp(String code, String type){
+		String t = "t"+(tempCounter++);
+		emit("ic_word __attribute__((unused)) "+t+" = "+code+";");
+		return new Value(t, type);
+	}
+
+	/**
+	 * emits a statement in a block of its own (the statement may declare variables)
+	 */
+	private void blockVisit(Statement s){
+		indent++;
+		s.accept(this);
+		indent--;
+	}
+
+	// statements
+	/////////////
+
+	/**
+	 * Assignment visitor: the value is computed before the location,
+	 * as in the LIR translation
+	 */
+	public Object visit(Assignment assignment){
+		Value value = (Value) assignment.getAssignment().accept(this);
+		Location location = assignment.getVariable();
+
+		if (location instanceof ArrayLocation){
+			emit(arrayElement((ArrayLocation) location).code+" = "+value.code+";");
+			return null;
+		}
+
+		VariableLocation var = (VariableLocation) location;
+		if (!var.isExternal()){
+			Symbol symbol = var.getVarDeclarationScope().lookup(var.getIdentifier());
+			if (symbol.getKind() != Kind.FIELD){
+				emit("v_"+var.getName()+" = "+value.code+";");
+				return null;
+			}
+		}
+		emit(fieldOf(var).code+" = "+value.code+";");
+		return null;
+	}
+
+	public Object visit(CallStatement callStatement){
+		callStatement.getCall().accept(this);
+		return null;
+	}
+
+	public Object visit(Return returnStatement){
+		if (returnStatement.hasValue()){
+			Value value = (Value) returnStatement.getValue().accept(this);
+			emit("return "+value.code+";");
+		} else {
+			emit("return 0;");
+		}
+		return null;
+	}
+
+	public Object visit(If ifStatement){
+		Value condition = (Value) ifStatement.getCondition().accept(this);
+		emit("if ("+condition.code+") {");
+		blockVisit(ifStatement.getOperation());
+		if (ifStatement.hasElse()){
+			emit("} else {");
+			blockVisit(ifStatement.getElseOperation());
+		}
+		emit("}");
+		return null;
+	}
+
+	/**
+	 * While visitor: the condition is computed at the start of every
+	 * iteration, so continue is C's continue
+	 */
+	public Object visit(While whileStatement){
+		emit("for (;;) {");
+		indent++;
+		Value condition = (Value) whileStatement.getCondition().accept(this);
+		emit("if (!"+condition.code+") break;");
+		blockVisit(whileStatement.getOperation());
+		indent--;
+		emit("}");
+		return null;
+	}
+
+	public Object visit(Break breakStatement){
+		emit("break;");
+		return null;
+	}
+
+	public Object visit(Continue continueStatement){
+		emit("continue;");
+		return null;
+	}
+
+	public Object visit(StatementsBlock statementsBlock){
+		emit("{");
+		indent++;
+		for (Statement s: statementsBlock.getStatements()){
+			s.accept(this);
+		}
+		indent--;
+		emit("}");
+		return null;
+	}
+
+	/**
+	 * LocalVariable visitor: IC scopes are C blocks, so a local variable is
+	 * a C variable of the same name (uninitialized variables are 0)
+	 */
+	public Object visit(LocalVariable localVariable){
+		String init = "0";
+		if (localVariable.hasInitValue()){
+			init = ((Value) localVariable.getInitValue().accept(this)).code;
+		}
+		emit("ic_word __attribute__((unused)) v_"+localVariable.getName()+" = "+init+";");
+		return null;
+	}
+
+	// locations
+	////////////
+
+	/**
+	 * computes the object of a field location (checked for null),
+	 * and returns the field's C lvalue
+	 */
+	private Value fieldOf(VariableLocation var){
+		String object;
+		String className;
+		if (var.isExternal()){
+			Value location = (Value) var.getLocation().accept(this);
+			emit("IC_CHECK("+location.code+" != 0, "+nullRefMessage+");");
+			object = location.code;
+			className = location.type;
+		} else {
+			object = "self";
+			className = currClass.getName();
+		}
+		String type = findField(className, var.getName()).getType().toString();
+		return new Value("((struct "+className+" *)"+object+")->f_"+var.getName(), type);
+	}
+
+	/**
+	 * computes the array (checked for null) and the index (checked for
+	 * bounds) of an array location, and returns the element's C lvalue
+	 */
+	private Value arrayElement(ArrayLocation location){
+		Value array = (Value) location.getArray().accept(this);
+		emit("IC_CHECK("+array.code+" != 0, "+nullRefMessage+");");
+		Value index = (Value) location.getIndex().accept(this);
+		emit("IC_CHECK((uint64_t)"+index.code+" < (uint64_t)IC_LENGTH("+array.code+"), "+arrayAccessMessage+");");
+		String type = array.type.substring(0, array.type.length()-2);
+		return new Value("((ic_word *)"+array.code+")["+index.code+"]", type);
+	}
+
+	public Object visit(VariableLocation location){
+		if (!location.isExternal()){
+			Symbol symbol = location.getVarDeclarationScope().lookup(location.getIdentifier());
+			if (symbol.getKind() != Kind.FIELD){
+				return new Value("v_"+location.getName(), symbol.getType().getName());
+			}
+		}
+		Value field = fieldOf(location);
+		return temp(field.code, field.type);
+	}
+
+	public Object visit(ArrayLocation location){
+		Value element = arrayElement(location);
+		return temp(element.code, element.type);
+	}
+
+	// calls
+	////////
+
+	/**
+	 * computes the call arguments, left to right
+	 */
+	private List<String> argumentsVisit(Call call){
+		List<String> args = new ArrayList<String>();
+		for (Expression arg: call.getArguments()){
+			args.add(((Value) arg.accept(this)).code);
+		}
+		return args;
+	}
+
+	private static String join(List<String> args){
+		StringBuilder b = new StringBuilder();
+		for (String arg: args){
+			b.append(b.length() == 0 ? "" : ", ").append(arg);
+		}
+		return b.toString();
+	}
+
+	/**
+	 * emits a call, and returns its result (void calls return 0)
+	 */
+	private Value call(String function, List<String> args, String returnType){
+		String code = function+"("+join(args)+")";
+		if (returnType.equals("void")){
+			emit(code+";");
+			return new Value("0", returnType);
+		}
+		return temp(code, returnType);
+	}
+
+	/**
+	 * StaticCall visitor: Library methods are the runtime's ic_<name>
+	 * functions, which take strings and arrays as pointers
+	 */
+	public Object visit(StaticCall call){
+		List<String> args = argumentsVisit(call);
+		if (call.getClassName().equals("Library")){
+			Method m = libraryMethod(call.getName());
+			for (int i = 0; i < args.size(); i++){
+				String type = m.getFormals().get(i).getType().toString();
+				if (type.equals("string")) args.set(i, "(const char *)"+args.get(i));
+				else if (type.endsWith("[]")) args.set(i, "(const ic_word *)"+args.get(i));
+			}
+			return call("ic_"+call.getName(), args, m.getType().toString());
+		}
+		ClassLayout layout = classLayouts.get(call.getClassName());
+		Method m = layout.getMethodFromName(call.getIdentifier());
+		return call(methodLabel(m), args, m.getType().toString());
+	}
+
+	private Method libraryMethod(String name){
+		for (Method m: library.getMethods()){
+			if (m.getName().equals(name)) return m;
+		}
+		throw new IllegalStateException("no library method "+name);
+	}
+
+	/**
+	 * VirtualCall visitor: the receiver is computed (and checked for null)
+	 * before the arguments, and the method is called through the dispatch
+	 * vector of its static class. an unqualified call may also be a call
+	 * to a static method of the enclosing class
+	 */
+	public Object visit(VirtualCall call){
+		String receiver;
+		String className;
+		if (call.isExternal()){
+			Value location = (Value) call.getLocation().accept(this);
+			emit("IC_CHECK("+location.code+" != 0, "+nullRefMessage+");");
+			receiver = location.code;
+			className = location.type;
+		} else {
+			receiver = "self";
+			className = currClass.getName();
+		}
+
+		ClassLayout layout = classLayouts.get(className);
+		Method m = layout.getMethodFromName(call.getIdentifier());
+		if (m.isStatic()){
+			return call(methodLabel(m), argumentsVisit(call), m.getType().toString());
+		}
+
+		List<String> args = argumentsVisit(call);
+		args.add(0, receiver);
+		String function = "(("+functionType(args.size())+")((struct "+className+" *)"+receiver+")->dv["+layout.getMethodOffset(m)+"])";
+		return call(function, args, m.getType().toString());
+	}
+
+	// other expressions
+	////////////////////
+
+	public Object visit(This thisExpression){
+		return new Value("self", ((BlockSymbolTable) thisExpression.getEnclosingScope()).getEnclosingCST().getMyClassSymbol().getID());
+	}
+
+	public Object visit(NewClass newClass){
+		ClassLayout layout = classLayouts.get(newClass.getName());
+		Value object = temp("ic_allocateObject("+layout.getAllocSize()+")", newClass.getName());
+		emit("((struct "+newClass.getName()+" *)"+object.code+")->dv = _DV_"+newClass.getName()+".methods;");
+		return object;
+	}
+
+	public Object visit(NewArray newArray){
+		Value size = (Value) newArray.getSize().accept(this);
+		emit("IC_CHECK("+size.code+" >= 0, "+sizeMessage+");");
+		return temp("ic_allocateArray("+size.code+" * 4)", newArray.getType().toString()+"[]");
+	}
+
+	public Object visit(Length length){
+		Value array = (Value) length.getArray().accept(this);
+		emit("IC_CHECK("+array.code+" != 0, "+nullRefMessage+");");
+		return temp("IC_LENGTH("+array.code+")", "int");
+	}
+
+	/**
+	 * MathBinaryOp visitor: int operations are computed on words (no
+	 * overflow) and truncated to 32 bits. + of strings is ic_stringCat
+	 */
+	public Object visit(MathBinaryOp binaryOp){
+		Value a = (Value) binaryOp.getFirstOperand().accept(this);
+		Value b = (Value) binaryOp.getSecondOperand().accept(this);
+
+		switch (binaryOp.getOperator()){
+		case PLUS:
+			if (a.type.equals("string") || b.type.equals("string")){
+				return temp("ic_stringCat((const char *)"+a.code+", (const char *)"+b.code+")", "string");
+			}
+			return temp("IC_INT("+a.code+" + "+b.code+")", "int");
+		case MINUS:
+			return temp("IC_INT("+a.code+" - "+b.code+")", "int");
+		case MULTIPLY:
+			return temp("IC_INT("+a.code+" * "+b.code+")", "int");
+		case DIVIDE:
+			emit("IC_CHECK("+b.code+" != 0, "+zeroMessage+");");
+			return temp("IC_INT("+a.code+" / "+b.code+")", "int");
+		default:
+			emit("IC_CHECK("+b.code+" != 0, "+zeroMessage+");");
+			return temp("IC_INT("+a.code+" % "+b.code+")", "int");
+		}
+	}
+
+	/**
+	 * LogicalBinaryOp visitor: the second operand of && and || is computed
+	 * only if the first does not decide the result
+	 */
+	public Object visit(LogicalBinaryOp binaryOp){
+		BinaryOps operator = binaryOp.getOperator();
+		Value a = (Value) binaryOp.getFirstOperand().accept(this);
+
+		if (operator == BinaryOps.LAND || operator == BinaryOps.LOR){
+			Value result = temp(a.code, "boolean");
+			emit("if ("+(operator == BinaryOps.LAND ? "" : "!")+result.code+") {");
+			indent++;
+			Value b = (Value) binaryOp.getSecondOperand().accept(this);
+			emit(result.code+" = "+b.code+";");
+			indent--;
+			emit("}");
+			return result;
+		}
+
+		Value b = (Value) binaryOp.getSecondOperand().accept(this);
+		String op;
+		switch (operator){
+		case EQUAL: op = "=="; break;
+		case NEQUAL: op = "!="; break;
+		case LT: op = "<"; break;
+		case LTE: op = "<="; break;
+		case GT: op = ">"; break;
+		default: op = ">=";
+		}
+		return temp(a.code+" "+op+" "+b.code, "boolean");
+	}
+
+	public Object visit(MathUnaryOp unaryOp){
+		Expression operand = unaryOp.getOperand();
+		if (operand instanceof Literal && ((Literal) operand).getType() == LiteralTypes.INTEGER){
+			// -2147483648 is only valid as a negated literal
+			return new Value(intLiteral(-Long.parseLong(((Literal) operand).getValue().toString())), "int");
+		}
+		Value a = (Value) operand.accept(this);
+		return temp("IC_INT(-"+a.code+")", "int");
+	}
+
+	public Object visit(LogicalUnaryOp unaryOp){
+		Value a = (Value) unaryOp.getOperand().accept(this);
+		return temp("!"+a.code, "boolean");
+	}
+
+	/**
+	 * returns a C literal of an int, as a word (so operations on literals cannot overflow)
+	 */
+	private static String intLiteral(long value){
+		value = (int) value;
+		// the minimal int has no positive literal
+		return value == Integer.MIN_VALUE ? "(-2147483647L - 1)" : value < 0 ? "("+value+"L)" : value+"L";
+	}
+
+	public Object visit(Literal literal){
+		switch (literal.getType()){
+		case INTEGER:
+			return new Value(intLiteral(Long.parseLong(literal.getValue().toString())), "int");
+		case STRING:
+			String s = literal.getValue().toString();
+			return new Value("(ic_word)"+stringLiteral(LIRLoader.unescape(s.substring(1, s.length()-1))), "string");
+		case TRUE:
+			return new Value("1", "boolean");
+		case FALSE:
+			return new Value("0", "boolean");
+		default:
+			return new Value("0", "null");
+		}
+	}
+
+	public Object visit(ExpressionBlock expressionBlock){
+		return expressionBlock.getExpression().accept(this);
+	}
+}
@@ -0,0 +1,230 @@
+package IC.Cache;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import IC.AST.ICClass;
+import IC.AST.Program;
+
+/**
+ * ASTCache
+ * ========
+ * an on-disk cache of the ASTs of checked programs, so that a program that did not
+ * change since it was last compiled is read back instead of lexed and parsed again,
+ * and its semantic checks (which it passed) are skipped.
+ *
+ * an entry is the binary AST (see ASTFormat) of a program that passed the semantic
+ * checks, and of its library class. its symbol tables and types are not stored: they
+ * are rebuilt from the AST by the SymbolTableBuilder, which is cheaper than reading
+ * them back (the whole analyzed graph, serialized, is several times slower to read than
+ * to compute again).
+ * an entry is keyed by the SHA-256 of all of its inputs: the cache VERSION, the
+ * program path (it names the symbol and type tables), and the contents of the
+ * library signature and of every source file, in order.
+ *
+ * the cache directory holds a <key>.ast file per entry. its size is bounded: after
+ * every store, the least recently used entries (by their files' modification time,
+ * refreshed on every hit) are evicted until the directory fits.
+ * an entry that cannot be read is deleted and treated as a miss.
+ */
+public class ASTCache {
+
+	/**
+	 * the version of the cached front end, part of every key: bump it whenever the
+	 * parsers or the semantic checks change (the binary AST format has its own version).
+	 */
+	public static final String VERSION = "IC front end 1";
+
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	private static final String SUFFIX = ".ast";
+
+	private final File dir;
+	private final long maxBytes;
+
+
+	/**
+	 * a checked program: its AST as parsed, and its library class
+	 */
+	public static class Entry {
+
+		private Program program;
+		private ICClass library;
+
+		public Entry(Program program, ICClass library) {
+			this.program = program;
+			this.library = library;
+		}
+
+		public Program getProgram() {
+			return program;
+		}
+
+		public ICClass getLibrary() {
+			return library;
+		}
+	}
+
+
+	/**
+	 * @param dir the cache directory (created if needed)
+	 * @param maxBytes the maximal total size of the entries
+	 */
+	public ASTCache(File dir, long maxBytes) {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+	}
+
+	public ASTCache(File dir) {
+		this(dir, DEFAULT_MAX_BYTES);
+	}
+
+
+	/**
+	 * returns the key of a program
+	 * @param programPath the path the program is compiled as
+	 * @param sourceFiles the program's source files, in order
+	 * @param libraryPath the library signature file
+	 * @return the key: a hex SHA-256 digest
+	 * @throws IOException if a file cannot be read
+	 */
+	public static String key(String programPath, List<String> sourceFiles, String libraryPath) throws IOException {
+		MessageDigest digest = sha256();
+		update(digest, VERSION.getBytes("UTF-8"));
+		update(digest, programPath.getBytes("UTF-8"));
+		update(digest, readFile(libraryPath));
+		for (String path : sourceFiles)
+			update(digest, readFile(path));
+		return hex(digest.digest());
+	}
+
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {  //every Java platform has SHA-256.
+			throw new RuntimeException(e);
+		}
+	}
+
+	/* adds a length-prefixed chunk to the digest (so chunks cannot run into each other). */
+	static void update(MessageDigest digest, byte[] bytes) {
+		int n = bytes.length;
+		digest.update(new byte[] { (byte)(n >>> 24), (byte)(n >>> 16), (byte)(n >>> 8), (byte)n });
+		digest.update(bytes);
+	}
+
+	static String hex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[2*i] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+			hex[2*i + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+		}
+		return new String(hex);
+	}
+
+	static byte[] readFile(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			byte[] bytes = new byte[(int)file.length()];
+			file.readFully(bytes);
+			return bytes;
+		} finally {
+			file.close();
+		}
+	}
+
+
+	/**
+	 * loads the entry of the given key
+	 * @param key
+	 * @return the entry, or null if there is none (or it cannot be loaded)
+	 */
+	public Entry load(String key) {
+		File file = new File(dir, key + SUFFIX);
+		if (!file.isFile()) return null;
+
+		try {
+			ASTReader reader = new ASTReader(readFile(file.getPath()));
+			file.setLastModified(System.currentTimeMillis());  //most recently used.
+			return new Entry(reader.getProgram(), reader.getLibrary());
+
+		} catch (IOException e) {  //corrupt, or of another format: dropped.
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * stores an entry under the given key (replacing an existing one), and evicts the
+	 * least recently used entries if the cache is full.
+	 * failing to store is not an error: the cache is only skipped.
+	 * @param key
+	 * @param entry
+	 * @return true if the entry was stored
+	 */
+	public boolean store(String key, Entry entry) {
+		File file = new File(dir, key + SUFFIX);
+		File temp = null;
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) return false;
+
+			/* written aside and renamed, so a concurrent compilation never loads half an entry. */
+			temp = File.createTempFile("entry", ".tmp", dir);
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				out.write(ASTWriter.write(entry.getProgram(), entry.getLibrary()));
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file)) {
+					temp.delete();
+					return false;
+				}
+			}
+		} catch (IOException e) {
+			if (temp != null) temp.delete();
+			return false;
+		}
+
+		evict(file);
+		return true;
+	}
+
+	/**
+	 * deletes the least recently used entries (never the given one) until the
+	 * entries fit in the maximal size
+	 */
+	private void evict(File keep) {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+
+		List<File> entries = new ArrayList<File>();
+		long total = 0;
+		for (File f : files) {
+			if (f.getName().endsWith(SUFFIX)) {
+				entries.add(f);
+				total += f.length();
+			}
+		}
+
+		Collections.sort(entries, new Comparator<File>() {
+			public int compare(File a, File b) {
+				long x = a.lastModified(), y = b.lastModified();
+				return x < y ? -1 : (x == y ? 0 : 1);
+			}
+		});
+
+		for (File f : entries) {
+			if (total <= maxBytes) break;
+			if (f.equals(keep)) continue;
+			long length = f.length();
+			if (f.delete())
+				total -= length;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package IC.Cache;
+
+/**
+ * ASTFormat
+ * =========
+ * the binary AST format of the AST cache (written by ASTWriter, read by ASTReader).
+ *
+ * 		header:		magic (4 bytes "ICAS"), format version (4 bytes)
+ * 		body:		the program node, then the library class node
+ *
+ * a node is its tag byte followed by its fields, in the order of its constructor's
+ * arguments. a node's line is written only if its constructor takes one (the others
+ * take the line of their first child, and get it back the same way). a missing
+ * (optional) node is the NULL tag.
+ * 		int:		unsigned LEB128 (7 bits per byte, low bits first)
+ * 		string:		int 0 (null), int 1 followed by a new string (int UTF-8 length,
+ * 					UTF-8 bytes), or int k >= 2: the (k-2)-th new string in the file
+ * 		list:		int count, followed by the elements
+ * 		enum:		int ordinal (primitive types: their name, as a string)
+ *
+ * identifiers are read as canonical names (see IC.Name).
+ *
+ * the fingerprint of a class (see ASTWriter.fingerprint) is its class node, without
+ * a header and without any lines (and possibly without its method bodies).
+ */
+public final class ASTFormat {
+
+	public static final int MAGIC = 0x49434153;  // "ICAS"
+	public static final int VERSION = 1;
+
+	public static final int NULL = 0;
+	public static final int PROGRAM = 1;
+	public static final int CLASS = 2;
+	public static final int FIELD = 3;
+	public static final int VIRTUAL_METHOD = 4;
+	public static final int STATIC_METHOD = 5;
+	public static final int LIBRARY_METHOD = 6;
+	public static final int FORMAL = 7;
+	public static final int PRIMITIVE_TYPE = 8;
+	public static final int USER_TYPE = 9;
+	public static final int ASSIGNMENT = 10;
+	public static final int CALL_STATEMENT = 11;
+	public static final int RETURN = 12;
+	public static final int IF = 13;
+	public static final int WHILE = 14;
+	public static final int BREAK = 15;
+	public static final int CONTINUE = 16;
+	public static final int STATEMENTS_BLOCK = 17;
+	public static final int LOCAL_VARIABLE = 18;
+	public static final int VARIABLE_LOCATION = 19;
+	public static final int ARRAY_LOCATION = 20;
+	public static final int STATIC_CALL = 21;
+	public static final int VIRTUAL_CALL = 22;
+	public static final int THIS = 23;
+	public static final int NEW_CLASS = 24;
+	public static final int NEW_ARRAY = 25;
+	public static final int LENGTH = 26;
+	public static final int MATH_BINARY_OP = 27;
+	public static final int LOGICAL_BINARY_OP = 28;
+	public static final int MATH_UNARY_OP = 29;
+	public static final int LOGICAL_UNARY_OP = 30;
+	public static final int LITERAL = 31;
+	public static final int EXPRESSION_BLOCK = 32;
+
+	private ASTFormat() {
+	}
+
+}
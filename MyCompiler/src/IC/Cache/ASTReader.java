@@ -0,0 +1,327 @@
+package IC.Cache;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import IC.BinaryOps;
+import IC.DataTypes;
+import IC.LiteralTypes;
+import IC.Name;
+import IC.StackGuard;
+import IC.UnaryOps;
+import IC.AST.*;
+
+/**
+ * ASTReader
+ * =========
+ * reads ASTs in the binary AST format (see ASTFormat), building the nodes with
+ * the same constructors the parsers use (so they get the same lines).
+ * a malformed file is reported as an IOException.
+ */
+public class ASTReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final byte[] bytes;
+	private int pos = 0;
+
+	private List<String> strings = new ArrayList<String>();
+
+	private Program program;
+	private ICClass library;
+
+
+	/**
+	 * reads the binary AST of a program and of its library class
+	 * @param bytes
+	 * @throws IOException if the bytes are not a binary AST
+	 */
+	public ASTReader(byte[] bytes) throws IOException {
+		this.bytes = bytes;
+		try {
+			if (fixedInt() != ASTFormat.MAGIC || fixedInt() != ASTFormat.VERSION)
+				throw new IOException("not a binary AST of this version");
+
+			program = (Program)node();
+			library = (ICClass)node();
+			if (pos != bytes.length)
+				throw new IOException("trailing bytes after the binary AST");
+
+		} catch (ClassCastException e) {
+			throw new IOException("malformed binary AST: " + e.getMessage());
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("truncated binary AST");
+		} catch (NullPointerException e) {  //a missing node where one is required.
+			throw new IOException("malformed binary AST");
+		}
+	}
+
+	public Program getProgram() {
+		return program;
+	}
+
+	public ICClass getLibrary() {
+		return library;
+	}
+
+
+	private int fixedInt() {
+		int v = 0;
+		for (int i = 0; i < 4; i++)
+			v = (v << 8) | (bytes[pos++] & 0xff);
+		return v;
+	}
+
+	private int integer() throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = bytes[pos++];
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+		throw new IOException("malformed integer in binary AST");
+	}
+
+	private String string() throws IOException {
+		int ref = integer();
+		if (ref == 0)
+			return null;
+		if (ref >= 2) {
+			if (ref - 2 >= strings.size())
+				throw new IOException("undefined string in binary AST");
+			return strings.get(ref - 2);
+		}
+
+		int length = integer();
+		if (length < 0 || length > bytes.length - pos)
+			throw new IOException("truncated binary AST");
+		String s = new String(bytes, pos, length, UTF8);
+		pos += length;
+		strings.add(s);
+		return s;
+	}
+
+	/* an identifier: canonical. */
+	private String name() throws IOException {
+		String s = string();
+		return s == null ? null : Name.of(s).toString();
+	}
+
+	private <E> E enumValue(E[] values) throws IOException {
+		int ordinal = integer();
+		if (ordinal < 0 || ordinal >= values.length)
+			throw new IOException("malformed enum value in binary AST");
+		return values[ordinal];
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends ASTNode> List<T> list() throws IOException {
+		int count = integer();
+		if (count < 0 || count > bytes.length - pos)
+			throw new IOException("malformed list in binary AST");
+		List<T> nodes = new ArrayList<T>(count);
+		for (int i = 0; i < count; i++)
+			nodes.add((T)node());
+		return nodes;
+	}
+
+	private Type type() throws IOException {
+		return (Type)node();
+	}
+
+	private Expression expression() throws IOException {
+		return (Expression)node();
+	}
+
+	private Statement statement() throws IOException {
+		return (Statement)node();
+	}
+
+	private Type dimension(Type type) throws IOException {
+		for (int dimension = integer(); dimension > 0; dimension--)
+			type.incrementDimension();
+		return type;
+	}
+
+	private DataTypes primitiveType(String name) throws IOException {
+		for (DataTypes t : DataTypes.values()) {
+			if (t.getDescription().equals(name))
+				return t;
+		}
+		throw new IOException("unknown primitive type in binary AST: " + name);
+	}
+
+
+	/* nodes nest as deep as the program's expressions and blocks: past the stack's room,
+	 * the reading goes on on a fresh stack (see StackGuard). */
+	private ASTNode node() throws IOException {
+		if (!StackGuard.enter()) {
+			try {
+				return StackGuard.onFreshStack(new Callable<ASTNode>() {
+					public ASTNode call() throws IOException {
+						return node();
+					}
+				});
+			} catch (IOException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {  //never: reading throws no other checked exceptions.
+				throw new RuntimeException(e);
+			}
+		}
+		try {
+			return readNode();
+		} finally {
+			StackGuard.exit();
+		}
+	}
+
+	private ASTNode readNode() throws IOException {
+
+		int tag = bytes[pos++] & 0xff;
+		switch (tag) {
+
+		case ASTFormat.NULL:
+			return null;
+
+		case ASTFormat.PROGRAM:
+			return new Program(this.<ICClass>list());
+
+		case ASTFormat.CLASS: {
+			int line = integer();
+			String name = name();
+			String superClassName = name();
+			List<Field> fields = list();
+			List<Method> methods = list();
+			return new ICClass(line, name, superClassName, fields, methods);
+		}
+
+		case ASTFormat.FIELD:
+			return new Field(type(), name());
+
+		case ASTFormat.VIRTUAL_METHOD:
+			return new VirtualMethod(type(), name(), this.<Formal>list(), this.<Statement>list());
+
+		case ASTFormat.STATIC_METHOD:
+			return new StaticMethod(type(), name(), this.<Formal>list(), this.<Statement>list());
+
+		case ASTFormat.LIBRARY_METHOD:
+			return new LibraryMethod(type(), name(), this.<Formal>list());
+
+		case ASTFormat.FORMAL:
+			return new Formal(type(), name());
+
+		case ASTFormat.PRIMITIVE_TYPE: {
+			int line = integer();
+			return dimension(new PrimitiveType(line, primitiveType(string())));
+		}
+
+		case ASTFormat.USER_TYPE: {
+			int line = integer();
+			return dimension(new UserType(line, name()));
+		}
+
+		case ASTFormat.ASSIGNMENT:
+			return new Assignment((Location)node(), expression());
+
+		case ASTFormat.CALL_STATEMENT:
+			return new CallStatement((Call)node());
+
+		case ASTFormat.RETURN: {
+			int line = integer();
+			Expression value = expression();
+			return value == null ? new Return(line) : new Return(line, value);
+		}
+
+		case ASTFormat.IF: {
+			Expression condition = expression();
+			Statement operation = statement();
+			Statement elseOperation = statement();
+			return elseOperation == null ? new If(condition, operation) : new If(condition, operation, elseOperation);
+		}
+
+		case ASTFormat.WHILE:
+			return new While(expression(), statement());
+
+		case ASTFormat.BREAK:
+			return new Break(integer());
+
+		case ASTFormat.CONTINUE:
+			return new Continue(integer());
+
+		case ASTFormat.STATEMENTS_BLOCK:
+			return new StatementsBlock(integer(), this.<Statement>list());
+
+		case ASTFormat.LOCAL_VARIABLE: {
+			Type type = type();
+			String name = name();
+			Expression initValue = expression();
+			return initValue == null ? new LocalVariable(type, name) : new LocalVariable(type, name, initValue);
+		}
+
+		case ASTFormat.VARIABLE_LOCATION: {
+			int line = integer();
+			Expression location = expression();
+			String name = name();
+			return location == null ? new VariableLocation(line, name) : new VariableLocation(line, location, name);
+		}
+
+		case ASTFormat.ARRAY_LOCATION:
+			return new ArrayLocation(expression(), expression());
+
+		case ASTFormat.STATIC_CALL:
+			return new StaticCall(integer(), name(), name(), this.<Expression>list());
+
+		case ASTFormat.VIRTUAL_CALL: {
+			int line = integer();
+			Expression location = expression();
+			String name = name();
+			List<Expression> arguments = list();
+			return location == null ? new VirtualCall(line, name, arguments) : new VirtualCall(line, location, name, arguments);
+		}
+
+		case ASTFormat.THIS:
+			return new This(integer());
+
+		case ASTFormat.NEW_CLASS:
+			return new NewClass(integer(), name());
+
+		case ASTFormat.NEW_ARRAY:
+			return new NewArray(type(), expression());
+
+		case ASTFormat.LENGTH:
+			return new Length(expression());
+
+		case ASTFormat.MATH_BINARY_OP:
+			return new MathBinaryOp(expression(), enumValue(BinaryOps.values()), expression());
+
+		case ASTFormat.LOGICAL_BINARY_OP:
+			return new LogicalBinaryOp(expression(), enumValue(BinaryOps.values()), expression());
+
+		case ASTFormat.MATH_UNARY_OP:
+			return new MathUnaryOp(enumValue(UnaryOps.values()), expression());
+
+		case ASTFormat.LOGICAL_UNARY_OP:
+			return new LogicalUnaryOp(enumValue(UnaryOps.values()), expression());
+
+		case ASTFormat.LITERAL: {
+			int line = integer();
+			LiteralTypes type = enumValue(LiteralTypes.values());
+			String value = string();
+			return value == null ? new Literal(line, type) : new Literal(line, type, value);
+		}
+
+		case ASTFormat.EXPRESSION_BLOCK:
+			return new ExpressionBlock(expression());
+
+		default:
+			throw new IOException("unknown node tag in binary AST: " + tag);
+		}
+	}
+
+}
@@ -0,0 +1,361 @@
+package IC.Cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import IC.AST.*;
+
+/**
+ * ASTWriter
+ * =========
+ * writes ASTs in the binary AST format (see ASTFormat).
+ * only the parsed AST is written: symbol tables and the other attributes of the
+ * nodes are computed again after it is read.
+ */
+public class ASTWriter implements Visitor {
+
+	private ByteArrayOutputStream out;
+
+	// write the nodes' lines, and the method bodies (a fingerprint may leave them out)
+	private boolean lines = true;
+	private boolean bodies = true;
+
+	// strings written so far: string -> index
+	private Map<String,Integer> strings = new HashMap<String,Integer>();
+
+	private ASTWriter(int size) {
+		out = new ByteArrayOutputStream(size);
+	}
+
+	/**
+	 * returns the binary AST of a program and of its library class
+	 * @param program
+	 * @param library
+	 * @return
+	 */
+	public static byte[] write(Program program, ICClass library) {
+		ASTWriter writer = new ASTWriter(1 << 16);
+		writer.fixedInt(ASTFormat.MAGIC);
+		writer.fixedInt(ASTFormat.VERSION);
+		program.accept(writer);
+		library.accept(writer);
+		return writer.out.toByteArray();
+	}
+
+	/**
+	 * returns the fingerprint of a class: its nodes, as in its binary AST, but
+	 * without their lines (so that a class that only moved has the same fingerprint)
+	 * @param icClass
+	 * @param bodies write the method bodies (or only the class's fields and signatures)
+	 * @return
+	 */
+	public static byte[] fingerprint(ICClass icClass, boolean bodies) {
+		ASTWriter writer = new ASTWriter(1 << 10);
+		writer.lines = false;
+		writer.bodies = bodies;
+		icClass.accept(writer);
+		return writer.out.toByteArray();
+	}
+
+
+	private void fixedInt(int v) {
+		out.write(v >>> 24);
+		out.write(v >>> 16);
+		out.write(v >>> 8);
+		out.write(v);
+	}
+
+	private void integer(int v) {
+		while ((v & ~0x7f) != 0) {
+			out.write((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+
+	private void line(int line) {
+		if (lines)
+			integer(line);
+	}
+
+	private void string(String s) {
+		if (s == null) {
+			integer(0);
+			return;
+		}
+		Integer index = strings.get(s);
+		if (index != null) {
+			integer(index + 2);
+			return;
+		}
+		strings.put(s, strings.size());
+
+		byte[] bytes;
+		try {
+			bytes = s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {  //every Java platform has UTF-8.
+			throw new RuntimeException(e);
+		}
+		integer(1);
+		integer(bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private void node(ASTNode node) {
+		if (node == null)
+			out.write(ASTFormat.NULL);
+		else
+			node.accept(this);
+	}
+
+	private void list(List<? extends ASTNode> nodes) {
+		integer(nodes.size());
+		for (ASTNode node : nodes)
+			node.accept(this);
+	}
+
+	private void method(int tag, Method method) {
+		out.write(tag);
+		node(method.getType());
+		string(method.getName());
+		list(method.getFormals());
+		if (tag != ASTFormat.LIBRARY_METHOD) {
+			if (bodies)
+				list(method.getStatements());
+			else
+				integer(0);
+		}
+	}
+
+
+	public Object visit(Program program) {
+		out.write(ASTFormat.PROGRAM);
+		list(program.getClasses());
+		return null;
+	}
+
+	public Object visit(ICClass icClass) {
+		out.write(ASTFormat.CLASS);
+		line(icClass.getLine());
+		string(icClass.getName());
+		string(icClass.getSuperClassName());
+		list(icClass.getFields());
+		list(icClass.getMethods());
+		return null;
+	}
+
+	public Object visit(Field field) {
+		out.write(ASTFormat.FIELD);
+		node(field.getType());
+		string(field.getName());
+		return null;
+	}
+
+	public Object visit(VirtualMethod method) {
+		method(ASTFormat.VIRTUAL_METHOD, method);
+		return null;
+	}
+
+	public Object visit(StaticMethod method) {
+		method(ASTFormat.STATIC_METHOD, method);
+		return null;
+	}
+
+	public Object visit(LibraryMethod method) {
+		method(ASTFormat.LIBRARY_METHOD, method);
+		return null;
+	}
+
+	public Object visit(Formal formal) {
+		out.write(ASTFormat.FORMAL);
+		node(formal.getType());
+		string(formal.getName());
+		return null;
+	}
+
+	public Object visit(PrimitiveType type) {
+		out.write(ASTFormat.PRIMITIVE_TYPE);
+		line(type.getLine());
+		string(type.getName());
+		integer(type.getDimension());
+		return null;
+	}
+
+	public Object visit(UserType type) {
+		out.write(ASTFormat.USER_TYPE);
+		line(type.getLine());
+		string(type.getName());
+		integer(type.getDimension());
+		return null;
+	}
+
+	public Object visit(Assignment assignment) {
+		out.write(ASTFormat.ASSIGNMENT);
+		node(assignment.getVariable());
+		node(assignment.getAssignment());
+		return null;
+	}
+
+	public Object visit(CallStatement callStatement) {
+		out.write(ASTFormat.CALL_STATEMENT);
+		node(callStatement.getCall());
+		return null;
+	}
+
+	public Object visit(Return returnStatement) {
+		out.write(ASTFormat.RETURN);
+		line(returnStatement.getLine());
+		node(returnStatement.getValue());
+		return null;
+	}
+
+	public Object visit(If ifStatement) {
+		out.write(ASTFormat.IF);
+		node(ifStatement.getCondition());
+		node(ifStatement.getOperation());
+		node(ifStatement.getElseOperation());
+		return null;
+	}
+
+	public Object visit(While whileStatement) {
+		out.write(ASTFormat.WHILE);
+		node(whileStatement.getCondition());
+		node(whileStatement.getOperation());
+		return null;
+	}
+
+	public Object visit(Break breakStatement) {
+		out.write(ASTFormat.BREAK);
+		line(breakStatement.getLine());
+		return null;
+	}
+
+	public Object visit(Continue continueStatement) {
+		out.write(ASTFormat.CONTINUE);
+		line(continueStatement.getLine());
+		return null;
+	}
+
+	public Object visit(StatementsBlock statementsBlock) {
+		out.write(ASTFormat.STATEMENTS_BLOCK);
+		line(statementsBlock.getLine());
+		list(statementsBlock.getStatements());
+		return null;
+	}
+
+	public Object visit(LocalVariable localVariable) {
+		out.write(ASTFormat.LOCAL_VARIABLE);
+		node(localVariable.getType());
+		string(localVariable.getName());
+		node(localVariable.getInitValue());
+		return null;
+	}
+
+	public Object visit(VariableLocation location) {
+		out.write(ASTFormat.VARIABLE_LOCATION);
+		line(location.getLine());
+		node(location.getLocation());
+		string(location.getName());
+		return null;
+	}
+
+	public Object visit(ArrayLocation location) {
+		out.write(ASTFormat.ARRAY_LOCATION);
+		node(location.getArray());
+		node(location.getIndex());
+		return null;
+	}
+
+	public Object visit(StaticCall call) {
+		out.write(ASTFormat.STATIC_CALL);
+		line(call.getLine());
+		string(call.getClassName());
+		string(call.getName());
+		list(call.getArguments());
+		return null;
+	}
+
+	public Object visit(VirtualCall call) {
+		out.write(ASTFormat.VIRTUAL_CALL);
+		line(call.getLine());
+		node(call.getLocation());
+		string(call.getName());
+		list(call.getArguments());
+		return null;
+	}
+
+	public Object visit(This thisExpression) {
+		out.write(ASTFormat.THIS);
+		line(thisExpression.getLine());
+		return null;
+	}
+
+	public Object visit(NewClass newClass) {
+		out.write(ASTFormat.NEW_CLASS);
+		line(newClass.getLine());
+		string(newClass.getName());
+		return null;
+	}
+
+	public Object visit(NewArray newArray) {
+		out.write(ASTFormat.NEW_ARRAY);
+		node(newArray.getType());
+		node(newArray.getSize());
+		return null;
+	}
+
+	public Object visit(Length length) {
+		out.write(ASTFormat.LENGTH);
+		node(length.getArray());
+		return null;
+	}
+
+	public Object visit(MathBinaryOp binaryOp) {
+		out.write(ASTFormat.MATH_BINARY_OP);
+		node(binaryOp.getFirstOperand());
+		integer(binaryOp.getOperator().ordinal());
+		node(binaryOp.getSecondOperand());
+		return null;
+	}
+
+	public Object visit(LogicalBinaryOp binaryOp) {
+		out.write(ASTFormat.LOGICAL_BINARY_OP);
+		node(binaryOp.getFirstOperand());
+		integer(binaryOp.getOperator().ordinal());
+		node(binaryOp.getSecondOperand());
+		return null;
+	}
+
+	public Object visit(MathUnaryOp unaryOp) {
+		out.write(ASTFormat.MATH_UNARY_OP);
+		integer(unaryOp.getOperator().ordinal());
+		node(unaryOp.getOperand());
+		return null;
+	}
+
+	public Object visit(LogicalUnaryOp unaryOp) {
+		out.write(ASTFormat.LOGICAL_UNARY_OP);
+		integer(unaryOp.getOperator().ordinal());
+		node(unaryOp.getOperand());
+		return null;
+	}
+
+	public Object visit(Literal literal) {
+		out.write(ASTFormat.LITERAL);
+		line(literal.getLine());
+		integer(literal.getType().ordinal());
+		Object value = literal.getValue();
+		string(value instanceof String ? (String)value : null);  //integers and strings.
+		return null;
+	}
+
+	public Object visit(ExpressionBlock expressionBlock) {
+		out.write(ASTFormat.EXPRESSION_BLOCK);
+		node(expressionBlock.getExpression());
+		return null;
+	}
+
+}
@@ -0,0 +1,319 @@
+package IC.Cache;
+
+import java.util.*;
+
+import IC.AST.*;
+
+/**
+ * ClassDependencies
+ * =================
+ * the dependencies between the classes of a program, by name.
+ *
+ * the semantic checks and the translation of a class depend on:
+ * 		- the classes its code names: its superclass, the user types of its fields,
+ * 		  formals, locals and new arrays, its 'new' sites and its static calls
+ * 		  (ClassLayout(ICClass, ClassLayout) lays it out after its superclass)
+ * 		- its subclasses (a self tail call is not eliminated if a subclass overrides it)
+ * 		- the interface (superclass, fields and method signatures) of every class it depends
+ * 		  on: fields and methods are resolved through the ClassSymbolTable of the class
+ * 		  they are accessed on, which is named there (or in the interfaces of other classes)
+ * so a class must be recompiled if its code changed, or if the interface of a class it
+ * depends on (through interfaces, transitively) changed.
+ */
+public class ClassDependencies {
+
+	// class -> the classes its code names, and its subclasses
+	private Map<String,Set<String>> references = new HashMap<String,Set<String>>();
+
+	// class -> the classes whose interface depends on its interface
+	// (its subclasses, and the classes whose fields or signatures name it)
+	private Map<String,Set<String>> interfaceDependents = new HashMap<String,Set<String>>();
+
+
+	/**
+	 * builds the dependencies of all classes in the program
+	 * @param program
+	 */
+	public ClassDependencies(Program program) {
+		for (ICClass c : program.getClasses()) {
+			Set<String> names = new HashSet<String>();
+			c.accept(new NameCollector(names));
+			references.put(c.getName(), names);
+
+			for (String name : interfaceNames(c))
+				dependents(name).add(c.getName());
+		}
+
+		for (ICClass c : program.getClasses()) {
+			if (c.hasSuperClass() && references.containsKey(c.getSuperClassName()))
+				references.get(c.getSuperClassName()).add(c.getName());
+		}
+	}
+
+	/* the classes named by the interface of a class. */
+	private static Set<String> interfaceNames(ICClass c) {
+		Set<String> names = new HashSet<String>();
+		if (c.hasSuperClass())
+			names.add(c.getSuperClassName());
+		for (Field f : c.getFields())
+			addType(names, f.getType());
+		for (Method m : c.getMethods()) {
+			addType(names, m.getType());
+			for (Formal f : m.getFormals())
+				addType(names, f.getType());
+		}
+		return names;
+	}
+
+	private static void addType(Set<String> names, Type type) {
+		if (type instanceof UserType)
+			names.add(type.getName());
+	}
+
+	private Set<String> dependents(String name) {
+		Set<String> s = interfaceDependents.get(name);
+		if (s == null) {
+			s = new HashSet<String>();
+			interfaceDependents.put(name, s);
+		}
+		return s;
+	}
+
+
+	/**
+	 * returns the classes whose interfaces depend on the given changed interfaces
+	 * (transitively), including the changed ones
+	 * @param changed the names of the classes whose interface changed (or that were
+	 * 			added or removed)
+	 * @return
+	 */
+	public Set<String> affectedInterfaces(Set<String> changed) {
+		Set<String> affected = new HashSet<String>(changed);
+		Deque<String> work = new ArrayDeque<String>(changed);
+		while (!work.isEmpty()) {
+			Set<String> dependents = interfaceDependents.get(work.pop());
+			if (dependents == null) continue;
+			for (String name : dependents) {
+				if (affected.add(name))
+					work.push(name);
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * returns true if the given class depends on one of the given interfaces
+	 * @param icClass
+	 * @param affected affected interfaces (see affectedInterfaces)
+	 * @return
+	 */
+	public boolean dependsOn(ICClass icClass, Set<String> affected) {
+		if (affected.contains(icClass.getName()))
+			return true;
+		for (String name : references.get(icClass.getName())) {
+			if (affected.contains(name))
+				return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * collects the class names in the code of a class
+	 */
+	private static class NameCollector implements Visitor {
+
+		private Set<String> names;
+
+		NameCollector(Set<String> names) {
+			this.names = names;
+		}
+
+		private void node(ASTNode node) {
+			if (node != null)
+				node.accept(this);
+		}
+
+		private void list(List<? extends ASTNode> nodes) {
+			for (ASTNode node : nodes)
+				node.accept(this);
+		}
+
+		private void method(Method method) {
+			node(method.getType());
+			list(method.getFormals());
+			list(method.getStatements());
+		}
+
+		public Object visit(Program program) {
+			list(program.getClasses());
+			return null;
+		}
+
+		public Object visit(ICClass icClass) {
+			if (icClass.hasSuperClass())
+				names.add(icClass.getSuperClassName());
+			list(icClass.getFields());
+			list(icClass.getMethods());
+			return null;
+		}
+
+		public Object visit(Field field) {
+			node(field.getType());
+			return null;
+		}
+
+		public Object visit(VirtualMethod method) {
+			method(method);
+			return null;
+		}
+
+		public Object visit(StaticMethod method) {
+			method(method);
+			return null;
+		}
+
+		public Object visit(LibraryMethod method) {
+			node(method.getType());
+			list(method.getFormals());
+			return null;
+		}
+
+		public Object visit(Formal formal) {
+			node(formal.getType());
+			return null;
+		}
+
+		public Object visit(PrimitiveType type) {
+			return null;
+		}
+
+		public Object visit(UserType type) {
+			names.add(type.getName());
+			return null;
+		}
+
+		public Object visit(Assignment assignment) {
+			node(assignment.getVariable());
+			node(assignment.getAssignment());
+			return null;
+		}
+
+		public Object visit(CallStatement callStatement) {
+			node(callStatement.getCall());
+			return null;
+		}
+
+		public Object visit(Return returnStatement) {
+			node(returnStatement.getValue());
+			return null;
+		}
+
+		public Object visit(If ifStatement) {
+			node(ifStatement.getCondition());
+			node(ifStatement.getOperation());
+			node(ifStatement.getElseOperation());
+			return null;
+		}
+
+		public Object visit(While whileStatement) {
+			node(whileStatement.getCondition());
+			node(whileStatement.getOperation());
+			return null;
+		}
+
+		public Object visit(Break breakStatement) {
+			return null;
+		}
+
+		public Object visit(Continue continueStatement) {
+			return null;
+		}
+
+		public Object visit(StatementsBlock statementsBlock) {
+			list(statementsBlock.getStatements());
+			return null;
+		}
+
+		public Object visit(LocalVariable localVariable) {
+			node(localVariable.getType());
+			node(localVariable.getInitValue());
+			return null;
+		}
+
+		public Object visit(VariableLocation location) {
+			node(location.getLocation());
+			return null;
+		}
+
+		public Object visit(ArrayLocation location) {
+			node(location.getArray());
+			node(location.getIndex());
+			return null;
+		}
+
+		public Object visit(StaticCall call) {
+			names.add(call.getClassName());
+			list(call.getArguments());
+			return null;
+		}
+
+		public Object visit(VirtualCall call) {
+			node(call.getLocation());
+			list(call.getArguments());
+			return null;
+		}
+
+		public Object visit(This thisExpression) {
+			return null;
+		}
+
+		public Object visit(NewClass newClass) {
+			names.add(newClass.getName());
+			return null;
+		}
+
+		public Object visit(NewArray newArray) {
+			node(newArray.getType());
+			node(newArray.getSize());
+			return null;
+		}
+
+		public Object visit(Length length) {
+			node(length.getArray());
+			return null;
+		}
+
+		public Object visit(MathBinaryOp binaryOp) {
+			node(binaryOp.getFirstOperand());
+			node(binaryOp.getSecondOperand());
+			return null;
+		}
+
+		public Object visit(LogicalBinaryOp binaryOp) {
+			node(binaryOp.getFirstOperand());
+			node(binaryOp.getSecondOperand());
+			return null;
+		}
+
+		public Object visit(MathUnaryOp unaryOp) {
+			node(unaryOp.getOperand());
+			return null;
+		}
+
+		public Object visit(LogicalUnaryOp unaryOp) {
+			node(unaryOp.getOperand());
+			return null;
+		}
+
+		public Object visit(Literal literal) {
+			return null;
+		}
+
+		public Object visit(ExpressionBlock expressionBlock) {
+			node(expressionBlock.getExpression());
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,322 @@
+package IC.Cache;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.*;
+
+import IC.AST.ICClass;
+import IC.AST.Program;
+import IC.LIR.LIRFragment;
+import IC.LIR.TranslatePropagatingVisitor;
+
+/**
+ * IncrementalBuild
+ * ================
+ * recompiles a program class by class: only the classes that changed since the
+ * program was last compiled, and the classes that depend on them (see ClassDependencies),
+ * are checked and translated again. the LIR of the program is spliced from the LIR
+ * fragments of its classes, fresh and kept (see IC.LIR.LIRFragment).
+ *
+ * the state of a build is kept for every class of the last program that compiled:
+ * the fingerprints of its interface and of its code (ASTWriter.fingerprint, without
+ * lines: a class that only moved is not recompiled), and its LIR fragment.
+ * the symbol tables, class layouts and dispatch tables are built for the whole program
+ * every time (they are cheap, and a class's layout depends on all of its superclasses).
+ *
+ * the state is kept in memory, and in a state file in the build directory (a <key>.inc
+ * file per program path and translator), replaced after every successful compilation.
+ * a state file that cannot be read is deleted, and the program is compiled from scratch.
+ */
+public class IncrementalBuild {
+
+	/**
+	 * the version of the checks and the translators, part of every key: bump it whenever
+	 * they change (the fragments of the old state would not match the new ones).
+	 */
+	public static final String VERSION = "IC incremental 2";
+
+	private static final int MAGIC = 0x49434942;  // "ICIB"
+	private static final String SUFFIX = ".inc";
+
+	private final File file;
+
+	// the state of the last program that compiled: class name -> class state
+	private Map<String,ClassState> classes = new HashMap<String,ClassState>();
+
+	// the fingerprints of the classes of the last program: class -> {interface, code}
+	// (a compiler that keeps the ASTs of unchanged files does not write them again)
+	private Map<ICClass,String[]> fingerprints = new IdentityHashMap<ICClass,String[]>();
+
+	// the compilation in progress
+	private Map<String,ClassState> next = null;
+	private boolean modified = false;
+	private int changed = 0;
+	private int translated = 0;
+
+
+	/**
+	 * the state of a class: its fingerprints, and its LIR fragment
+	 * (null for the library class, or before it is translated)
+	 */
+	private static class ClassState {
+
+		String interfaceHash;
+		String codeHash;
+		LIRFragment fragment;
+
+		ClassState(String interfaceHash, String codeHash, LIRFragment fragment) {
+			this.interfaceHash = interfaceHash;
+			this.codeHash = codeHash;
+			this.fragment = fragment;
+		}
+	}
+
+
+	/**
+	 * a build of the program compiled as programPath, by the plain or the optimizing translator
+	 * @param dir the build directory (created if needed), or null to keep the state in memory only
+	 * @param programPath
+	 * @param optimized
+	 */
+	public IncrementalBuild(File dir, String programPath, boolean optimized) {
+		if (dir == null) {
+			this.file = null;
+			return;
+		}
+		MessageDigest digest = ASTCache.sha256();
+		try {
+			ASTCache.update(digest, VERSION.getBytes("UTF-8"));
+			ASTCache.update(digest, programPath.getBytes("UTF-8"));
+			ASTCache.update(digest, (optimized ? "optimized" : "plain").getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {  //every Java platform has UTF-8.
+			throw new RuntimeException(e);
+		}
+		this.file = new File(dir, ASTCache.hex(digest.digest()) + SUFFIX);
+		load();
+	}
+
+
+	/**
+	 * returns the classes of the program that must be checked and translated again:
+	 * the new classes, the classes whose code changed, and the classes that depend on
+	 * an interface that changed (or on a class that was added or removed)
+	 * @param program the program, with its library class
+	 * @return the classes, in the program's order
+	 */
+	public Set<ICClass> changedClasses(Program program) {
+		next = new HashMap<String,ClassState>();
+		translated = 0;
+
+		MessageDigest digest = ASTCache.sha256();
+		Map<ICClass,String[]> classFingerprints = new IdentityHashMap<ICClass,String[]>();
+		Set<String> changedInterfaces = new HashSet<String>();
+		Set<String> changedCode = new HashSet<String>();
+		for (ICClass c : program.getClasses()) {
+			String[] hashes = fingerprints.get(c);
+			if (hashes == null) {
+				hashes = new String[] {
+					ASTCache.hex(digest.digest(ASTWriter.fingerprint(c, false))),
+					ASTCache.hex(digest.digest(ASTWriter.fingerprint(c, true))) };
+			}
+			classFingerprints.put(c, hashes);
+			String interfaceHash = hashes[0];
+			String codeHash = hashes[1];
+
+			ClassState old = classes.get(c.getName());
+			if (old == null || !old.interfaceHash.equals(interfaceHash))
+				changedInterfaces.add(c.getName());
+			if (old == null || !old.codeHash.equals(codeHash))
+				changedCode.add(c.getName());
+			next.put(c.getName(), new ClassState(interfaceHash, codeHash, old == null ? null : old.fragment));
+		}
+		for (String name : classes.keySet()) {
+			if (!next.containsKey(name))  //removed
+				changedInterfaces.add(name);
+		}
+		modified = !changedCode.isEmpty() || !changedInterfaces.isEmpty();
+		fingerprints = classFingerprints;
+
+		ClassDependencies dependencies = new ClassDependencies(program);
+		Set<String> affected = dependencies.affectedInterfaces(changedInterfaces);
+
+		Set<ICClass> recompiled = new LinkedHashSet<ICClass>();
+		for (ICClass c : program.getClasses()) {
+			if (changedCode.contains(c.getName()) || dependencies.dependsOn(c, affected)) {
+				recompiled.add(c);
+				next.get(c.getName()).fragment = null;
+			}
+		}
+		changed = recompiled.size();
+		return recompiled;
+	}
+
+	/**
+	 * returns the LIR translation of the program (after changedClasses): the changed
+	 * classes are translated, and the LIR is spliced from their fragments and the kept ones
+	 * @param program the checked program, with its library class
+	 * @param translator a new translator of the program
+	 * @return
+	 */
+	public String translate(Program program, TranslatePropagatingVisitor translator) {
+		translator.layoutClasses(program);
+
+		List<LIRFragment> fragments = new ArrayList<LIRFragment>();
+		for (ICClass c : program.getClasses()) {
+			if (c.getName().equals("Library")) continue;
+
+			ClassState state = next.get(c.getName());
+			if (state.fragment == null) {
+				state.fragment = translator.translateClass(c);
+				translated++;
+			}
+			fragments.add(state.fragment);
+		}
+		return translator.splice(fragments).getLIRCode();
+	}
+
+	/**
+	 * keeps the state of the program compiled (after translate), for the next compilation,
+	 * and writes it to the state file.
+	 * failing to write it is not an error: the next compilation is only slower.
+	 * @return true if the state was written
+	 */
+	public boolean store() {
+		classes = next;
+		next = null;
+		if (file == null) return false;
+		if (!modified && file.isFile()) return true;  //the same state
+
+		File temp = null;
+		try {
+			File dir = file.getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs()) return false;
+
+			/* written aside and renamed, so a concurrent compilation never reads half a state. */
+			temp = File.createTempFile("state", ".tmp", dir);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+			try {
+				write(out);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file)) {
+					temp.delete();
+					return false;
+				}
+			}
+		} catch (IOException e) {
+			if (temp != null) temp.delete();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * the number of classes checked and translated again by the last compilation
+	 */
+	public int getChangedCount() {
+		return changed;
+	}
+
+	/**
+	 * the number of classes translated by the last compilation
+	 */
+	public int getTranslatedCount() {
+		return translated;
+	}
+
+
+	// the state file
+	/////////////////
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		writeString(out, VERSION);
+		out.writeInt(classes.size());
+		for (Map.Entry<String,ClassState> entry : classes.entrySet()) {
+			ClassState state = entry.getValue();
+			writeString(out, entry.getKey());
+			writeString(out, state.interfaceHash);
+			writeString(out, state.codeHash);
+
+			LIRFragment fragment = state.fragment;
+			out.writeBoolean(fragment != null);
+			if (fragment == null) continue;
+			writeStrings(out, fragment.getMethods());
+			writeString(out, fragment.getMainMethod());
+			writeStrings(out, fragment.getLiterals());
+			out.writeInt(fragment.getLabels());
+			out.writeInt(fragment.getVirtualCallSites());
+			out.writeInt(fragment.getReducedRegisters());
+			out.writeInt(fragment.getTailCalls());
+		}
+	}
+
+	private void load() {
+		if (!file.isFile()) return;
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC || !readString(in).equals(VERSION))
+					throw new IOException("not a state file of this version");
+
+				Map<String,ClassState> read = new HashMap<String,ClassState>();
+				for (int n = in.readInt(); n > 0; n--) {
+					String name = readString(in);
+					ClassState state = new ClassState(readString(in), readString(in), null);
+					if (in.readBoolean()) {
+						List<String> methods = readStrings(in);
+						String mainMethod = readString(in);
+						List<String> literals = readStrings(in);
+						state.fragment = new LIRFragment(methods, mainMethod, literals, in.readInt(), in.readInt());
+						state.fragment.setOptimizations(in.readInt(), in.readInt());
+					}
+					read.put(name, state);
+				}
+				if (in.read() != -1)
+					throw new IOException("trailing bytes after the state");
+				classes = read;
+			} finally {
+				in.close();
+			}
+
+		} catch (IOException e) {  //corrupt, or of another version: compiled from scratch.
+			file.delete();
+		} catch (RuntimeException e) {
+			file.delete();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > in.available()) throw new IOException("malformed state file");
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String s : strings)
+			writeString(out, s);
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > in.available()) throw new IOException("malformed state file");
+		List<String> strings = new ArrayList<String>();
+		for (int i = 0; i < count; i++)
+			strings.add(readString(in));
+		return strings;
+	}
+
+}
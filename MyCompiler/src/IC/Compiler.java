@@ -1,17 +1,42 @@
 package IC;
 
 import IC.*;    
+import IC.LIR.BinaryLIRWriter;
 import IC.LIR.TranslatePropagatingVisitor;
 import IC.LIR.OptTranslatePropagatingVisitor;
 import IC.LIR.RegCounterVisitor;
+import IC.Asm.X86TranslationError;
+import IC.Asm.X86Translator;
+import IC.C.CTranslator;
+import IC.Cache.ASTCache;
+import IC.Cache.IncrementalBuild;
+import IC.Interpreter.ASTInterpreter;
+import IC.JVM.ClassFileError;
+import IC.JVM.JVMRunner;
+import IC.JVM.JVMTranslator;
+import IC.PGO.Profile;
+import IC.PGO.ProfileCollector;
+import IC.PGO.ProfileFormatError;
+import IC.PGO.ProfileGuidedOptimizer;
+import IC.SSA.PassStatistics;
+import IC.SSA.SSAOptimizer;
+import IC.Simulator.LIRFormatError;
+import IC.Simulator.LIRInterpreter;
+import IC.Simulator.LIRLoader;
+import IC.Simulator.LIRProgram;
 import IC.Parser.*;
 import IC.AST.*; 
 import IC.SemanticAnalysis.SemanticChecks;
 import IC.SemanticAnalysis.SymbolTableBuilder;
 import IC.SymbolTable.GlobalSymbolTable;
 import IC.TypeTable.TypeTable;
+import IC.Watch.ProgramWatcher;
  
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import java_cup.runtime.*;
 
@@ -28,7 +53,26 @@ public class Compiler {
 	private static boolean printast_flag=false;
 	private static boolean symtab_flag=false;
 	private static boolean printlir_flag=false;
-	private static boolean optlir_flag=false;
+	private static boolean printlirbin_flag=false;
+	private static boolean optlevel_flag=false;
+	private static int opt_level=0;
+	private static boolean ssalir_flag=false;
+	private static boolean printssa_flag=false;
+	private static boolean optstats_flag=false;
+	private static boolean runlir_flag=false;
+	private static boolean asm_flag=false;
+	private static boolean jvm_flag=false;
+	private static boolean runjvm_flag=false;
+	private static boolean c_flag=false;
+	private static boolean run_flag=false;
+	private static boolean profilegen_flag=false;
+	private static boolean profileuse_flag=false;
+	private static boolean tokenstream_flag=false;
+	private static boolean descentparser_flag=false;
+	private static boolean lazybodies_flag=false;
+	private static boolean cache_flag=false;
+	private static boolean incremental_flag=false;
+	private static boolean watch_flag=false;
 	
     
 	/** 
@@ -37,17 +81,63 @@ public class Compiler {
      * Finally, parses translates to LIR code. 
      * 
      * Optional parameters: library file add, -print-ast commant for AST and printing.
-     * @param: input IC program code file path.
+     * @param: input IC program code file path, or several paths: a program split across files
+     * 			(or a directory of .ic files) is parsed file by file, in parallel, and its classes
+     * 			merged with every superclass first. the output files are named after the first path.
      * @param optional: -L<library_path>, path to IC library signature (not a default one). 
      * @param optional: -print-ast, to pretty-print the AST.
      * @param optional: -dump-symtab, to print symbol tables and type table.
      * @param optional: -print-lir to print the LIR translation of the IC code.
-     * @param optional: -opt-lir to translate the LIR code with optimizations.
+     * @param optional: -print-lir-bin to write the LIR translation in the binary LIR format to <file>.lirb
+     * 			(run with IC.Simulator.LIRInterpreter, convert with IC.LIR.LIRConverter).
+     * @param optional: -O0, -O1 or -O2 optimization level of the LIR code:
+     * 			-O0 (default) plain translation,
+     * 			-O1 optimized translation (Sethi-Ullman, strength reduction, tail calls),
+     * 			-O2 as -O1, followed by the SSA passes.
+     * @param optional: -opt-lir, same as -O1.
+     * @param optional: -ssa-lir to optimize the LIR code in SSA form (at any level).
+     * @param optional: -print-ssa to print (and verify) the SSA form between optimization passes.
+     * @param optional: -opt-stats to print the optimizations statistics.
+     * @param optional: -run-lir to run the LIR code in the built-in interpreter
+     * 			(the executed instructions count is printed to stderr).
+     * @param optional: -asm to write x86-64 assembly of the LIR code to <file>.s
+     * 			(link with gcc and the C runtime).
+     * @param optional: -jvm to write JVM class files of the IC program to <file>.classes/
+     * 			(run with IC.JVM.JVMRunner icprogram.<main class>).
+     * @param optional: -run-jvm to compile the IC program to JVM classes and run them in process,
+     * 			and exit with the program's exit code.
+     * @param optional: -c to write the IC program as C source code to <file>.c
+     * 			(compile with gcc -O2 and link with the C runtime).
+     * @param optional: -run to run the IC program directly after the semantic checks (no LIR translation),
+     * 			and exit with the program's exit code.
+     * @param optional: -profile-gen to run the LIR code in the built-in interpreter, write its execution
+     * 			profile to <file>.profile, and exit with the program's exit code.
+     * @param optional: -profile-use <profile> to optimize the LIR code by the given profile
+     * 			(collected by -profile-gen at the same optimization level).
+     * @param optional: -token-stream to lex every source file into a compact token stream before
+     * 			parsing it (see IC.Parser.TokenStream).
+     * @param optional: -descent-parser to parse with the hand-written recursive-descent parser
+     * 			instead of the CUP parsers (see IC.Parser.RecursiveDescentParser).
+     * @param optional: -lazy-bodies to parse the class and method signatures first, and then the method
+     * 			bodies in parallel (with the recursive-descent parser, over a token stream).
+     * @param optional: -cache <dir> to keep the ASTs of checked programs in the given cache directory,
+     * 			and read them back instead of parsing and checking an unchanged program again
+     * 			(see IC.Cache.ASTCache). whether the program was found in the cache is printed to stderr.
+     * @param optional: -incremental <dir> to keep the state of the program's classes in the given build
+     * 			directory, and check and translate again only the classes that changed since the last
+     * 			compilation, and the classes that depend on them (see IC.Cache.IncrementalBuild).
+     * @param optional: -watch to write the LIR code of the program, and write it again whenever one of its
+     * 			files or the library signature is saved, recompiling only what changed (see IC.Watch.ProgramWatcher).
+     * 			only the parser flags, -O<n>, -ssa-lir and -incremental <dir> apply.
      */
 	public static void main(String[] args) {
 		
 		String libic_path = "libic.sig";  //curr. dir. path - default dir. of library
 		String ic_code_path="";
+		List<String> ic_paths = new ArrayList<String>();
+		String profile_path="";
+		String cache_path="";
+		String incremental_path="";
 		
 		//input check.
 		
@@ -56,11 +146,6 @@ public class Compiler {
         	System.exit(1);
         }
         
-        if (args.length > 4) {
-        	System.out.println("Error: Too much arguments.");
-        	System.exit(1);
-        }
-        
         for (int i=0; i<args.length; i++) {
         	
         	String s = args[i];
@@ -110,26 +195,241 @@ public class Compiler {
         		}
         	}
         	
-        	if (s.equals("-opt-lir")) { //-opt-lir requested
+        	if (s.equals("-print-lir-bin")) { //-print-lir-bin requested
+        		
+        		if (printlirbin_flag) { //already requested -print-lir-bin earlier
+        			System.out.println("Error: -print-lir-bin is given more than once.");
+        			System.exit(1);
+        		} else {
+        			printlirbin_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-opt-lir") || s.equals("-O0") || s.equals("-O1") || s.equals("-O2")) { //optimization level requested
+        		
+        		if (optlevel_flag){ //already requested an optimization level earlier
+        			System.out.println("Error: optimization level is given more than once.");
+        			System.exit(1);
+        		} else {
+        			optlevel_flag = true;
+        			opt_level = s.equals("-opt-lir") ? 1 : Integer.parseInt(s.substring(2));
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-ssa-lir")) { //-ssa-lir requested
+        		
+        		if (ssalir_flag){ //already requested -ssa-lir earlier
+        			System.out.println("Error: -ssa-lir is given more than once.");
+        			System.exit(1);
+        		} else {
+        			ssalir_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-opt-stats")) { //-opt-stats requested
+        		
+        		if (optstats_flag){ //already requested -opt-stats earlier
+        			System.out.println("Error: -opt-stats is given more than once.");
+        			System.exit(1);
+        		} else {
+        			optstats_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-run-lir")) { //-run-lir requested
+        		
+        		if (runlir_flag){ //already requested -run-lir earlier
+        			System.out.println("Error: -run-lir is given more than once.");
+        			System.exit(1);
+        		} else {
+        			runlir_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-asm")) { //-asm requested
+        		
+        		if (asm_flag){ //already requested -asm earlier
+        			System.out.println("Error: -asm is given more than once.");
+        			System.exit(1);
+        		} else {
+        			asm_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-jvm")) { //-jvm requested
+        		
+        		if (jvm_flag){ //already requested -jvm earlier
+        			System.out.println("Error: -jvm is given more than once.");
+        			System.exit(1);
+        		} else {
+        			jvm_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-run-jvm")) { //-run-jvm requested
+        		
+        		if (runjvm_flag){ //already requested -run-jvm earlier
+        			System.out.println("Error: -run-jvm is given more than once.");
+        			System.exit(1);
+        		} else {
+        			runjvm_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-run")) { //-run requested
+        		
+        		if (run_flag){ //already requested -run earlier
+        			System.out.println("Error: -run is given more than once.");
+        			System.exit(1);
+        		} else {
+        			run_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-profile-gen")) { //-profile-gen requested
+        		
+        		if (profilegen_flag){ //already requested -profile-gen earlier
+        			System.out.println("Error: -profile-gen is given more than once.");
+        			System.exit(1);
+        		} else {
+        			profilegen_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-cache")) { //-cache <dir> requested
+        		
+        		if (cache_flag){ //already requested -cache earlier
+        			System.out.println("Error: -cache is given more than once.");
+        			System.exit(1);
+        		} else if (i+1 == args.length) { //no cache directory
+        			System.out.println("Error: Missing cache directory argument of -cache.");
+        			System.exit(1);
+        		} else {
+        			cache_flag = true;
+        			cache_path = args[++i];
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-incremental")) { //-incremental <dir> requested
+        		
+        		if (incremental_flag){ //already requested -incremental earlier
+        			System.out.println("Error: -incremental is given more than once.");
+        			System.exit(1);
+        		} else if (i+1 == args.length) { //no build directory
+        			System.out.println("Error: Missing build directory argument of -incremental.");
+        			System.exit(1);
+        		} else {
+        			incremental_flag = true;
+        			incremental_path = args[++i];
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-profile-use")) { //-profile-use <profile> requested
+        		
+        		if (profileuse_flag){ //already requested -profile-use earlier
+        			System.out.println("Error: -profile-use is given more than once.");
+        			System.exit(1);
+        		} else if (i+1 == args.length) { //no profile path
+        			System.out.println("Error: Missing profile file argument of -profile-use.");
+        			System.exit(1);
+        		} else {
+        			profileuse_flag = true;
+        			profile_path = args[++i];
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-c")) { //-c requested
+        		
+        		if (c_flag){ //already requested -c earlier
+        			System.out.println("Error: -c is given more than once.");
+        			System.exit(1);
+        		} else {
+        			c_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-token-stream")) { //-token-stream requested
         		
-        		if (optlir_flag){ //already requested -opt-lir earlier
-        			System.out.println("Error: -opt-lir is given more than once.");
+        		if (tokenstream_flag){ //already requested -token-stream earlier
+        			System.out.println("Error: -token-stream is given more than once.");
         			System.exit(1);
         		} else {
-        			optlir_flag = true;
+        			tokenstream_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-descent-parser")) { //-descent-parser requested
+        		
+        		if (descentparser_flag){ //already requested -descent-parser earlier
+        			System.out.println("Error: -descent-parser is given more than once.");
+        			System.exit(1);
+        		} else {
+        			descentparser_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-lazy-bodies")) { //-lazy-bodies requested
+        		
+        		if (lazybodies_flag){ //already requested -lazy-bodies earlier
+        			System.out.println("Error: -lazy-bodies is given more than once.");
+        			System.exit(1);
+        		} else {
+        			lazybodies_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-watch")) { //-watch requested
+        		
+        		if (watch_flag){ //already requested -watch earlier
+        			System.out.println("Error: -watch is given more than once.");
+        			System.exit(1);
+        		} else {
+        			watch_flag = true;
+        			continue;
+        		}
+        	}
+        	
+        	if (s.equals("-print-ssa")) { //-print-ssa requested
+        		
+        		if (printssa_flag){ //already requested -print-ssa earlier
+        			System.out.println("Error: -print-ssa is given more than once.");
+        			System.exit(1);
+        		} else {
+        			printssa_flag = true;
         			continue;
         		}
         	}
         	
             
-        	//if we've reached here, the param. is ic file path 
-            if (icfile_flag) {   //ic file was already given
-            	System.out.println("Error: ic file path is given more than once.");
-            	System.exit(1);
-            } else {
+        	//no option matched
+        	if (s.startsWith("-")) {
+        		System.out.println("Error: Unknown option " + s + ".");
+        		System.exit(1);
+        	}
+        	
+        	//if we've reached here, the param. is an ic file (or directory) path 
+            if (!icfile_flag) {   //first path: names the output files
             	icfile_flag = true;
-            	ic_code_path=new String(s);   //ic file path
+            	ic_code_path = new File(s).isDirectory() ? new File(s).getPath() + ".ic" : s;
             }
+            ic_paths.add(s);
             
         	
         } //end of for.
@@ -141,6 +441,38 @@ public class Compiler {
         	System.exit(1);
         
         }
+        
+        //the profile is collected on the code it is used to optimize
+        if (profilegen_flag && profileuse_flag) {
+        	System.out.println("Error: -profile-gen and -profile-use cannot be given together.");
+        	System.exit(1);
+        }
+        
+        //a run exits with the program's exit code: the program is run once
+        if ((run_flag ? 1 : 0) + (runlir_flag ? 1 : 0) + (runjvm_flag ? 1 : 0) + (profilegen_flag ? 1 : 0) > 1) {
+        	System.out.println("Error: only one of -run, -run-lir, -run-jvm and -profile-gen can be given.");
+        	System.exit(1);
+        }
+        
+        //watch mode: writes the LIR code only, until stopped
+        if (watch_flag) {
+        	if (printast_flag || symtab_flag || printlirbin_flag || printssa_flag || optstats_flag || runlir_flag || asm_flag ||
+        			jvm_flag || runjvm_flag || c_flag || run_flag || profilegen_flag || profileuse_flag || cache_flag) {
+        		System.out.println("Error: -watch writes only the LIR code, and cannot be given with other output, run, profile or cache options.");
+        		System.exit(1);
+        	}
+        	
+        	ProgramWatcher watcher = new ProgramWatcher(ic_paths, ic_code_path, libic_path, tokenstream_flag, descentparser_flag,
+        			lazybodies_flag, opt_level, ssalir_flag, incremental_flag ? new File(incremental_path) : null);
+        	try {
+        		watcher.run();
+        	} catch (IOException e) {
+        		System.out.println("Error in watching the input files: " + e.getMessage());
+        		System.exit(1);
+        	} catch (InterruptedException e) {
+        		System.exit(1);
+        	}
+        }
 
     
         /* end of input check. */
@@ -151,18 +483,37 @@ public class Compiler {
         
         //Parsing the input ic file
        
-        Symbol parseSym = new Symbol(1);  //init. to avoid errors.
+        Program root = null;
+        List<String> ic_files = null;
+        
+        //the cached ASTs of the program, if it did not change since it was checked.
+        ASTCache cache = null;
+        String cacheKey = null;
+        ASTCache.Entry cached = null;
         
+        //input code files (mapped and scanned in place), parsed in parallel.
+        ForkJoinPool pool = new ForkJoinPool();
         try {
         	
-        	//reader to input code file.
-            FileReader codeFile = new FileReader(ic_code_path); //can throw io exception
-                
-            Lexer scanner = new Lexer(codeFile);
-            Parser parser = new Parser(scanner);
-       
-            parseSym = parser.parse();    //can throw LexicalError or SyntaxError
- 
+        	ic_files = ProgramParser.sourceFiles(ic_paths); //can throw io exception
+        	if (ic_files.isEmpty()) {
+        		System.out.println("Error: no .ic files in " + ic_paths);
+        		System.exit(1);
+        	}
+        	
+        	if (cache_flag) {
+        		cache = new ASTCache(new File(cache_path));
+        		cacheKey = ASTCache.key(ic_code_path, ic_files, libic_path); //can throw io exception
+        		cached = cache.load(cacheKey);
+        		System.err.println("# cache " + (cached != null ? "hit" : "miss") + ": " + ic_code_path);
+        	}
+        	
+        	if (cached != null) {
+        		root = cached.getProgram();
+        	} else {
+        		ProgramParser parser = new ProgramParser(tokenstream_flag, descentparser_flag, lazybodies_flag);
+        		root = parser.parse(ic_files, pool);    //can throw LexicalError, SyntaxError or SourceFileError
+        	}
             
         } catch (IOException e1) {  //problem with input file 
 	   
@@ -170,15 +521,28 @@ public class Compiler {
 	            System.exit(1);
 	    }
         
+        catch (SourceFileError e2) { //error in one of several files
+        	
+        	if (e2.getCause() instanceof IOException) {
+        		System.out.println("Error in reading from input code file " + e2.getPath() + ": " + e2.getCause().getMessage());
+        		System.exit(1);
+        	}
+        	System.out.println(e2); //toString of e2
+        	System.exit(0);
+        }
+        
         catch (Exception e2) { //lexical, syntax or other exception thrown by parse()
 
         	System.out.println(e2); //toString of e2
 		 	System.exit(0);
+        	
+        } finally {
+        	pool.shutdown();
         }
 		
         
-        System.out.println("Parsed " + ic_code_path + " successfully!");
-        Program root = (Program)parseSym.value; 
+        for (String ic_file : ic_files)
+        	System.out.println("Parsed " + ic_file + " successfully!");
         
         
         //pretty-print the AST of ic file
@@ -199,13 +563,22 @@ public class Compiler {
         //parsing library sig.
     	try {
         	
-        	/* reader to lib. sig. file. */
-            FileReader libFile = new FileReader(libic_path); //can throw io exception
-                
-            Lexer scanner = new Lexer(libFile);
-            LibraryParser parser = new LibraryParser(scanner);
-            
-            parseLibSym = parser.parse();    //can throw LexicalError or SyntaxError
+        	if (cached != null) {  /* cached with the program. */
+        		parseLibSym = new Symbol(1, cached.getLibrary());
+        		
+        	} else {
+        		/* lib. sig. file, mapped and scanned in place. */
+        		SourceBuffer libFile = SourceBuffer.map(libic_path); //can throw io exception
+        		
+        		Scanner scanner = scannerOf(libFile);
+        		
+        		if (descentparser_flag) {
+        			parseLibSym = new Symbol(1, new RecursiveDescentParser(scanner).parseLibrary());  //can throw LexicalError or SyntaxError
+        		} else {
+        			LibraryParser parser = new LibraryParser(scanner);
+        			parseLibSym = parser.parse();    //can throw LexicalError or SyntaxError
+        		}
+        	}
             
             
         } catch (IOException e1) {  /* problem with input file */
@@ -254,7 +627,23 @@ public class Compiler {
         
         //semantic checks.
         SemanticChecks sc = new SemanticChecks((GlobalSymbolTable)globalSymbolTable);
-        Object semanticChecks = root.accept(sc);
+        
+        //incremental build: only the classes that changed, or depend on a change, are checked and translated.
+        IncrementalBuild build = null;
+        Set<ICClass> changedClasses = null;
+        if (incremental_flag) {
+        	build = new IncrementalBuild(new File(incremental_path), ic_code_path, opt_level >= 1);
+        	changedClasses = build.changedClasses(root);
+        }
+        
+        Object semanticChecks;
+        if (cached != null) {
+        	semanticChecks = cached;  //a cached program passed them
+        } else if (build != null) {
+        	semanticChecks = sc.checkClasses(changedClasses);  //the others passed them
+        } else {
+        	semanticChecks = root.accept(sc);
+        }
         
 		if (semanticChecks == null) {
 			System.out.println("Encountered an error during semantic checks.");
@@ -263,34 +652,351 @@ public class Compiler {
 			System.out.println("Semantic checks passed successfully!");
 		}
 		
-		/* LIR code translation phase */
+		if (cache != null && cached == null) {
+			//the program as parsed: without the library class.
+			Program parsed = new Program(root.getClasses().subList(1, root.getClasses().size()));
+			cache.store(cacheKey, new ASTCache.Entry(parsed, libraryRoot));
+		}
+		
+		/* LIR code translation phase (for any output or run of the LIR code) */
 		
-		if (printlir_flag) {
+		String lirCode = null;  //run after every output is written (a run exits)
+		if (printlir_flag || printlirbin_flag || asm_flag || profilegen_flag || incremental_flag ||
+				runlir_flag || printssa_flag || optstats_flag) {
 			GlobalSymbolTable global = (GlobalSymbolTable)globalSymbolTable;	
 			
-			//"regular" or optimal translation.
-			TranslatePropagatingVisitor translator = optlir_flag ? new OptTranslatePropagatingVisitor(global) : new TranslatePropagatingVisitor(global);
+			//"regular" (-O0) or optimal (-O1 and up) translation.
+			TranslatePropagatingVisitor translator = opt_level >= 1 ? new OptTranslatePropagatingVisitor(global) : new TranslatePropagatingVisitor(global);
+			long translationTime = System.nanoTime();
 			
-			if (optlir_flag) {
+			if (opt_level >= 1 && build != null) {
+				for (ICClass c : changedClasses)
+					c.accept(new RegCounterVisitor());
+			} else if (opt_level >= 1) {
 				int programWeight = (Integer)root.accept(new RegCounterVisitor());
 			}
 			
-			String trans = root.accept(translator, 0).getLIRCode();
-			String lirFileName = args[0].substring(0, args[0].length()-2)+"lir";
+			String trans;
+			if (build != null) {
+				trans = build.translate(root, translator);
+				build.store();
+				System.err.println("# incremental build: " + build.getTranslatedCount() + " of " + (root.getClasses().size()-1) + " classes recompiled");
+			} else {
+				trans = root.accept(translator, 0).getLIRCode();
+			}
+			translationTime = System.nanoTime() - translationTime;
+			
+			//optimization in SSA form (-O2).
+			SSAOptimizer optimizer = null;
+			if (opt_level >= 2 || ssalir_flag || printssa_flag) {
+				optimizer = new SSAOptimizer(SSAOptimizer.createDefaultPassManager(printssa_flag, printssa_flag ? System.out : null));
+				trans = optimizer.optimize(trans);
+			}
 			
-			try {
-				BufferedWriter buff = new BufferedWriter(new FileWriter(lirFileName));
-				buff.write(trans);
-				buff.flush();
-				buff.close();
-			} catch (IOException e) {
-				System.out.println("Failed writing to file: " + lirFileName);
+			//optimization by an execution profile (-profile-use).
+			ProfileGuidedOptimizer pgo = null;
+			if (profileuse_flag) {
+				pgo = new ProfileGuidedOptimizer(readProfile(profile_path), X86Translator.getMethodParameters(root));
+				trans = pgo.optimize(trans);
+				if (pgo.getStaleMethods() > 0) {
+					System.out.println("Warning: the profile of " + pgo.getStaleMethods() + " method(s) does not match their code, and is ignored.");
+				}
 			}
 			
+			if (optstats_flag) {
+				printOptimizationStatistics(translator, translationTime, optimizer, pgo);
+			}
+			if (printlir_flag) {
+				String lirFileName = ic_code_path.substring(0, ic_code_path.length()-2)+"lir";
+				
+				try {
+					BufferedWriter buff = new BufferedWriter(new FileWriter(lirFileName));
+					buff.write(trans);
+					buff.flush();
+					buff.close();
+				} catch (IOException e) {
+					System.out.println("Failed writing to file: " + lirFileName);
+				}
+			}
+			
+			if (printlirbin_flag) {
+				writeBinaryLIR(trans, ic_code_path.substring(0, ic_code_path.length()-2)+"lirb");
+			}
+			
+			if (asm_flag) {
+				writeAssembly(trans, root, ic_code_path.substring(0, ic_code_path.length()-2)+"s");
+			}
+			
+			lirCode = trans;
+		}
+		
+		/* C source translation phase */
+		
+		if (c_flag) {
+			writeC(root, ic_code_path.substring(0, ic_code_path.length()-2)+"c");
+		}
+		
+		/* JVM class files translation phase */
+		
+		if (jvm_flag || runjvm_flag) {
+			compileJVM(root, (GlobalSymbolTable)globalSymbolTable, ic_code_path.substring(0, ic_code_path.length()-3)+".classes");
+		}
+		
+		/* execution of the LIR code */
+		
+		if (profilegen_flag) {
+			profileLIR(lirCode, ic_code_path.substring(0, ic_code_path.length()-2)+"profile");
+		}
+		
+		if (runlir_flag) {
+			runLIR(lirCode);
+		}
+		
+		/* direct execution of the checked AST */
+		
+		if (run_flag) {
+			runAST(root);
 		}
         
 		
     } //end of main.
 	
 	
+	/**
+	 * Returns the scanner of a source file: its Lexer, or the adapter of its token stream (-token-stream).
+	 */
+	private static Scanner scannerOf(SourceBuffer source) throws IOException {
+		if (tokenstream_flag)
+			return new TokenStreamScanner(TokenStream.tokenize(source));
+		return new Lexer(source);
+	}
+	
+	/**
+	 * Writes the LIR code in the binary LIR format (-print-lir-bin) to the given file.
+	 */
+	private static void writeBinaryLIR(String lirCode, String lirbFileName) {
+		try {
+			BinaryLIRWriter.writeFile(lirCode, lirbFileName);
+		} catch (LIRFormatError e) {
+			System.out.println(e);
+			System.exit(1);
+		} catch (IOException e) {
+			System.out.println("Failed writing to file: " + lirbFileName);
+		}
+	}
+	
+	
+	/**
+	 * Translates the LIR code to x86-64 assembly (-asm) and writes it to the given file.
+	 */
+	private static void writeAssembly(String lirCode, Program root, String asmFileName) {
+		String asm = null;
+		try {
+			asm = new X86Translator(LIRLoader.loadString(lirCode), X86Translator.getMethodParameters(root), X86Translator.getPointerFields(root)).translate();
+		} catch (LIRFormatError e) {
+			System.out.println(e);
+			System.exit(1);
+		} catch (X86TranslationError e) {
+			System.out.println(e);
+			System.exit(1);
+		}
+		
+		try {
+			BufferedWriter buff = new BufferedWriter(new FileWriter(asmFileName));
+			buff.write(asm);
+			buff.flush();
+			buff.close();
+		} catch (IOException e) {
+			System.out.println("Failed writing to file: " + asmFileName);
+		}
+	}
+	
+	
+	/**
+	 * Translates the IC program to C source code (-c) and writes it to the given file.
+	 */
+	private static void writeC(Program root, String cFileName) {
+		String c = new CTranslator().translate(root);
+		
+		try {
+			BufferedWriter buff = new BufferedWriter(new FileWriter(cFileName));
+			buff.write(c);
+			buff.flush();
+			buff.close();
+		} catch (IOException e) {
+			System.out.println("Failed writing to file: " + cFileName);
+		}
+	}
+	
+	
+	/**
+	 * Translates the IC program to JVM class files, writes them under classesDir (-jvm),
+	 * and runs them in process (-run-jvm).
+	 */
+	private static void compileJVM(Program root, GlobalSymbolTable global, String classesDir) {
+		JVMTranslator translator = new JVMTranslator(global);
+		java.util.Map<String,byte[]> classFiles = null;
+		try {
+			classFiles = translator.translate(root);
+		} catch (ClassFileError e) {
+			System.out.println(e);
+			System.exit(1);
+		}
+		
+		if (jvm_flag) {
+			for (java.util.Map.Entry<String,byte[]> entry : classFiles.entrySet()) {
+				File classFile = new File(classesDir, entry.getKey().replace('.', File.separatorChar)+".class");
+				classFile.getParentFile().mkdirs();
+				try {
+					OutputStream out = new FileOutputStream(classFile);
+					out.write(entry.getValue());
+					out.close();
+				} catch (IOException e) {
+					System.out.println("Failed writing to file: " + classFile);
+				}
+			}
+		}
+		
+		if (runjvm_flag) {
+			if (translator.getMainClass() == null) {
+				System.out.println("Error: the program has no main method.");
+				System.exit(1);
+			}
+			PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+			System.out.flush();
+			int exitCode = JVMRunner.run(classFiles, translator.getMainClass(), System.in, out);
+			out.flush();
+			System.exit(exitCode);
+		}
+	}
+	
+	
+	/**
+	 * Runs the checked program in the AST interpreter (-run),
+	 * and exits with the program's exit code.
+	 */
+	private static void runAST(Program root) {
+		ASTInterpreter interpreter = new ASTInterpreter(root);
+		if (!interpreter.hasMain()) {
+			System.out.println("Error: the program has no main method.");
+			System.exit(1);
+		}
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+		System.out.flush();
+		int exitCode = interpreter.run(System.in, out);
+		out.flush();
+		System.exit(exitCode);
+	}
+	
+	
+	/**
+	 * Runs the LIR code in the built-in interpreter (-run-lir),
+	 * and exits with the program's exit code.
+	 */
+	private static void runLIR(String lirCode) {
+		LIRInterpreter interpreter = null;
+		try {
+			interpreter = new LIRInterpreter(LIRLoader.loadString(lirCode), System.in, System.out);
+		} catch (LIRFormatError e) {
+			System.out.println(e);
+			System.exit(1);
+		}
+		
+		int exitCode;
+		try {
+			exitCode = interpreter.run();
+		} catch (LIRInterpreter.LIRRuntimeError e) {
+			System.out.println("LIR runtime error: " + e.getMessage());
+			exitCode = 1;
+		}
+		System.err.println("# executed instructions: " + interpreter.getExecutedInstructions());
+		System.exit(exitCode);
+	}
+	
+	
+	/**
+	 * Runs the LIR code in the built-in interpreter collecting its execution profile (-profile-gen),
+	 * writes the profile to the given file, and exits with the program's exit code.
+	 */
+	private static void profileLIR(String lirCode, String profileFileName) {
+		LIRInterpreter interpreter = null;
+		ProfileCollector collector = null;
+		try {
+			LIRProgram program = LIRLoader.loadString(lirCode);
+			interpreter = new LIRInterpreter(program, System.in, System.out);
+			collector = new ProfileCollector(lirCode, program);
+			interpreter.setProfiler(collector);
+		} catch (LIRFormatError e) {
+			System.out.println(e);
+			System.exit(1);
+		}
+		
+		int exitCode;
+		try {
+			exitCode = interpreter.run();
+		} catch (LIRInterpreter.LIRRuntimeError e) {
+			System.out.println("LIR runtime error: " + e.getMessage());
+			exitCode = 1;
+		}
+		
+		try {
+			collector.getProfile().write(profileFileName);
+		} catch (IOException e) {
+			System.out.println("Failed writing to file: " + profileFileName);
+			System.exit(1);
+		}
+		System.err.println("# profile written to " + profileFileName);
+		System.exit(exitCode);
+	}
+	
+	
+	/**
+	 * Reads the execution profile for -profile-use (exits on errors).
+	 */
+	private static Profile readProfile(String profileFileName) {
+		try {
+			return Profile.read(profileFileName);
+		} catch (IOException e) {
+			System.out.println("Error in reading from profile file: " + e.getMessage());
+		} catch (ProfileFormatError e) {
+			System.out.println(e);
+		}
+		System.exit(1);
+		return null;
+	}
+	
+	
+	/**
+	 * Prints the optimizations statistics (-opt-stats):
+	 * translation time and translator optimizations, and for every SSA pass
+	 * its run time, instructions removed and runtime checks eliminated,
+	 * and the profile guided optimizations.
+	 */
+	private static void printOptimizationStatistics(TranslatePropagatingVisitor translator, long translationTime, SSAOptimizer optimizer, ProfileGuidedOptimizer pgo) {
+		System.out.println("Optimization statistics (-O" + opt_level + "):");
+		System.out.println(String.format("  %-24s %10.3f ms", "translation", translationTime / 1e6));
+		
+		if (translator instanceof OptTranslatePropagatingVisitor) {
+			OptTranslatePropagatingVisitor opt = (OptTranslatePropagatingVisitor)translator;
+			System.out.println(String.format("  %-24s %d loop products reduced", "strength-reduction", opt.getReducedProductsCounter()));
+			System.out.println(String.format("  %-24s %d self tail calls eliminated", "tail-calls", opt.getTailCallsCounter()));
+		}
+		
+		if (optimizer != null) {
+			System.out.println(String.format("  %-24s %d methods optimized, %d skipped", "ssa", optimizer.getMethodsOptimized(), optimizer.getMethodsSkipped()));
+			for (PassStatistics stats : optimizer.getPassManager().getStatistics()) {
+				System.out.println(String.format("  %-24s %10.3f ms, %d runs, %d instructions removed, %d checks eliminated",
+						stats.getName(), stats.getTime() / 1e6, stats.getRuns(), stats.getInstructionsRemoved(), stats.getChecksRemoved()));
+			}
+		}
+		
+		if (pgo != null) {
+			System.out.println(String.format("  %-24s %d static calls inlined, %d virtual calls devirtualized", "pgo-inlining", pgo.getStaticCallsInlined(), pgo.getVirtualCallsInlined()));
+			System.out.println(String.format("  %-24s %d loops unrolled", "pgo-unrolling", pgo.getLoopsUnrolled()));
+			System.out.println(String.format("  %-24s %d cold blocks moved", "pgo-layout", pgo.getBlocksMoved()));
+			System.out.println(String.format("  %-24s %d uncalled methods removed, %d stale method profiles", "pgo", pgo.getMethodsRemoved(), pgo.getStaleMethods()));
+		}
+	}
+	
+	
 } //end of Compiler.
@@ -0,0 +1,77 @@
+package IC.Interpreter;
+
+import java.io.*;
+
+import IC.AST.Program;
+import IC.JVM.ICRuntime;
+import IC.JVM.JVMRunner;
+
+/**
+ * ASTInterpreter
+ * ==============
+ * runs a checked IC program directly, without translating it to LIR
+ * (-run): the NodeCompiler turns the AST to executable nodes, which run
+ * with the Java runtime of the JVM backend (ICRuntime).
+ *
+ * - main runs on a thread with a large stack, so deep recursion behaves
+ *   as in the LIR interpreter.
+ * - runtime errors are reported with the messages of the LIR runtime
+ *   checks, and end the program as _error_exit does (exit code 0).
+ */
+public class ASTInterpreter {
+
+	private static final long STACK_SIZE = 1L << 30;
+
+	private RuntimeMethod main;
+
+	/**
+	 * constructor: compiles the program
+	 * @param program: the checked program (with the Library class)
+	 */
+	public ASTInterpreter(Program program){
+		main = new NodeCompiler().compile(program);
+	}
+
+	/**
+	 * true if the program has a main method to run
+	 */
+	public boolean hasMain(){
+		return main != null;
+	}
+
+	/**
+	 * runs the program's main method and returns the program's exit code
+	 * @param input
+	 * @param output
+	 * @return
+	 */
+	public int run(InputStream input, final PrintStream output){
+		ICRuntime.init(input, output);
+		final Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, new Runnable(){
+			public void run(){
+				try {
+					Frame frame = new Frame(main.intSlots, main.refSlots);
+					frame.refs[main.paramSlots[0]] = new Object[0];
+					main.body.exec(frame);
+				} catch (Throwable t){
+					failure[0] = t;
+				}
+			}
+		}, "ic-main", STACK_SIZE);
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+
+		ICRuntime.flush();
+		int exitCode = 0;
+		if (failure[0] != null){
+			exitCode = JVMRunner.reportFailure(failure[0], output);
+			output.flush();
+		}
+		return exitCode;
+	}
+}
@@ -0,0 +1,43 @@
+package IC.Interpreter;
+
+/**
+ * Expr
+ * ====
+ * a compiled expression: int and boolean expressions are evaluated by
+ * evalInt (booleans are 0 / 1), and strings, arrays, objects and null by
+ * evalRef. the IC type name of the expression is resolved at compile time.
+ */
+abstract class Expr {
+	final String type;
+
+	Expr(String type){
+		this.type = type;
+	}
+
+	/**
+	 * true for expressions evaluated by evalInt
+	 */
+	final boolean isInt(){
+		return isIntType(type);
+	}
+
+	static boolean isIntType(String type){
+		return type.equals("int") || type.equals("boolean");
+	}
+
+	int evalInt(Frame f){
+		throw new IllegalStateException("not an int expression: "+type);
+	}
+
+	Object evalRef(Frame f){
+		throw new IllegalStateException("not a reference expression: "+type);
+	}
+
+	/**
+	 * evaluates the expression for its side effects (a call statement)
+	 */
+	void evalVoid(Frame f){
+		if (isInt()) evalInt(f);
+		else evalRef(f);
+	}
+}
@@ -0,0 +1,20 @@
+package IC.Interpreter;
+
+/**
+ * Frame
+ * =====
+ * the activation record of a running method: int (and boolean) locals and
+ * reference locals in separate slot arrays, as assigned by the NodeCompiler
+ * ('this' is reference slot 0 of a virtual method), and the returned value.
+ */
+final class Frame {
+	final int[] ints;
+	final Object[] refs;
+	int returnInt;
+	Object returnRef;
+
+	Frame(int intSlots, int refSlots){
+		ints = new int[intSlots];
+		refs = new Object[refSlots];
+	}
+}
@@ -0,0 +1,19 @@
+package IC.Interpreter;
+
+/**
+ * ICObject
+ * ========
+ * an instance of an IC class. fields are indexed by their ClassLayout
+ * offsets, in ints (int and boolean fields) or refs (the other fields).
+ */
+final class ICObject {
+	final RuntimeClass cls;
+	final int[] ints;
+	final Object[] refs;
+
+	ICObject(RuntimeClass cls){
+		this.cls = cls;
+		this.ints = new int[cls.fieldSlots];
+		this.refs = new Object[cls.fieldSlots];
+	}
+}
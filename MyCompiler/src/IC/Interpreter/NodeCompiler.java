@@ -0,0 +1,885 @@
+package IC.Interpreter;
+
+import java.util.*;
+
+import IC.BinaryOps;
+import IC.LiteralTypes;
+import IC.AST.*;
+import IC.JVM.ICRuntime;
+import IC.LIR.ClassLayout;
+import IC.Simulator.LIRLoader;
+import IC.SymbolTable.BlockSymbolTable;
+import IC.SymbolTable.Kind;
+import IC.SymbolTable.Symbol;
+
+/**
+ * NodeCompiler
+ * ============
+ * compiles a checked IC program to a tree of executable nodes (closures),
+ * so the program runs without walking the AST:
+ * - every name is resolved at compile time: locals and parameters to frame
+ *   slots, fields to their ClassLayout offsets, static calls to their target
+ *   methods, and virtual calls to their dispatch vector offsets.
+ * - every expression node has a typed evaluation (evalInt / evalRef), so
+ *   ints are never boxed.
+ * - Library calls are bound to the methods of ICRuntime.
+ *
+ * the evaluation order is the LIR translation's: the assigned value is
+ * computed before its location, arguments are computed left to right, and
+ * && and || short-circuit. virtual call arguments are passed by position.
+ *
+ * every expression visitor returns an Expr, and every statement visitor a Stmt.
+ */
+class NodeCompiler implements Visitor {
+
+	private Map<String,ClassLayout> classLayouts = new HashMap<String,ClassLayout>();
+	private Map<String,RuntimeClass> classes = new HashMap<String,RuntimeClass>();
+	private Map<Method,RuntimeMethod> methods = new IdentityHashMap<Method,RuntimeMethod>();
+	private RuntimeMethod mainMethod = null;
+
+	// current method
+	private ICClass currClass;
+	private Map<Symbol,Integer> slots = new IdentityHashMap<Symbol,Integer>();
+	private int intSlots;
+	private int refSlots;
+
+	/**
+	 * compiles the program, and returns its main method
+	 * (null if the program has no main method)
+	 * @param program
+	 * @return
+	 */
+	RuntimeMethod compile(Program program){
+		program.accept(this);
+		return mainMethod;
+	}
+
+	private static boolean isMain(Method m){
+		return m.isStatic() && m.getName().equals("main") && m.getType().toString().equals("void") &&
+			m.getFormals().size() == 1 && m.getFormals().get(0).getType().toString().equals("string[]");
+	}
+
+	// program structure
+	////////////////////
+
+	/**
+	 * Program visitor: creates all the classes and methods before compiling
+	 * the method bodies, so calls are bound directly to their targets
+	 */
+	public Object visit(Program program){
+		List<ICClass> icClasses = new ArrayList<ICClass>();
+		for (ICClass c: program.getClasses()){
+			// skip library method
+			if (c.getName().equals("Library")) continue;
+			icClasses.add(c);
+
+			ClassLayout layout = c.hasSuperClass() ? new ClassLayout(c, classLayouts.get(c.getSuperClassName())) : new ClassLayout(c);
+			classLayouts.put(c.getName(), layout);
+
+			// parameters get the first slots: 'this' (ref slot 0), then the formals
+			for (Method m: c.getMethods()){
+				int ints = 0;
+				int refs = m.isStatic() ? 0 : 1;
+				boolean[] paramIsInt = new boolean[m.getFormals().size()];
+				int[] paramSlots = new int[paramIsInt.length];
+				for (int i = 0; i < paramIsInt.length; i++){
+					paramIsInt[i] = Expr.isIntType(m.getFormals().get(i).getType().toString());
+					paramSlots[i] = paramIsInt[i] ? ints++ : refs++;
+				}
+				RuntimeMethod rm = new RuntimeMethod(c.getName()+"."+m.getName(), !m.isStatic(), paramIsInt, paramSlots);
+				methods.put(m, rm);
+				if (isMain(m)) mainMethod = rm;
+			}
+		}
+
+		// dispatch vectors, by ClassLayout method offsets
+		for (ICClass c: icClasses){
+			ClassLayout layout = classLayouts.get(c.getName());
+			RuntimeMethod[] vtable = new RuntimeMethod[layout.getMethodToOffsetMap().size()];
+			for (Map.Entry<Method,Integer> entry: layout.getMethodToOffsetMap().entrySet()){
+				vtable[entry.getValue()] = methods.get(entry.getKey());
+			}
+			classes.put(c.getName(), new RuntimeClass(c.getName(), vtable, layout.getFieldToOffsetMap().size()+1));
+		}
+
+		for (ICClass c: icClasses){
+			c.accept(this);
+		}
+		return null;
+	}
+
+	public Object visit(ICClass icClass){
+		currClass = icClass;
+		for (Method m: icClass.getMethods()){
+			m.accept(this);
+		}
+		return null;
+	}
+
+	public Object visit(Field field){
+		return null;
+	}
+
+	public Object visit(VirtualMethod method){
+		methodVisitHelper(method);
+		return null;
+	}
+
+	public Object visit(StaticMethod method){
+		methodVisitHelper(method);
+		return null;
+	}
+
+	public Object visit(LibraryMethod method){
+		return null;
+	}
+
+	private void methodVisitHelper(Method method){
+		RuntimeMethod rm = methods.get(method);
+		slots.clear();
+		intSlots = 0;
+		refSlots = method.isStatic() ? 0 : 1;
+		for (Formal f: method.getFormals()){
+			Symbol symbol = f.getEnclosingScope().lookup(f.getIdentifier());
+			slots.put(symbol, Expr.isIntType(f.getType().toString()) ? intSlots++ : refSlots++);
+		}
+		rm.body = block(method.getStatements());
+		rm.intSlots = intSlots;
+		rm.refSlots = refSlots;
+	}
+
+	public Object visit(Formal formal){
+		return null;
+	}
+
+	public Object visit(PrimitiveType type){
+		return null;
+	}
+
+	public Object visit(UserType type){
+		return null;
+	}
+
+	// statements
+	/////////////
+
+	private Stmt block(List<Statement> statements){
+		final Stmt[] body = new Stmt[statements.size()];
+		for (int i = 0; i < body.length; i++){
+			body[i] = (Stmt) statements.get(i).accept(this);
+		}
+		if (body.length == 1) return body[0];
+		return new Stmt(){
+			int exec(Frame f){
+				for (Stmt s: body){
+					int completion = s.exec(f);
+					if (completion != NORMAL) return completion;
+				}
+				return NORMAL;
+			}
+		};
+	}
+
+	/**
+	 * Assignment visitor: the value is computed before the location
+	 */
+	public Object visit(Assignment assignment){
+		final Expr value = (Expr) assignment.getAssignment().accept(this);
+		Location location = assignment.getVariable();
+
+		if (location instanceof ArrayLocation){
+			ArrayLocation arr = (ArrayLocation) location;
+			final Expr array = (Expr) arr.getArray().accept(this);
+			final Expr index = (Expr) arr.getIndex().accept(this);
+			if (value.isInt()){
+				return new Stmt(){
+					int exec(Frame f){
+						int v = value.evalInt(f);
+						((int[]) array.evalRef(f))[index.evalInt(f)] = v;
+						return NORMAL;
+					}
+				};
+			}
+			return new Stmt(){
+				int exec(Frame f){
+					Object v = value.evalRef(f);
+					((Object[]) array.evalRef(f))[index.evalInt(f)] = v;
+					return NORMAL;
+				}
+			};
+		}
+
+		VariableLocation var = (VariableLocation) location;
+		final int slot;
+		if (!var.isExternal()){
+			Symbol symbol = var.getVarDeclarationScope().lookup(var.getIdentifier());
+			if (symbol.getKind() != Kind.FIELD){
+				slot = slots.get(symbol);
+				if (value.isInt()){
+					return new Stmt(){
+						int exec(Frame f){
+							f.ints[slot] = value.evalInt(f);
+							return NORMAL;
+						}
+					};
+				}
+				return new Stmt(){
+					int exec(Frame f){
+						f.refs[slot] = value.evalRef(f);
+						return NORMAL;
+					}
+				};
+			}
+		}
+
+		final Expr object = fieldObject(var);
+		slot = fieldOffset(object.type, var.getName());
+		if (value.isInt()){
+			return new Stmt(){
+				int exec(Frame f){
+					int v = value.evalInt(f);
+					((ICObject) object.evalRef(f)).ints[slot] = v;
+					return NORMAL;
+				}
+			};
+		}
+		return new Stmt(){
+			int exec(Frame f){
+				Object v = value.evalRef(f);
+				((ICObject) object.evalRef(f)).refs[slot] = v;
+				return NORMAL;
+			}
+		};
+	}
+
+	public Object visit(CallStatement callStatement){
+		final Expr call = (Expr) callStatement.getCall().accept(this);
+		return new Stmt(){
+			int exec(Frame f){
+				call.evalVoid(f);
+				return NORMAL;
+			}
+		};
+	}
+
+	public Object visit(Return returnStatement){
+		if (!returnStatement.hasValue()){
+			return new Stmt(){
+				int exec(Frame f){
+					return RETURN;
+				}
+			};
+		}
+		final Expr value = (Expr) returnStatement.getValue().accept(this);
+		if (value.isInt()){
+			return new Stmt(){
+				int exec(Frame f){
+					f.returnInt = value.evalInt(f);
+					return RETURN;
+				}
+			};
+		}
+		return new Stmt(){
+			int exec(Frame f){
+				f.returnRef = value.evalRef(f);
+				return RETURN;
+			}
+		};
+	}
+
+	public Object visit(If ifStatement){
+		final Expr condition = (Expr) ifStatement.getCondition().accept(this);
+		final Stmt operation = (Stmt) ifStatement.getOperation().accept(this);
+		if (!ifStatement.hasElse()){
+			return new Stmt(){
+				int exec(Frame f){
+					return condition.evalInt(f) != 0 ? operation.exec(f) : NORMAL;
+				}
+			};
+		}
+		final Stmt elseOperation = (Stmt) ifStatement.getElseOperation().accept(this);
+		return new Stmt(){
+			int exec(Frame f){
+				return condition.evalInt(f) != 0 ? operation.exec(f) : elseOperation.exec(f);
+			}
+		};
+	}
+
+	public Object visit(While whileStatement){
+		final Expr condition = (Expr) whileStatement.getCondition().accept(this);
+		final Stmt operation = (Stmt) whileStatement.getOperation().accept(this);
+		return new Stmt(){
+			int exec(Frame f){
+				while (condition.evalInt(f) != 0){
+					int completion = operation.exec(f);
+					if (completion == BREAK) break;
+					if (completion == RETURN) return RETURN;
+				}
+				return NORMAL;
+			}
+		};
+	}
+
+	private static final Stmt BREAK_STMT = new Stmt(){
+		int exec(Frame f){
+			return BREAK;
+		}
+	};
+
+	private static final Stmt CONTINUE_STMT = new Stmt(){
+		int exec(Frame f){
+			return CONTINUE;
+		}
+	};
+
+	public Object visit(Break breakStatement){
+		return BREAK_STMT;
+	}
+
+	public Object visit(Continue continueStatement){
+		return CONTINUE_STMT;
+	}
+
+	public Object visit(StatementsBlock statementsBlock){
+		return block(statementsBlock.getStatements());
+	}
+
+	/**
+	 * LocalVariable visitor: every local variable gets its own slot, and is
+	 * initialized (to its default value if it has no initial value)
+	 */
+	public Object visit(LocalVariable localVariable){
+		Symbol symbol = localVariable.getEnclosingScope().lookup(localVariable.getIdentifier());
+		boolean isInt = Expr.isIntType(symbol.getType().getName());
+		final Expr init = localVariable.hasInitValue() ? (Expr) localVariable.getInitValue().accept(this) : null;
+		final int slot = isInt ? intSlots++ : refSlots++;
+		slots.put(symbol, slot);
+
+		if (isInt){
+			return new Stmt(){
+				int exec(Frame f){
+					f.ints[slot] = init == null ? 0 : init.evalInt(f);
+					return NORMAL;
+				}
+			};
+		}
+		return new Stmt(){
+			int exec(Frame f){
+				f.refs[slot] = init == null ? null : init.evalRef(f);
+				return NORMAL;
+			}
+		};
+	}
+
+	// locations
+	////////////
+
+	/**
+	 * returns the object expression of a field location ('this' if unqualified)
+	 */
+	private Expr fieldObject(VariableLocation var){
+		if (var.isExternal()) return (Expr) var.getLocation().accept(this);
+		return thisExpr(currClass.getName());
+	}
+
+	private Expr thisExpr(String className){
+		return new Expr(className){
+			Object evalRef(Frame f){
+				return f.refs[0];
+			}
+		};
+	}
+
+	private Field findField(String className, String name){
+		for (Field field: classLayouts.get(className).getFieldToOffsetMap().keySet()){
+			if (field.getName().equals(name)) return field;
+		}
+		throw new IllegalStateException("no field "+name+" in class "+className);
+	}
+
+	private int fieldOffset(String className, String name){
+		return classLayouts.get(className).getFieldOffset(findField(className, name));
+	}
+
+	public Object visit(VariableLocation location){
+		if (!location.isExternal()){
+			Symbol symbol = location.getVarDeclarationScope().lookup(location.getIdentifier());
+			if (symbol.getKind() != Kind.FIELD){
+				final int slot = slots.get(symbol);
+				String type = symbol.getType().getName();
+				if (Expr.isIntType(type)){
+					return new Expr(type){
+						int evalInt(Frame f){
+							return f.ints[slot];
+						}
+					};
+				}
+				return new Expr(type){
+					Object evalRef(Frame f){
+						return f.refs[slot];
+					}
+				};
+			}
+		}
+
+		final Expr object = fieldObject(location);
+		final int offset = fieldOffset(object.type, location.getName());
+		String type = findField(object.type, location.getName()).getType().toString();
+		if (Expr.isIntType(type)){
+			return new Expr(type){
+				int evalInt(Frame f){
+					return ((ICObject) object.evalRef(f)).ints[offset];
+				}
+			};
+		}
+		return new Expr(type){
+			Object evalRef(Frame f){
+				return ((ICObject) object.evalRef(f)).refs[offset];
+			}
+		};
+	}
+
+	public Object visit(ArrayLocation location){
+		final Expr array = (Expr) location.getArray().accept(this);
+		final Expr index = (Expr) location.getIndex().accept(this);
+		String type = array.type.substring(0, array.type.length()-2);
+		if (Expr.isIntType(type)){
+			return new Expr(type){
+				int evalInt(Frame f){
+					int[] a = (int[]) array.evalRef(f);
+					return a[index.evalInt(f)];
+				}
+			};
+		}
+		return new Expr(type){
+			Object evalRef(Frame f){
+				Object[] a = (Object[]) array.evalRef(f);
+				return a[index.evalInt(f)];
+			}
+		};
+	}
+
+	// calls
+	////////
+
+	private Expr[] arguments(Call call){
+		Expr[] args = new Expr[call.getArguments().size()];
+		for (int i = 0; i < args.length; i++){
+			args[i] = (Expr) call.getArguments().get(i).accept(this);
+		}
+		return args;
+	}
+
+	/**
+	 * computes the arguments into the frame of a call to method m
+	 */
+	private static void passArguments(Expr[] args, RuntimeMethod m, Frame caller, Frame callee){
+		for (int i = 0; i < args.length; i++){
+			if (m.paramIsInt[i]) callee.ints[m.paramSlots[i]] = args[i].evalInt(caller);
+			else callee.refs[m.paramSlots[i]] = args[i].evalRef(caller);
+		}
+	}
+
+	/**
+	 * a call of a static method
+	 */
+	private Expr staticCall(final RuntimeMethod target, final Expr[] args, String returnType){
+		return new Expr(returnType){
+			private Frame invoke(Frame f){
+				Frame callee = new Frame(target.intSlots, target.refSlots);
+				passArguments(args, target, f, callee);
+				target.body.exec(callee);
+				return callee;
+			}
+			int evalInt(Frame f){
+				return invoke(f).returnInt;
+			}
+			Object evalRef(Frame f){
+				return invoke(f).returnRef;
+			}
+			void evalVoid(Frame f){
+				invoke(f);
+			}
+		};
+	}
+
+	/**
+	 * a call of a virtual method: the receiver is computed (and dispatched
+	 * on) before the arguments
+	 */
+	private Expr virtualCall(final Expr receiver, final int offset, final RuntimeMethod staticTarget, final Expr[] args, String returnType){
+		return new Expr(returnType){
+			private Frame invoke(Frame f){
+				ICObject object = (ICObject) receiver.evalRef(f);
+				RuntimeMethod target = object.cls.vtable[offset];
+				Frame callee = new Frame(target.intSlots, target.refSlots);
+				callee.refs[0] = object;
+				passArguments(args, staticTarget, f, callee);
+				target.body.exec(callee);
+				return callee;
+			}
+			int evalInt(Frame f){
+				return invoke(f).returnInt;
+			}
+			Object evalRef(Frame f){
+				return invoke(f).returnRef;
+			}
+			void evalVoid(Frame f){
+				invoke(f);
+			}
+		};
+	}
+
+	public Object visit(StaticCall call){
+		Expr[] args = arguments(call);
+		if (call.getClassName().equals("Library")) return libraryCall(call.getName(), args);
+		Method m = classLayouts.get(call.getClassName()).getMethodFromName(call.getIdentifier());
+		return staticCall(methods.get(m), args, m.getType().toString());
+	}
+
+	/**
+	 * VirtualCall visitor: an unqualified call may also be a call to a static
+	 * method of the enclosing class
+	 */
+	public Object visit(VirtualCall call){
+		Expr receiver;
+		String className;
+		if (call.isExternal()){
+			receiver = (Expr) call.getLocation().accept(this);
+			className = receiver.type;
+		} else {
+			className = ((BlockSymbolTable) call.getEnclosingScope()).getEnclosingCST().getMyClassSymbol().getID();
+			receiver = thisExpr(className);
+		}
+		ClassLayout layout = classLayouts.get(className);
+		Method m = layout.getMethodFromName(call.getIdentifier());
+		Expr[] args = arguments(call);
+		if (m.isStatic()) return staticCall(methods.get(m), args, m.getType().toString());
+		return virtualCall(receiver, layout.getMethodOffset(m), methods.get(m), args, m.getType().toString());
+	}
+
+	/**
+	 * returns a call of a Library method (an ICRuntime method)
+	 */
+	private Expr libraryCall(String name, final Expr[] args){
+		if (name.equals("println")){
+			return new Expr("void"){
+				void evalVoid(Frame f){
+					ICRuntime.println((String) args[0].evalRef(f));
+				}
+			};
+		} else if (name.equals("print")){
+			return new Expr("void"){
+				void evalVoid(Frame f){
+					ICRuntime.print((String) args[0].evalRef(f));
+				}
+			};
+		} else if (name.equals("printi")){
+			return new Expr("void"){
+				void evalVoid(Frame f){
+					ICRuntime.printi(args[0].evalInt(f));
+				}
+			};
+		} else if (name.equals("printb")){
+			return new Expr("void"){
+				void evalVoid(Frame f){
+					ICRuntime.printb(args[0].evalInt(f) != 0);
+				}
+			};
+		} else if (name.equals("readi")){
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return ICRuntime.readi();
+				}
+			};
+		} else if (name.equals("readln")){
+			return new Expr("string"){
+				Object evalRef(Frame f){
+					return ICRuntime.readln();
+				}
+			};
+		} else if (name.equals("eof")){
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return ICRuntime.eof() ? 1 : 0;
+				}
+			};
+		} else if (name.equals("stoi")){
+			return new Expr("int"){
+				int evalInt(Frame f){
+					String s = (String) args[0].evalRef(f);
+					return ICRuntime.stoi(s, args[1].evalInt(f));
+				}
+			};
+		} else if (name.equals("itos")){
+			return new Expr("string"){
+				Object evalRef(Frame f){
+					return ICRuntime.itos(args[0].evalInt(f));
+				}
+			};
+		} else if (name.equals("stoa")){
+			return new Expr("int[]"){
+				Object evalRef(Frame f){
+					return ICRuntime.stoa((String) args[0].evalRef(f));
+				}
+			};
+		} else if (name.equals("atos")){
+			return new Expr("string"){
+				Object evalRef(Frame f){
+					return ICRuntime.atos((int[]) args[0].evalRef(f));
+				}
+			};
+		} else if (name.equals("random")){
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return ICRuntime.random(args[0].evalInt(f));
+				}
+			};
+		} else if (name.equals("time")){
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return ICRuntime.time();
+				}
+			};
+		} else if (name.equals("exit")){
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return ICRuntime.exit(args[0].evalInt(f));
+				}
+			};
+		}
+		throw new IllegalStateException("unknown library method: "+name);
+	}
+
+	// other expressions
+	////////////////////
+
+	public Object visit(This thisExpression){
+		return thisExpr(((BlockSymbolTable) thisExpression.getEnclosingScope()).getEnclosingCST().getMyClassSymbol().getID());
+	}
+
+	public Object visit(NewClass newClass){
+		final RuntimeClass cls = classes.get(newClass.getName());
+		return new Expr(newClass.getName()){
+			Object evalRef(Frame f){
+				return new ICObject(cls);
+			}
+		};
+	}
+
+	public Object visit(NewArray newArray){
+		String elemType = newArray.getType().toString();
+		final Expr size = (Expr) newArray.getSize().accept(this);
+		if (Expr.isIntType(elemType)){
+			return new Expr(elemType+"[]"){
+				Object evalRef(Frame f){
+					return new int[size.evalInt(f)];
+				}
+			};
+		}
+		return new Expr(elemType+"[]"){
+			Object evalRef(Frame f){
+				return new Object[size.evalInt(f)];
+			}
+		};
+	}
+
+	public Object visit(Length length){
+		final Expr array = (Expr) length.getArray().accept(this);
+		if (Expr.isIntType(array.type.substring(0, array.type.length()-2))){
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return ((int[]) array.evalRef(f)).length;
+				}
+			};
+		}
+		return new Expr("int"){
+			int evalInt(Frame f){
+				return ((Object[]) array.evalRef(f)).length;
+			}
+		};
+	}
+
+	/**
+	 * MathBinaryOp visitor: + of strings is ICRuntime.stringCat
+	 */
+	public Object visit(MathBinaryOp binaryOp){
+		final Expr a = (Expr) binaryOp.getFirstOperand().accept(this);
+		final Expr b = (Expr) binaryOp.getSecondOperand().accept(this);
+
+		switch (binaryOp.getOperator()){
+		case PLUS:
+			if (!a.isInt() || !b.isInt()){
+				return new Expr("string"){
+					Object evalRef(Frame f){
+						String s1 = (String) a.evalRef(f);
+						return ICRuntime.stringCat(s1, (String) b.evalRef(f));
+					}
+				};
+			}
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return a.evalInt(f) + b.evalInt(f);
+				}
+			};
+		case MINUS:
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return a.evalInt(f) - b.evalInt(f);
+				}
+			};
+		case MULTIPLY:
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return a.evalInt(f) * b.evalInt(f);
+				}
+			};
+		case DIVIDE:
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return a.evalInt(f) / b.evalInt(f);
+				}
+			};
+		case MOD:
+			return new Expr("int"){
+				int evalInt(Frame f){
+					return a.evalInt(f) % b.evalInt(f);
+				}
+			};
+		default:
+			throw new IllegalStateException("not a math operator: "+binaryOp.getOperator());
+		}
+	}
+
+	/**
+	 * LogicalBinaryOp visitor: && and || short-circuit, and == and != compare
+	 * references by identity
+	 */
+	public Object visit(LogicalBinaryOp binaryOp){
+		final Expr a = (Expr) binaryOp.getFirstOperand().accept(this);
+		final Expr b = (Expr) binaryOp.getSecondOperand().accept(this);
+		BinaryOps operator = binaryOp.getOperator();
+
+		if ((operator == BinaryOps.EQUAL || operator == BinaryOps.NEQUAL) && !(a.isInt() && b.isInt())){
+			final boolean equal = operator == BinaryOps.EQUAL;
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					Object r1 = a.evalRef(f);
+					return (r1 == b.evalRef(f)) == equal ? 1 : 0;
+				}
+			};
+		}
+
+		switch (operator){
+		case LAND:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) != 0 ? b.evalInt(f) : 0;
+				}
+			};
+		case LOR:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) != 0 ? 1 : b.evalInt(f);
+				}
+			};
+		case EQUAL:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) == b.evalInt(f) ? 1 : 0;
+				}
+			};
+		case NEQUAL:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) != b.evalInt(f) ? 1 : 0;
+				}
+			};
+		case LT:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) < b.evalInt(f) ? 1 : 0;
+				}
+			};
+		case LTE:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) <= b.evalInt(f) ? 1 : 0;
+				}
+			};
+		case GT:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) > b.evalInt(f) ? 1 : 0;
+				}
+			};
+		default:
+			return new Expr("boolean"){
+				int evalInt(Frame f){
+					return a.evalInt(f) >= b.evalInt(f) ? 1 : 0;
+				}
+			};
+		}
+	}
+
+	public Object visit(MathUnaryOp unaryOp){
+		Expression operand = unaryOp.getOperand();
+		if (operand instanceof Literal && ((Literal) operand).getType() == LiteralTypes.INTEGER){
+			// -2147483648 is only valid as a negated literal
+			return intConstant((int) -Long.parseLong(((Literal) operand).getValue().toString()), "int");
+		}
+		final Expr a = (Expr) operand.accept(this);
+		return new Expr("int"){
+			int evalInt(Frame f){
+				return -a.evalInt(f);
+			}
+		};
+	}
+
+	public Object visit(LogicalUnaryOp unaryOp){
+		final Expr a = (Expr) unaryOp.getOperand().accept(this);
+		return new Expr("boolean"){
+			int evalInt(Frame f){
+				return a.evalInt(f) ^ 1;
+			}
+		};
+	}
+
+	private static Expr intConstant(final int value, String type){
+		return new Expr(type){
+			int evalInt(Frame f){
+				return value;
+			}
+		};
+	}
+
+	public Object visit(Literal literal){
+		switch (literal.getType()){
+		case INTEGER:
+			return intConstant((int) Long.parseLong(literal.getValue().toString()), "int");
+		case STRING:
+			String s = literal.getValue().toString();
+			// literals are shared, as in the LIR string table
+			final String value = LIRLoader.unescape(s.substring(1, s.length()-1)).intern();
+			return new Expr("string"){
+				Object evalRef(Frame f){
+					return value;
+				}
+			};
+		case TRUE:
+			return intConstant(1, "boolean");
+		case FALSE:
+			return intConstant(0, "boolean");
+		default:
+			return new Expr("null"){
+				Object evalRef(Frame f){
+					return null;
+				}
+			};
+		}
+	}
+
+	public Object visit(ExpressionBlock expressionBlock){
+		return expressionBlock.getExpression().accept(this);
+	}
+}
@@ -0,0 +1,19 @@
+package IC.Interpreter;
+
+/**
+ * RuntimeClass
+ * ============
+ * a class of the running program: its virtual methods by ClassLayout offset
+ * (the dispatch vector), and the number of field slots of its instances.
+ */
+final class RuntimeClass {
+	final String name;
+	final RuntimeMethod[] vtable;
+	final int fieldSlots;
+
+	RuntimeClass(String name, RuntimeMethod[] vtable, int fieldSlots){
+		this.name = name;
+		this.vtable = vtable;
+		this.fieldSlots = fieldSlots;
+	}
+}
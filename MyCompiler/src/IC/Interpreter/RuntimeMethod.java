@@ -0,0 +1,26 @@
+package IC.Interpreter;
+
+/**
+ * RuntimeMethod
+ * =============
+ * a compiled method: its body, its frame size, and the frame slots of its
+ * parameters (by position). the body is set once all the methods exist,
+ * so calls can be bound to their targets while compiling.
+ */
+final class RuntimeMethod {
+	final String name;
+	final boolean isVirtual;
+	// parameter i goes to ints[paramSlots[i]] if paramIsInt[i], to refs[paramSlots[i]] otherwise
+	final boolean[] paramIsInt;
+	final int[] paramSlots;
+	int intSlots;
+	int refSlots;
+	Stmt body;
+
+	RuntimeMethod(String name, boolean isVirtual, boolean[] paramIsInt, int[] paramSlots){
+		this.name = name;
+		this.isVirtual = isVirtual;
+		this.paramIsInt = paramIsInt;
+		this.paramSlots = paramSlots;
+	}
+}
@@ -0,0 +1,16 @@
+package IC.Interpreter;
+
+/**
+ * Stmt
+ * ====
+ * a compiled statement. exec returns how the statement completed, so
+ * break, continue and return need no exceptions.
+ */
+abstract class Stmt {
+	static final int NORMAL = 0;
+	static final int BREAK = 1;
+	static final int CONTINUE = 2;
+	static final int RETURN = 3;
+
+	abstract int exec(Frame f);
+}
@@ -0,0 +1,260 @@
+package IC.JVM;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Bytecode
+ * ========
+ * the code of a single method: an instruction buffer with branch labels,
+ * which keeps track of the operand stack depth (for max_stack), of the
+ * locals in use (for max_locals) and of whether the next instruction is
+ * reachable.
+ */
+public class Bytecode {
+
+	// opcodes in use
+	public static final int ACONST_NULL = 0x01;
+	public static final int ICONST_0 = 0x03;
+	public static final int BIPUSH = 0x10;
+	public static final int SIPUSH = 0x11;
+	public static final int LDC = 0x12;
+	public static final int LDC_W = 0x13;
+	public static final int ILOAD = 0x15;
+	public static final int ALOAD = 0x19;
+	public static final int IALOAD = 0x2e;
+	public static final int AALOAD = 0x32;
+	public static final int BALOAD = 0x33;
+	public static final int ISTORE = 0x36;
+	public static final int ASTORE = 0x3a;
+	public static final int IASTORE = 0x4f;
+	public static final int AASTORE = 0x53;
+	public static final int BASTORE = 0x54;
+	public static final int POP = 0x57;
+	public static final int DUP = 0x59;
+	public static final int IADD = 0x60;
+	public static final int ISUB = 0x64;
+	public static final int IMUL = 0x68;
+	public static final int IDIV = 0x6c;
+	public static final int IREM = 0x70;
+	public static final int INEG = 0x74;
+	public static final int IXOR = 0x82;
+	public static final int IFEQ = 0x99;
+	public static final int IFNE = 0x9a;
+	public static final int IF_ICMPEQ = 0x9f;
+	public static final int IF_ICMPNE = 0xa0;
+	public static final int IF_ICMPLT = 0xa1;
+	public static final int IF_ICMPGE = 0xa2;
+	public static final int IF_ICMPGT = 0xa3;
+	public static final int IF_ICMPLE = 0xa4;
+	public static final int IF_ACMPEQ = 0xa5;
+	public static final int IF_ACMPNE = 0xa6;
+	public static final int GOTO = 0xa7;
+	public static final int IRETURN = 0xac;
+	public static final int ARETURN = 0xb0;
+	public static final int RETURN = 0xb1;
+	public static final int GETFIELD = 0xb4;
+	public static final int PUTFIELD = 0xb5;
+	public static final int INVOKEVIRTUAL = 0xb6;
+	public static final int INVOKESPECIAL = 0xb7;
+	public static final int INVOKESTATIC = 0xb8;
+	public static final int NEW = 0xbb;
+	public static final int NEWARRAY = 0xbc;
+	public static final int ANEWARRAY = 0xbd;
+	public static final int ARRAYLENGTH = 0xbe;
+	public static final int IFNULL = 0xc6;
+	public static final int IFNONNULL = 0xc7;
+
+	// newarray element types
+	public static final int T_BOOLEAN = 4;
+	public static final int T_INT = 10;
+
+	/**
+	 * a branch target
+	 */
+	public static class Label {
+		private int position = -1;
+		// stack depth at the target, -1 if unknown yet
+		private int stackDepth = -1;
+		// positions of the branch instructions (and their offsets) to patch
+		private List<Integer> branches = new ArrayList<Integer>();
+	}
+
+	private ByteArrayOutputStream code = new ByteArrayOutputStream();
+	private ConstantPool pool;
+	private int stackDepth = 0;
+	private int maxStack = 0;
+	private int maxLocals;
+	private boolean reachable = true;
+	// labels that are branched to
+	private List<Label> labels = new ArrayList<Label>();
+
+	/**
+	 * constructor
+	 * @param pool: the constant pool of the class
+	 * @param argumentSlots: the locals taken by 'this' and the parameters
+	 */
+	public Bytecode(ConstantPool pool, int argumentSlots){
+		this.pool = pool;
+		this.maxLocals = argumentSlots;
+	}
+
+	// instructions
+	///////////////
+
+	/**
+	 * a single byte instruction
+	 * @param opcode
+	 * @param stackChange: operand stack depth change
+	 */
+	public void op(int opcode, int stackChange){
+		code.write(opcode);
+		adjustStack(stackChange);
+		if (opcode == GOTO || (opcode >= IRETURN && opcode <= RETURN)) reachable = false;
+	}
+
+	/**
+	 * an instruction with a single byte operand
+	 */
+	public void op1(int opcode, int operand, int stackChange){
+		code.write(opcode);
+		code.write(operand);
+		adjustStack(stackChange);
+	}
+
+	/**
+	 * an instruction with a 16-bit operand (a constant pool index, or sipush)
+	 */
+	public void op2(int opcode, int operand, int stackChange){
+		code.write(opcode);
+		code.write(operand >> 8);
+		code.write(operand);
+		adjustStack(stackChange);
+	}
+
+	public void pushInt(int value){
+		if (value >= -1 && value <= 5) op(ICONST_0+value, 1);
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) op1(BIPUSH, value & 0xff, 1);
+		else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) op2(SIPUSH, value & 0xffff, 1);
+		else ldc(pool.integer(value));
+	}
+
+	public void pushString(String s){
+		ldc(pool.string(s));
+	}
+
+	private void ldc(int index){
+		if (index < 256) op1(LDC, index, 1);
+		else op2(LDC_W, index, 1);
+	}
+
+	/**
+	 * load / store of a local (iload, aload, istore, astore)
+	 */
+	public void local(int opcode, int slot){
+		int change = opcode == ILOAD || opcode == ALOAD ? 1 : -1;
+		if (slot < 4){
+			// iload_0 .. aload_3, istore_0 .. astore_3
+			int base = opcode == ILOAD ? 0x1a : opcode == ALOAD ? 0x2a : opcode == ISTORE ? 0x3b : 0x4b;
+			op(base+slot, change);
+		} else if (slot < 256){
+			op1(opcode, slot, change);
+		} else {
+			code.write(0xc4); // wide
+			op2(opcode, slot, change);
+		}
+		maxLocals = Math.max(maxLocals, slot+1);
+	}
+
+	/**
+	 * allocates a new local, and returns its slot
+	 */
+	public int newLocal(){
+		return maxLocals++;
+	}
+
+	/**
+	 * a branch to a label (goto or a conditional branch)
+	 * @param opcode
+	 * @param target
+	 * @param stackChange
+	 */
+	public void branch(int opcode, Label target, int stackChange){
+		int position = code.size();
+		code.write(opcode);
+		code.write(0);
+		code.write(0);
+		adjustStack(stackChange);
+		if (target.branches.isEmpty()) labels.add(target);
+		target.branches.add(position);
+		if (target.stackDepth < 0) target.stackDepth = stackDepth;
+		if (opcode == GOTO) reachable = false;
+	}
+
+	public Label newLabel(){
+		return new Label();
+	}
+
+	/**
+	 * places a label at the current position
+	 */
+	public void mark(Label label){
+		label.position = code.size();
+		if (!label.branches.isEmpty()){
+			if (!reachable) stackDepth = label.stackDepth;
+			reachable = true;
+		}
+	}
+
+	private void adjustStack(int change){
+		stackDepth += change;
+		maxStack = Math.max(maxStack, stackDepth);
+	}
+
+	// state
+	////////
+
+	public boolean isReachable(){
+		return reachable;
+	}
+
+	public int getStackDepth(){
+		return stackDepth;
+	}
+
+	/**
+	 * returns the Code attribute body of the method (without its name and length)
+	 * @return
+	 * @throws ClassFileError: the method is too large
+	 */
+	public byte[] toCodeAttribute() throws ClassFileError {
+		byte[] bytes = code.toByteArray();
+		if (bytes.length > 0xffff) throw new ClassFileError("method code too large");
+
+		// patch the branch offsets
+		for (Label label: labels){
+			for (int position: label.branches){
+				if (label.position < 0) throw new ClassFileError("branch to an unplaced label");
+				int offset = label.position-position;
+				if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+					throw new ClassFileError("branch offset too large");
+				bytes[position+1] = (byte)(offset >> 8);
+				bytes[position+2] = (byte)offset;
+			}
+		}
+
+		try {
+			ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(attribute);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // attributes
+			return attribute.toByteArray();
+		} catch (IOException e){ // never happens for a byte array stream
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package IC.JVM;
+
+import java.io.*;
+
+/**
+ * ClassFile
+ * =========
+ * writes a class file (version 49, so no stack map frames are needed):
+ * a class with its fields and methods.
+ */
+public class ClassFile {
+
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_SUPER = 0x0020;
+
+	private static final int MAGIC = 0xcafebabe;
+	private static final int MAJOR_VERSION = 49;
+
+	private ConstantPool pool = new ConstantPool();
+	private int thisClass;
+	private int superClass;
+	private ByteArrayOutputStream fields = new ByteArrayOutputStream();
+	private int fieldsCount = 0;
+	private ByteArrayOutputStream methods = new ByteArrayOutputStream();
+	private int methodsCount = 0;
+
+	/**
+	 * constructor
+	 * @param name: internal name of the class
+	 * @param superName: internal name of its super class
+	 */
+	public ClassFile(String name, String superName){
+		thisClass = pool.classRef(name);
+		superClass = pool.classRef(superName);
+	}
+
+	public ConstantPool getConstantPool(){
+		return pool;
+	}
+
+	public void addField(int access, String name, String descriptor){
+		write(fields, access, pool.utf8(name), pool.utf8(descriptor), 0);
+		fieldsCount++;
+	}
+
+	/**
+	 * adds a method with the given code
+	 * @throws ClassFileError
+	 */
+	public void addMethod(int access, String name, String descriptor, Bytecode code) throws ClassFileError {
+		byte[] attribute = code.toCodeAttribute();
+		write(methods, access, pool.utf8(name), pool.utf8(descriptor), 1);
+		write(methods, pool.utf8("Code"));
+		try {
+			new DataOutputStream(methods).writeInt(attribute.length);
+			methods.write(attribute);
+		} catch (IOException e){ // never happens for a byte array stream
+			throw new RuntimeException(e);
+		}
+		methodsCount++;
+	}
+
+	/**
+	 * returns the class file
+	 * @return
+	 */
+	public byte[] toByteArray(){
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeShort(0);
+			out.writeShort(MAJOR_VERSION);
+			pool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(fieldsCount);
+			fields.writeTo(out);
+			out.writeShort(methodsCount);
+			methods.writeTo(out);
+			out.writeShort(0); // attributes
+			return bytes.toByteArray();
+		} catch (IOException e){ // never happens for a byte array stream
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * writes 16-bit values
+	 */
+	private static void write(ByteArrayOutputStream dest, int... values){
+		for (int v: values){
+			dest.write(v >> 8);
+			dest.write(v);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package IC.JVM;
+
+/**
+ * Exception class for programs that do not fit the class file format
+ * (e.g. a method whose code is larger than 64K).
+ *
+ */
+
+public class ClassFileError extends Exception {
+
+	private static final long serialVersionUID = 50L;  /* impl. serializable. */
+
+
+	public ClassFileError(String message) {
+		super(message);
+	}
+
+
+	/**
+	 * Returns error string message.
+	 */
+	@Override
+	public String toString() {
+		return ("class file error: " + super.getMessage());
+	}
+
+}
@@ -0,0 +1,128 @@
+package IC.JVM;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * ConstantPool
+ * ============
+ * the constant pool of a class file. every constant is added once, and
+ * its index is returned to be used by the instructions that refer to it.
+ */
+public class ConstantPool {
+
+	// constant tags
+	private static final int UTF8 = 1;
+	private static final int INTEGER = 3;
+	private static final int CLASS = 7;
+	private static final int STRING = 8;
+	private static final int FIELDREF = 9;
+	private static final int METHODREF = 10;
+	private static final int NAME_AND_TYPE = 12;
+
+	private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private DataOutputStream out = new DataOutputStream(bytes);
+	private Map<String,Integer> indices = new HashMap<String,Integer>();
+	// index of the next constant (indices start at 1)
+	private int next = 1;
+
+	public int utf8(String s){
+		String key = "U"+s;
+		Integer index = indices.get(key);
+		if (index != null) return index;
+		try {
+			out.writeByte(UTF8);
+			out.writeUTF(s);
+		} catch (IOException e){ // never happens for a byte array stream
+			throw new RuntimeException(e);
+		}
+		return add(key);
+	}
+
+	public int integer(int value){
+		String key = "I"+value;
+		Integer index = indices.get(key);
+		if (index != null) return index;
+		write(INTEGER, value >>> 16, value & 0xffff);
+		return add(key);
+	}
+
+	/**
+	 * @param name: internal class name (e.g. java/lang/String) or array descriptor
+	 */
+	public int classRef(String name){
+		String key = "C"+name;
+		Integer index = indices.get(key);
+		if (index != null) return index;
+		int nameIndex = utf8(name);
+		write(CLASS, nameIndex);
+		return add(key);
+	}
+
+	public int string(String s){
+		String key = "S"+s;
+		Integer index = indices.get(key);
+		if (index != null) return index;
+		int utf8Index = utf8(s);
+		write(STRING, utf8Index);
+		return add(key);
+	}
+
+	public int fieldRef(String owner, String name, String descriptor){
+		return memberRef(FIELDREF, owner, name, descriptor);
+	}
+
+	public int methodRef(String owner, String name, String descriptor){
+		return memberRef(METHODREF, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor){
+		String key = tag+owner+"."+name+":"+descriptor;
+		Integer index = indices.get(key);
+		if (index != null) return index;
+		int classIndex = classRef(owner);
+		int nameAndTypeIndex = nameAndType(name, descriptor);
+		write(tag, classIndex, nameAndTypeIndex);
+		return add(key);
+	}
+
+	private int nameAndType(String name, String descriptor){
+		String key = "N"+name+":"+descriptor;
+		Integer index = indices.get(key);
+		if (index != null) return index;
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		write(NAME_AND_TYPE, nameIndex, descriptorIndex);
+		return add(key);
+	}
+
+	/**
+	 * writes a constant made of a tag and 16-bit values
+	 */
+	private void write(int tag, int... values){
+		try {
+			out.writeByte(tag);
+			for (int v: values){
+				out.writeShort(v);
+			}
+		} catch (IOException e){ // never happens for a byte array stream
+			throw new RuntimeException(e);
+		}
+	}
+
+	private int add(String key){
+		if (next > 0xffff) throw new IllegalStateException("constant pool overflow");
+		indices.put(key, next);
+		return next++;
+	}
+
+	/**
+	 * writes the constant pool count and entries
+	 * @param dest
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutputStream dest) throws IOException {
+		dest.writeShort(next);
+		bytes.writeTo(dest);
+	}
+}
@@ -0,0 +1,180 @@
+package IC.JVM;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * ICRuntime
+ * =========
+ * the Library methods of IC programs compiled to JVM classes, bound by
+ * the JVMTranslator with invokestatic. the methods follow libic.sig, with
+ * strings as java.lang.String and arrays as Java arrays, and behave as
+ * the library of the LIR interpreter.
+ *
+ * a program runs with one input and output at a time (see JVMRunner).
+ */
+public final class ICRuntime {
+
+	/**
+	 * thrown by exit() to end the program
+	 */
+	public static class Exit extends Error {
+		private static final long serialVersionUID = 51L;
+
+		private int code;
+
+		public Exit(int code){
+			this.code = code;
+		}
+
+		public int getCode(){
+			return code;
+		}
+	}
+
+	private static PrintStream out = System.out;
+	private static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	private static Random random = new Random();
+	private static long startTime = System.currentTimeMillis();
+
+	private ICRuntime(){
+	}
+
+	/**
+	 * sets the input and output of the next program to run
+	 * @param input
+	 * @param output
+	 */
+	public static void init(InputStream input, PrintStream output){
+		in = new BufferedReader(new InputStreamReader(input));
+		out = output;
+		startTime = System.currentTimeMillis();
+	}
+
+	public static void flush(){
+		out.flush();
+	}
+
+	// output
+	/////////
+
+	public static void println(String s){
+		out.print(s);
+		out.print('\n');
+	}
+
+	public static void print(String s){
+		out.print(s);
+	}
+
+	public static void printi(int i){
+		out.print(i);
+	}
+
+	public static void printb(boolean b){
+		out.print(b);
+	}
+
+	// input
+	////////
+
+	/**
+	 * reads a whitespace-delimited integer (0 if none)
+	 */
+	public static int readi(){
+		try {
+			StringBuilder sb = new StringBuilder();
+			int c;
+			while ((c = in.read()) != -1 && Character.isWhitespace(c));
+			while (c != -1 && !Character.isWhitespace(c)){
+				sb.append((char)c);
+				c = in.read();
+			}
+			return Integer.parseInt(sb.toString());
+		} catch (IOException e){
+			return 0;
+		} catch (NumberFormatException e){
+			return 0;
+		}
+	}
+
+	/**
+	 * reads a line, null at end of file
+	 */
+	public static String readln(){
+		try {
+			return in.readLine();
+		} catch (IOException e){
+			return null;
+		}
+	}
+
+	public static boolean eof(){
+		try {
+			in.mark(1);
+			int c = in.read();
+			if (c == -1) return true;
+			in.reset();
+			return false;
+		} catch (IOException e){
+			return true;
+		}
+	}
+
+	// conversions
+	//////////////
+
+	public static int stoi(String s, int n){
+		try {
+			return Integer.parseInt(String.valueOf(s).trim());
+		} catch (NumberFormatException e){
+			return n;
+		}
+	}
+
+	public static String itos(int i){
+		return Integer.toString(i);
+	}
+
+	public static int[] stoa(String s){
+		s = String.valueOf(s);
+		int[] a = new int[s.length()];
+		for (int i = 0; i < a.length; i++){
+			a[i] = s.charAt(i);
+		}
+		return a;
+	}
+
+	public static String atos(int[] a){
+		char[] chars = new char[a.length];
+		for (int i = 0; i < a.length; i++){
+			chars[i] = (char)a[i];
+		}
+		return new String(chars);
+	}
+
+	// system
+	/////////
+
+	public static int random(int n){
+		return n > 0 ? random.nextInt(n) : 0;
+	}
+
+	public static int time(){
+		return (int)(System.currentTimeMillis()-startTime);
+	}
+
+	public static int exit(int i){
+		throw new Exit(i);
+	}
+
+	// internal helpers
+	///////////////////
+
+	/**
+	 * string concatenation (+), null is concatenated as "null"
+	 */
+	public static String stringCat(String s1, String s2){
+		return String.valueOf(s1).concat(String.valueOf(s2));
+	}
+}
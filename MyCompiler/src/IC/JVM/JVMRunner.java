@@ -0,0 +1,136 @@
+package IC.JVM;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * JVMRunner
+ * =========
+ * runs IC programs compiled by the JVMTranslator, in process:
+ * - the program's classes are defined by a class loader of their own.
+ * - main runs on a thread with a large stack, so deep recursion behaves
+ *   as in the LIR interpreter.
+ * - the JVM's exceptions are reported with the messages of the LIR runtime
+ *   checks, and end the program as _error_exit does (exit code 0).
+ *
+ * usage: java IC.JVM.JVMRunner <main class>
+ * (with the program's classes on the class path)
+ */
+public class JVMRunner {
+
+	private static final long STACK_SIZE = 1L << 30;
+
+	/**
+	 * defines the classes of a compiled program
+	 */
+	private static class ProgramClassLoader extends ClassLoader {
+		private Map<String,byte[]> classFiles;
+
+		ProgramClassLoader(Map<String,byte[]> classFiles){
+			super(JVMRunner.class.getClassLoader());
+			this.classFiles = classFiles;
+		}
+
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] b = classFiles.get(name);
+			if (b == null) throw new ClassNotFoundException(name);
+			return defineClass(name, b, 0, b.length);
+		}
+	}
+
+	/**
+	 * runs a compiled program and returns its exit code
+	 * @param classFiles: the program's class files by binary name
+	 * @param mainClass: binary name of the class with the main method
+	 * @param input
+	 * @param output
+	 * @return
+	 */
+	public static int run(Map<String,byte[]> classFiles, String mainClass, InputStream input, PrintStream output){
+		return run(new ProgramClassLoader(classFiles), mainClass, input, output);
+	}
+
+	/**
+	 * runs the main method of mainClass, loaded by loader, and returns the
+	 * program's exit code
+	 */
+	public static int run(ClassLoader loader, String mainClass, InputStream input, PrintStream output){
+		final Method main;
+		try {
+			main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+		} catch (ClassNotFoundException e){
+			output.println("Error: main class not found: "+mainClass);
+			return 1;
+		} catch (NoSuchMethodException e){
+			output.println("Error: no main method in class: "+mainClass);
+			return 1;
+		}
+
+		ICRuntime.init(input, output);
+		final int[] exitCode = new int[1];
+		final Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, new Runnable(){
+			public void run(){
+				try {
+					main.invoke(null, (Object) new String[0]);
+				} catch (InvocationTargetException e){
+					failure[0] = e.getCause();
+				} catch (IllegalAccessException e){
+					failure[0] = e;
+				}
+			}
+		}, "ic-main", STACK_SIZE);
+		thread.start();
+		try {
+			thread.join();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+
+		ICRuntime.flush();
+		if (failure[0] != null){
+			exitCode[0] = reportFailure(failure[0], output);
+			output.flush();
+		}
+		return exitCode[0];
+	}
+
+	/**
+	 * reports an exception of the program and returns the exit code
+	 * (also used by the AST interpreter, which shares the Java runtime errors)
+	 */
+	public static int reportFailure(Throwable t, PrintStream output){
+		if (t instanceof ICRuntime.Exit){
+			return ((ICRuntime.Exit) t).getCode();
+		} else if (t instanceof NullPointerException){
+			output.print("Runtime Error: Null pointer dereference!\n");
+		} else if (t instanceof ArrayIndexOutOfBoundsException){
+			output.print("Runtime Error: Array index out of bounds!\n");
+		} else if (t instanceof NegativeArraySizeException){
+			output.print("Runtime Error: Array allocation with negative array size!\n");
+		} else if (t instanceof ArithmeticException){
+			output.print("Runtime Error: Division by zero!\n");
+		} else if (t instanceof StackOverflowError){
+			output.print("Runtime Error: Stack overflow!\n");
+			return 1;
+		} else {
+			output.print("Runtime Error: "+t+"\n");
+			return 1;
+		}
+		// the LIR runtime checks exit through _error_exit
+		return 0;
+	}
+
+	public static void main(String[] args){
+		if (args.length != 1){
+			System.out.println("usage: java IC.JVM.JVMRunner <main class>");
+			System.exit(1);
+		}
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+		int code = run(JVMRunner.class.getClassLoader(), args[0], System.in, out);
+		out.flush();
+		System.exit(code);
+	}
+}
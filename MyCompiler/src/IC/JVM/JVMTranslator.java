@@ -0,0 +1,754 @@
+package IC.JVM;
+
+import java.util.*;
+
+import IC.BinaryOps;
+import IC.LiteralTypes;
+import IC.UnaryOps;
+import IC.AST.*;
+import IC.JVM.Bytecode.Label;
+import IC.Simulator.LIRLoader;
+import IC.SymbolTable.BlockSymbolTable;
+import IC.SymbolTable.ClassSymbolTable;
+import IC.SymbolTable.GlobalSymbolTable;
+import IC.SymbolTable.Kind;
+import IC.SymbolTable.MethodSymbol;
+import IC.SymbolTable.Symbol;
+import IC.TypeTable.MethodType;
+import IC.TypeTable.SemanticError;
+
+/**
+ * JVMTranslator
+ * =============
+ * compiles a checked IC program to JVM class files:
+ * - every ICClass is a public class in the package "icprogram", extending
+ *   its super class (or java.lang.Object), with a public field per field.
+ * - virtual methods are instance methods (called by invokevirtual), static
+ *   methods are static methods (called by invokestatic), and the main method
+ *   is the class's Java main method.
+ * - Library calls are bound to the static methods of ICRuntime.
+ * - types: int is I, boolean is Z, string is java.lang.String and arrays
+ *   are Java arrays.
+ * - runtime errors are the JVM's own exceptions (null references, array
+ *   bounds, negative sizes, division by zero), reported by the JVMRunner
+ *   with the messages of the LIR runtime checks.
+ *
+ * the evaluation order is the LIR translation's: the assigned value is
+ * computed before its location, and && and || short-circuit.
+ *
+ * every expression visitor leaves the value on the operand stack and
+ * returns its type name; statement visitors return null.
+ */
+public class JVMTranslator implements Visitor {
+
+	// package of the program classes (internal name prefix)
+	public static final String PACKAGE = "icprogram/";
+	private static final String RUNTIME = "IC/JVM/ICRuntime";
+	private static final String STRING = "java/lang/String";
+	private static final String OBJECT = "java/lang/Object";
+
+	private GlobalSymbolTable global;
+	// class binary name -> class file
+	private Map<String,byte[]> classFiles = new LinkedHashMap<String,byte[]>();
+	private String mainClass = null;
+	private ClassFileError error = null;
+
+	// current class
+	private ICClass currClass;
+	private ClassFile classFile;
+	private ConstantPool pool;
+	// current method
+	private Bytecode code;
+	private String currReturnType;
+	private Map<Symbol,Integer> locals = new IdentityHashMap<Symbol,Integer>();
+	private Deque<Label> breakLabels = new ArrayDeque<Label>();
+	private Deque<Label> continueLabels = new ArrayDeque<Label>();
+
+	/**
+	 * constructor
+	 * @param global: the program's global symbol table
+	 */
+	public JVMTranslator(GlobalSymbolTable global){
+		this.global = global;
+	}
+
+	/**
+	 * compiles the program, and returns its class files by class binary name
+	 * @param program
+	 * @return
+	 * @throws ClassFileError
+	 */
+	public Map<String,byte[]> translate(Program program) throws ClassFileError {
+		program.accept(this);
+		if (error != null) throw error;
+		return classFiles;
+	}
+
+	/**
+	 * returns the binary name of the class with the main method
+	 */
+	public String getMainClass(){
+		return mainClass;
+	}
+
+	// descriptors
+	//////////////
+
+	/**
+	 * returns the JVM descriptor of an IC type name (e.g. int[] is [I)
+	 */
+	public static String descriptor(String typeName){
+		String prefix = "";
+		while (typeName.endsWith("[]")){
+			prefix += "[";
+			typeName = typeName.substring(0, typeName.length()-2);
+		}
+		if (typeName.equals("int")) return prefix+"I";
+		if (typeName.equals("boolean")) return prefix+"Z";
+		if (typeName.equals("void")) return prefix+"V";
+		if (typeName.equals("string")) return prefix+"L"+STRING+";";
+		return prefix+"L"+PACKAGE+typeName+";";
+	}
+
+	/**
+	 * returns the JVM descriptor of a method type
+	 */
+	private static String descriptor(MethodType type){
+		String desc = "(";
+		for (IC.TypeTable.Type t: type.getParamsTypes()){
+			desc += descriptor(t.getName());
+		}
+		return desc+")"+descriptor(type.getReturnType().getName());
+	}
+
+	/**
+	 * returns the class reference name of a (class, string or array) type
+	 */
+	private static String classRefName(String typeName){
+		if (typeName.endsWith("[]")) return descriptor(typeName);
+		if (typeName.equals("string")) return STRING;
+		return PACKAGE+typeName;
+	}
+
+	/**
+	 * true for the types held in int locals and int stack values
+	 */
+	private static boolean isIntType(String typeName){
+		return typeName.equals("int") || typeName.equals("boolean");
+	}
+
+	private ClassSymbolTable classTable(String name){
+		try {
+			return global.lookupCST(name);
+		} catch (SemanticError e){ // never happens after the semantic checks
+			throw new IllegalStateException(e.toString());
+		}
+	}
+
+	private static MethodSymbol methodSymbol(ClassSymbolTable cst, String name){
+		try {
+			return (MethodSymbol) cst.getMethod(name);
+		} catch (SemanticError e){ // never happens after the semantic checks
+			throw new IllegalStateException(e.toString());
+		}
+	}
+
+	// program structure
+	////////////////////
+
+	public Object visit(Program program){
+		for (ICClass c: program.getClasses()){
+			// skip library method
+			if (c.getName().equals("Library")) continue;
+			c.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * ICClass visitor: creates the class file with the fields, a default
+	 * constructor and the methods
+	 */
+	public Object visit(ICClass icClass){
+		currClass = icClass;
+		String superName = icClass.hasSuperClass() ? PACKAGE+icClass.getSuperClassName() : OBJECT;
+		classFile = new ClassFile(PACKAGE+icClass.getName(), superName);
+		pool = classFile.getConstantPool();
+
+		for (Field f: icClass.getFields()){
+			classFile.addField(ClassFile.ACC_PUBLIC, f.getName(), descriptor(f.getType().toString()));
+		}
+
+		// default constructor
+		code = new Bytecode(pool, 1);
+		code.local(Bytecode.ALOAD, 0);
+		code.op2(Bytecode.INVOKESPECIAL, pool.methodRef(superName, "<init>", "()V"), -1);
+		code.op(Bytecode.RETURN, 0);
+		addMethod(ClassFile.ACC_PUBLIC, "<init>", "()V");
+
+		for (Method m: icClass.getMethods()){
+			m.accept(this);
+		}
+
+		classFiles.put((PACKAGE+icClass.getName()).replace('/', '.'), classFile.toByteArray());
+		return null;
+	}
+
+	public Object visit(Field field){
+		return null;
+	}
+
+	public Object visit(VirtualMethod method){
+		methodVisitHelper(method, false);
+		return null;
+	}
+
+	public Object visit(StaticMethod method){
+		methodVisitHelper(method, true);
+		return null;
+	}
+
+	public Object visit(LibraryMethod method){
+		return null;
+	}
+
+	/**
+	 * compiles a method: parameters are the first locals (after 'this'),
+	 * and a method that can fall off its end returns a default value
+	 */
+	private void methodVisitHelper(Method method, boolean isStatic){
+		MethodSymbol ms = methodSymbol(classTable(currClass.getName()), method.getName());
+		MethodType type = (MethodType) ms.getType();
+		currReturnType = type.getReturnType().getName();
+
+		// check if this method is the program's main method
+		if (isStatic && method.getName().equals("main") && currReturnType.equals("void") &&
+			method.getFormals().size() == 1 && method.getFormals().get(0).getType().toString().equals("string[]")){
+			mainClass = (PACKAGE+currClass.getName()).replace('/', '.');
+		}
+
+		locals.clear();
+		int slot = isStatic ? 0 : 1;
+		for (Formal f: method.getFormals()){
+			locals.put(f.getEnclosingScope().lookup(f.getIdentifier()), slot++);
+		}
+		code = new Bytecode(pool, slot);
+
+		statementsVisit(method.getStatements());
+
+		if (code.isReachable()){
+			if (currReturnType.equals("void")){
+				code.op(Bytecode.RETURN, 0);
+			} else if (isIntType(currReturnType)){
+				code.pushInt(0);
+				code.op(Bytecode.IRETURN, -1);
+			} else {
+				code.op(Bytecode.ACONST_NULL, 1);
+				code.op(Bytecode.ARETURN, -1);
+			}
+		}
+
+		int access = ClassFile.ACC_PUBLIC | (isStatic ? ClassFile.ACC_STATIC : 0);
+		addMethod(access, method.getName(), descriptor(type));
+	}
+
+	private void addMethod(int access, String name, String descriptor){
+		try {
+			classFile.addMethod(access, name, descriptor, code);
+		} catch (ClassFileError e){
+			if (error == null) error = new ClassFileError(e.getMessage()+" in "+currClass.getName()+"."+name);
+		}
+	}
+
+	public Object visit(Formal formal){
+		return null;
+	}
+
+	public Object visit(PrimitiveType type){
+		return null;
+	}
+
+	public Object visit(UserType type){
+		return null;
+	}
+
+	// statements
+	/////////////
+
+	/**
+	 * compiles a list of statements, stopping at unreachable code
+	 */
+	private void statementsVisit(List<Statement> statements){
+		for (Statement s: statements){
+			if (!code.isReachable()) break;
+			s.accept(this);
+		}
+	}
+
+	/**
+	 * Assignment visitor: the value is computed before the location.
+	 * for fields and array elements, a value that may have side effects
+	 * is kept in a temporary local until the location is computed
+	 */
+	public Object visit(Assignment assignment){
+		Location location = assignment.getVariable();
+		Expression value = assignment.getAssignment();
+
+		if (location instanceof VariableLocation && !((VariableLocation) location).isExternal()){
+			VariableLocation var = (VariableLocation) location;
+			Symbol symbol = var.getVarDeclarationScope().lookup(var.getIdentifier());
+			if (symbol.getKind() != Kind.FIELD){
+				value.accept(this);
+				storeLocal(locals.get(symbol), symbol.getType().getName());
+				return null;
+			}
+		}
+
+		if (isSimple(value)){
+			String type = locationVisit(location);
+			value.accept(this);
+			storeLocation(location, type);
+		} else {
+			String valueType = (String) value.accept(this);
+			int tmp = code.newLocal();
+			storeLocal(tmp, valueType);
+			String type = locationVisit(location);
+			loadLocal(tmp, valueType);
+			storeLocation(location, type);
+		}
+		return null;
+	}
+
+	/**
+	 * true for values whose evaluation cannot be affected by computing a location
+	 */
+	private static boolean isSimple(Expression e){
+		if (e instanceof ExpressionBlock) return isSimple(((ExpressionBlock) e).getExpression());
+		if (e instanceof Literal || e instanceof This) return true;
+		if (e instanceof VariableLocation){
+			VariableLocation var = (VariableLocation) e;
+			return !var.isExternal() && var.getVarDeclarationScope().lookup(var.getIdentifier()).getKind() != Kind.FIELD;
+		}
+		return false;
+	}
+
+	/**
+	 * pushes the object (or array and index) of a field (or array element)
+	 * location. returns the field's class name, or the array's element type
+	 */
+	private String locationVisit(Location location){
+		if (location instanceof ArrayLocation){
+			ArrayLocation arr = (ArrayLocation) location;
+			String arrayType = (String) arr.getArray().accept(this);
+			arr.getIndex().accept(this);
+			return arrayType.substring(0, arrayType.length()-2);
+		}
+		VariableLocation var = (VariableLocation) location;
+		if (var.isExternal()) return (String) var.getLocation().accept(this);
+		code.local(Bytecode.ALOAD, 0);
+		return currClass.getName();
+	}
+
+	/**
+	 * stores the value on the stack to a field or array element location,
+	 * after locationVisit
+	 */
+	private void storeLocation(Location location, String locationType){
+		if (location instanceof ArrayLocation){
+			String type = locationType;
+			int op = type.equals("int") ? Bytecode.IASTORE : type.equals("boolean") ? Bytecode.BASTORE : Bytecode.AASTORE;
+			code.op(op, -3);
+		} else {
+			String name = ((VariableLocation) location).getName();
+			String type = classTable(locationType).lookup(name).getType().getName();
+			code.op2(Bytecode.PUTFIELD, pool.fieldRef(PACKAGE+locationType, name, descriptor(type)), -2);
+		}
+	}
+
+	private void storeLocal(int slot, String type){
+		code.local(isIntType(type) ? Bytecode.ISTORE : Bytecode.ASTORE, slot);
+	}
+
+	private void loadLocal(int slot, String type){
+		code.local(isIntType(type) ? Bytecode.ILOAD : Bytecode.ALOAD, slot);
+	}
+
+	public Object visit(CallStatement callStatement){
+		String type = (String) callStatement.getCall().accept(this);
+		if (!type.equals("void")) code.op(Bytecode.POP, -1);
+		return null;
+	}
+
+	public Object visit(Return returnStatement){
+		if (returnStatement.hasValue()){
+			returnStatement.getValue().accept(this);
+			code.op(isIntType(currReturnType) ? Bytecode.IRETURN : Bytecode.ARETURN, -1);
+		} else {
+			code.op(Bytecode.RETURN, 0);
+		}
+		return null;
+	}
+
+	public Object visit(If ifStatement){
+		Label elseLabel = code.newLabel();
+		conditionVisit(ifStatement.getCondition(), false, elseLabel);
+		ifStatement.getOperation().accept(this);
+		if (ifStatement.hasElse()){
+			Label end = code.newLabel();
+			if (code.isReachable()) code.branch(Bytecode.GOTO, end, 0);
+			code.mark(elseLabel);
+			ifStatement.getElseOperation().accept(this);
+			code.mark(end);
+		} else {
+			code.mark(elseLabel);
+		}
+		return null;
+	}
+
+	public Object visit(While whileStatement){
+		Label start = code.newLabel();
+		Label end = code.newLabel();
+		code.mark(start);
+		conditionVisit(whileStatement.getCondition(), false, end);
+		breakLabels.push(end);
+		continueLabels.push(start);
+		whileStatement.getOperation().accept(this);
+		breakLabels.pop();
+		continueLabels.pop();
+		if (code.isReachable()) code.branch(Bytecode.GOTO, start, 0);
+		code.mark(end);
+		return null;
+	}
+
+	public Object visit(Break breakStatement){
+		code.branch(Bytecode.GOTO, breakLabels.peek(), 0);
+		return null;
+	}
+
+	public Object visit(Continue continueStatement){
+		code.branch(Bytecode.GOTO, continueLabels.peek(), 0);
+		return null;
+	}
+
+	public Object visit(StatementsBlock statementsBlock){
+		statementsVisit(statementsBlock.getStatements());
+		return null;
+	}
+
+	/**
+	 * LocalVariable visitor: every local variable gets its own slot, and is
+	 * initialized (to its default value if it has no initial value)
+	 */
+	public Object visit(LocalVariable localVariable){
+		Symbol symbol = localVariable.getEnclosingScope().lookup(localVariable.getIdentifier());
+		String type = symbol.getType().getName();
+		if (localVariable.hasInitValue()){
+			localVariable.getInitValue().accept(this);
+		} else if (isIntType(type)){
+			code.pushInt(0);
+		} else {
+			code.op(Bytecode.ACONST_NULL, 1);
+		}
+		int slot = code.newLocal();
+		locals.put(symbol, slot);
+		storeLocal(slot, type);
+		return null;
+	}
+
+	// expressions
+	//////////////
+
+	public Object visit(VariableLocation location){
+		if (location.isExternal()){
+			String owner = (String) location.getLocation().accept(this);
+			String type = classTable(owner).lookup(location.getIdentifier()).getType().getName();
+			code.op2(Bytecode.GETFIELD, pool.fieldRef(PACKAGE+owner, location.getName(), descriptor(type)), 0);
+			return type;
+		}
+
+		Symbol symbol = location.getVarDeclarationScope().lookup(location.getIdentifier());
+		String type = symbol.getType().getName();
+		if (symbol.getKind() == Kind.FIELD){
+			code.local(Bytecode.ALOAD, 0);
+			code.op2(Bytecode.GETFIELD, pool.fieldRef(PACKAGE+currClass.getName(), location.getName(), descriptor(type)), 0);
+		} else {
+			loadLocal(locals.get(symbol), type);
+		}
+		return type;
+	}
+
+	public Object visit(ArrayLocation location){
+		String arrayType = (String) location.getArray().accept(this);
+		location.getIndex().accept(this);
+		String type = arrayType.substring(0, arrayType.length()-2);
+		int op = type.equals("int") ? Bytecode.IALOAD : type.equals("boolean") ? Bytecode.BALOAD : Bytecode.AALOAD;
+		code.op(op, -1);
+		return type;
+	}
+
+	/**
+	 * StaticCall visitor: Library methods are ICRuntime methods
+	 */
+	public Object visit(StaticCall call){
+		String owner = call.getClassName().equals("Library") ? RUNTIME : PACKAGE+call.getClassName();
+		MethodSymbol ms = methodSymbol(classTable(call.getClassName()), call.getName());
+		return invoke(Bytecode.INVOKESTATIC, owner, call, (MethodType) ms.getType());
+	}
+
+	/**
+	 * VirtualCall visitor: an unqualified call may also be a call to a static
+	 * method of the enclosing class
+	 */
+	public Object visit(VirtualCall call){
+		if (call.isExternal()){
+			String owner = (String) call.getLocation().accept(this);
+			MethodSymbol ms = methodSymbol(classTable(owner), call.getName());
+			return invoke(Bytecode.INVOKEVIRTUAL, PACKAGE+owner, call, (MethodType) ms.getType());
+		}
+
+		ClassSymbolTable cst = ((BlockSymbolTable) call.getEnclosingScope()).getEnclosingCST();
+		MethodSymbol ms = methodSymbol(cst, call.getName());
+		String owner = PACKAGE+cst.getMyClassSymbol().getID();
+		if (ms.isStaticMethod()){
+			return invoke(Bytecode.INVOKESTATIC, owner, call, (MethodType) ms.getType());
+		}
+		code.local(Bytecode.ALOAD, 0);
+		return invoke(Bytecode.INVOKEVIRTUAL, owner, call, (MethodType) ms.getType());
+	}
+
+	/**
+	 * pushes the call arguments and invokes the method (the receiver, if any,
+	 * is already on the stack)
+	 */
+	private String invoke(int opcode, String owner, Call call, MethodType type){
+		for (Expression arg: call.getArguments()){
+			arg.accept(this);
+		}
+		String returnType = type.getReturnType().getName();
+		int stackChange = -call.getArguments().size()+(returnType.equals("void") ? 0 : 1);
+		if (opcode == Bytecode.INVOKEVIRTUAL) stackChange--;
+		code.op2(opcode, pool.methodRef(owner, call.getName(), descriptor(type)), stackChange);
+		return returnType;
+	}
+
+	public Object visit(This thisExpression){
+		code.local(Bytecode.ALOAD, 0);
+		return ((BlockSymbolTable) thisExpression.getEnclosingScope()).getEnclosingCST().getMyClassSymbol().getID();
+	}
+
+	public Object visit(NewClass newClass){
+		String name = PACKAGE+newClass.getName();
+		code.op2(Bytecode.NEW, pool.classRef(name), 1);
+		code.op(Bytecode.DUP, 1);
+		code.op2(Bytecode.INVOKESPECIAL, pool.methodRef(name, "<init>", "()V"), -1);
+		return newClass.getName();
+	}
+
+	public Object visit(NewArray newArray){
+		String elemType = newArray.getType().toString();
+		newArray.getSize().accept(this);
+		if (elemType.equals("int")){
+			code.op1(Bytecode.NEWARRAY, Bytecode.T_INT, 0);
+		} else if (elemType.equals("boolean")){
+			code.op1(Bytecode.NEWARRAY, Bytecode.T_BOOLEAN, 0);
+		} else {
+			code.op2(Bytecode.ANEWARRAY, pool.classRef(classRefName(elemType)), 0);
+		}
+		return elemType+"[]";
+	}
+
+	public Object visit(Length length){
+		length.getArray().accept(this);
+		code.op(Bytecode.ARRAYLENGTH, 0);
+		return "int";
+	}
+
+	/**
+	 * MathBinaryOp visitor: + of strings is ICRuntime.stringCat
+	 */
+	public Object visit(MathBinaryOp binaryOp){
+		String type1 = (String) binaryOp.getFirstOperand().accept(this);
+		String type2 = (String) binaryOp.getSecondOperand().accept(this);
+
+		switch (binaryOp.getOperator()){
+		case PLUS:
+			if (!isIntType(type1) || !isIntType(type2)){
+				String desc = "(L"+STRING+";L"+STRING+";)L"+STRING+";";
+				code.op2(Bytecode.INVOKESTATIC, pool.methodRef(RUNTIME, "stringCat", desc), -1);
+				return "string";
+			}
+			code.op(Bytecode.IADD, -1);
+			break;
+		case MINUS:
+			code.op(Bytecode.ISUB, -1);
+			break;
+		case MULTIPLY:
+			code.op(Bytecode.IMUL, -1);
+			break;
+		case DIVIDE:
+			code.op(Bytecode.IDIV, -1);
+			break;
+		case MOD:
+			code.op(Bytecode.IREM, -1);
+			break;
+		default:
+			throw new IllegalStateException("not a math operator: "+binaryOp.getOperator());
+		}
+		return "int";
+	}
+
+	/**
+	 * LogicalBinaryOp visitor: the value of a condition is computed by branches
+	 */
+	public Object visit(LogicalBinaryOp binaryOp){
+		booleanValue(binaryOp);
+		return "boolean";
+	}
+
+	public Object visit(MathUnaryOp unaryOp){
+		Expression operand = unaryOp.getOperand();
+		if (operand instanceof Literal && ((Literal) operand).getType() == LiteralTypes.INTEGER){
+			// -2147483648 is only valid as a negated literal
+			code.pushInt(Integer.parseInt("-"+((Literal) operand).getValue()));
+		} else {
+			operand.accept(this);
+			code.op(Bytecode.INEG, 0);
+		}
+		return "int";
+	}
+
+	public Object visit(LogicalUnaryOp unaryOp){
+		unaryOp.getOperand().accept(this);
+		code.pushInt(1);
+		code.op(Bytecode.IXOR, -1);
+		return "boolean";
+	}
+
+	public Object visit(Literal literal){
+		switch (literal.getType()){
+		case INTEGER:
+			code.pushInt((int) Long.parseLong(literal.getValue().toString()));
+			return "int";
+		case STRING:
+			String s = literal.getValue().toString();
+			code.pushString(LIRLoader.unescape(s.substring(1, s.length()-1)));
+			return "string";
+		case TRUE:
+			code.pushInt(1);
+			return "boolean";
+		case FALSE:
+			code.pushInt(0);
+			return "boolean";
+		default:
+			code.op(Bytecode.ACONST_NULL, 1);
+			return "null";
+		}
+	}
+
+	public Object visit(ExpressionBlock expressionBlock){
+		return expressionBlock.getExpression().accept(this);
+	}
+
+	// conditions
+	/////////////
+
+	/**
+	 * pushes the boolean value of a condition
+	 */
+	private void booleanValue(Expression e){
+		Label falseLabel = code.newLabel();
+		Label end = code.newLabel();
+		conditionVisit(e, false, falseLabel);
+		code.pushInt(1);
+		code.branch(Bytecode.GOTO, end, 0);
+		code.mark(falseLabel);
+		code.pushInt(0);
+		code.mark(end);
+	}
+
+	/**
+	 * branches to target if the condition evaluates to jumpIf,
+	 * and falls through otherwise
+	 * @param e
+	 * @param jumpIf
+	 * @param target
+	 */
+	private void conditionVisit(Expression e, boolean jumpIf, Label target){
+		if (e instanceof ExpressionBlock){
+			conditionVisit(((ExpressionBlock) e).getExpression(), jumpIf, target);
+			return;
+		}
+		if (e instanceof LogicalUnaryOp && ((LogicalUnaryOp) e).getOperator() == UnaryOps.LNEG){
+			conditionVisit(((LogicalUnaryOp) e).getOperand(), !jumpIf, target);
+			return;
+		}
+		if (e instanceof Literal && (((Literal) e).getType() == LiteralTypes.TRUE || ((Literal) e).getType() == LiteralTypes.FALSE)){
+			if ((((Literal) e).getType() == LiteralTypes.TRUE) == jumpIf) code.branch(Bytecode.GOTO, target, 0);
+			return;
+		}
+		if (!(e instanceof LogicalBinaryOp)){
+			e.accept(this);
+			code.branch(jumpIf ? Bytecode.IFNE : Bytecode.IFEQ, target, -1);
+			return;
+		}
+
+		LogicalBinaryOp op = (LogicalBinaryOp) e;
+		Expression e1 = op.getFirstOperand();
+		Expression e2 = op.getSecondOperand();
+		BinaryOps operator = op.getOperator();
+
+		if (operator == BinaryOps.LAND || operator == BinaryOps.LOR){
+			// jump on the first operand when it decides the result
+			boolean decidingValue = operator == BinaryOps.LOR;
+			if (jumpIf == decidingValue){
+				conditionVisit(e1, jumpIf, target);
+				conditionVisit(e2, jumpIf, target);
+			} else {
+				Label skip = code.newLabel();
+				conditionVisit(e1, decidingValue, skip);
+				conditionVisit(e2, jumpIf, target);
+				code.mark(skip);
+			}
+			return;
+		}
+
+		// comparison
+		boolean equality = operator == BinaryOps.EQUAL || operator == BinaryOps.NEQUAL;
+		if (!jumpIf) operator = negate(operator);
+		String type1 = (String) e1.accept(this);
+		if (equality && isNullLiteral(e2)){
+			code.branch(operator == BinaryOps.EQUAL ? Bytecode.IFNULL : Bytecode.IFNONNULL, target, -1);
+			return;
+		}
+		String type2 = (String) e2.accept(this);
+		if (equality && !(isIntType(type1) && isIntType(type2))){
+			code.branch(operator == BinaryOps.EQUAL ? Bytecode.IF_ACMPEQ : Bytecode.IF_ACMPNE, target, -2);
+			return;
+		}
+		int opcode;
+		switch (operator){
+		case EQUAL: opcode = Bytecode.IF_ICMPEQ; break;
+		case NEQUAL: opcode = Bytecode.IF_ICMPNE; break;
+		case LT: opcode = Bytecode.IF_ICMPLT; break;
+		case LTE: opcode = Bytecode.IF_ICMPLE; break;
+		case GT: opcode = Bytecode.IF_ICMPGT; break;
+		default: opcode = Bytecode.IF_ICMPGE;
+		}
+		code.branch(opcode, target, -2);
+	}
+
+	private static BinaryOps negate(BinaryOps operator){
+		switch (operator){
+		case EQUAL: return BinaryOps.NEQUAL;
+		case NEQUAL: return BinaryOps.EQUAL;
+		case LT: return BinaryOps.GTE;
+		case LTE: return BinaryOps.GT;
+		case GT: return BinaryOps.LTE;
+		default: return BinaryOps.LT;
+		}
+	}
+
+	private static boolean isNullLiteral(Expression e){
+		return e instanceof Literal && ((Literal) e).getType() == LiteralTypes.NULL;
+	}
+}
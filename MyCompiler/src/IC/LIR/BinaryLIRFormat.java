@@ -0,0 +1,98 @@
+package IC.LIR;
+
+import IC.Simulator.LIRProgram;
+
+/**
+ * BinaryLIRFormat
+ * ===============
+ * the binary LIR object format (.lirb), written by BinaryLIRWriter and read by
+ * BinaryLIRReader. all numbers are unsigned LEB128 varints unless noted.
+ *
+ * file layout:
+ * 		header:				magic "ICLB" (4 bytes), version
+ * 		constant pool:		count, then every entry: byte length, UTF-8 bytes.
+ * 							holds every name: literal, dispatch table, label, register,
+ * 							variable, formal and library method names, and the literal values.
+ * 		string literals:	count, then every literal: name, value (pool indices, the value
+ * 							as written in the LIR text, escapes included)
+ * 		dispatch tables:	count, then every table: name (pool index), entries count,
+ * 							entries (symbol indices)
+ * 		symbols:			count, then every label in the text order: name (pool index),
+ * 							instruction index, flags (METHOD_ENTRY)
+ * 		code:				byte size, instruction count, then the instructions
+ *
+ * instruction: opcode byte (the LIRProgram opcode), then its operands:
+ * 		Jump*:				target symbol
+ * 		Library:			method name (pool index), arguments, target
+ * 		StaticCall:			callee symbol, arguments, target
+ * 		VirtualCall:		receiver, method offset, site id+1 (0: none), site name (pool
+ * 							index+1, 0: none), arguments, target
+ * 		other instructions:	their operands in the LIRProgram order (see OPERAND_COUNTS)
+ * 		arguments:			count, then every argument: formal name (pool index+1, 0: none),
+ * 							operand
+ * operand: kind byte (the LIRProgram operand kinds, NAME for SLOT), then its value:
+ * 		IMM: the zigzag encoded value. NAME: pool index. STR: literal index. DV: table index.
+ */
+public class BinaryLIRFormat {
+
+	public static final byte[] MAGIC = { 'I', 'C', 'L', 'B' };
+	public static final int VERSION = 1;
+
+	// operand kinds
+	public static final int IMM = LIRProgram.IMM;
+	public static final int NAME = LIRProgram.SLOT;
+	public static final int STR = LIRProgram.STR;
+	public static final int DV = LIRProgram.DV;
+
+	// symbol flags: the label of a method (_ic_main, a dispatch table entry or a StaticCall target)
+	public static final int METHOD_ENTRY = 1;
+
+	// the LIR mnemonic of every opcode
+	public static final String[] MNEMONICS = {
+		"Move", "MoveField", "MoveField", "MoveArray", "MoveArray", "ArrayLength",
+		"Add", "Sub", "Mul", "Div", "Mod", "And", "Or", "Xor", "Inc", "Dec", "Neg", "Not",
+		"Compare", "Jump", "JumpTrue", "JumpFalse", "JumpG", "JumpGE", "JumpL", "JumpLE",
+		"Library", "StaticCall", "VirtualCall", "Return"
+	};
+
+	// the operands count of every opcode (-1: jumps and calls)
+	public static final int[] OPERAND_COUNTS = {
+		2, 3, 3, 3, 3, 2,
+		2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1,
+		2, -1, -1, -1, -1, -1, -1, -1,
+		-1, -1, -1, 1
+	};
+
+	// the operands of every opcode that must be registers or variables (bit i: operand i)
+	public static final int[] NAME_OPERANDS = {
+		2, 5, 2, 5, 2, 2,
+		2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1,
+		0, 0, 0, 0, 0, 0, 0, 0,
+		0, 0, 0, 0
+	};
+
+	public static boolean isJump(int opcode){
+		return opcode >= LIRProgram.JUMP && opcode <= LIRProgram.JUMP_LE;
+	}
+
+	/**
+	 * checks if the given bytes start with the format's magic number
+	 * @param bytes
+	 * @return
+	 */
+	public static boolean isBinary(byte[] bytes){
+		if (bytes.length < MAGIC.length) return false;
+		for (int i = 0; i < MAGIC.length; i++){
+			if (bytes[i] != MAGIC[i]) return false;
+		}
+		return true;
+	}
+
+	public static int zigzag(int value){
+		return (value << 1) ^ (value >> 31);
+	}
+
+	public static int unzigzag(int value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
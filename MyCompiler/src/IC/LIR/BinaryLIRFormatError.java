@@ -0,0 +1,35 @@
+package IC.LIR;
+
+/**
+ * Exception class for malformed binary LIR input, thrown by BinaryLIRReader.
+ * This exception class contains the byte offset of the error and an error message.
+ *
+ */
+
+public class BinaryLIRFormatError extends Exception {
+
+	private int offset;
+
+	private static final long serialVersionUID = 53L;  /* impl. serializable. */
+
+
+	public BinaryLIRFormatError(String message, int offset) {
+		super(message);
+		this.offset = offset;
+	}
+
+
+	public int getOffset() {
+		return this.offset;
+	}
+
+
+	/**
+	 * Returns error string message with the byte offset and message.
+	 */
+	@Override
+	public String toString() {
+		return ("Binary LIR error at offset " + this.offset + ": " + super.getMessage());
+	}
+
+}
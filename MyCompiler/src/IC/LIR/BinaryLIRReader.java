@@ -0,0 +1,482 @@
+package IC.LIR;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import IC.Simulator.LIRLoader;
+import IC.Simulator.LIRProgram;
+
+/**
+ * BinaryLIRReader
+ * ===============
+ * reads binary LIR (see BinaryLIRFormat) in place: a file is memory mapped, the
+ * small sections (string literals, dispatch tables, symbols) are indexed when it
+ * is opened, and the code section is decoded straight from the mapped buffer by
+ * the caller, instruction by instruction (readOpcode, readVarint, readOperand).
+ * constant pool strings are only decoded when asked for.
+ *
+ * toText converts the program back to LIR text.
+ */
+public class BinaryLIRReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ByteBuffer buf;
+
+	// constant pool: the offset and length of every entry, and the entries decoded so far
+	private int[] poolOffsets;
+	private int[] poolLengths;
+	private String[] poolStrings;
+	// string literals: name and value pool indices
+	private int[] literalNames;
+	private int[] literalValues;
+	// dispatch tables: name pool index and entry symbols
+	private int[] tableNames;
+	private int[][] tableEntries;
+	// symbols: name pool index, instruction index and flags
+	private int[] symbolNames;
+	private int[] symbolPositions;
+	private int[] symbolFlags;
+	// code section
+	private int codeStart;
+	private int codeEnd;
+	private int instructionCount;
+
+	/**
+	 * opens (maps) a binary LIR file
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 * @throws BinaryLIRFormatError
+	 */
+	public static BinaryLIRReader open(String fileName) throws IOException, BinaryLIRFormatError {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			// the mapping stays valid after the file is closed
+			return new BinaryLIRReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * reads binary LIR from memory
+	 * @param bytes
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public static BinaryLIRReader wrap(byte[] bytes) throws BinaryLIRFormatError {
+		return new BinaryLIRReader(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * checks if a file is binary LIR (by its magic number)
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isBinaryFile(String fileName) throws IOException {
+		InputStream in = new FileInputStream(fileName);
+		try {
+			byte[] magic = new byte[BinaryLIRFormat.MAGIC.length];
+			int n = 0, r;
+			while (n < magic.length && (r = in.read(magic, n, magic.length-n)) > 0) n += r;
+			return n == magic.length && BinaryLIRFormat.isBinary(magic);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * constructor: reads the header and indexes the sections
+	 */
+	private BinaryLIRReader(ByteBuffer buf) throws BinaryLIRFormatError {
+		this.buf = buf;
+		byte[] magic = new byte[BinaryLIRFormat.MAGIC.length];
+		if (buf.remaining() < magic.length) throw new BinaryLIRFormatError("not a binary LIR file", 0);
+		buf.get(magic);
+		if (!BinaryLIRFormat.isBinary(magic)) throw new BinaryLIRFormatError("not a binary LIR file", 0);
+		int version = readVarint();
+		if (version != BinaryLIRFormat.VERSION) throw new BinaryLIRFormatError("unsupported version "+version, buf.position());
+
+		int n = readCount();
+		poolOffsets = new int[n];
+		poolLengths = new int[n];
+		poolStrings = new String[n];
+		for (int i = 0; i < n; i++){
+			poolLengths[i] = readCount();
+			poolOffsets[i] = buf.position();
+			skip(poolLengths[i]);
+		}
+
+		n = readCount();
+		literalNames = new int[n];
+		literalValues = new int[n];
+		for (int i = 0; i < n; i++){
+			literalNames[i] = readIndex(poolOffsets.length);
+			literalValues[i] = readIndex(poolOffsets.length);
+		}
+
+		n = readCount();
+		tableNames = new int[n];
+		tableEntries = new int[n][];
+		for (int i = 0; i < n; i++){
+			tableNames[i] = readIndex(poolOffsets.length);
+			tableEntries[i] = new int[readCount()];
+			for (int k = 0; k < tableEntries[i].length; k++){
+				tableEntries[i][k] = readVarint();
+			}
+		}
+
+		n = readCount();
+		symbolNames = new int[n];
+		symbolPositions = new int[n];
+		symbolFlags = new int[n];
+		for (int i = 0; i < n; i++){
+			symbolNames[i] = readIndex(poolOffsets.length);
+			symbolPositions[i] = readVarint();
+			symbolFlags[i] = readVarint();
+		}
+		for (int[] entries: tableEntries){
+			for (int entry: entries){
+				if (entry < 0 || entry >= n) throw new BinaryLIRFormatError("bad dispatch table entry "+entry, buf.position());
+			}
+		}
+
+		int size = readCount();
+		instructionCount = readCount();
+		codeStart = buf.position();
+		codeEnd = codeStart+size;
+		if (codeEnd > buf.limit()) throw new BinaryLIRFormatError("truncated code section", codeStart);
+		for (int i = 0; i < n; i++){
+			if (symbolPositions[i] < 0 || symbolPositions[i] > instructionCount)
+				throw new BinaryLIRFormatError("bad label position "+symbolPositions[i], codeStart);
+		}
+	}
+
+	// sections
+	///////////
+
+	public int getPoolSize(){
+		return poolOffsets.length;
+	}
+
+	/**
+	 * returns a constant pool string (decoded on first use)
+	 * @param index
+	 * @return
+	 */
+	public String getString(int index){
+		String s = poolStrings[index];
+		if (s == null){
+			ByteBuffer entry = buf.duplicate();
+			entry.position(poolOffsets[index]);
+			entry.limit(poolOffsets[index]+poolLengths[index]);
+			s = UTF8.decode(entry).toString();
+			poolStrings[index] = s;
+		}
+		return s;
+	}
+
+	public int getLiteralCount(){
+		return literalNames.length;
+	}
+
+	public String getLiteralName(int literal){
+		return getString(literalNames[literal]);
+	}
+
+	/**
+	 * returns the value of a string literal, as written in LIR (escaped)
+	 */
+	public String getLiteralValue(int literal){
+		return getString(literalValues[literal]);
+	}
+
+	public int getTableCount(){
+		return tableNames.length;
+	}
+
+	public String getTableName(int table){
+		return getString(tableNames[table]);
+	}
+
+	/**
+	 * returns the symbols of a dispatch table's methods
+	 */
+	public int[] getTableEntries(int table){
+		return tableEntries[table];
+	}
+
+	public int getSymbolCount(){
+		return symbolNames.length;
+	}
+
+	public String getSymbolName(int symbol){
+		return getString(symbolNames[symbol]);
+	}
+
+	/**
+	 * returns the index of the instruction a label is at
+	 */
+	public int getSymbolPosition(int symbol){
+		return symbolPositions[symbol];
+	}
+
+	public boolean isMethodEntry(int symbol){
+		return (symbolFlags[symbol] & BinaryLIRFormat.METHOD_ENTRY) != 0;
+	}
+
+	public int getInstructionCount(){
+		return instructionCount;
+	}
+
+	// code
+	///////
+
+	/**
+	 * moves to the first instruction
+	 */
+	public void rewind(){
+		buf.position(codeStart);
+	}
+
+	/**
+	 * returns the current byte offset (for error messages)
+	 */
+	public int getOffset(){
+		return buf.position();
+	}
+
+	public boolean hasNext(){
+		return buf.position() < codeEnd;
+	}
+
+	/**
+	 * reads the opcode of the next instruction
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public int readOpcode() throws BinaryLIRFormatError {
+		if (!hasNext()) throw new BinaryLIRFormatError("unexpected end of code", buf.position());
+		int opcode = buf.get();
+		if (opcode < 0 || opcode >= BinaryLIRFormat.MNEMONICS.length) throw new BinaryLIRFormatError("unknown opcode "+opcode, buf.position()-1);
+		return opcode;
+	}
+
+	/**
+	 * reads an unsigned LEB128 varint
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public int readVarint() throws BinaryLIRFormatError {
+		try {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7){
+				int b = buf.get();
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) return value;
+			}
+		} catch (BufferUnderflowException e){
+			throw new BinaryLIRFormatError("unexpected end of file", buf.position());
+		}
+		throw new BinaryLIRFormatError("malformed varint", buf.position());
+	}
+
+	/**
+	 * reads an index into a section of the given size
+	 * @param size
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public int readIndex(int size) throws BinaryLIRFormatError {
+		int index = readVarint();
+		if (index < 0 || index >= size) throw new BinaryLIRFormatError("index out of range: "+index, buf.position());
+		return index;
+	}
+
+	/**
+	 * reads an operand into [kind, value]: IMM -> the value, NAME -> pool index,
+	 * STR -> literal index, DV -> table index
+	 * @param out
+	 * @throws BinaryLIRFormatError
+	 */
+	public void readOperand(int[] out) throws BinaryLIRFormatError {
+		if (!hasNext()) throw new BinaryLIRFormatError("unexpected end of code", buf.position());
+		out[0] = buf.get();
+		switch (out[0]){
+		case BinaryLIRFormat.IMM:
+			out[1] = BinaryLIRFormat.unzigzag(readVarint());
+			break;
+		case BinaryLIRFormat.NAME:
+			out[1] = readIndex(poolOffsets.length);
+			break;
+		case BinaryLIRFormat.STR:
+			out[1] = readIndex(literalNames.length);
+			break;
+		case BinaryLIRFormat.DV:
+			out[1] = readIndex(tableNames.length);
+			break;
+		default:
+			throw new BinaryLIRFormatError("unknown operand kind "+out[0], buf.position()-1);
+		}
+	}
+
+	/**
+	 * reads the size of a list (at most the number of bytes left)
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public int readCount() throws BinaryLIRFormatError {
+		int n = readVarint();
+		if (n < 0 || n > buf.remaining()+1) throw new BinaryLIRFormatError("bad count "+n, buf.position());
+		return n;
+	}
+
+	private void skip(int n) throws BinaryLIRFormatError {
+		if (n > buf.remaining()) throw new BinaryLIRFormatError("unexpected end of file", buf.position());
+		buf.position(buf.position()+n);
+	}
+
+	// text
+	///////
+
+	/**
+	 * returns the program as LIR text
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public String toText() throws BinaryLIRFormatError {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# string literals\n");
+		for (int i = 0; i < getLiteralCount(); i++){
+			sb.append(getLiteralName(i)).append(": \"").append(getLiteralValue(i)).append("\"\n");
+		}
+		sb.append("\n# class dispatch tables\n");
+		for (int t = 0; t < getTableCount(); t++){
+			sb.append(getTableName(t)).append(": [");
+			for (int i = 0; i < tableEntries[t].length; i++){
+				if (i > 0) sb.append(",");
+				sb.append(getSymbolName(tableEntries[t][i]));
+			}
+			sb.append("]\n");
+		}
+		sb.append("\n");
+
+		rewind();
+		int[] operand = new int[2];
+		int symbol = 0;
+		for (int pc = 0; pc < instructionCount; pc++){
+			while (symbol < symbolPositions.length && symbolPositions[symbol] == pc){
+				sb.append(getSymbolName(symbol++)).append(":\n");
+			}
+			appendInstruction(sb, operand);
+		}
+		while (symbol < symbolPositions.length){
+			sb.append(getSymbolName(symbol++)).append(":\n");
+		}
+		if (hasNext()) throw new BinaryLIRFormatError("code after the last instruction", buf.position());
+		return sb.toString();
+	}
+
+	/**
+	 * appends the LIR text of the next instruction
+	 */
+	private void appendInstruction(StringBuilder sb, int[] operand) throws BinaryLIRFormatError {
+		int opcode = readOpcode();
+		String op = BinaryLIRFormat.MNEMONICS[opcode];
+
+		if (BinaryLIRFormat.isJump(opcode)){
+			sb.append(op).append(" ").append(getSymbolName(readIndex(symbolNames.length))).append("\n");
+			return;
+		}
+		switch (opcode){
+		case LIRProgram.LIBRARY:
+			sb.append(op).append(" ").append(getString(readIndex(poolOffsets.length)));
+			appendCall(sb, operand);
+			return;
+		case LIRProgram.STATIC_CALL:
+			sb.append(op).append(" ").append(getSymbolName(readIndex(symbolNames.length)));
+			appendCall(sb, operand);
+			return;
+		case LIRProgram.VIRTUAL_CALL: {
+			String receiver = readOperandText(operand);
+			int offset = readVarint();
+			int site = readVarint();
+			int siteName = readVarint();
+			if (site > 0){
+				sb.append(LIRLoader.VIRTUAL_CALL_SITE_COMMENT).append(site-1).append(": ");
+				sb.append(siteName > 0 ? getString(checkIndex(siteName-1, poolOffsets.length)) : "").append("\n");
+			}
+			sb.append(op).append(" ").append(receiver).append(".").append(offset);
+			appendCall(sb, operand);
+			return;
+		}
+		default:
+			break;
+		}
+
+		String[] ops = new String[BinaryLIRFormat.OPERAND_COUNTS[opcode]];
+		for (int i = 0; i < ops.length; i++){
+			ops[i] = readOperandText(operand);
+		}
+		sb.append(op).append(" ");
+		switch (opcode){
+		case LIRProgram.LOAD_FIELD:
+			sb.append(ops[0]).append(".").append(ops[1]).append(",").append(ops[2]);
+			break;
+		case LIRProgram.STORE_FIELD:
+			sb.append(ops[0]).append(",").append(ops[1]).append(".").append(ops[2]);
+			break;
+		case LIRProgram.LOAD_ARRAY:
+			sb.append(ops[0]).append("[").append(ops[1]).append("],").append(ops[2]);
+			break;
+		case LIRProgram.STORE_ARRAY:
+			sb.append(ops[0]).append(",").append(ops[1]).append("[").append(ops[2]).append("]");
+			break;
+		default:
+			for (int i = 0; i < ops.length; i++){
+				if (i > 0) sb.append(",");
+				sb.append(ops[i]);
+			}
+		}
+		sb.append("\n");
+	}
+
+	/**
+	 * appends the arguments and target of a call
+	 */
+	private void appendCall(StringBuilder sb, int[] operand) throws BinaryLIRFormatError {
+		int n = readCount();
+		sb.append("(");
+		for (int i = 0; i < n; i++){
+			if (i > 0) sb.append(",");
+			int formal = readVarint();
+			if (formal > 0) sb.append(getString(checkIndex(formal-1, poolOffsets.length))).append("=");
+			sb.append(readOperandText(operand));
+		}
+		sb.append("),").append(readOperandText(operand)).append("\n");
+	}
+
+	private String readOperandText(int[] operand) throws BinaryLIRFormatError {
+		readOperand(operand);
+		switch (operand[0]){
+		case BinaryLIRFormat.IMM:
+			return Integer.toString(operand[1]);
+		case BinaryLIRFormat.STR:
+			return getLiteralName(operand[1]);
+		case BinaryLIRFormat.DV:
+			return getTableName(operand[1]);
+		default:
+			return getString(operand[1]);
+		}
+	}
+
+	private int checkIndex(int index, int size) throws BinaryLIRFormatError {
+		if (index < 0 || index >= size) throw new BinaryLIRFormatError("index out of range: "+index, buf.position());
+		return index;
+	}
+}
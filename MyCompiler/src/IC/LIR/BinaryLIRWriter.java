@@ -0,0 +1,438 @@
+package IC.LIR;
+
+import java.io.*;
+import java.util.*;
+
+import IC.Simulator.LIRFormatError;
+import IC.Simulator.LIRLoader;
+import IC.Simulator.LIRProgram;
+
+/**
+ * BinaryLIRWriter
+ * ===============
+ * writes LIR code in the binary LIR format (see BinaryLIRFormat).
+ *
+ * the LIR text is parsed as the LIRLoader parses it, and malformed code is
+ * reported the same way (LIRFormatError, by LIR line). comments are dropped,
+ * except for the virtual call site comments (see LIRLoader), which become the
+ * site ids of their calls.
+ */
+public class BinaryLIRWriter {
+
+	/**
+	 * an instruction line, before encoding
+	 */
+	private static class Line {
+		int line;
+		String opcode;
+		String operands;
+		String comment;
+	}
+
+	// constant pool: string -> index
+	private Map<String,Integer> pool = new LinkedHashMap<String,Integer>();
+	// string literals and dispatch tables: name -> index
+	private Map<String,Integer> literals = new LinkedHashMap<String,Integer>();
+	private List<String> literalValues = new ArrayList<String>();
+	private Map<String,Integer> tables = new LinkedHashMap<String,Integer>();
+	private List<String[]> tableEntries = new ArrayList<String[]>();
+	private List<Integer> tableLines = new ArrayList<Integer>();
+	// labels: name -> symbol index, in the text order
+	private Map<String,Integer> symbols = new LinkedHashMap<String,Integer>();
+	private List<Integer> symbolPositions = new ArrayList<Integer>();
+	private List<Line> instructions = new ArrayList<Line>();
+
+	private ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+	/**
+	 * returns the binary LIR of the given LIR code
+	 * @param lirCode
+	 * @return
+	 * @throws LIRFormatError
+	 */
+	public static byte[] write(String lirCode) throws LIRFormatError {
+		return new BinaryLIRWriter().encode(lirCode);
+	}
+
+	/**
+	 * writes the binary LIR of the given LIR code to a file
+	 * @param lirCode
+	 * @param fileName
+	 * @throws LIRFormatError
+	 * @throws IOException
+	 */
+	public static void writeFile(String lirCode, String fileName) throws LIRFormatError, IOException {
+		byte[] bytes = write(lirCode);
+		OutputStream out = new FileOutputStream(fileName);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * parses the LIR code and encodes it
+	 */
+	private byte[] encode(String lirCode) throws LIRFormatError {
+		String[] lines = lirCode.split("\r?\n", -1);
+		String comment = null;
+		for (int i = 0; i < lines.length; i++){
+			String line = lines[i].trim();
+			if (line.startsWith("#")) comment = line;
+			if (line.length() == 0 || line.startsWith("#")) continue;
+			if (readDefinition(line, i+1)) continue;
+			Line inst = new Line();
+			int space = line.indexOf(' ');
+			inst.line = i+1;
+			inst.opcode = space < 0 ? line : line.substring(0, space);
+			inst.operands = space < 0 ? "" : line.substring(space+1).trim();
+			inst.comment = comment;
+			comment = null;
+			instructions.add(inst);
+		}
+
+		// the methods: main, the dispatch table entries and the static call targets
+		Set<String> methods = new HashSet<String>();
+		methods.add("_ic_main");
+		for (String[] entries: tableEntries){
+			methods.addAll(Arrays.asList(entries));
+		}
+		for (Line inst: instructions){
+			encodeInstruction(inst);
+			if (inst.opcode.equals("StaticCall")) methods.add(inst.operands.substring(0, inst.operands.indexOf('(')).trim());
+		}
+		if (!symbols.containsKey("_ic_main")) throw new LIRFormatError("missing main method label _ic_main", 0);
+
+		// dispatch table entries refer to symbols, which refer to the pool
+		int[][] entries = new int[tableEntries.size()][];
+		for (int t = 0; t < entries.length; t++){
+			entries[t] = new int[tableEntries.get(t).length];
+			for (int i = 0; i < entries[t].length; i++){
+				Integer symbol = symbols.get(tableEntries.get(t)[i]);
+				if (symbol == null) throw new LIRFormatError("undefined method in dispatch table: "+tableEntries.get(t)[i], tableLines.get(t));
+				entries[t][i] = symbol;
+			}
+		}
+		int[] symbolNames = new int[symbols.size()];
+		int s = 0;
+		for (String name: symbols.keySet()){
+			symbolNames[s++] = poolIndex(name);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(BinaryLIRFormat.MAGIC, 0, BinaryLIRFormat.MAGIC.length);
+		writeVarint(bytes, BinaryLIRFormat.VERSION);
+
+		// literal and table names go to the pool before it is written
+		int[] literalNames = new int[literals.size()];
+		int[] literalValueIndices = new int[literals.size()];
+		int l = 0;
+		for (String name: literals.keySet()){
+			literalNames[l] = poolIndex(name);
+			literalValueIndices[l] = poolIndex(literalValues.get(l));
+			l++;
+		}
+		int[] tableNames = new int[tables.size()];
+		int t = 0;
+		for (String name: tables.keySet()){
+			tableNames[t++] = poolIndex(name);
+		}
+
+		writeVarint(bytes, pool.size());
+		for (String entry: pool.keySet()){
+			byte[] utf8 = utf8(entry);
+			writeVarint(bytes, utf8.length);
+			bytes.write(utf8, 0, utf8.length);
+		}
+		writeVarint(bytes, literalNames.length);
+		for (int i = 0; i < literalNames.length; i++){
+			writeVarint(bytes, literalNames[i]);
+			writeVarint(bytes, literalValueIndices[i]);
+		}
+		writeVarint(bytes, tableNames.length);
+		for (int i = 0; i < tableNames.length; i++){
+			writeVarint(bytes, tableNames[i]);
+			writeVarint(bytes, entries[i].length);
+			for (int entry: entries[i]){
+				writeVarint(bytes, entry);
+			}
+		}
+		writeVarint(bytes, symbolNames.length);
+		s = 0;
+		for (String name: symbols.keySet()){
+			writeVarint(bytes, symbolNames[s]);
+			writeVarint(bytes, symbolPositions.get(s));
+			writeVarint(bytes, methods.contains(name) ? BinaryLIRFormat.METHOD_ENTRY : 0);
+			s++;
+		}
+		writeVarint(bytes, code.size());
+		writeVarint(bytes, instructions.size());
+		byte[] codeBytes = code.toByteArray();
+		bytes.write(codeBytes, 0, codeBytes.length);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * reads a label, string literal or dispatch table definition line
+	 * @return false if the line is an instruction
+	 */
+	private boolean readDefinition(String line, int lineNum) throws LIRFormatError {
+		int colon = line.indexOf(':');
+		int space = line.indexOf(' ');
+		if (colon <= 0 || (space >= 0 && colon > space)) return false;
+
+		String name = line.substring(0, colon);
+		String rest = line.substring(colon+1).trim();
+		if (rest.length() == 0){
+			// label
+			if (symbols.containsKey(name)) throw new LIRFormatError("label defined twice: "+name, lineNum);
+			symbols.put(name, symbols.size());
+			symbolPositions.add(instructions.size());
+		} else if (rest.startsWith("\"")){
+			// string literal
+			if (!rest.endsWith("\"") || rest.length() < 2)
+				throw new LIRFormatError("malformed string literal: "+rest, lineNum);
+			literals.put(name, literals.size());
+			literalValues.add(rest.substring(1, rest.length()-1));
+		} else if (rest.startsWith("[")){
+			// dispatch table
+			if (!rest.endsWith("]")) throw new LIRFormatError("malformed dispatch table: "+rest, lineNum);
+			String body = rest.substring(1, rest.length()-1).trim();
+			tables.put(name, tables.size());
+			tableEntries.add(body.length() == 0 ? new String[0] : body.split("\\s*,\\s*"));
+			tableLines.add(lineNum);
+		} else {
+			throw new LIRFormatError("unexpected definition: "+line, lineNum);
+		}
+		return true;
+	}
+
+	// instructions
+	///////////////
+
+	/**
+	 * encodes a single instruction to the code section
+	 */
+	private void encodeInstruction(Line inst) throws LIRFormatError {
+		String op = inst.opcode;
+		int line = inst.line;
+		List<String> mnemonics = Arrays.asList(BinaryLIRFormat.MNEMONICS);
+
+		if (op.equals("Library") || op.equals("StaticCall") || op.equals("VirtualCall")){
+			encodeCall(inst);
+			return;
+		}
+
+		int opcode = mnemonics.indexOf(op);
+		if (opcode < 0) throw new LIRFormatError("unknown instruction: "+op, line);
+		if (BinaryLIRFormat.isJump(opcode)){
+			code.write(opcode);
+			writeVarint(code, symbol(inst.operands, line));
+			return;
+		}
+
+		List<String> ops = LIRLoader.splitOperands(inst.operands);
+		int count = op.equals("MoveField") || op.equals("MoveArray") ? 2 : BinaryLIRFormat.OPERAND_COUNTS[opcode];
+		if (ops.size() != count)
+			throw new LIRFormatError(op+" expects "+count+" operand(s): "+inst.operands, line);
+
+		if (op.equals("MoveField") || op.equals("MoveArray")){
+			char open = op.equals("MoveField") ? '.' : '[';
+			String a = ops.get(0);
+			String b = ops.get(1);
+			if (a.indexOf(open) > 0){
+				code.write(opcode);
+				writeName(a.substring(0, a.indexOf(open)), line);
+				writeOperand(memberOf(a, open, line), line);
+				writeName(b, line);
+			} else if (b.indexOf(open) > 0){
+				code.write(opcode+1);
+				writeOperand(a, line);
+				writeName(b.substring(0, b.indexOf(open)), line);
+				writeOperand(memberOf(b, open, line), line);
+			} else {
+				throw new LIRFormatError(op+" without a"+(open == '.' ? " field" : "n array")+" operand", line);
+			}
+			return;
+		}
+
+		code.write(opcode);
+		if (opcode >= LIRProgram.INC && opcode <= LIRProgram.NOT){
+			writeName(ops.get(0), line);
+		} else if (opcode == LIRProgram.RETURN || opcode == LIRProgram.COMPARE){
+			for (String s: ops){
+				writeOperand(s, line);
+			}
+		} else {
+			// Move, ArrayLength and the binary operations: source, register or variable
+			writeOperand(ops.get(0), line);
+			writeName(ops.get(1), line);
+		}
+	}
+
+	/**
+	 * encodes Library, StaticCall and VirtualCall instructions
+	 */
+	private void encodeCall(Line inst) throws LIRFormatError {
+		int line = inst.line;
+		String s = inst.operands;
+		int open = s.indexOf('(');
+		int close = s.lastIndexOf(')');
+		if (open < 0 || close < open) throw new LIRFormatError("malformed call: "+s, line);
+
+		String callee = s.substring(0, open).trim();
+		List<String> args = LIRLoader.splitOperands(s.substring(open+1, close));
+		String dst = s.substring(close+1).trim();
+		if (!dst.startsWith(",")) throw new LIRFormatError("call without a target register: "+s, line);
+		dst = dst.substring(1).trim();
+
+		if (inst.opcode.equals("Library")){
+			if (!Arrays.asList(LIRLoader.LIBRARY_METHODS).contains(callee))
+				throw new LIRFormatError("unknown library method: "+callee, line);
+			code.write(LIRProgram.LIBRARY);
+			writeVarint(code, poolIndex(callee));
+		} else if (inst.opcode.equals("StaticCall")){
+			code.write(LIRProgram.STATIC_CALL);
+			writeVarint(code, symbol(callee, line));
+		} else {
+			int dot = callee.indexOf('.');
+			if (dot < 0) throw new LIRFormatError("malformed virtual call: "+callee, line);
+			code.write(LIRProgram.VIRTUAL_CALL);
+			writeName(callee.substring(0, dot), line);
+			try {
+				int offset = Integer.parseInt(callee.substring(dot+1));
+				if (offset < 0) throw new NumberFormatException();
+				writeVarint(code, offset);
+			} catch (NumberFormatException e){
+				throw new LIRFormatError("malformed method offset: "+callee, line);
+			}
+			writeSite(inst.comment);
+		}
+
+		writeVarint(code, args.size());
+		for (String arg: args){
+			int eq = arg.indexOf('=');
+			writeVarint(code, eq < 0 ? 0 : poolIndex(arg.substring(0, eq).trim())+1);
+			writeOperand(eq < 0 ? arg : arg.substring(eq+1).trim(), line);
+		}
+		writeName(dst, line);
+	}
+
+	/**
+	 * writes the site id and name of a virtual call, by its site comment (0, 0 if none)
+	 */
+	private void writeSite(String comment){
+		if (comment != null && comment.startsWith(LIRLoader.VIRTUAL_CALL_SITE_COMMENT)){
+			String rest = comment.substring(LIRLoader.VIRTUAL_CALL_SITE_COMMENT.length());
+			int colon = rest.indexOf(':');
+			try {
+				int id = Integer.parseInt((colon < 0 ? rest : rest.substring(0, colon)).trim());
+				if (id >= 0){
+					writeVarint(code, id+1);
+					writeVarint(code, poolIndex(colon < 0 ? "" : rest.substring(colon+1).trim())+1);
+					return;
+				}
+			} catch (NumberFormatException e){
+				// not a site comment after all
+			}
+		}
+		writeVarint(code, 0);
+		writeVarint(code, 0);
+	}
+
+	// operands
+	///////////
+
+	/**
+	 * writes a simple operand (immediate, string literal, dispatch table, register or variable)
+	 */
+	private void writeOperand(String s, int line) throws LIRFormatError {
+		if (s.length() == 0) throw new LIRFormatError("missing operand", line);
+		char c = s.charAt(0);
+		if (c == '-' || Character.isDigit(c)){
+			try {
+				// 32-bit immediates wrap, as in the loader
+				int value = (int) Long.parseLong(s);
+				code.write(BinaryLIRFormat.IMM);
+				writeVarint(code, BinaryLIRFormat.zigzag(value));
+				return;
+			} catch (NumberFormatException e){
+				throw new LIRFormatError("malformed immediate: "+s, line);
+			}
+		}
+		Integer literal = literals.get(s);
+		if (literal != null){
+			code.write(BinaryLIRFormat.STR);
+			writeVarint(code, literal);
+			return;
+		}
+		Integer table = tables.get(s);
+		if (table != null){
+			code.write(BinaryLIRFormat.DV);
+			writeVarint(code, table);
+			return;
+		}
+		writeName(s, line);
+	}
+
+	/**
+	 * writes an operand that must be a register or a variable
+	 */
+	private void writeName(String s, int line) throws LIRFormatError {
+		if (s.length() == 0 || !Character.isLetter(s.charAt(0)) || literals.containsKey(s) || tables.containsKey(s))
+			throw new LIRFormatError("expected a register or variable: "+s, line);
+		for (int i = 1; i < s.length(); i++){
+			if (!Character.isLetterOrDigit(s.charAt(i)) && s.charAt(i) != '_')
+				throw new LIRFormatError("malformed operand: "+s, line);
+		}
+		code.write(BinaryLIRFormat.NAME);
+		writeVarint(code, poolIndex(s));
+	}
+
+	/**
+	 * returns the field offset of R1.2 or the index of R1[R2]
+	 */
+	private static String memberOf(String s, char open, int line) throws LIRFormatError {
+		if (open == '.') return s.substring(s.indexOf('.')+1);
+		if (!s.endsWith("]")) throw new LIRFormatError("malformed array operand: "+s, line);
+		return s.substring(s.indexOf('[')+1, s.length()-1).trim();
+	}
+
+	private int symbol(String label, int line) throws LIRFormatError {
+		Integer symbol = symbols.get(label);
+		if (symbol == null) throw new LIRFormatError("undefined label: "+label, line);
+		return symbol;
+	}
+
+	private int poolIndex(String s){
+		Integer index = pool.get(s);
+		if (index == null){
+			index = pool.size();
+			pool.put(s, index);
+		}
+		return index;
+	}
+
+	// encoding
+	///////////
+
+	/**
+	 * writes an unsigned LEB128 varint
+	 */
+	static void writeVarint(ByteArrayOutputStream out, int value){
+		while ((value & ~0x7f) != 0){
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static byte[] utf8(String s){
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e){ // never happens, UTF-8 is always supported
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package IC.LIR;
 import java.util.*;  
 
 import IC.BinaryOps;
+import IC.Name;
 import IC.AST.*;
 import IC.SymbolTable.*;
 
@@ -17,7 +18,7 @@ public class ClassLayout {
 	private ICClass icClass;
 	private Map<Method,Integer> methodToOffset = new HashMap<Method,Integer>();
 	private Map<Field,Integer> fieldToOffset = new HashMap<Field,Integer>();
-	private Map<String,Method> nameToMethod = new HashMap<String,Method>();
+	private Map<Name,Method> nameToMethod = new HashMap<Name,Method>();
 	private int methodCounter = 0;
 	private int fieldCounter = 1;
 	
@@ -41,7 +42,7 @@ public class ClassLayout {
 		
 		// create string to method
 		for(Method m: icClass.getMethods()){
-			nameToMethod.put(m.getName(), m);
+			nameToMethod.put(m.getIdentifier(), m);
 		}
 	}
 	
@@ -88,17 +89,17 @@ public class ClassLayout {
 		
 		// create string to method
 		for(Method m: methodToOffset.keySet()){
-			nameToMethod.put(m.getName(), m);
+			nameToMethod.put(m.getIdentifier(), m);
 		}
 		
 		for(Method m: superLayout.getICClass().getMethods()){
 			if (m.isStatic())
-				nameToMethod.put(m.getName(), m);
+				nameToMethod.put(m.getIdentifier(), m);
 		}
 		
 		for(Method m: icClass.getMethods()){
 			if (m.isStatic())
-				nameToMethod.put(m.getName(), m);
+				nameToMethod.put(m.getIdentifier(), m);
 		}
 		 
 	}
@@ -146,7 +147,7 @@ public class ClassLayout {
 	 * @return
 	 */
 	public Integer getMethodOffset(String name){
-		return getMethodOffset(nameToMethod.get(name));
+		return getMethodOffset(nameToMethod.get(Name.of(name)));
 	}
 	
 	/**
@@ -170,7 +171,7 @@ public class ClassLayout {
 	 * getter for map of names and methods
 	 * @return
 	 */
-	public Map<String,Method> getNameToMethodMap(){
+	public Map<Name,Method> getNameToMethodMap(){
 		return this.nameToMethod;
 	}
 	
@@ -179,10 +180,26 @@ public class ClassLayout {
 	 * @param name
 	 * @return
 	 */
-	public Method getMethodFromName(String name){
+	public Method getMethodFromName(Name name){
 		return nameToMethod.get(name);
 	}
 	
+	/**
+	 * getter for the offsets of the fields holding references (strings,
+	 * arrays and objects), in increasing order
+	 * @return
+	 */
+	public List<Integer> getPointerFieldOffsets(){
+		List<Integer> offsets = new ArrayList<Integer>();
+		for (Map.Entry<Field,Integer> entry: fieldToOffset.entrySet()){
+			String type = entry.getKey().getType().toString();
+			if (!type.equals("int") && !type.equals("boolean"))
+				offsets.add(entry.getValue());
+		}
+		Collections.sort(offsets);
+		return offsets;
+	}
+	
 	/**
 	 * getter for the number of bytes needed for allocation
 	 * @return
@@ -0,0 +1,505 @@
+package IC.LIR;
+
+import java.util.*;
+
+import IC.BinaryOps;
+import IC.LiteralTypes;
+import IC.UnaryOps;
+import IC.AST.*;
+import IC.SymbolTable.BlockSymbolTable;
+
+/**
+ * Visitor for finding strength reduction candidates in a while loop:
+ * multiplications of a local variable by an integer constant, where the
+ * variable is either not assigned in the loop at all, or only assigned by
+ * adding / subtracting a constant (an induction variable).
+ * such a product v*k can be kept in a dedicated register, initialized before
+ * the loop and updated by c*k after every step v = v+c, instead of being
+ * re-multiplied on every iteration.
+ */
+public class InductionVariableVisitor implements Visitor {
+
+	// assigned local variables (name+depth) -> true if all assignments are induction steps
+	private Map<String,Boolean> assigned = new HashMap<String,Boolean>();
+	// local variables declared inside the loop
+	private Set<String> declared = new HashSet<String>();
+	// products of local variables and constants: variable (name+depth) -> constant factors
+	private Map<String,Set<Integer>> products = new LinkedHashMap<String,Set<Integer>>();
+
+	// the loops analyzed so far: loop -> its visitor (an inner loop is analyzed once,
+	// and merged into the loops around it, rather than visited again for each of them)
+	private final Map<While,InductionVariableVisitor> loops;
+
+	private InductionVariableVisitor(Map<While,InductionVariableVisitor> loops){
+		this.loops = loops;
+	}
+
+	/**
+	 * returns the strength reduction candidates of the given loop:
+	 * variable (name+depth) -> constant factors
+	 * @param whileStatement
+	 * @return
+	 */
+	public static Map<String,Set<Integer>> findCandidates(While whileStatement){
+		return findCandidates(whileStatement, new IdentityHashMap<While,InductionVariableVisitor>());
+	}
+
+	/**
+	 * returns the strength reduction candidates of the given loop (see findCandidates),
+	 * keeping the analysis of the loop and of its inner loops in the given map
+	 * (for the inner loops to be looked up, when nested loops are translated)
+	 * @param whileStatement
+	 * @param loops
+	 * @return
+	 */
+	public static Map<String,Set<Integer>> findCandidates(While whileStatement, Map<While,InductionVariableVisitor> loops){
+		InductionVariableVisitor v = analyze(whileStatement, loops);
+
+		Map<String,Set<Integer>> candidates = new LinkedHashMap<String,Set<Integer>>();
+		for (Map.Entry<String,Set<Integer>> e: v.products.entrySet()){
+			String var = e.getKey();
+			if (v.declared.contains(var)) continue; // re-initialized on every iteration
+			if (v.assigned.containsKey(var) && !v.assigned.get(var)) continue; // not an induction variable
+			candidates.put(var, e.getValue());
+		}
+		return candidates;
+	}
+
+	/**
+	 * returns the visitor of the given loop, visiting it if it was not analyzed yet
+	 */
+	private static InductionVariableVisitor analyze(While whileStatement, Map<While,InductionVariableVisitor> loops){
+		InductionVariableVisitor v = loops.get(whileStatement);
+		if (v == null){
+			v = new InductionVariableVisitor(loops);
+			whileStatement.getCondition().accept(v);
+			whileStatement.getOperation().accept(v);
+			loops.put(whileStatement, v);
+		}
+		return v;
+	}
+
+	/**
+	 * adds what an inner loop's visitor found, as if its loop were visited by this one
+	 * (the variables and factors are kept in the order they are first found)
+	 */
+	private void merge(InductionVariableVisitor inner){
+		for (Map.Entry<String,Boolean> e: inner.assigned.entrySet()){
+			Boolean prev = assigned.get(e.getKey());
+			assigned.put(e.getKey(), e.getValue() && (prev == null || prev));
+		}
+		declared.addAll(inner.declared);
+		for (Map.Entry<String,Set<Integer>> e: inner.products.entrySet()){
+			if (!products.containsKey(e.getKey())) products.put(e.getKey(), new LinkedHashSet<Integer>());
+			products.get(e.getKey()).addAll(e.getValue());
+		}
+	}
+
+	/**
+	 * returns the value of an integer constant expression,
+	 * or null if the expression is not constant (or divides by zero)
+	 * (an expression is folded once: its value is kept in its node)
+	 * @param expr
+	 * @return
+	 */
+	public static Integer getIntConstant(Expression expr){
+		if (!expr.isFolded()) fold(expr);
+		return expr.getConstant();
+	}
+
+	/**
+	 * folds the given expression and its operands, operands first: with a stack of the
+	 * expressions to fold rather than recursively (generated expressions may nest deep)
+	 * @param expr
+	 */
+	private static void fold(Expression expr){
+		Deque<Expression> stack = new ArrayDeque<Expression>();
+		stack.push(expr);
+		while (!stack.isEmpty()){
+			Expression e = stack.peek();
+			boolean ready = true;
+			for (Expression operand: getOperands(e)){
+				if (!operand.isFolded()){
+					stack.push(operand);
+					ready = false;
+				}
+			}
+			if (ready){
+				stack.pop();
+				e.setConstant(foldOperation(e));
+			}
+		}
+	}
+
+	/**
+	 * returns the operands of an expression that may fold to a constant
+	 */
+	private static List<Expression> getOperands(Expression expr){
+		if (expr instanceof MathUnaryOp){
+			return Collections.singletonList(((MathUnaryOp) expr).getOperand());
+		} else if (expr instanceof MathBinaryOp){
+			return Arrays.asList(((MathBinaryOp) expr).getFirstOperand(), ((MathBinaryOp) expr).getSecondOperand());
+		} else if (expr instanceof ExpressionBlock){
+			return Collections.singletonList(((ExpressionBlock) expr).getExpression());
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * returns the value of an expression whose operands are folded
+	 */
+	private static Integer foldOperation(Expression expr){
+		if (expr instanceof Literal){
+			Literal literal = (Literal) expr;
+			if (literal.getType() != LiteralTypes.INTEGER) return null;
+			try {
+				// wraps 2147483648 (only legal as -2147483648) like the target does
+				return (int) Long.parseLong(literal.getValue().toString());
+			} catch (NumberFormatException e){
+				return null;
+			}
+		} else if (expr instanceof MathUnaryOp){
+			Integer val = ((MathUnaryOp) expr).getOperand().getConstant();
+			if (val == null || ((MathUnaryOp) expr).getOperator() != UnaryOps.UMINUS) return null;
+			return -val;
+		} else if (expr instanceof MathBinaryOp){
+			MathBinaryOp binaryOp = (MathBinaryOp) expr;
+			Integer val1 = binaryOp.getFirstOperand().getConstant();
+			if (val1 == null) return null;
+			Integer val2 = binaryOp.getSecondOperand().getConstant();
+			if (val2 == null) return null;
+			switch (binaryOp.getOperator()){
+			case PLUS: return val1 + val2;
+			case MINUS: return val1 - val2;
+			case MULTIPLY: return val1 * val2;
+			case DIVIDE: return val2 == 0 ? null : val1 / val2;
+			case MOD: return val2 == 0 ? null : val1 % val2;
+			default: return null;
+			}
+		} else if (expr instanceof ExpressionBlock){
+			return ((ExpressionBlock) expr).getExpression().getConstant();
+		}
+		return null;
+	}
+
+	/**
+	 * returns the name+depth of the given expression if it is a (non field) local variable,
+	 * null otherwise
+	 * @param expr
+	 * @return
+	 */
+	public static String getLocalVarName(Expression expr){
+		if (!(expr instanceof VariableLocation)) return null;
+		VariableLocation location = (VariableLocation) expr;
+		if (location.isExternal()) return null;
+		if (((BlockSymbolTable) location.getEnclosingScope()).isVarField(location.getIdentifier())) return null;
+		return location.getNameDepth();
+	}
+
+	/**
+	 * returns c if the given assigned value is var+c, c+var or var-c (c constant),
+	 * null otherwise
+	 * @param var: name+depth of the assigned variable
+	 * @param value
+	 * @return
+	 */
+	public static Integer getInductionStep(String var, Expression value){
+		if (!(value instanceof MathBinaryOp)) return null;
+		MathBinaryOp binaryOp = (MathBinaryOp) value;
+		Expression first = binaryOp.getFirstOperand();
+		Expression second = binaryOp.getSecondOperand();
+
+		if (binaryOp.getOperator() == BinaryOps.PLUS){
+			if (var.equals(getLocalVarName(first))) return getIntConstant(second);
+			if (var.equals(getLocalVarName(second))) return getIntConstant(first);
+		} else if (binaryOp.getOperator() == BinaryOps.MINUS){
+			if (var.equals(getLocalVarName(first))){
+				Integer c = getIntConstant(second);
+				return c == null ? null : -c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Program visitor: not visited
+	 */
+	public Object visit(Program program) {
+		return null;
+	}
+
+	/**
+	 * ICClass visitor: not visited
+	 */
+	public Object visit(ICClass icClass) {
+		return null;
+	}
+
+	/**
+	 * Field visitor: not visited
+	 */
+	public Object visit(Field field) {
+		return null;
+	}
+
+	/**
+	 * VirtualMethod visitor: not visited
+	 */
+	public Object visit(VirtualMethod method) {
+		return null;
+	}
+
+	/**
+	 * StaticMethod visitor: not visited
+	 */
+	public Object visit(StaticMethod method) {
+		return null;
+	}
+
+	/**
+	 * LibraryMethod visitor: not visited
+	 */
+	public Object visit(LibraryMethod method) {
+		return null;
+	}
+
+	/**
+	 * Formal visitor: not visited
+	 */
+	public Object visit(Formal formal) {
+		return null;
+	}
+
+	/**
+	 * PrimitiveType visitor: nothing to do
+	 */
+	public Object visit(PrimitiveType type) {
+		return null;
+	}
+
+	/**
+	 * UserType visitor: nothing to do
+	 */
+	public Object visit(UserType type) {
+		return null;
+	}
+
+	/**
+	 * Assignment visitor:
+	 * - record the assigned local variable and whether this is an induction step
+	 * - recursive calls to the variable and the assigned value
+	 */
+	public Object visit(Assignment assignment) {
+		String var = getLocalVarName(assignment.getVariable());
+		if (var != null){
+			boolean isStep = getInductionStep(var, assignment.getAssignment()) != null;
+			Boolean prev = assigned.get(var);
+			assigned.put(var, isStep && (prev == null || prev));
+		}
+		assignment.getVariable().accept(this);
+		assignment.getAssignment().accept(this);
+		return null;
+	}
+
+	/**
+	 * CallStatement visitor: recursive call to the call
+	 */
+	public Object visit(CallStatement callStatement) {
+		callStatement.getCall().accept(this);
+		return null;
+	}
+
+	/**
+	 * Return visitor: recursive call to the value
+	 */
+	public Object visit(Return returnStatement) {
+		if (returnStatement.hasValue()) returnStatement.getValue().accept(this);
+		return null;
+	}
+
+	/**
+	 * If visitor: recursive calls to the condition and operations
+	 */
+	public Object visit(If ifStatement) {
+		ifStatement.getCondition().accept(this);
+		ifStatement.getOperation().accept(this);
+		if (ifStatement.hasElse()) ifStatement.getElseOperation().accept(this);
+		return null;
+	}
+
+	/**
+	 * While visitor: the inner loop is analyzed once (recursive calls to the condition
+	 * and operation, by its own visitor), and merged
+	 */
+	public Object visit(While whileStatement) {
+		merge(analyze(whileStatement, loops));
+		return null;
+	}
+
+	/**
+	 * Break visitor: nothing to do
+	 */
+	public Object visit(Break breakStatement) {
+		return null;
+	}
+
+	/**
+	 * Continue visitor: nothing to do
+	 */
+	public Object visit(Continue continueStatement) {
+		return null;
+	}
+
+	/**
+	 * StatementsBlock visitor: recursive calls to all statements
+	 */
+	public Object visit(StatementsBlock statementsBlock) {
+		for (Statement s: statementsBlock.getStatements()){
+			s.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * LocalVariable visitor:
+	 * - record the declared variable
+	 * - recursive call to the init value
+	 */
+	public Object visit(LocalVariable localVariable) {
+		declared.add(localVariable.getNameDepth());
+		if (localVariable.hasInitValue()) localVariable.getInitValue().accept(this);
+		return null;
+	}
+
+	/**
+	 * VariableLocation visitor: recursive call to the location
+	 */
+	public Object visit(VariableLocation location) {
+		if (location.isExternal()) location.getLocation().accept(this);
+		return null;
+	}
+
+	/**
+	 * ArrayLocation visitor: recursive calls to the array and the index
+	 */
+	public Object visit(ArrayLocation location) {
+		location.getArray().accept(this);
+		location.getIndex().accept(this);
+		return null;
+	}
+
+	/**
+	 * StaticCall visitor: recursive calls to all arguments
+	 */
+	public Object visit(StaticCall call) {
+		for (Expression arg: call.getArguments()){
+			arg.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * VirtualCall visitor: recursive calls to the location and all arguments
+	 */
+	public Object visit(VirtualCall call) {
+		if (call.isExternal()) call.getLocation().accept(this);
+		for (Expression arg: call.getArguments()){
+			arg.accept(this);
+		}
+		return null;
+	}
+
+	/**
+	 * This visitor: nothing to do
+	 */
+	public Object visit(This thisExpression) {
+		return null;
+	}
+
+	/**
+	 * NewClass visitor: nothing to do
+	 */
+	public Object visit(NewClass newClass) {
+		return null;
+	}
+
+	/**
+	 * NewArray visitor: recursive call to the size
+	 */
+	public Object visit(NewArray newArray) {
+		newArray.getSize().accept(this);
+		return null;
+	}
+
+	/**
+	 * Length visitor: recursive call to the array
+	 */
+	public Object visit(Length length) {
+		length.getArray().accept(this);
+		return null;
+	}
+
+	/**
+	 * MathBinaryOp visitor:
+	 * - record products of a local variable and a constant
+	 * - recursive calls to the operands
+	 */
+	public Object visit(MathBinaryOp binaryOp) {
+		if (binaryOp.getOperator() == BinaryOps.MULTIPLY){
+			String var = getLocalVarName(binaryOp.getFirstOperand());
+			Integer factor = getIntConstant(binaryOp.getSecondOperand());
+			if (var == null || factor == null){
+				var = getLocalVarName(binaryOp.getSecondOperand());
+				factor = getIntConstant(binaryOp.getFirstOperand());
+			}
+			// multiplying by 0, 1 and -1 is simplified anyway
+			if (var != null && factor != null && factor != 0 && factor != 1 && factor != -1){
+				if (!products.containsKey(var)) products.put(var, new LinkedHashSet<Integer>());
+				products.get(var).add(factor);
+			}
+		}
+		binaryOp.getFirstOperand().accept(this);
+		binaryOp.getSecondOperand().accept(this);
+		return null;
+	}
+
+	/**
+	 * LogicalBinaryOp visitor: recursive calls to the operands
+	 */
+	public Object visit(LogicalBinaryOp binaryOp) {
+		binaryOp.getFirstOperand().accept(this);
+		binaryOp.getSecondOperand().accept(this);
+		return null;
+	}
+
+	/**
+	 * MathUnaryOp visitor: recursive call to the operand
+	 */
+	public Object visit(MathUnaryOp unaryOp) {
+		unaryOp.getOperand().accept(this);
+		return null;
+	}
+
+	/**
+	 * LogicalUnaryOp visitor: recursive call to the operand
+	 */
+	public Object visit(LogicalUnaryOp unaryOp) {
+		unaryOp.getOperand().accept(this);
+		return null;
+	}
+
+	/**
+	 * Literal visitor: nothing to do
+	 */
+	public Object visit(Literal literal) {
+		return null;
+	}
+
+	/**
+	 * ExpressionBlock visitor: recursive call to the expression
+	 */
+	public Object visit(ExpressionBlock expressionBlock) {
+		expressionBlock.getExpression().accept(this);
+		return null;
+	}
+}
@@ -0,0 +1,93 @@
+package IC.LIR;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LIRCode
+ * =======
+ * the LIR code of an AST node, as the translators build it: a sequence of pieces,
+ * each a string of instructions, or the code of another node.
+ *
+ * the code of a node is linked into its parent's, not copied: so the code of a deeply
+ * nested expression or statement (whose every level holds the code of the levels below)
+ * is built in time linear in its size. it is written out once, by toString, in a loop.
+ */
+public class LIRCode {
+
+	// the pieces: Strings and LIRCodes
+	private List<Object> pieces = new ArrayList<Object>(4);
+
+	public LIRCode() {
+	}
+
+	public LIRCode(String code) {
+		append(code);
+	}
+
+	/**
+	 * appends LIR instructions
+	 * @param code
+	 * @return this code
+	 */
+	public LIRCode append(String code) {
+		if (code.length() > 0)
+			pieces.add(code);
+		return this;
+	}
+
+	/**
+	 * appends the code of another node (which must not change after it is appended)
+	 * @param code
+	 * @return this code
+	 */
+	public LIRCode append(LIRCode code) {
+		if (!code.pieces.isEmpty())
+			pieces.add(code);
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return pieces.isEmpty();
+	}
+
+	/**
+	 * returns the code as a string (and keeps it as a single piece)
+	 */
+	public String toString() {
+		if (pieces.size() == 1 && pieces.get(0) instanceof String)
+			return (String)pieces.get(0);
+
+		StringBuilder code = new StringBuilder();
+		// the pieces still to write, innermost last: a code and the index of its next piece
+		List<LIRCode> codes = new ArrayList<LIRCode>();
+		List<Integer> next = new ArrayList<Integer>();
+		codes.add(this);
+		next.add(0);
+		while (!codes.isEmpty()) {
+			int top = codes.size() - 1;
+			LIRCode c = codes.get(top);
+			int i = next.get(top);
+			if (i == c.pieces.size()) {
+				codes.remove(top);
+				next.remove(top);
+				continue;
+			}
+			next.set(top, i + 1);
+
+			Object piece = c.pieces.get(i);
+			if (piece instanceof String) {
+				code.append((String)piece);
+			} else {
+				codes.add((LIRCode)piece);
+				next.add(0);
+			}
+		}
+
+		String s = code.toString();
+		pieces = new ArrayList<Object>(1);
+		pieces.add(s);
+		return s;
+	}
+
+}
@@ -0,0 +1,59 @@
+package IC.LIR;
+
+import java.io.*;
+
+import IC.Simulator.LIRFormatError;
+
+/**
+ * LIRConverter
+ * ============
+ * converts LIR between the text and the binary formats (see BinaryLIRFormat):
+ * 		LIRConverter <input> <output>
+ * binary input (by its magic number) is written as text, and text input as binary.
+ * comments are not kept, except for the virtual call site comments.
+ */
+public class LIRConverter {
+
+	public static void main(String[] args){
+		if (args.length != 2){
+			System.out.println("Error: usage: LIRConverter <input.lir|input.lirb> <output>");
+			System.exit(1);
+		}
+
+		try {
+			if (BinaryLIRReader.isBinaryFile(args[0])){
+				String text = BinaryLIRReader.open(args[0]).toText();
+				Writer out = new BufferedWriter(new FileWriter(args[1]));
+				try {
+					out.write(text);
+				} finally {
+					out.close();
+				}
+			} else {
+				BinaryLIRWriter.writeFile(readFile(args[0]), args[1]);
+			}
+		} catch (IOException e){
+			System.out.println("Error in converting " + args[0] + ": " + e.getMessage());
+			System.exit(1);
+		} catch (LIRFormatError e){
+			System.out.println(e);
+			System.exit(1);
+		} catch (BinaryLIRFormatError e){
+			System.out.println(e);
+			System.exit(1);
+		}
+	}
+
+	private static String readFile(String fileName) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		Reader in = new BufferedReader(new FileReader(fileName));
+		try {
+			char[] buf = new char[1 << 16];
+			int n;
+			while ((n = in.read(buf)) > 0) sb.append(buf, 0, n);
+		} finally {
+			in.close();
+		}
+		return sb.toString();
+	}
+}
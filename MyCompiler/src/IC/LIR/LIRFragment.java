@@ -0,0 +1,165 @@
+package IC.LIR;
+
+import java.util.List;
+
+/**
+ * LIRFragment
+ * ===========
+ * the LIR translation of a single class (see TranslatePropagatingVisitor.translateClass):
+ * its methods, its main method (if it has one), and its string literals.
+ *
+ * a fragment is numbered on its own: its labels, virtual call sites and strength
+ * reduction registers are counted from 0, and its string literals are named 'str$<i>'
+ * (in the order they first appear in it).
+ * when the fragments of a program are spliced, in the program's order, they are
+ * renumbered after the fragments before them, and the string literals get their
+ * program-wide names: so the program's LIR is exactly the one translated at once.
+ */
+public class LIRFragment {
+
+	// the numbered names of a fragment: labels, virtual call site comments,
+	// strength reduction registers and string literals
+	private static final String[] LABELS = {
+		"_false_label", "_true_label", "_end_label", "_while_cond_label", "_method_entry_label" };
+	private static final String VIRTUAL_CALL_SITE = "# virtual call site ";
+	private static final String REDUCED_REGISTER = "Rsr$";
+	private static final String LITERAL = "str$";
+
+	private List<String> methods;
+	private String mainMethod;
+	private List<String> literals;
+	private int labels;
+	private int virtualCallSites;
+	private int reducedRegisters = 0;
+	private int tailCalls = 0;
+
+	/**
+	 * @param methods the methods' LIR code, in order
+	 * @param mainMethod the main method's LIR code ("" if the class has no main method)
+	 * @param literals the string literals: literal i is named 'str$<i>'
+	 * @param labels the number of labels
+	 * @param virtualCallSites the number of virtual call sites
+	 */
+	public LIRFragment(List<String> methods, String mainMethod, List<String> literals, int labels, int virtualCallSites) {
+		this.methods = methods;
+		this.mainMethod = mainMethod;
+		this.literals = literals;
+		this.labels = labels;
+		this.virtualCallSites = virtualCallSites;
+	}
+
+	/**
+	 * sets the optimizations of an optimized translation
+	 * @param reducedRegisters the number of strength reduction registers (loop products reduced)
+	 * @param tailCalls the number of self tail calls eliminated
+	 */
+	public void setOptimizations(int reducedRegisters, int tailCalls) {
+		this.reducedRegisters = reducedRegisters;
+		this.tailCalls = tailCalls;
+	}
+
+	/**
+	 * returns the given code of this fragment with its names renumbered after the
+	 * given numbers of names before it, and its string literals renamed
+	 * @param code a method of this fragment
+	 * @param labelOffset
+	 * @param virtualCallSiteOffset
+	 * @param reducedRegisterOffset
+	 * @param literalNames the program-wide name of every string literal
+	 * @return
+	 */
+	public String renumber(String code, int labelOffset, int virtualCallSiteOffset, int reducedRegisterOffset, String[] literalNames) {
+		StringBuilder renumbered = new StringBuilder(code.length() + code.length() / 16);
+		int n = code.length();
+		int copied = 0;  //code before copied is in renumbered
+		for (int i = 0; i < n; i++) {
+			char c = code.charAt(i);
+			String prefix = null;
+			int kind = 0;
+
+			if (c == '_' && (i == 0 || !isNameChar(code.charAt(i-1)))) {
+				for (String label : LABELS) {
+					if (code.startsWith(label, i)) {
+						prefix = label;
+						kind = 1;
+						break;
+					}
+				}
+			} else if (c == '#' && (i == 0 || code.charAt(i-1) == '\n') && code.startsWith(VIRTUAL_CALL_SITE, i)) {
+				prefix = VIRTUAL_CALL_SITE;
+				kind = 2;
+			} else if (c == '$' && i >= 3 && code.startsWith(REDUCED_REGISTER, i-3)) {
+				prefix = REDUCED_REGISTER;
+				kind = 3;
+				i -= 3;
+			} else if (c == '$' && i >= 3 && code.startsWith(LITERAL, i-3)) {
+				prefix = LITERAL;
+				kind = 4;
+				i -= 3;
+			}
+			if (prefix == null) continue;
+
+			/* the number after the prefix */
+			int start = i + prefix.length(), end = start;
+			while (end < n && Character.isDigit(code.charAt(end)))
+				end++;
+			if (end == start) {
+				i = start - 1;
+				continue;
+			}
+			int number = Integer.parseInt(code.substring(start, end));
+
+			renumbered.append(code, copied, i);
+			switch (kind) {
+			case 1:
+				renumbered.append(prefix).append(number + labelOffset);
+				break;
+			case 2:
+				renumbered.append(prefix).append(number + virtualCallSiteOffset);
+				break;
+			case 3:
+				renumbered.append("Rsr").append(number + reducedRegisterOffset);
+				break;
+			default:
+				renumbered.append(literalNames[number]);
+			}
+			copied = end;
+			i = end - 1;
+		}
+		renumbered.append(code, copied, n);
+		return renumbered.toString();
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	public List<String> getMethods() {
+		return methods;
+	}
+
+	public String getMainMethod() {
+		return mainMethod;
+	}
+
+	public List<String> getLiterals() {
+		return literals;
+	}
+
+	public int getLabels() {
+		return labels;
+	}
+
+	public int getVirtualCallSites() {
+		return virtualCallSites;
+	}
+
+	public int getReducedRegisters() {
+		return reducedRegisters;
+	}
+
+	public int getTailCalls() {
+		return tailCalls;
+	}
+
+}
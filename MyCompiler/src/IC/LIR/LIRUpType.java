@@ -5,7 +5,7 @@ package IC.LIR;
  */
 public class LIRUpType {
 
-	private String LIRCode;
+	private LIRCode LIRCode;
 	private LIRFlagEnum LIRInstType;
 	private String targetRegister;
 
@@ -15,17 +15,28 @@ public class LIRUpType {
 	 * @param astType: the return type of AST node translation
 	 * @param targetRegister: the address (in registers) for the current node
 	 */
-	public LIRUpType(String lIRCode, LIRFlagEnum astType, String targetRegister) {
+	public LIRUpType(LIRCode lIRCode, LIRFlagEnum astType, String targetRegister) {
 		super();
 		this.LIRCode = lIRCode;
 		this.LIRInstType = astType;
 		this.targetRegister = targetRegister;
 	}
 
-	public String getLIRCode() {
+	public LIRUpType(String lIRCode, LIRFlagEnum astType, String targetRegister) {
+		this(new LIRCode(lIRCode), astType, targetRegister);
+	}
+
+	/**
+	 * the LIR code for the current node, to append to its parent's (see LIRCode)
+	 */
+	public LIRCode getCode() {
 		return LIRCode;
 	}
 
+	public String getLIRCode() {
+		return LIRCode.toString();
+	}
+
 	public LIRFlagEnum getLIRInstType() {
 		return LIRInstType;
 	}
@@ -22,92 +22,75 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	}
 	
 	private ClassLayout libicLayout = null;
-	
+
+	// strength reduced products in the loops being translated:
+	// variable (name+depth) -> (constant factor -> register holding variable*factor)
+	private Map<String,Map<Integer,String>> reducedProducts = new HashMap<String,Map<Integer,String>>();
+	private int reducedRegsCounter = 0;
+	// the loops analyzed for strength reduction (an outer loop's analysis holds its inner loops')
+	private Map<While,InductionVariableVisitor> analyzedLoops = new IdentityHashMap<While,InductionVariableVisitor>();
+
+	// tail call elimination: the method being translated, its entry label,
+	// whether a self tail call jumps to it, and the statements in tail position
+	private Method currMethod = null;
+	private String currMethodEntryLabel = "";
+	private boolean currMethodHasTailCall = false;
+	private Set<Statement> tailStatements = new HashSet<Statement>();
+	// the locals declared in the method's body (name+depth), reset by a self tail call
+	private Set<String> currMethodLocals = null;
+	private int tailCallsCounter = 0;
+
 	
 	/**
-	 * Program propagating visitor:
-	 * - recursive calls to all classes in program
-	 * - returns the LIR representation of the IC program ordered by:
-	 * 		- string literals
-	 * 		- class dispatch tables
-	 * 		- methods
-	 * 		- main method
+	 * creates the class layouts and dispatch tables of all classes in the program,
+	 * and the layout of the library class
 	 * @param program
-	 * @param d
-	 * @return
 	 */
-	public LIRUpType visit(Program program, Integer d){
-		
+	public void layoutClasses(Program program){
+		super.layoutClasses(program);
 		for(ICClass c: program.getClasses()){
-			// skip library method
-			if (c.getName().equals("Library")) {
+			if (c.getName().equals("Library"))
 				libicLayout = new ClassLayout(c);
-				continue;
-			}
-			
-			// create class layout
-			ClassLayout classLayout;
-			if (c.hasSuperClass()){
-				// already have super-class layout at this point
-				classLayout = new ClassLayout(c, classLayouts.get(c.getSuperClassName()));
-			} else {
-				classLayout = new ClassLayout(c);
-			}
-			// insert to classLayouts
-			classLayouts.put(c.getName(), classLayout);
-			// insert class dispatch table representation
-			classDispatchTable.add(classLayout.getDispatchTable());
-
-		}
-		
-		// visit all classes recursively
-		for(ICClass c: program.getClasses()){
-			if (!c.getName().equals("Library"))
-				c.accept(this, 0);
 		}
-		
-		// return LIR representation for the IC program
-		String lirBuffer = "";
-		
-		lirBuffer += "# this is the optimized lir translation\n";
-		
-		// (1) insert all string literals
-		lirBuffer += "# string literals\n";
-		// insert error messages strings
-		lirBuffer += "str_null_ref: \"Runtime Error: Null pointer dereference!\"\n";
-		lirBuffer += "str_array_access: \"Runtime Error: Array index out of bounds!\"\n";
-		lirBuffer += "str_size: \"Runtime Error: Array allocation with negative array size!\"\n";
-		lirBuffer += "str_zero: \"Runtime Error: Division by zero!\"\n";
-		
-		for (String strLiteral: this.stringLiterals.keySet()){
-			lirBuffer += this.getStringLiterals().get(strLiteral)+": "+strLiteral+"\n";
-		}
-		lirBuffer += "\n";
-		
-		// (2) insert class dispatch tables
-		lirBuffer += "# class dispatch tables\n";
-		for (String classDisTab: this.classDispatchTable){
-			lirBuffer += classDisTab+"\n";
-		}
-		lirBuffer += "\n";
-		
-		// (3) insert all methods
-		// insert runtime check methods
-		lirBuffer += runtimeChecks;
-		// insert all user methods
-		lirBuffer += "# methods\n";
-		for (String methodStr: this.methods){
-			lirBuffer += methodStr+"\n";
+	}
+	
+	/**
+	 * returns the LIR representation of the translated classes
+	 * @return
+	 */
+	protected String assemble(){
+		return "# this is the optimized lir translation\n" + super.assemble();
+	}
+	
+	/**
+	 * translates a single class of the program into a fragment (see LIRFragment),
+	 * counting its optimizations on their own
+	 * @param icClass
+	 * @return
+	 */
+	public LIRFragment translateClass(ICClass icClass){
+		reducedRegsCounter = 0;
+		tailCallsCounter = 0;
+		LIRFragment fragment = super.translateClass(icClass);
+		fragment.setOptimizations(reducedRegsCounter, tailCallsCounter);
+		return fragment;
+	}
+	
+	/**
+	 * returns the LIR representation of the program from the fragments of its classes,
+	 * and counts their optimizations
+	 * @param fragments
+	 * @return
+	 */
+	public LIRUpType splice(List<LIRFragment> fragments){
+		LIRUpType lir = super.splice(fragments);
+		reducedRegsCounter = 0;
+		tailCallsCounter = 0;
+		for (LIRFragment fragment: fragments){
+			reducedRegsCounter += fragment.getReducedRegisters();
+			tailCallsCounter += fragment.getTailCalls();
 		}
-		
-		// (4) insert main method
-		lirBuffer += "# main method\n";
-		lirBuffer += this.mainMethod;
-		
-		// (5) insert error exit label
-		lirBuffer += "\n_error_exit:\n";
-		
-		return new LIRUpType(lirBuffer, LIRFlagEnum.EXPLICIT,"");
+		return lir;
 	}
 
 	/**
@@ -178,30 +161,45 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * @return
 	 */
 	public LIRUpType methodVisitHelper(Method method, Integer d, boolean isMain){
-		String methodLIRCode = "";
+		LIRCode methodLIRCode = new LIRCode();
 		
 		// create method label
 		String methodLabel = "_";
 		methodLabel += isMain ? "ic" : ((ClassSymbolTable) method.getEnclosingScope()).getMyClassSymbol().getID();
 		methodLabel += "_"+method.getName();
 		
-		methodLIRCode += methodLabel+":\n";
+		methodLIRCode.append(methodLabel+":\n");
+		
+		// prepare self tail call elimination
+		currMethod = isMain ? null : method;
+		currMethodEntryLabel = "_method_entry_label"+(labelCounter++);
+		currMethodHasTailCall = false;
+		currMethodLocals = null;
+		tailStatements.clear();
+		if (!isMain) collectTailStatements(method.getStatements(), method.getType().getName().equals("void"));
 		
 		// insert method's code recursively
+		LIRCode statementsLIRCode = new LIRCode();
 		for (Statement s: method.getStatements()){
-			methodLIRCode += s.accept(this,0).getLIRCode();
+			statementsLIRCode.append(s.accept(this,0).getCode());
+		}
+		// self tail calls jump back to the method entry, after the label
+		if (currMethodHasTailCall){
+			methodLIRCode.append(currMethodEntryLabel+":\n");
 		}
+		methodLIRCode.append(statementsLIRCode);
+		currMethod = null;
 		
 		// if method is void (but not main), concatenate a "return 9999"
 		if(method.getType().getName().equals("void") && !isMain){
-			methodLIRCode += "Return 9999\n";
+			methodLIRCode.append("Return 9999\n");
 		}
 		
 		// update methods list / main method
 		if (isMain){
-			mainMethod = methodLIRCode;
+			mainMethod = methodLIRCode.toString();
 		} else {
-			methods.add(methodLIRCode);
+			methods.add(methodLIRCode.toString());
 		}
 		
 		return new LIRUpType("", LIRFlagEnum.EXPLICIT,"");
@@ -242,31 +240,45 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR assignment instruction
 	 */
 	public LIRUpType visit(Assignment assignment, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		LIRUpType assign = assignment.getAssignment().accept(this, d);
 		LIRUpType var = assignment.getVariable().accept(this, d+1);
 		
 		// translate assignment
-		tr += assign.getLIRCode();
+		tr.append(assign.getCode());
 		if (assign.getLIRInstType() != LIRFlagEnum.REGISTER &&
 				assign.getLIRInstType() != LIRFlagEnum.LITERAL){
 			if (!(assign.getLIRInstType() == LIRFlagEnum.LOC_VAR_LOCATION && 
 					var.getLIRInstType() == LIRFlagEnum.REGISTER)){
-				tr += getMoveCommand(assign.getLIRInstType());
-				tr += assign.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(assign.getLIRInstType()));
+				tr.append(assign.getTargetRegister()+",R"+d+"\n");
 				assign.setTargetRegister("R"+d);
 				assign.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 		}
 		
 		// translate variable
-		tr += var.getLIRCode();
+		tr.append(var.getCode());
 				
 		// handle all variable cases
-		tr += getMoveCommand(var.getLIRInstType());
-		tr += assign.getTargetRegister()+","+var.getTargetRegister()+"\n";
-		
+		tr.append(getMoveCommand(var.getLIRInstType()));
+		tr.append(assign.getTargetRegister()+","+var.getTargetRegister()+"\n");
+
+		// update the strength reduced products of the assigned variable
+		String varName = InductionVariableVisitor.getLocalVarName(assignment.getVariable());
+		if (varName != null && reducedProducts.containsKey(varName)){
+			Integer step = InductionVariableVisitor.getInductionStep(varName, assignment.getAssignment());
+			for (Map.Entry<Integer,String> product: reducedProducts.get(varName).entrySet()){
+				if (step != null){
+					tr.append("Add "+(step*product.getKey())+","+product.getValue()+"\n");
+				} else { // not an induction step, recompute the product
+					tr.append("Move "+varName+","+product.getValue()+"\n");
+					tr.append("Mul "+product.getKey()+","+product.getValue()+"\n");
+				}
+			}
+		}
+
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
 
@@ -284,7 +296,7 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 				return f;
 		}
 		if (icClass.hasSuperClass()){
-			return getFieldASTNodeRec(global.getClass(icClass.getSuperClassName()).getIcClass(), fieldName);
+			return getFieldASTNodeRec(global.getClass(icClass.getSuperClassIdentifier()).getIcClass(), fieldName);
 		} else
 			System.err.println("error in getFieldASTNodeRec");
 		return null;
@@ -296,13 +308,13 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR location update instruction
 	 */
 	public LIRUpType visit(VariableLocation location, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		if (location.isExternal()){
 			// translate the location
 			LIRUpType loc = location.getLocation().accept(this, d);
 			// add code to translation
-			tr += loc.getLIRCode();
+			tr.append(loc.getCode());
 			
 			// get the ClassLayout for the location
 			IC.TypeTable.Type locationClassType = 
@@ -318,19 +330,19 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 			// translate this step
 			String locReg = "R"+d;
 			if (loc.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(loc.getLIRInstType());
-				tr += loc.getTargetRegister()+","+locReg+"\n";
+				tr.append(getMoveCommand(loc.getLIRInstType()));
+				tr.append(loc.getTargetRegister()+","+locReg+"\n");
 				loc.setTargetRegister(locReg);
 				loc.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 			
 			// check external location null reference
-			tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+			tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 			
 			return new LIRUpType(tr, LIRFlagEnum.EXT_VAR_LOCATION, locReg+"."+fieldOffset);
 		}else{
 			// check if the variable is a field
-			if (((BlockSymbolTable)location.getEnclosingScope()).isVarField(location.getName())){
+			if (((BlockSymbolTable)location.getEnclosingScope()).isVarField(location.getIdentifier())){
 				String thisClassName = ((BlockSymbolTable)location.getEnclosingScope()).getEnclosingCST().getMyClassSymbol().getID();
 				
 				ClassLayout locationClassLayout = classLayouts.get(thisClassName);
@@ -341,7 +353,7 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 				// get the field offset
 				int fieldOffset = locationClassLayout.getFieldOffset(f);
 				
-				tr += "Move this,R"+d+"\n";
+				tr.append("Move this,R"+d+"\n");
 				String tgtLoc = "R"+d+"."+fieldOffset;
 				
 				// translate only the variable name
@@ -360,72 +372,76 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR array location update instruction
 	 */
 	public LIRUpType visit(ArrayLocation location, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// decide which block will be first by the Setti Ullman method
-		boolean suBool = location.getArray().getRequiredRegs() >= location.getIndex().getRequiredRegs();  
+		// (the array first if the index cannot be evaluated before it)
+		boolean suBool = location.getArray().getRequiredRegs() >= location.getIndex().getRequiredRegs() ||
+						!RegCounterVisitor.canReorder(location.getArray(), location.getIndex());
 		
 		if (suBool){
 			// translate array
 			LIRUpType array = location.getArray().accept(this, d);
-			tr += array.getLIRCode();
+			tr.append(array.getCode());
 
 			// move result to a single register
 			if (array.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(array.getLIRInstType());
-				tr += array.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(array.getLIRInstType()));
+				tr.append(array.getTargetRegister()+",R"+d+"\n");
 				array.setTargetRegister("R"+d);
 				array.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 
 			// check array null reference
-			tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+			tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 
 			// translate index
 			LIRUpType index = location.getIndex().accept(this, d+1);
-			tr += index.getLIRCode();
+			tr.append(index.getCode());
 
 			// move result to a single register
 			if (index.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(index.getLIRInstType());
-				tr += index.getTargetRegister()+",R"+(d+1)+"\n";
+				tr.append(getMoveCommand(index.getLIRInstType()));
+				tr.append(index.getTargetRegister()+",R"+(d+1)+"\n");
 				index.setTargetRegister("R"+(d+1));
 				index.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 
 			// check array access
-			tr += "StaticCall __checkArrayAccess(a=R"+d+",i=R"+(d+1)+"),Rdummy\n";
+			tr.append("StaticCall __checkArrayAccess(a=R"+d+",i=R"+(d+1)+"),Rdummy\n");
 		} else {
 			// translate index
 			LIRUpType index = location.getIndex().accept(this, d);
-			tr += index.getLIRCode();
+			tr.append(index.getCode());
 
 			// move result to a single register
 			if (index.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(index.getLIRInstType());
-				tr += index.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(index.getLIRInstType()));
+				tr.append(index.getTargetRegister()+",R"+d+"\n");
 				index.setTargetRegister("R"+d);
 				index.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 
-			// check array access
-			tr += "StaticCall __checkArrayAccess(a=R"+d+",i=R"+d+"),Rdummy\n";
-
 			// translate array
 			LIRUpType array = location.getArray().accept(this, d+1);
-			tr += array.getLIRCode();
+			tr.append(array.getCode());
 
 			// move result to a single register
 			if (array.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(array.getLIRInstType());
-				tr += array.getTargetRegister()+",R"+(d+1)+"\n";
+				tr.append(getMoveCommand(array.getLIRInstType()));
+				tr.append(array.getTargetRegister()+",R"+(d+1)+"\n");
 				array.setTargetRegister("R"+(d+1));
 				array.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 
 			// check array null reference
-			tr += "StaticCall __checkNullRef(a=R"+(d+1)+"),Rdummy\n";
+			tr.append("StaticCall __checkNullRef(a=R"+(d+1)+"),Rdummy\n");
 
+			// check array access
+			tr.append("StaticCall __checkArrayAccess(a=R"+(d+1)+",i=R"+d+"),Rdummy\n");
+			
+			// array is in R(d+1), index in Rd
+			return new LIRUpType(tr, LIRFlagEnum.ARR_LOCATION,"R"+(d+1)+"[R"+d+"]");
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.ARR_LOCATION,"R"+d+"[R"+(d+1)+"]");
@@ -436,6 +452,10 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - translate recursively the call expression and return its translation
 	 */
 	public LIRUpType visit(CallStatement callStatement, Integer d){
+		// a self call in tail position of a void method becomes a jump
+		if (tailStatements.contains(callStatement) && isSelfCall(callStatement.getCall())){
+			return selfTailCallVisit(callStatement.getCall(), d);
+		}
 		return callStatement.getCall().accept(this, d);
 	}
 
@@ -445,57 +465,200 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR return statement update instruction
 	 */
 	public LIRUpType visit(Return returnStatement, Integer d){
-		String tr = "";
-		if (returnStatement.hasValue()){
+		LIRCode tr = new LIRCode();
+		if (returnStatement.hasValue() && returnStatement.getValue() instanceof Call &&
+				isSelfCall((Call) returnStatement.getValue())){
+			// returning the value of a self call: jump back to the method entry instead
+			return selfTailCallVisit((Call) returnStatement.getValue(), d);
+		} else if (returnStatement.hasValue()){
 			LIRUpType returnVal = returnStatement.getValue().accept(this, d);
-			tr += returnVal.getLIRCode();
-			tr += "Return "+returnVal.getTargetRegister()+"\n";
+			tr.append(returnVal.getCode());
+			// fields and array elements must be loaded first
+			if (returnVal.getLIRInstType() == LIRFlagEnum.ARR_LOCATION ||
+					returnVal.getLIRInstType() == LIRFlagEnum.EXT_VAR_LOCATION){
+				tr.append(getMoveCommand(returnVal.getLIRInstType()));
+				tr.append(returnVal.getTargetRegister()+",R"+d+"\n");
+				returnVal.setTargetRegister("R"+d);
+			}
+			tr.append("Return "+returnVal.getTargetRegister()+"\n");
 		} else {
-			tr += "Return 9999\n";
+			tr.append("Return 9999\n");
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT, "");
 	}
 
+	/**
+	 * collects the call statements in tail position of the given statements list:
+	 * the last statement of a void method body (or of a block / if branch in tail position),
+	 * and any statement followed by a "return;"
+	 * @param statements
+	 * @param inTail: true if the end of the list is the end of the method
+	 */
+	private void collectTailStatements(List<Statement> statements, boolean inTail){
+		for (int i = 0; i < statements.size(); i++){
+			Statement s = statements.get(i);
+			boolean isTail = (i == statements.size()-1) ? inTail :
+				statements.get(i+1) instanceof Return && !((Return) statements.get(i+1)).hasValue();
+
+			if (s instanceof CallStatement){
+				if (isTail) tailStatements.add(s);
+			} else if (s instanceof StatementsBlock){
+				collectTailStatements(((StatementsBlock) s).getStatements(), isTail);
+			} else if (s instanceof If){
+				If ifStatement = (If) s;
+				collectTailStatements(Arrays.asList(ifStatement.getOperation()), isTail);
+				if (ifStatement.hasElse())
+					collectTailStatements(Arrays.asList(ifStatement.getElseOperation()), isTail);
+			} else if (s instanceof While){
+				// the end of a loop body is not the end of the method
+				collectTailStatements(Arrays.asList(((While) s).getOperation()), false);
+			}
+		}
+	}
+
+	/**
+	 * returns the name+depth of every local variable declared in the given statements
+	 * (with a stack of the statements to visit rather than recursively: blocks may nest deep)
+	 * @param statements
+	 * @return
+	 */
+	private Set<String> collectLocals(List<Statement> statements){
+		Set<String> locals = new LinkedHashSet<String>();
+		Deque<Statement> stack = new ArrayDeque<Statement>();
+		for (int i = statements.size()-1; i >= 0; i--) stack.push(statements.get(i));
+		while (!stack.isEmpty()){
+			Statement s = stack.pop();
+			if (s instanceof LocalVariable){
+				locals.add(((LocalVariable) s).getNameDepth());
+			} else if (s instanceof StatementsBlock){
+				List<Statement> block = ((StatementsBlock) s).getStatements();
+				for (int i = block.size()-1; i >= 0; i--) stack.push(block.get(i));
+			} else if (s instanceof If){
+				If ifStatement = (If) s;
+				if (ifStatement.hasElse()) stack.push(ifStatement.getElseOperation());
+				stack.push(ifStatement.getOperation());
+			} else if (s instanceof While){
+				stack.push(((While) s).getOperation());
+			}
+		}
+		return locals;
+	}
+
+	/**
+	 * checks if the given call always invokes the method being translated:
+	 * - a static call to the method itself
+	 * - a virtual call on this to the method itself, if no subclass overrides it
+	 * @param call
+	 * @return
+	 */
+	private boolean isSelfCall(Call call){
+		if (currMethod == null) return false;
+		
+		if (call instanceof StaticCall){
+			String className = ((StaticCall) call).getClassName();
+			if (className.equals("Library")) return false;
+			return classLayouts.get(className).getMethodFromName(call.getIdentifier()) == currMethod;
+		} else {
+			VirtualCall virtualCall = (VirtualCall) call;
+			if (currMethod.isStatic()) return false;
+			if (virtualCall.isExternal() && !(virtualCall.getLocation() instanceof This)) return false;
+			if (classLayouts.get(currClassName).getMethodFromName(call.getIdentifier()) != currMethod) return false;
+			
+			// the receiver may be an instance of any subclass
+			for (ClassLayout layout: classLayouts.values()){
+				if (isSubclassOf(layout.getICClass(), currClassName) &&
+						layout.getMethodFromName(call.getIdentifier()) != currMethod)
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * checks if the given class is a (direct or indirect) subclass of the class with the given name
+	 * @param icClass
+	 * @param className
+	 * @return
+	 */
+	private boolean isSubclassOf(ICClass icClass, String className){
+		while (icClass.hasSuperClass()){
+			if (icClass.getSuperClassName().equals(className)) return true;
+			icClass = classLayouts.get(icClass.getSuperClassName()).getICClass();
+		}
+		return false;
+	}
+
+	/**
+	 * translates a self call in tail position:
+	 * - evaluate all arguments into registers (as for a call)
+	 * - assign them to the formals
+	 * - reset the locals of the method's body (a new call starts with them 0 / null)
+	 * - jump back to the method entry
+	 * @param call
+	 * @param d
+	 * @return
+	 */
+	private LIRUpType selfTailCallVisit(Call call, Integer d){
+		// recursive calls to all arguments
+		String[] argRegs = new String[call.getArguments().size()];
+		LIRCode tr = argumentsVisit(call.getArguments(), d, argRegs);
+		
+		// reassign formals in place and jump
+		tr.append("# tail call:\n");
+		for (int i = 0; i < call.getArguments().size(); i++){
+			tr.append("Move "+argRegs[i]+","+currMethod.getFormals().get(i).getNameDepth()+"\n");
+		}
+		if (currMethodLocals == null) currMethodLocals = collectLocals(currMethod.getStatements());
+		for (String local: currMethodLocals){
+			tr.append("Move 0,"+local+"\n");
+		}
+		tr.append("Jump "+currMethodEntryLabel+"\n");
+		currMethodHasTailCall = true;
+		tailCallsCounter++;
+		
+		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
+	}
+
 	/**
 	 * If propagating visitor:
 	 * - translate recursively the condition, then statement and else statement
 	 * - concatenate the translations to the LIR if statement update instruction
 	 */
 	public LIRUpType visit(If ifStatement, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		String falseLabel = "_false_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
 		
 		// recursive call the condition expression
 		LIRUpType condExp = ifStatement.getCondition().accept(this, d);
-		tr += condExp.getLIRCode();
+		tr.append(condExp.getCode());
 		if (condExp.getLIRInstType() != LIRFlagEnum.REGISTER){
-			tr += getMoveCommand(condExp.getLIRInstType());
-			tr += condExp.getTargetRegister()+",R"+d+"\n";
+			tr.append(getMoveCommand(condExp.getLIRInstType()));
+			tr.append(condExp.getTargetRegister()+",R"+d+"\n");
 			condExp.setTargetRegister("R"+d);
 			condExp.setLIRInstType(LIRFlagEnum.REGISTER);
 		}
 		
 		// check condition
-		tr += "Compare 0,R"+d+"\n";
-		if (ifStatement.hasElse()) tr += "JumpTrue "+falseLabel+"\n";
-		else tr += "JumpTrue "+endLabel+"\n";
+		tr.append("Compare 0,R"+d+"\n");
+		if (ifStatement.hasElse()) tr.append("JumpTrue "+falseLabel+"\n");
+		else tr.append("JumpTrue "+endLabel+"\n");
 		
 		// recursive call to the then statement
 		LIRUpType thenStat = ifStatement.getOperation().accept(this, d);
-		tr += thenStat.getLIRCode();
+		tr.append(thenStat.getCode());
 		
 		if (ifStatement.hasElse()){
-			tr += "Jump "+endLabel+"\n";
+			tr.append("Jump "+endLabel+"\n");
 
 			// recursive call to the else statement
-			tr += falseLabel+":\n";
+			tr.append(falseLabel+":\n");
 			LIRUpType elseStat = ifStatement.getElseOperation().accept(this, d);
-			tr += elseStat.getLIRCode();
+			tr.append(elseStat.getCode());
 		}
 		
-		tr += endLabel+":\n";
+		tr.append(endLabel+":\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
@@ -510,32 +673,54 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		int prevWhileID = currWhileID;
 		currWhileID = labelCounter;
 		
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		String whileLabel = "_while_cond_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
-		
-		tr += whileLabel+":\n";
+
+		// strength reduction: initialize a register for every product of
+		// an induction variable and a constant used in the loop
+		Map<String,Map<Integer,String>> prevReducedProducts = reducedProducts;
+		reducedProducts = new HashMap<String,Map<Integer,String>>();
+		for (Map.Entry<String,Map<Integer,String>> e: prevReducedProducts.entrySet()){
+			reducedProducts.put(e.getKey(), new LinkedHashMap<Integer,String>(e.getValue()));
+		}
+		Map<String,Set<Integer>> candidates = InductionVariableVisitor.findCandidates(whileStatement, analyzedLoops);
+		for (Map.Entry<String,Set<Integer>> candidate: candidates.entrySet()){
+			String var = candidate.getKey();
+			if (!reducedProducts.containsKey(var))
+				reducedProducts.put(var, new LinkedHashMap<Integer,String>());
+			for (Integer factor: candidate.getValue()){
+				if (reducedProducts.get(var).containsKey(factor)) continue; // kept by an outer loop
+				String reg = (translatingFragment ? "Rsr$" : "Rsr")+(reducedRegsCounter++);
+				tr.append("Move "+var+","+reg+"\n");
+				tr.append("Mul "+factor+","+reg+"\n");
+				reducedProducts.get(var).put(factor, reg);
+			}
+		}
+
+		tr.append(whileLabel+":\n");
 		// recursive call to condition
 		LIRUpType condExp = whileStatement.getCondition().accept(this, d);
-		tr += condExp.getLIRCode();
+		tr.append(condExp.getCode());
 		if (condExp.getLIRInstType() != LIRFlagEnum.REGISTER){
-			tr += getMoveCommand(condExp.getLIRInstType());
-			tr += condExp.getTargetRegister()+",R"+d+"\n";
+			tr.append(getMoveCommand(condExp.getLIRInstType()));
+			tr.append(condExp.getTargetRegister()+",R"+d+"\n");
 			condExp.setTargetRegister("R"+d);
 			condExp.setLIRInstType(LIRFlagEnum.REGISTER);
 		}
 		
 		// check condition
-		tr += "Compare 0,R"+d+"\n";
-		tr += "JumpTrue "+endLabel+"\n";
+		tr.append("Compare 0,R"+d+"\n");
+		tr.append("JumpTrue "+endLabel+"\n");
 		
 		// recursive call to operation statement
-		tr += whileStatement.getOperation().accept(this,d).getLIRCode();
-		tr += "Jump "+whileLabel+"\n";
-		tr += endLabel+":\n";
-		
-		// set while id back to previous value
+		tr.append(whileStatement.getOperation().accept(this,d).getCode());
+		tr.append("Jump "+whileLabel+"\n");
+		tr.append(endLabel+":\n");
+
+		// set while id and reduced products back to previous values
 		currWhileID = prevWhileID;
+		reducedProducts = prevReducedProducts;
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
 
@@ -544,7 +729,7 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return the break statement
 	 */
 	public LIRUpType visit(Break breakStatement, Integer d){
-		String tr = "Jump _end_label"+currWhileID+"\n";
+		LIRCode tr = new LIRCode("Jump _end_label"+currWhileID+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
 
@@ -553,7 +738,7 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return the continue statement
 	 */
 	public LIRUpType visit(Continue continueStatement, Integer d){
-		String tr = "Jump _while_cond_label"+currWhileID+"\n";
+		LIRCode tr = new LIRCode("Jump _while_cond_label"+currWhileID+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
 
@@ -563,11 +748,11 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR code
 	 */
 	public LIRUpType visit(StatementsBlock statementsBlock, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to all statements in the block
 		for (Statement s: statementsBlock.getStatements()){
-			tr += s.accept(this, d).getLIRCode();
+			tr.append(s.accept(this, d).getCode());
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
@@ -579,19 +764,19 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR local variable statement instruction
 	 */
 	public LIRUpType visit(LocalVariable localVariable, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		if (localVariable.hasInitValue()){
 			LIRUpType initVal = localVariable.getInitValue().accept(this, d);
-			tr += initVal.getLIRCode();
+			tr.append(initVal.getCode());
 			if (initVal.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(initVal.getLIRInstType());
-				tr += initVal.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(initVal.getLIRInstType()));
+				tr.append(initVal.getTargetRegister()+",R"+d+"\n");
 				initVal.setTargetRegister("R"+d);
 				initVal.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 			// move register into the local var name
-			tr += "Move "+initVal.getTargetRegister()+","+localVariable.getNameDepth()+"\n";
+			tr.append("Move "+initVal.getTargetRegister()+","+localVariable.getNameDepth()+"\n");
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
@@ -603,65 +788,77 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR static call statement instruction
 	 */
 	public LIRUpType visit(StaticCall call, Integer d){
-		String tr = "";
-		
 		// recursive calls to all arguments
-		int i = d;
-		for (Expression arg: call.getArguments()){
-			LIRUpType argExp = arg.accept(this, i);
-			tr += "# argument #"+(i-d)+":\n";
-			tr += argExp.getLIRCode();
-			if (argExp.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(argExp.getLIRInstType());
-				tr += argExp.getTargetRegister()+",R"+i+"\n";
-				argExp.setTargetRegister("R"+i);
-				argExp.setLIRInstType(LIRFlagEnum.REGISTER);
-			}
-			// increment registers count
-			i++;
-		}
+		String[] argRegs = new String[call.getArguments().size()];
+		LIRCode tr = argumentsVisit(call.getArguments(), d, argRegs);
 		
 		// check if the call is to a library (static) method
 		if (call.getClassName().equals("Library")){
-			return libraryCallVisit(tr,call,d);
+			return libraryCallVisit(tr,call,d,argRegs);
 		}
 		
 		// call statement
 		ClassLayout thisClassLayout = classLayouts.get(call.getClassName());
-		Method thisMethod = thisClassLayout.getMethodFromName(call.getName());
-		tr += "# call statement:\n";
+		Method thisMethod = thisClassLayout.getMethodFromName(call.getIdentifier());
+		tr.append("# call statement:\n");
 		// construct method label
 		String methodName = "_"+((ClassSymbolTable) thisMethod.getEnclosingScope()).getMyClassSymbol().getID()+
 							"_"+call.getName();
-		tr += "StaticCall "+methodName+"(";
+		String line = "StaticCall "+methodName+"(";
 		// insert <formal>=<argument register>
-		for(i = 0; i < call.getArguments().size(); i++){
-			tr += thisMethod.getFormals().get(i).getNameDepth()+"=R"+(d+i)+",";
+		for(int i = 0; i < call.getArguments().size(); i++){
+			line += thisMethod.getFormals().get(i).getNameDepth()+"="+argRegs[i]+",";
 		}
 		// remove last comma
-		if (tr.endsWith(",")) tr = tr.substring(0, tr.length()-1);
-		tr += "),R"+d+"\n";
+		if (line.endsWith(",")) line = line.substring(0, line.length()-1);
+		tr.append(line+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
 	
+	/**
+	 * translates call arguments, each into its own register from Rd on,
+	 * in the evaluation order chosen by RegCounterVisitor (most registers first)
+	 * @param args
+	 * @param d
+	 * @param argRegs: filled with the register holding each argument
+	 * @return the LIR code
+	 */
+	private LIRCode argumentsVisit(List<Expression> args, Integer d, String[] argRegs){
+		LIRCode tr = new LIRCode();
+		List<Integer> order = RegCounterVisitor.getEvaluationOrder(args);
+		for (int j = 0; j < order.size(); j++){
+			int i = order.get(j);
+			LIRUpType argExp = args.get(i).accept(this, d+j);
+			tr.append("# argument #"+i+":\n");
+			tr.append(argExp.getCode());
+			if (argExp.getLIRInstType() != LIRFlagEnum.REGISTER){
+				tr.append(getMoveCommand(argExp.getLIRInstType()));
+				tr.append(argExp.getTargetRegister()+",R"+(d+j)+"\n");
+			}
+			argRegs[i] = "R"+(d+j);
+		}
+		return tr;
+	}
+
 	/**
 	 * Visitor for LIBRARY static call
 	 * called by StaticCall visitor if the call is for a library method
 	 * @param call
 	 * @param d
+	 * @param argRegs: the registers holding the arguments
 	 * @return
 	 */
-	public LIRUpType libraryCallVisit(String argsTr, StaticCall call, Integer d){
-		String tr = argsTr; 
-		tr += "Library __"+call.getName()+"(";
+	public LIRUpType libraryCallVisit(LIRCode argsTr, StaticCall call, Integer d, String[] argRegs){
+		LIRCode tr = argsTr; 
+		String line = "Library __"+call.getName()+"(";
 		// iterate over values (registers)
 		for(int i = 0; i < call.getArguments().size(); i++){
-			tr += "R"+(i+d)+",";
+			line += argRegs[i]+",";
 		}
 		// remove last comma
-		if (tr.endsWith(",")) tr = tr.substring(0, tr.length()-1);
-		tr += "),R"+d+"\n";
+		if (line.endsWith(",")) line = line.substring(0, line.length()-1);
+		tr.append(line+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -672,57 +869,46 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - concatenate the translations to the LIR virtual call statement instruction
 	 */
 	public LIRUpType visit(VirtualCall call, Integer d){
-		String tr = "# virtual call location:\n";;
+		LIRCode tr = new LIRCode("# virtual call location:\n");
 		
 		// recursive call to call location
 		if (call.isExternal()){
 			LIRUpType location = call.getLocation().accept(this, d);
-			tr += location.getLIRCode();
+			tr.append(location.getCode());
 			if (location.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(location.getLIRInstType());
-				tr += location.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(location.getLIRInstType()));
+				tr.append(location.getTargetRegister()+",R"+d+"\n");
 				location.setTargetRegister("R"+d);
 				location.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 			
 			// check location null reference
-			tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+			tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 		} else {
-			tr += "Move this,R"+d+"\n";
+			tr.append("Move this,R"+d+"\n");
 		}
 		
 		// recursive call to all arguments
-		int i = d+1;
-		for (Expression arg: call.getArguments()){
-			LIRUpType argExp = arg.accept(this, i);
-			tr += "# argument #"+(i-d-1)+":\n";
-			tr += argExp.getLIRCode();
-			if (argExp.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(argExp.getLIRInstType());
-				tr += argExp.getTargetRegister()+",R"+i+"\n";
-				argExp.setTargetRegister("R"+i);
-				argExp.setLIRInstType(LIRFlagEnum.REGISTER);
-			}
-			// increment registers count
-			i++;
-		}
+		String[] argRegs = new String[call.getArguments().size()];
+		tr.append(argumentsVisit(call.getArguments(), d+1, argRegs));
 		
 		// call statement
-		tr += "VirtualCall R"+d+".";
 		String className = !call.isExternal() ? currClassName :
 			((IC.TypeTable.ClassType) call.getLocation().accept(new SemanticChecks(global))).getName();
+		tr.append("# virtual call site "+(virtualCallSiteCounter++)+": "+className+"."+call.getName()+"\n");
+		String line = "VirtualCall R"+d+".";
 		ClassLayout thisClassLayout = classLayouts.get(className);
-		Method thisMethod = thisClassLayout.getMethodFromName(call.getName());
+		Method thisMethod = thisClassLayout.getMethodFromName(call.getIdentifier());
 		int offset = thisClassLayout.getMethodOffset(thisMethod);
 		
-		tr += offset+"(";
+		line += offset+"(";
 		// insert <formal>=<argument register>
-		for(i = 0; i < call.getArguments().size(); i++){
-			tr += thisMethod.getFormals().get(i).getNameDepth()+"=R"+(d+i+1)+",";
+		for(int i = 0; i < call.getArguments().size(); i++){
+			line += thisMethod.getFormals().get(i).getNameDepth()+"="+argRegs[i]+",";
 		}
 		// remove last comma
-		if (tr.endsWith(",")) tr = tr.substring(0, tr.length()-1);
-		tr += "),R"+d+"\n";
+		if (line.endsWith(",")) line = line.substring(0, line.length()-1);
+		tr.append(line+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -733,7 +919,7 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return translation
 	 */
 	public LIRUpType visit(This thisExpression, Integer d){
-		String tr = "Move this,R"+d+"\n";
+		LIRCode tr = new LIRCode("Move this,R"+d+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
 
@@ -745,8 +931,8 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	public LIRUpType visit(NewClass newClass, Integer d){
 	
 		ClassLayout thisClassLayout = classLayouts.get(newClass.getName());
-		String tr = "Library __allocateObject("+thisClassLayout.getAllocSize()+"),R"+d+"\n";
-		tr += "MoveField _DV_"+thisClassLayout.getClassName()+",R"+d+".0\n";
+		LIRCode tr = new LIRCode("Library __allocateObject("+thisClassLayout.getAllocSize()+"),R"+d+"\n");
+		tr.append("MoveField _DV_"+thisClassLayout.getClassName()+",R"+d+".0\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -757,26 +943,26 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return LIR code
 	 */
 	public LIRUpType visit(NewArray newArray, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to size
 		LIRUpType size = newArray.getSize().accept(this, d);
-		tr += size.getLIRCode();
+		tr.append(size.getCode());
 		if (size.getLIRInstType() != LIRFlagEnum.REGISTER){
-			tr += getMoveCommand(size.getLIRInstType());
-			tr += size.getTargetRegister()+",R"+d+"\n";
+			tr.append(getMoveCommand(size.getLIRInstType()));
+			tr.append(size.getTargetRegister()+",R"+d+"\n");
 			size.setTargetRegister("R"+d);
 			size.setLIRInstType(LIRFlagEnum.REGISTER);
 		}
 		
 		// multiply by 4
-		tr += "Mul 4,R"+d+"\n";
+		tr.append("Mul 4,R"+d+"\n");
 		
 		// check given size n
-		tr += "StaticCall __checkSize(n=R"+d+"),Rdummy\n";
+		tr.append("StaticCall __checkSize(n=R"+d+"),Rdummy\n");
 		
 		// allocate memory
-		tr += "Library __allocateArray(R"+d+"),R"+d+"\n";
+		tr.append("Library __allocateArray(R"+d+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -787,23 +973,23 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return LIR code
 	 */
 	public LIRUpType visit(Length length, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to array expression
 		LIRUpType array = length.getArray().accept(this, d);
-		tr += array.getLIRCode();
+		tr.append(array.getCode());
 		if (array.getLIRInstType() != LIRFlagEnum.REGISTER){
-			tr += getMoveCommand(array.getLIRInstType());
-			tr += array.getTargetRegister()+",R"+d+"\n";
+			tr.append(getMoveCommand(array.getLIRInstType()));
+			tr.append(array.getTargetRegister()+",R"+d+"\n");
 			array.setTargetRegister("R"+d);
 			array.setLIRInstType(LIRFlagEnum.REGISTER);
 		}
 		
 		// check array null reference
-		tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+		tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 		
 		// get length
-		tr += "ArrayLength R"+d+",R"+d+"\n";
+		tr.append("ArrayLength R"+d+",R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -814,30 +1000,48 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(MathBinaryOp binaryOp, Integer d){
-		String tr = "";
+		// fold constant operations
+		Integer constVal = InductionVariableVisitor.getIntConstant(binaryOp);
+		if (constVal != null){
+			return new LIRUpType("", LIRFlagEnum.LITERAL, constVal.toString());
+		}
+		// use the register of a strength reduced product
+		String reducedReg = getReducedProduct(binaryOp);
+		if (reducedReg != null){
+			return new LIRUpType("", LIRFlagEnum.LOC_VAR_LOCATION, reducedReg);
+		}
+		// algebraic simplification with a constant operand
+		LIRUpType simplified = simplifyMathBinaryOp(binaryOp, d);
+		if (simplified != null){
+			return simplified;
+		}
+
+		LIRCode tr = new LIRCode();
 		// decide which block will be first by the Setti-Ullman algorithm
-		boolean suBool = binaryOp.getFirstOperand().getRequiredRegs() >= binaryOp.getSecondOperand().getRequiredRegs(); 
+		// (the first operand first if the second cannot be evaluated before it)
+		boolean suBool = binaryOp.getFirstOperand().getRequiredRegs() >= binaryOp.getSecondOperand().getRequiredRegs() ||
+						!RegCounterVisitor.canReorder(binaryOp.getFirstOperand(), binaryOp.getSecondOperand());
 		LIRUpType operand1 = null;
 		LIRUpType operand2 = null;
 		
 		if (suBool){
 			// recursive call to operands
 			operand1 = binaryOp.getFirstOperand().accept(this, d);
-			tr += operand1.getLIRCode();
+			tr.append(operand1.getCode());
 			if (operand1.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(operand1.getLIRInstType());
-				tr += operand1.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(operand1.getLIRInstType()));
+				tr.append(operand1.getTargetRegister()+",R"+d+"\n");
 				// update the operand register
 				operand1.setTargetRegister("R"+d);
 				operand1.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 			
 			operand2 = binaryOp.getSecondOperand().accept(this, d+1);
-			tr += operand2.getLIRCode();
+			tr.append(operand2.getCode());
 			if (operand2.getLIRInstType() == LIRFlagEnum.ARR_LOCATION ||
 					operand2.getLIRInstType() == LIRFlagEnum.EXT_VAR_LOCATION){
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+",R"+(d+1)+"\n";
+				tr.append(getMoveCommand(operand2.getLIRInstType()));
+				tr.append(operand2.getTargetRegister()+",R"+(d+1)+"\n");
 				// update the operand register
 				operand2.setTargetRegister("R"+(d+1));
 				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
@@ -845,20 +1049,20 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		} else {
 			// recursive call to operands
 			operand2 = binaryOp.getSecondOperand().accept(this, d);
-			tr += operand2.getLIRCode();
+			tr.append(operand2.getCode());
 			if (operand2.getLIRInstType() == LIRFlagEnum.ARR_LOCATION ||
 					operand2.getLIRInstType() == LIRFlagEnum.EXT_VAR_LOCATION){
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(operand2.getLIRInstType()));
+				tr.append(operand2.getTargetRegister()+",R"+d+"\n");
 				operand2.setTargetRegister("R"+d);
 				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 			
 			operand1 = binaryOp.getFirstOperand().accept(this, d+1);
-			tr += operand1.getLIRCode();
+			tr.append(operand1.getCode());
 			if (operand1.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(operand1.getLIRInstType());
-				tr += operand1.getTargetRegister()+",R"+(d+1)+"\n";
+				tr.append(getMoveCommand(operand1.getLIRInstType()));
+				tr.append(operand1.getTargetRegister()+",R"+(d+1)+"\n");
 				operand1.setTargetRegister("R"+(d+1));
 				operand1.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
@@ -868,64 +1072,71 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		switch (binaryOp.getOperator()){
 		case PLUS:
 			// check if operation is on strings or on integers
-			IC.TypeTable.Type operandsType = (IC.TypeTable.Type) binaryOp.getFirstOperand().accept(new SemanticChecks(global));
+			IC.TypeTable.Type operandsType = getPlusOperandsType(binaryOp);
 			if (operandsType.subtypeof(IC.TypeTable.TypeTable.getUniquePrimitiveTypes().get("int"))){
-				tr += "Add "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n";
+				// adding an operand simplified to 0 is omitted
+				if (!isZeroLiteral(operand2))
+					tr.append("Add "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n");
 				if (!operand1.getTargetRegister().equals("R"+d)){
 					// put result in Rd anyway
-					tr += "Move "+operand1.getTargetRegister()+",R"+d+"\n"; 
+					tr.append("Move "+operand1.getTargetRegister()+",R"+d+"\n"); 
 				}
 			} else { // strings - always at this order
-				tr += "Library __stringCat("+operand1.getTargetRegister()+","+operand2.getTargetRegister()+"),R"+d+"\n";
+				tr.append("Library __stringCat("+operand1.getTargetRegister()+","+operand2.getTargetRegister()+"),R"+d+"\n");
 			}
 			break;
 		case MINUS:
-			tr += "Sub "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n";
-			if (!suBool) tr += "Move R"+(d+1)+",R"+d+"\n";
+			if (!isZeroLiteral(operand2))
+				tr.append("Sub "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n");
+			if (!suBool) tr.append("Move R"+(d+1)+",R"+d+"\n");
 			break;
 		case MULTIPLY:
-			tr += "Mul "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n";
+			tr.append("Mul "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n");
 			if (!operand1.getTargetRegister().equals("R"+d)){
 				// put result in Rd anyway
-				tr += "Move "+operand1.getTargetRegister()+",R"+d+"\n"; 
+				tr.append("Move "+operand1.getTargetRegister()+",R"+d+"\n"); 
 			}
 			break;
 		case DIVIDE:
-			// check division by zero
-			if (operand2.getLIRInstType() != LIRFlagEnum.REGISTER){ // operand2 must be in a register
-				String targetReg = operand1.getTargetRegister().equals("R"+d) ?	"R"+(d+1) : "R"+d;
-				// move it into the register
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+","+targetReg+"\n";
-				// update target register
-				operand2.setTargetRegister(targetReg);
-				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
+			// check division by zero (not needed for a non-zero constant divisor)
+			if (!isNonZeroLiteral(operand2)){
+				if (operand2.getLIRInstType() != LIRFlagEnum.REGISTER){ // operand2 must be in a register
+					String targetReg = operand1.getTargetRegister().equals("R"+d) ?	"R"+(d+1) : "R"+d;
+					// move it into the register
+					tr.append(getMoveCommand(operand2.getLIRInstType()));
+					tr.append(operand2.getTargetRegister()+","+targetReg+"\n");
+					// update target register
+					operand2.setTargetRegister(targetReg);
+					operand2.setLIRInstType(LIRFlagEnum.REGISTER);
+				}
+				tr.append("StaticCall __checkZero(b="+operand2.getTargetRegister()+"),Rdummy\n");
 			}
-			tr += "StaticCall __checkZero(b="+operand2.getTargetRegister()+"),Rdummy\n";
 			
-			tr += "Div "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n";
+			tr.append("Div "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n");
 			if (!operand1.getTargetRegister().equals("R"+d)){
 				// put result in Rd anyway
-				tr += "Move "+operand1.getTargetRegister()+",R"+d+"\n"; 
+				tr.append("Move "+operand1.getTargetRegister()+",R"+d+"\n"); 
 			}
 			break;
 		case MOD:
-			// check division by zero
-			if (operand2.getLIRInstType() != LIRFlagEnum.REGISTER){ // operand2 must be in a register
-				String targetReg = operand1.getTargetRegister().equals("R"+d) ?	"R"+(d+1) : "R"+d;
-				// move it into the register
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+","+targetReg+"\n";
-				// update target register
-				operand2.setTargetRegister(targetReg);
-				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
+			// check division by zero (not needed for a non-zero constant divisor)
+			if (!isNonZeroLiteral(operand2)){
+				if (operand2.getLIRInstType() != LIRFlagEnum.REGISTER){ // operand2 must be in a register
+					String targetReg = operand1.getTargetRegister().equals("R"+d) ?	"R"+(d+1) : "R"+d;
+					// move it into the register
+					tr.append(getMoveCommand(operand2.getLIRInstType()));
+					tr.append(operand2.getTargetRegister()+","+targetReg+"\n");
+					// update target register
+					operand2.setTargetRegister(targetReg);
+					operand2.setLIRInstType(LIRFlagEnum.REGISTER);
+				}
+				tr.append("StaticCall __checkZero(b="+operand2.getTargetRegister()+"),Rdummy\n");
 			}
-			tr += "StaticCall __checkZero(b="+operand2.getTargetRegister()+"),Rdummy\n";
 			
-			tr += "Mod "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n";
+			tr.append("Mod "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n");
 			if (!operand1.getTargetRegister().equals("R"+d)){
 				// put result in Rd anyway
-				tr += "Move "+operand1.getTargetRegister()+",R"+d+"\n"; 
+				tr.append("Move "+operand1.getTargetRegister()+",R"+d+"\n"); 
 			}
 			break;
 		default:
@@ -935,40 +1146,167 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
 
+	/**
+	 * returns the register holding the given product if it is strength reduced
+	 * in one of the loops being translated, null otherwise
+	 * @param binaryOp
+	 * @return
+	 */
+	private String getReducedProduct(MathBinaryOp binaryOp){
+		if (binaryOp.getOperator() != BinaryOps.MULTIPLY) return null;
+		String var = InductionVariableVisitor.getLocalVarName(binaryOp.getFirstOperand());
+		Integer factor = InductionVariableVisitor.getIntConstant(binaryOp.getSecondOperand());
+		if (var == null || factor == null){
+			var = InductionVariableVisitor.getLocalVarName(binaryOp.getSecondOperand());
+			factor = InductionVariableVisitor.getIntConstant(binaryOp.getFirstOperand());
+		}
+		if (var == null || factor == null || !reducedProducts.containsKey(var)) return null;
+		return reducedProducts.get(var).get(factor);
+	}
+
+	/**
+	 * algebraic simplification of an integer operation with one constant operand:
+	 * - x+0, 0+x, x-0, x*1, 1*x, x/1 are translated as x
+	 * - 0-x, x*-1, -1*x, x/-1 are translated as a negation of x
+	 * - x*0, 0*x, x%1, x%-1 are translated as 0 (x is still evaluated if it has side effects)
+	 * - x*2, 2*x are translated as x+x
+	 * returns null if no simplification applies
+	 * @param binaryOp
+	 * @param d
+	 * @return
+	 */
+	private LIRUpType simplifyMathBinaryOp(MathBinaryOp binaryOp, Integer d){
+		Integer const1 = InductionVariableVisitor.getIntConstant(binaryOp.getFirstOperand());
+		Integer const2 = InductionVariableVisitor.getIntConstant(binaryOp.getSecondOperand());
+		if (const1 == null && const2 == null) return null;
+
+		// x is the non constant operand, c the constant one
+		Expression x = const2 != null ? binaryOp.getFirstOperand() : binaryOp.getSecondOperand();
+		int c = const2 != null ? const2 : const1;
+		boolean constFirst = const2 == null;
+
+		switch (binaryOp.getOperator()){
+		case PLUS:
+			if (c == 0) return x.accept(this, d);
+			break;
+		case MINUS:
+			if (c == 0) return constFirst ? negate(x, d) : x.accept(this, d);
+			break;
+		case MULTIPLY:
+			if (c == 1) return x.accept(this, d);
+			if (c == -1) return negate(x, d);
+			if (c == 0) return zero(x, d);
+			if (c == 2){
+				LIRCode tr = loadToRegister(x.accept(this, d), d);
+				tr.append("Add R"+d+",R"+d+"\n");
+				return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
+			}
+			break;
+		case DIVIDE:
+			if (constFirst) break;
+			if (c == 1) return x.accept(this, d);
+			if (c == -1) return negate(x, d);
+			break;
+		case MOD:
+			if (constFirst) break;
+			if (c == 1 || c == -1) return zero(x, d);
+			break;
+		default:
+		}
+		return null;
+	}
+
+	/**
+	 * translates -x into Rd
+	 */
+	private LIRUpType negate(Expression x, Integer d){
+		LIRCode tr = loadToRegister(x.accept(this, d), d);
+		tr.append("Neg R"+d+"\n");
+		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
+	}
+
+	/**
+	 * translates an operation on x known to be 0,
+	 * keeping the code of x only if it may have side effects
+	 */
+	private LIRUpType zero(Expression x, Integer d){
+		LIRCode tr = x.hasSideEffects() ? x.accept(this, d).getCode() : new LIRCode();
+		return new LIRUpType(tr, LIRFlagEnum.LITERAL,"0");
+	}
+
+	/**
+	 * returns the code of the given translated operand followed by
+	 * the move of its value into Rd (if not already there)
+	 * @param operand
+	 * @param d
+	 * @return
+	 */
+	private LIRCode loadToRegister(LIRUpType operand, Integer d){
+		LIRCode tr = new LIRCode().append(operand.getCode());
+		if (operand.getLIRInstType() != LIRFlagEnum.REGISTER || !operand.getTargetRegister().equals("R"+d)){
+			tr.append(getMoveCommand(operand.getLIRInstType()));
+			tr.append(operand.getTargetRegister()+",R"+d+"\n");
+		}
+		return tr;
+	}
+
+	/**
+	 * checks if the given translated operand is the integer literal 0
+	 * @param operand
+	 * @return
+	 */
+	private boolean isZeroLiteral(LIRUpType operand){
+		return operand.getLIRInstType() == LIRFlagEnum.LITERAL && operand.getTargetRegister().equals("0");
+	}
+
+	/**
+	 * checks if the given translated operand is a non-zero integer literal
+	 * @param operand
+	 * @return
+	 */
+	private boolean isNonZeroLiteral(LIRUpType operand){
+		return operand.getLIRInstType() == LIRFlagEnum.LITERAL && !operand.getTargetRegister().equals("0");
+	}
+
 	/**
 	 * LogicalBinaryOp propagating visitor:
 	 * - translate recursively the operator and operands
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(LogicalBinaryOp binaryOp, Integer d){
+		if (binaryOp.getOperator() == BinaryOps.LAND || binaryOp.getOperator() == BinaryOps.LOR){
+			return shortCircuitVisit(binaryOp, d);
+		}
+		
 		String trueLabel = "_true_label"+labelCounter;
-		String falseLabel = "_false_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		// decide which block will be first by the Setti-Ullman algorithm
-		boolean suBool = binaryOp.getFirstOperand().getRequiredRegs() >= binaryOp.getSecondOperand().getRequiredRegs(); 
+		// (the first operand first if the second cannot be evaluated before it)
+		boolean suBool = binaryOp.getFirstOperand().getRequiredRegs() >= binaryOp.getSecondOperand().getRequiredRegs() ||
+						!RegCounterVisitor.canReorder(binaryOp.getFirstOperand(), binaryOp.getSecondOperand());
 		LIRUpType operand1 = null;
 		LIRUpType operand2 = null;
 		
 		if (suBool){
 			// recursive call to operands
 			operand1 = binaryOp.getFirstOperand().accept(this, d);
-			tr += operand1.getLIRCode();
+			tr.append(operand1.getCode());
 			// if the received value is not already a register, place it into one
 			if (operand1.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(operand1.getLIRInstType());
-				tr += operand1.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(operand1.getLIRInstType()));
+				tr.append(operand1.getTargetRegister()+",R"+d+"\n");
 				// update target register
 				operand1.setTargetRegister("R"+d);
 				operand1.setLIRInstType(LIRFlagEnum.REGISTER);
 			};
 			
 			operand2 = binaryOp.getSecondOperand().accept(this, d+1);
-			tr += operand2.getLIRCode();
+			tr.append(operand2.getCode());
 			if (operand2.getLIRInstType() == LIRFlagEnum.ARR_LOCATION ||
 					operand2.getLIRInstType() == LIRFlagEnum.EXT_VAR_LOCATION){			
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+",R"+(d+1)+"\n";
+				tr.append(getMoveCommand(operand2.getLIRInstType()));
+				tr.append(operand2.getTargetRegister()+",R"+(d+1)+"\n");
 				// update target register
 				operand2.setTargetRegister("R"+(d+1));
 				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
@@ -976,22 +1314,22 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		} else {
 			// recursive call to operands
 			operand2 = binaryOp.getSecondOperand().accept(this, d);
-			tr += operand2.getLIRCode();
+			tr.append(operand2.getCode());
 			if (operand2.getLIRInstType() == LIRFlagEnum.ARR_LOCATION ||
 					operand2.getLIRInstType() == LIRFlagEnum.EXT_VAR_LOCATION){
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+",R"+d+"\n";
+				tr.append(getMoveCommand(operand2.getLIRInstType()));
+				tr.append(operand2.getTargetRegister()+",R"+d+"\n");
 				// update target register
 				operand2.setTargetRegister("R"+d);
 				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
 			}
 			
 			operand1 = binaryOp.getFirstOperand().accept(this, d+1);
-			tr += operand1.getLIRCode();
+			tr.append(operand1.getCode());
 			// if the received value is not already a register, place it into one
 			if (operand1.getLIRInstType() != LIRFlagEnum.REGISTER){
-				tr += getMoveCommand(operand1.getLIRInstType());
-				tr += operand1.getTargetRegister()+",R"+(d+1)+"\n";
+				tr.append(getMoveCommand(operand1.getLIRInstType()));
+				tr.append(operand1.getTargetRegister()+",R"+(d+1)+"\n");
 				// update target register
 				operand1.setTargetRegister("R"+(d+1));
 				operand1.setLIRInstType(LIRFlagEnum.REGISTER);
@@ -1000,72 +1338,70 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		
 		
 		// operation
-		if (binaryOp.getOperator() != BinaryOps.LAND && binaryOp.getOperator() != BinaryOps.LOR){
-			tr += suBool ?
-					"Compare "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n":
-					"Compare "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n";
-		}
+		tr.append("Compare "+operand2.getTargetRegister()+","+operand1.getTargetRegister()+"\n");
 		switch (binaryOp.getOperator()){
 		case EQUAL:
-			tr += "JumpTrue "+trueLabel+"\n";
+			tr.append("JumpTrue "+trueLabel+"\n");
 			break;
 		case NEQUAL:
-			tr += "JumpFalse "+trueLabel+"\n";
+			tr.append("JumpFalse "+trueLabel+"\n");
 			break;
 		case GT:
-			tr += "JumpG "+trueLabel+"\n";
+			tr.append("JumpG "+trueLabel+"\n");
 			break;
 		case GTE:
-			tr += "JumpGE "+trueLabel+"\n";
+			tr.append("JumpGE "+trueLabel+"\n");
 			break;
 		case LT:
-			tr += "JumpL "+trueLabel+"\n";
+			tr.append("JumpL "+trueLabel+"\n");
 			break;
 		case LTE:
-			tr += "JumpLE "+trueLabel+"\n";
-			break;
-		case LAND:
-			tr += "Compare 0,"+operand1.getTargetRegister()+"\n";
-			tr += "JumpTrue "+falseLabel+"\n";
-			// if operand2 not in register, put it in the free one
-			if (operand2.getLIRInstType() != LIRFlagEnum.REGISTER){
-				String targetReg = operand1.getTargetRegister().equals("R"+d) ?	"R"+(d+1) : "R"+d;
-				// move it into the register
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+","+targetReg+"\n";
-				// update target register
-				operand2.setTargetRegister(targetReg);
-				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
-			}
-			tr += "Compare 0,"+operand2.getTargetRegister()+"\n";
-			tr += "JumpTrue "+falseLabel+"\n";
-			tr += "Jump "+trueLabel+"\n";
-			tr += falseLabel+":\n"; 
-			break;
-		case LOR:
-			tr += "Compare 0,"+operand1.getTargetRegister()+"\n";
-			tr += "JumpFalse "+trueLabel+"\n";
-			// if operand2 not in register, put it in the free one
-			if (operand2.getLIRInstType() != LIRFlagEnum.REGISTER){
-				String targetReg = operand1.getTargetRegister().equals("R"+d) ?	"R"+(d+1) : "R"+d;
-				// move it into the register
-				tr += getMoveCommand(operand2.getLIRInstType());
-				tr += operand2.getTargetRegister()+","+targetReg+"\n";
-				// update target register
-				operand2.setTargetRegister(targetReg);
-				operand2.setLIRInstType(LIRFlagEnum.REGISTER);
-			}
-			tr += "Compare 0,"+operand2.getTargetRegister()+"\n";
-			tr += "JumpFalse "+trueLabel+"\n"; 
+			tr.append("JumpLE "+trueLabel+"\n");
 			break;
 		default:
 			System.err.println("error in translate");	
 		}
-		tr += "Move 0,R"+d+"\n";
-		tr += "Jump "+endLabel+"\n";
-		tr += trueLabel+":\n";
-		tr += "Move 1,R"+d+"\n";
-		tr += endLabel+":\n";
+		tr.append("Move 0,R"+d+"\n");
+		tr.append("Jump "+endLabel+"\n");
+		tr.append(trueLabel+":\n");
+		tr.append("Move 1,R"+d+"\n");
+		tr.append(endLabel+":\n");
+		
+		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
+	}
+
+	/**
+	 * translates && and || with short circuit evaluation:
+	 * the second operand is evaluated (into the same register)
+	 * only if the first one does not decide the result
+	 * @param binaryOp
+	 * @param d
+	 * @return
+	 */
+	private LIRUpType shortCircuitVisit(LogicalBinaryOp binaryOp, Integer d){
+		String trueLabel = "_true_label"+labelCounter;
+		String falseLabel = "_false_label"+labelCounter;
+		String endLabel = "_end_label"+(labelCounter++);
+		boolean and = binaryOp.getOperator() == BinaryOps.LAND;
+		
+		LIRCode tr = loadToRegister(binaryOp.getFirstOperand().accept(this, d), d);
+		tr.append("Compare 0,R"+d+"\n");
+		tr.append(and ? "JumpTrue "+falseLabel+"\n" : "JumpFalse "+trueLabel+"\n");
+		
+		tr.append(loadToRegister(binaryOp.getSecondOperand().accept(this, d), d));
+		tr.append("Compare 0,R"+d+"\n");
+		if (and){
+			tr.append("JumpTrue "+falseLabel+"\n");
+			tr.append("Jump "+trueLabel+"\n");
+			tr.append(falseLabel+":\n");
+		} else {
+			tr.append("JumpFalse "+trueLabel+"\n");
+		}
+		tr.append("Move 0,R"+d+"\n");
+		tr.append("Jump "+endLabel+"\n");
+		tr.append(trueLabel+":\n");
+		tr.append("Move 1,R"+d+"\n");
+		tr.append(endLabel+":\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -1076,19 +1412,25 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(MathUnaryOp unaryOp, Integer d){
-		String tr = "";
+		// fold a negated constant
+		Integer constVal = InductionVariableVisitor.getIntConstant(unaryOp);
+		if (constVal != null){
+			return new LIRUpType("", LIRFlagEnum.LITERAL, constVal.toString());
+		}
+
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to operand
 		LIRUpType operand = unaryOp.getOperand().accept(this, d);
-		tr += operand.getLIRCode();
+		tr.append(operand.getCode());
 		
 		// if the received value is not already a register, place it into one
 		if (operand.getLIRInstType() != LIRFlagEnum.REGISTER){
-			tr += getMoveCommand(operand.getLIRInstType());
-			tr += operand.getTargetRegister()+",R"+d+"\n";
+			tr.append(getMoveCommand(operand.getLIRInstType()));
+			tr.append(operand.getTargetRegister()+",R"+d+"\n");
 		} // else it is already in register Rd
 		
-		tr += "Neg R"+d+"\n";
+		tr.append("Neg R"+d+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
 
@@ -1098,27 +1440,27 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(LogicalUnaryOp unaryOp, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		String trueLabel = "_true_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
 		
 		// recursive call to operand
 		LIRUpType operand = unaryOp.getOperand().accept(this, d);
-		tr += operand.getLIRCode();
+		tr.append(operand.getCode());
 		
 		// if the received value is not already a register, place it into one
 		if (operand.getLIRInstType() != LIRFlagEnum.REGISTER){
-			tr += getMoveCommand(operand.getLIRInstType());
-			tr += operand.getTargetRegister()+",R"+d+"\n";
+			tr.append(getMoveCommand(operand.getLIRInstType()));
+			tr.append(operand.getTargetRegister()+",R"+d+"\n");
 		} // else it is already in register Rd
 		
-		tr += "Compare 0,R"+d+"\n";
-		tr += "JumpTrue "+trueLabel+"\n";
-		tr += "Move 0,R"+d+"\n";
-		tr += "Jump "+endLabel+"\n";
-		tr += trueLabel+":\n";
-		tr += "Move 1,R"+d+"\n";
-		tr += endLabel+":\n";
+		tr.append("Compare 0,R"+d+"\n");
+		tr.append("JumpTrue "+trueLabel+"\n");
+		tr.append("Move 0,R"+d+"\n");
+		tr.append("Jump "+endLabel+"\n");
+		tr.append(trueLabel+":\n");
+		tr.append("Move 1,R"+d+"\n");
+		tr.append(endLabel+":\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -1135,7 +1477,7 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 		case STRING:
 			String strVal = ((String) literal.getValue()).replaceAll("\n", "\\\\n");
 			if (!stringLiterals.containsKey(strVal))
-				stringLiterals.put(strVal, "str"+(stringLiteralsCounter++));
+				stringLiterals.put(strVal, (translatingFragment ? "str$" : "str")+(stringLiteralsCounter++));
 			litStr = stringLiterals.get(strVal);
 			break;
 		case INTEGER:
@@ -1205,5 +1547,19 @@ public class OptTranslatePropagatingVisitor extends TranslatePropagatingVisitor{
 	public void setMainMethod(String mainMethod) {
 		this.mainMethod = mainMethod;
 	}
+
+	/**
+	 * returns the number of loop products replaced by additions
+	 */
+	public int getReducedProductsCounter() {
+		return reducedRegsCounter;
+	}
+
+	/**
+	 * returns the number of self tail calls replaced by jumps
+	 */
+	public int getTailCallsCounter() {
+		return tailCallsCounter;
+	}
 	
 }
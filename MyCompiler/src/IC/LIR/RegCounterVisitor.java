@@ -1,13 +1,20 @@
 package IC.LIR;
 
 import java.lang.reflect.Array; 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import IC.BinaryOps;
 import IC.AST.*;
+import IC.SymbolTable.BlockSymbolTable;
 
 /**
  * Visitor to update the number of registers used in each AST node
- * for the Setti-Ulman optimization
+ * for the Setti-Ulman optimization.
+ * also marks expressions that may have side effects or read the heap,
+ * so that operands are reordered only where the IC evaluation order
+ * (left to right) cannot be observed.
  */
 public class RegCounterVisitor implements Visitor {
 
@@ -159,7 +166,8 @@ public class RegCounterVisitor implements Visitor {
 	 * - return the result
 	 */
 	public Object visit(Return returnStatement) {
-		int res = (Integer)returnStatement.getValue().accept(this);
+		int res = returnStatement.hasValue() ?
+					(Integer)returnStatement.getValue().accept(this) : 0;
 		returnStatement.setRequiredRegs(res);
 		return res;
 	}
@@ -253,6 +261,11 @@ public class RegCounterVisitor implements Visitor {
 		int res = 0;
 		if (location.isExternal()){
 			res = (Integer)location.getLocation().accept(this);
+			// null reference check
+			setEffects(location, true, true, location.getLocation());
+		} else {
+			// fields of this are read from the heap, locals are not
+			setEffects(location, false, ((BlockSymbolTable)location.getEnclosingScope()).isVarField(location.getIdentifier()));
 		}
 		location.setRequiredRegs(res);
 		return res;
@@ -265,8 +278,9 @@ public class RegCounterVisitor implements Visitor {
 	 * - return the result
 	 */
 	public Object visit(ArrayLocation location) {
-		int res = getSettiUlmanVal(location.getArray().accept(this),
-									location.getIndex().accept(this));
+		int res = getOperandsVal(location.getArray(), location.getIndex());
+		// null reference and array access checks
+		setEffects(location, true, true, location.getArray(), location.getIndex());
 		location.setRequiredRegs(res);
 		return res;
 	}
@@ -278,13 +292,14 @@ public class RegCounterVisitor implements Visitor {
 	 * - return the result
 	 */
 	public Object visit(StaticCall call) {
-		// returns MAX_VALUE always (to keep original order where called)
-		
 		// get all arguments required registers
 		for (int i=0; i<call.getArguments().size(); i++){
 			call.getArguments().get(i).accept(this);
 		}
-		int res = Integer.MAX_VALUE;
+		
+		// arguments are evaluated each into its own register, the result is in the first
+		int res = Math.max(1, getArgumentsVal(call.getArguments()));
+		setEffects(call, true, true);
 		
 		call.setRequiredRegs(res);
 		return res;
@@ -302,12 +317,17 @@ public class RegCounterVisitor implements Visitor {
 		for (int i=0; i<call.getArguments().size(); i++){
 			call.getArguments().get(i).accept(this);
 		}
-		if (call.isExternal()) call.getLocation().accept(this);
 		
-		// set the value in the VirtualCall ASTNode as MAX_INT, for keeping the original
-		// order of virtual calls
-		call.setRequiredRegs(Integer.MAX_VALUE);
-		return Integer.MAX_VALUE;
+		// the object is evaluated first, and held while evaluating the arguments
+		int res = 1;
+		if (call.isExternal()){
+			res = Math.max(1, (Integer)call.getLocation().accept(this));
+		}
+		res = Math.max(res, 1 + getArgumentsVal(call.getArguments()));
+		setEffects(call, true, true);
+		
+		call.setRequiredRegs(res);
+		return res;
 	}
 	
 	
@@ -315,6 +335,7 @@ public class RegCounterVisitor implements Visitor {
 	 * This visitor: always 0
 	 */
 	public Object visit(This thisExpression) {
+		setEffects(thisExpression, false, false);
 		thisExpression.setRequiredRegs(0);
 		return 0;
 	}
@@ -324,6 +345,7 @@ public class RegCounterVisitor implements Visitor {
 	 * NewClass visitor: always 0
 	 */
 	public Object visit(NewClass newClass) {
+		setEffects(newClass, false, false);
 		newClass.setRequiredRegs(0);
 		return 0;
 	}
@@ -336,6 +358,8 @@ public class RegCounterVisitor implements Visitor {
 	 */
 	public Object visit(NewArray newArray) {
 		int res = (Integer)newArray.getSize().accept(this);
+		// array size check
+		setEffects(newArray, true, false, newArray.getSize());
 		newArray.setRequiredRegs(res);
 		return res;
 	}
@@ -348,6 +372,8 @@ public class RegCounterVisitor implements Visitor {
 	 */
 	public Object visit(Length length) {
 		int res = (Integer)length.getArray().accept(this);
+		// null reference check
+		setEffects(length, true, true, length.getArray());
 		length.setRequiredRegs(res);
 		return res;
 	}
@@ -359,8 +385,14 @@ public class RegCounterVisitor implements Visitor {
 	 * - return the result
 	 */
 	public Object visit(MathBinaryOp binaryOp) {
-		int res = getSettiUlmanVal(binaryOp.getFirstOperand().accept(this),
-									binaryOp.getSecondOperand().accept(this));
+		int res = getOperandsVal(binaryOp.getFirstOperand(), binaryOp.getSecondOperand());
+		// division by zero check
+		boolean divCheck = false;
+		if (binaryOp.getOperator() == BinaryOps.DIVIDE || binaryOp.getOperator() == BinaryOps.MOD){
+			Integer divisor = InductionVariableVisitor.getIntConstant(binaryOp.getSecondOperand());
+			divCheck = divisor == null || divisor == 0;
+		}
+		setEffects(binaryOp, divCheck, false, binaryOp.getFirstOperand(), binaryOp.getSecondOperand());
 		binaryOp.setRequiredRegs(res);
 		return res;
 	}
@@ -372,8 +404,15 @@ public class RegCounterVisitor implements Visitor {
 	 * - return the result
 	 */
 	public Object visit(LogicalBinaryOp binaryOp) {
-		int res = getSettiUlmanVal(binaryOp.getFirstOperand().accept(this),
-				binaryOp.getSecondOperand().accept(this));
+		int res;
+		if (binaryOp.getOperator() == BinaryOps.LAND || binaryOp.getOperator() == BinaryOps.LOR){
+			// short circuit: the first operand is tested before the second is evaluated
+			res = Math.max((Integer)binaryOp.getFirstOperand().accept(this),
+							(Integer)binaryOp.getSecondOperand().accept(this));
+		} else {
+			res = getOperandsVal(binaryOp.getFirstOperand(), binaryOp.getSecondOperand());
+		}
+		setEffects(binaryOp, false, false, binaryOp.getFirstOperand(), binaryOp.getSecondOperand());
 		binaryOp.setRequiredRegs(res);
 		return res;
 	}
@@ -386,6 +425,7 @@ public class RegCounterVisitor implements Visitor {
 	 */
 	public Object visit(MathUnaryOp unaryOp) {
 		int res = (Integer)unaryOp.getOperand().accept(this);
+		setEffects(unaryOp, false, false, unaryOp.getOperand());
 		unaryOp.setRequiredRegs(res);
 		return res;
 	}
@@ -398,6 +438,7 @@ public class RegCounterVisitor implements Visitor {
 	 */
 	public Object visit(LogicalUnaryOp unaryOp) {
 		int res = (Integer)unaryOp.getOperand().accept(this);
+		setEffects(unaryOp, false, false, unaryOp.getOperand());
 		unaryOp.setRequiredRegs(res);
 		return res;
 	}
@@ -407,6 +448,7 @@ public class RegCounterVisitor implements Visitor {
 	 * Literal visitor: always 0
 	 */
 	public Object visit(Literal literal) {
+		setEffects(literal, false, false);
 		literal.setRequiredRegs(0);
 		return 0;
 	}
@@ -419,6 +461,7 @@ public class RegCounterVisitor implements Visitor {
 	 */
 	public Object visit(ExpressionBlock expressionBlock) {
 		int res = (Integer)expressionBlock.getExpression().accept(this);
+		setEffects(expressionBlock, false, false, expressionBlock.getExpression());
 		expressionBlock.setRequiredRegs(res);
 		return res;
 	}
@@ -438,5 +481,85 @@ public class RegCounterVisitor implements Visitor {
 		else return Math.max(n1, n2);
 	}
 	
+	/**
+	 * returns the number of registers used for 2 operands evaluated in the
+	 * given order (the first one is held while evaluating the second)
+	 */
+	public static int getOrderedVal(int n1, int n2){
+		if (n1 > n2) return n1;
+		return (n2 == Integer.MAX_VALUE) ? Integer.MAX_VALUE : n2 + 1;
+	}
+	
+	/**
+	 * visits 2 operands and returns the number of registers used for them:
+	 * by the Setti-Ulman algorithm if they can be reordered,
+	 * otherwise from left to right
+	 */
+	private int getOperandsVal(Expression first, Expression second){
+		int n1 = (Integer) first.accept(this);
+		int n2 = (Integer) second.accept(this);
+		return canReorder(first, second) ? getSettiUlmanVal(n1, n2) : getOrderedVal(n1, n2);
+	}
+	
+	/**
+	 * checks if 2 expressions (already visited) can be evaluated in any order:
+	 * not if one may have side effects and the other has side effects or reads the heap
+	 */
+	public static boolean canReorder(Expression e1, Expression e2){
+		if (e1.hasSideEffects() && (e2.hasSideEffects() || e2.isHeapRead())) return false;
+		if (e2.hasSideEffects() && e1.isHeapRead()) return false;
+		return true;
+	}
+	
+	/**
+	 * returns the evaluation order of a call's arguments (indices in the arguments list):
+	 * by decreasing number of required registers, but an argument never moves
+	 * before another argument it cannot be reordered with
+	 */
+	public static List<Integer> getEvaluationOrder(List<Expression> args){
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < args.size(); i++){
+			int pos = order.size();
+			while (pos > 0){
+				Expression prev = args.get(order.get(pos-1));
+				if (getArgumentRegs(prev) >= getArgumentRegs(args.get(i)) || !canReorder(prev, args.get(i))) break;
+				pos--;
+			}
+			order.add(pos, i);
+		}
+		return order;
+	}
+	
+	/**
+	 * returns the number of registers used for evaluating the arguments
+	 * (by their evaluation order), each into its own register
+	 */
+	public static int getArgumentsVal(List<Expression> args){
+		int res = 0;
+		List<Integer> order = getEvaluationOrder(args);
+		for (int j = 0; j < order.size(); j++){
+			// j registers already hold the arguments evaluated before
+			res = Math.max(res, j + getArgumentRegs(args.get(order.get(j))));
+		}
+		return res;
+	}
+	
+	private static int getArgumentRegs(Expression arg){
+		return Math.max(1, arg.getRequiredRegs());
+	}
+	
+	/**
+	 * marks the side effects and heap reads of a node,
+	 * including those of its (already visited) sub-expressions
+	 */
+	private static void setEffects(ASTNode node, boolean sideEffects, boolean heapRead, ASTNode... children){
+		for (ASTNode child: children){
+			sideEffects |= child.hasSideEffects();
+			heapRead |= child.isHeapRead();
+		}
+		node.setSideEffects(sideEffects);
+		node.setHeapRead(heapRead);
+	}
+	
 
 }
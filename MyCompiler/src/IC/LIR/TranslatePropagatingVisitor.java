@@ -81,8 +81,14 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	protected String mainMethod = "";
 	// counter for labels (if, while)
 	protected int labelCounter = 0;
+	// counter for virtual call sites, each site is marked by a '# virtual call site <i>: <class>.<method>' comment
+	protected int virtualCallSiteCounter = 0;
 	// identifier for current while
 	protected int currWhileID = -1;
+	// translating a class into a fragment: string literals are named 'str$<i>' until spliced
+	protected boolean translatingFragment = false;
+	// the types of the first operands of '+' operations (see getPlusOperandsType)
+	private Map<Expression,IC.TypeTable.Type> plusOperandTypes = new IdentityHashMap<Expression,IC.TypeTable.Type>();
 	
 	/**
 	 * Program propagating visitor:
@@ -98,6 +104,23 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 */
 	public LIRUpType visit(Program program, Integer d){
 		
+		layoutClasses(program);
+		
+		// visit all classes recursively
+		for(ICClass c: program.getClasses()){
+			if (!c.getName().equals("Library"))
+				c.accept(this, 0);
+		}
+		
+		return new LIRUpType(assemble(), LIRFlagEnum.EXPLICIT,"");
+	}
+	
+	/**
+	 * creates the class layouts and dispatch tables of all classes in the program
+	 * (superclasses first, as in the program)
+	 * @param program
+	 */
+	public void layoutClasses(Program program){
 		for(ICClass c: program.getClasses()){
 			// skip library method
 			if (c.getName().equals("Library")) continue;
@@ -116,53 +139,112 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 			classDispatchTable.add(classLayout.getDispatchTable());
 
 		}
-		
-		// visit all classes recursively
-		for(ICClass c: program.getClasses()){
-			if (!c.getName().equals("Library"))
-				c.accept(this, 0);
-		}
-		
-		// return LIR representation for the IC program
-		String lirBuffer = "";
+	}
+	
+	/**
+	 * returns the LIR representation of the translated classes
+	 * @return
+	 */
+	protected String assemble(){
+		StringBuilder lirBuffer = new StringBuilder();
 		
 		// (1) insert all string literals
-		lirBuffer += "# string literals\n";
+		lirBuffer.append("# string literals\n");
 		// insert error messages strings
-		lirBuffer += "str_null_ref: \"Runtime Error: Null pointer dereference!\"\n";
-		lirBuffer += "str_array_access: \"Runtime Error: Array index out of bounds!\"\n";
-		lirBuffer += "str_size: \"Runtime Error: Array allocation with negative array size!\"\n";
-		lirBuffer += "str_zero: \"Runtime Error: Division by zero!\"\n";
+		lirBuffer.append("str_null_ref: \"Runtime Error: Null pointer dereference!\"\n");
+		lirBuffer.append("str_array_access: \"Runtime Error: Array index out of bounds!\"\n");
+		lirBuffer.append("str_size: \"Runtime Error: Array allocation with negative array size!\"\n");
+		lirBuffer.append("str_zero: \"Runtime Error: Division by zero!\"\n");
 		
 		for (String strLiteral: this.stringLiterals.keySet()){
-			lirBuffer += this.getStringLiterals().get(strLiteral)+": "+strLiteral+"\n";
+			lirBuffer.append(this.getStringLiterals().get(strLiteral)).append(": ").append(strLiteral).append("\n");
 		}
-		lirBuffer += "\n";
+		lirBuffer.append("\n");
 		
 		// (2) insert class dispatch tables
-		lirBuffer += "# class dispatch tables\n"; 
+		lirBuffer.append("# class dispatch tables\n");
 		for (String classDisTab: this.classDispatchTable){
-			lirBuffer += classDisTab+"\n";
+			lirBuffer.append(classDisTab).append("\n");
 		}
-		lirBuffer += "\n";
+		lirBuffer.append("\n");
 		
 		// (3) insert all methods
 		// insert runtime check methods
-		lirBuffer += runtimeChecks;
+		lirBuffer.append(runtimeChecks);
 		// insert all user methods
-		lirBuffer += "# methods\n";
+		lirBuffer.append("# methods\n");
 		for (String methodStr: this.methods){
-			lirBuffer += methodStr+"\n";
+			lirBuffer.append(methodStr).append("\n");
 		}
 		
 		// (4) insert main method
-		lirBuffer += "# main method\n";
-		lirBuffer += this.mainMethod;
+		lirBuffer.append("# main method\n");
+		lirBuffer.append(this.mainMethod);
 		
 		// (5) insert error exit label
-		lirBuffer += "\n_error_exit:\n";
+		lirBuffer.append("\n_error_exit:\n");
 		
-		return new LIRUpType(lirBuffer, LIRFlagEnum.EXPLICIT,"");
+		return lirBuffer.toString();
+	}
+	
+	/**
+	 * translates a single class of the program, after layoutClasses, into a fragment
+	 * numbered on its own (see LIRFragment)
+	 * @param icClass
+	 * @return
+	 */
+	public LIRFragment translateClass(ICClass icClass){
+		translatingFragment = true;
+		stringLiterals = new LinkedHashMap<String,String>();
+		stringLiteralsCounter = 0;
+		methods = new ArrayList<String>();
+		mainMethod = "";
+		labelCounter = 0;
+		virtualCallSiteCounter = 0;
+		
+		icClass.accept(this, 0);
+		
+		return new LIRFragment(methods, mainMethod, new ArrayList<String>(stringLiterals.keySet()),
+				labelCounter, virtualCallSiteCounter);
+	}
+	
+	/**
+	 * returns the LIR representation of the program from the fragments of its classes
+	 * (in the program's order, after layoutClasses): the same as translating the whole program
+	 * @param fragments
+	 * @return
+	 */
+	public LIRUpType splice(List<LIRFragment> fragments){
+		stringLiterals = new LinkedHashMap<String,String>();
+		stringLiteralsCounter = 0;
+		methods = new ArrayList<String>();
+		mainMethod = "";
+		labelCounter = 0;
+		virtualCallSiteCounter = 0;
+		int reducedRegisters = 0;
+		
+		for (LIRFragment fragment: fragments){
+			// the global names of the fragment's string literals
+			String[] literalNames = new String[fragment.getLiterals().size()];
+			for (int i = 0; i < literalNames.length; i++){
+				String strVal = fragment.getLiterals().get(i);
+				if (!stringLiterals.containsKey(strVal))
+					stringLiterals.put(strVal, "str"+(stringLiteralsCounter++));
+				literalNames[i] = stringLiterals.get(strVal);
+			}
+			
+			for (String methodStr: fragment.getMethods()){
+				methods.add(fragment.renumber(methodStr, labelCounter, virtualCallSiteCounter, reducedRegisters, literalNames));
+			}
+			if (!fragment.getMainMethod().equals(""))
+				mainMethod = fragment.renumber(fragment.getMainMethod(), labelCounter, virtualCallSiteCounter, reducedRegisters, literalNames);
+			
+			labelCounter += fragment.getLabels();
+			virtualCallSiteCounter += fragment.getVirtualCallSites();
+			reducedRegisters += fragment.getReducedRegisters();
+		}
+		
+		return new LIRUpType(assemble(), LIRFlagEnum.EXPLICIT,"");
 	}
 
 	/**
@@ -233,30 +315,30 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * @return
 	 */
 	public LIRUpType methodVisitHelper(Method method, Integer d, boolean isMain){
-		String methodLIRCode = "";
+		LIRCode methodLIRCode = new LIRCode();
 		
 		// create method label
 		String methodLabel = "_";
 		methodLabel += isMain ? "ic" : ((ClassSymbolTable) method.getEnclosingScope()).getMyClassSymbol().getID();
 		methodLabel += "_"+method.getName();
 		
-		methodLIRCode += methodLabel+":\n";
+		methodLIRCode.append(methodLabel+":\n");
 		
 		// insert method's code recursively
 		for (Statement s: method.getStatements()){
-			methodLIRCode += s.accept(this,0).getLIRCode();
+			methodLIRCode.append(s.accept(this,0).getCode());
 		}
 		
 		// if method is void (but not main), concatenate a "return 9999"
 		if(method.getType().getName().equals("void") && !isMain){
-			methodLIRCode += "Return 9999\n";
+			methodLIRCode.append("Return 9999\n");
 		}
 		
 		// update methods list / main method
 		if (isMain){
-			mainMethod = methodLIRCode;
+			mainMethod = methodLIRCode.toString();
 		} else {
-			methods.add(methodLIRCode);
+			methods.add(methodLIRCode.toString());
 		}
 		
 		return new LIRUpType("", LIRFlagEnum.EXPLICIT,"");
@@ -297,21 +379,21 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR assignment instruction
 	 */
 	public LIRUpType visit(Assignment assignment, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// translate assignment
 		LIRUpType assign = assignment.getAssignment().accept(this, d);
-		tr += assign.getLIRCode();
-		tr += getMoveCommand(assign.getLIRInstType());
-		tr += assign.getTargetRegister()+",R"+d+"\n";
+		tr.append(assign.getCode());
+		tr.append(getMoveCommand(assign.getLIRInstType()));
+		tr.append(assign.getTargetRegister()+",R"+d+"\n");
 		
 		// translate variable
 		LIRUpType var = assignment.getVariable().accept(this, d+1);
-		tr += var.getLIRCode();
+		tr.append(var.getCode());
 				
 		// handle all variable cases
-		tr += getMoveCommand(var.getLIRInstType());
-		tr += "R"+d+","+var.getTargetRegister()+"\n";
+		tr.append(getMoveCommand(var.getLIRInstType()));
+		tr.append("R"+d+","+var.getTargetRegister()+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
@@ -330,7 +412,7 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 				return f;
 		}
 		if (icClass.hasSuperClass()){
-			return getFieldASTNodeRec(global.getClass(icClass.getSuperClassName()).getIcClass(), fieldName);
+			return getFieldASTNodeRec(global.getClass(icClass.getSuperClassIdentifier()).getIcClass(), fieldName);
 		} else
 			System.err.println("error in getFieldASTNodeRec");
 		return null;
@@ -342,13 +424,13 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR location update instruction
 	 */
 	public LIRUpType visit(VariableLocation location, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		if (location.isExternal()){
 			// translate the location
 			LIRUpType loc = location.getLocation().accept(this, d);
 			// add code to translation
-			tr += loc.getLIRCode();
+			tr.append(loc.getCode());
 			
 			// get the ClassLayout for the location
 			IC.TypeTable.Type locationClassType = 
@@ -362,17 +444,17 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 			int fieldOffset = locationClassLayout.getFieldOffset(f);
 			
 			// translate this step
-			tr += getMoveCommand(loc.getLIRInstType());
+			tr.append(getMoveCommand(loc.getLIRInstType()));
 			String locReg = "R"+d;
-			tr += loc.getTargetRegister()+","+locReg+"\n";
+			tr.append(loc.getTargetRegister()+","+locReg+"\n");
 			
 			// check external location null reference
-			tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+			tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 			
 			return new LIRUpType(tr, LIRFlagEnum.EXT_VAR_LOCATION, locReg+"."+fieldOffset);
 		}else{
 			// check if the variable is a field
-			if (((BlockSymbolTable)location.getEnclosingScope()).isVarField(location.getName())){
+			if (((BlockSymbolTable)location.getEnclosingScope()).isVarField(location.getIdentifier())){
 				String thisClassName = ((BlockSymbolTable)location.getEnclosingScope()).getEnclosingCST().getMyClassSymbol().getID();
 				
 				ClassLayout locationClassLayout = classLayouts.get(thisClassName);
@@ -383,7 +465,7 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 				// get the field offset
 				int fieldOffset = locationClassLayout.getFieldOffset(f);
 				
-				tr += "Move this,R"+d+"\n";
+				tr.append("Move this,R"+d+"\n");
 				String tgtLoc = "R"+d+"."+fieldOffset;
 				
 				// translate only the variable name
@@ -402,29 +484,29 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR array location update instruction
 	 */
 	public LIRUpType visit(ArrayLocation location, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// translate array
 		LIRUpType array = location.getArray().accept(this, d);
-		tr += array.getLIRCode();
+		tr.append(array.getCode());
 		
 		// move result to a single register
-		tr += getMoveCommand(array.getLIRInstType());
-		tr += array.getTargetRegister()+",R"+d+"\n";
+		tr.append(getMoveCommand(array.getLIRInstType()));
+		tr.append(array.getTargetRegister()+",R"+d+"\n");
 		
 		// check array null reference
-		tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+		tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 		
 		// translate index
 		LIRUpType index = location.getIndex().accept(this, d+1);
-		tr += index.getLIRCode();
+		tr.append(index.getCode());
 		
 		// move result to a single register
-		tr += getMoveCommand(index.getLIRInstType());
-		tr += index.getTargetRegister()+",R"+(d+1)+"\n";
+		tr.append(getMoveCommand(index.getLIRInstType()));
+		tr.append(index.getTargetRegister()+",R"+(d+1)+"\n");
 		
 		// check array access
-		tr += "StaticCall __checkArrayAccess(a=R"+d+",i=R"+(d+1)+"),Rdummy\n";
+		tr.append("StaticCall __checkArrayAccess(a=R"+d+",i=R"+(d+1)+"),Rdummy\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.ARR_LOCATION,"R"+d+"[R"+(d+1)+"]");
 	}
@@ -443,13 +525,20 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR return statement update instruction
 	 */
 	public LIRUpType visit(Return returnStatement, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		if (returnStatement.hasValue()){
 			LIRUpType returnVal = returnStatement.getValue().accept(this, d);
-			tr += returnVal.getLIRCode();
-			tr += "Return "+returnVal.getTargetRegister()+"\n";
+			tr.append(returnVal.getCode());
+			// fields and array elements must be loaded first
+			if (returnVal.getLIRInstType() == LIRFlagEnum.ARR_LOCATION ||
+					returnVal.getLIRInstType() == LIRFlagEnum.EXT_VAR_LOCATION){
+				tr.append(getMoveCommand(returnVal.getLIRInstType()));
+				tr.append(returnVal.getTargetRegister()+",R"+d+"\n");
+				returnVal.setTargetRegister("R"+d);
+			}
+			tr.append("Return "+returnVal.getTargetRegister()+"\n");
 		} else {
-			tr += "Return 9999\n";
+			tr.append("Return 9999\n");
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT, "");
@@ -461,35 +550,35 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR if statement update instruction
 	 */
 	public LIRUpType visit(If ifStatement, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		String falseLabel = "_false_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
 		
 		// recursive call the condition expression
 		LIRUpType condExp = ifStatement.getCondition().accept(this, d);
-		tr += condExp.getLIRCode();
-		tr += getMoveCommand(condExp.getLIRInstType());
-		tr += condExp.getTargetRegister()+",R"+d+"\n";
+		tr.append(condExp.getCode());
+		tr.append(getMoveCommand(condExp.getLIRInstType()));
+		tr.append(condExp.getTargetRegister()+",R"+d+"\n");
 		
 		// check condition
-		tr += "Compare 0,R"+d+"\n";
-		if (ifStatement.hasElse()) tr += "JumpTrue "+falseLabel+"\n";
-		else tr += "JumpTrue "+endLabel+"\n";
+		tr.append("Compare 0,R"+d+"\n");
+		if (ifStatement.hasElse()) tr.append("JumpTrue "+falseLabel+"\n");
+		else tr.append("JumpTrue "+endLabel+"\n");
 		
 		// recursive call to the then statement
 		LIRUpType thenStat = ifStatement.getOperation().accept(this, d);
-		tr += thenStat.getLIRCode();
+		tr.append(thenStat.getCode());
 		
 		if (ifStatement.hasElse()){
-			tr += "Jump "+endLabel+"\n";
+			tr.append("Jump "+endLabel+"\n");
 
 			// recursive call to the else statement
-			tr += falseLabel+":\n";
+			tr.append(falseLabel+":\n");
 			LIRUpType elseStat = ifStatement.getElseOperation().accept(this, d);
-			tr += elseStat.getLIRCode();
+			tr.append(elseStat.getCode());
 		}
 		
-		tr += endLabel+":\n";
+		tr.append(endLabel+":\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
@@ -504,25 +593,25 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 		int prevWhileID = currWhileID;
 		currWhileID = labelCounter;
 		
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		String whileLabel = "_while_cond_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
 		
-		tr += whileLabel+":\n";
+		tr.append(whileLabel+":\n");
 		// recursive call to condition
 		LIRUpType condExp = whileStatement.getCondition().accept(this, d);
-		tr += condExp.getLIRCode();
-		tr += getMoveCommand(condExp.getLIRInstType());
-		tr += condExp.getTargetRegister()+",R"+d+"\n";
+		tr.append(condExp.getCode());
+		tr.append(getMoveCommand(condExp.getLIRInstType()));
+		tr.append(condExp.getTargetRegister()+",R"+d+"\n");
 		
 		// check condition
-		tr += "Compare 0,R"+d+"\n";
-		tr += "JumpTrue "+endLabel+"\n";
+		tr.append("Compare 0,R"+d+"\n");
+		tr.append("JumpTrue "+endLabel+"\n");
 		
 		// recursive call to operation statement
-		tr += whileStatement.getOperation().accept(this,d).getLIRCode();
-		tr += "Jump "+whileLabel+"\n";
-		tr += endLabel+":\n";
+		tr.append(whileStatement.getOperation().accept(this,d).getCode());
+		tr.append("Jump "+whileLabel+"\n");
+		tr.append(endLabel+":\n");
 		
 		// set while id back to previous value
 		currWhileID = prevWhileID;
@@ -534,7 +623,7 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return the break statement
 	 */
 	public LIRUpType visit(Break breakStatement, Integer d){
-		String tr = "Jump _end_label"+currWhileID+"\n";
+		LIRCode tr = new LIRCode("Jump _end_label"+currWhileID+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
 
@@ -543,7 +632,7 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return the continue statement
 	 */
 	public LIRUpType visit(Continue continueStatement, Integer d){
-		String tr = "Jump _while_cond_label"+currWhileID+"\n";
+		LIRCode tr = new LIRCode("Jump _while_cond_label"+currWhileID+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
 	}
 
@@ -553,11 +642,11 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR code
 	 */
 	public LIRUpType visit(StatementsBlock statementsBlock, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to all statements in the block
 		for (Statement s: statementsBlock.getStatements()){
-			tr += s.accept(this, d).getLIRCode();
+			tr.append(s.accept(this, d).getCode());
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
@@ -569,15 +658,15 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR local variable statement instruction
 	 */
 	public LIRUpType visit(LocalVariable localVariable, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		if (localVariable.hasInitValue()){
 			LIRUpType initVal = localVariable.getInitValue().accept(this, d);
-			tr += initVal.getLIRCode();
-			tr += getMoveCommand(initVal.getLIRInstType());
-			tr += initVal.getTargetRegister()+",R"+d+"\n";
+			tr.append(initVal.getCode());
+			tr.append(getMoveCommand(initVal.getLIRInstType()));
+			tr.append(initVal.getTargetRegister()+",R"+d+"\n");
 			// move register into the local var name
-			tr += "Move R"+d+","+localVariable.getNameDepth()+"\n";
+			tr.append("Move R"+d+","+localVariable.getNameDepth()+"\n");
 		}
 		
 		return new LIRUpType(tr, LIRFlagEnum.STATEMENT,"");
@@ -589,16 +678,16 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR static call statement instruction
 	 */
 	public LIRUpType visit(StaticCall call, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive calls to all arguments
 		int i = d;
 		for (Expression arg: call.getArguments()){
 			LIRUpType argExp = arg.accept(this, i);
-			tr += "# argument #"+(i-d)+":\n";
-			tr += argExp.getLIRCode();
-			tr += getMoveCommand(argExp.getLIRInstType());
-			tr += argExp.getTargetRegister()+",R"+i+"\n";
+			tr.append("# argument #"+(i-d)+":\n");
+			tr.append(argExp.getCode());
+			tr.append(getMoveCommand(argExp.getLIRInstType()));
+			tr.append(argExp.getTargetRegister()+",R"+i+"\n");
 			// increment registers count
 			i++;
 		}
@@ -610,19 +699,19 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 		
 		// call statement
 		ClassLayout thisClassLayout = classLayouts.get(call.getClassName());
-		Method thisMethod = thisClassLayout.getMethodFromName(call.getName());
-		tr += "# call statement:\n";
+		Method thisMethod = thisClassLayout.getMethodFromName(call.getIdentifier());
+		tr.append("# call statement:\n");
 		// construct method label
 		String methodName = "_"+((ClassSymbolTable) thisMethod.getEnclosingScope()).getMyClassSymbol().getID()+
 							"_"+call.getName();
-		tr += "StaticCall "+methodName+"(";
+		String line = "StaticCall "+methodName+"(";
 		// insert <formal>=<argument register>
 		for(i = 0; i < call.getArguments().size(); i++){
-			tr += thisMethod.getFormals().get(i).getNameDepth()+"=R"+(d+i)+",";
+			line += thisMethod.getFormals().get(i).getNameDepth()+"=R"+(d+i)+",";
 		}
 		// remove last comma
-		if (tr.endsWith(",")) tr = tr.substring(0, tr.length()-1);
-		tr += "),R"+d+"\n";
+		if (line.endsWith(",")) line = line.substring(0, line.length()-1);
+		tr.append(line+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -634,16 +723,16 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * @param d
 	 * @return
 	 */
-	public LIRUpType libraryCallVisit(String argsTr, StaticCall call, Integer d){
-		String tr = argsTr; 
-		tr += "Library __"+call.getName()+"(";
+	public LIRUpType libraryCallVisit(LIRCode argsTr, StaticCall call, Integer d){
+		LIRCode tr = argsTr; 
+		String line = "Library __"+call.getName()+"(";
 		// iterate over values (registers)
 		for(int i = 0; i < call.getArguments().size(); i++){
-			tr += "R"+(i+d)+",";
+			line += "R"+(i+d)+",";
 		}
 		// remove last comma
-		if (tr.endsWith(",")) tr = tr.substring(0, tr.length()-1);
-		tr += "),R"+d+"\n";
+		if (line.endsWith(",")) line = line.substring(0, line.length()-1);
+		tr.append(line+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -654,49 +743,50 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - concatenate the translations to the LIR virtual call statement instruction
 	 */
 	public LIRUpType visit(VirtualCall call, Integer d){
-		String tr = "# virtual call location:\n";;
+		LIRCode tr = new LIRCode("# virtual call location:\n");
 		
 		// recursive call to call location
 		if (call.isExternal()){
 			LIRUpType location = call.getLocation().accept(this, d);
-			tr += location.getLIRCode();
-			tr += getMoveCommand(location.getLIRInstType());
-			tr += location.getTargetRegister()+",R"+d+"\n";
+			tr.append(location.getCode());
+			tr.append(getMoveCommand(location.getLIRInstType()));
+			tr.append(location.getTargetRegister()+",R"+d+"\n");
 			
 			// check location null reference
-			tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+			tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 		} else {
-			tr += "Move this,R"+d+"\n";
+			tr.append("Move this,R"+d+"\n");
 		}
 		
 		// recursive call to all arguments
 		int i = d+1;
 		for (Expression arg: call.getArguments()){
 			LIRUpType argExp = arg.accept(this, i);
-			tr += "# argument #"+(i-d-1)+":\n";
-			tr += argExp.getLIRCode();
-			tr += getMoveCommand(argExp.getLIRInstType());
-			tr += argExp.getTargetRegister()+",R"+i+"\n";
+			tr.append("# argument #"+(i-d-1)+":\n");
+			tr.append(argExp.getCode());
+			tr.append(getMoveCommand(argExp.getLIRInstType()));
+			tr.append(argExp.getTargetRegister()+",R"+i+"\n");
 			// increment registers count
 			i++;
 		}
 		
 		// call statement
-		tr += "VirtualCall R"+d+".";
 		String className = !call.isExternal() ? currClassName :
 			((IC.TypeTable.ClassType) call.getLocation().accept(new SemanticChecks(global))).getName();
+		tr.append("# virtual call site "+(virtualCallSiteCounter++)+": "+className+"."+call.getName()+"\n");
+		String line = "VirtualCall R"+d+".";
 		ClassLayout thisClassLayout = classLayouts.get(className);
-		Method thisMethod = thisClassLayout.getMethodFromName(call.getName());
+		Method thisMethod = thisClassLayout.getMethodFromName(call.getIdentifier());
 		int offset = thisClassLayout.getMethodOffset(thisMethod);
 		
-		tr += offset+"(";
+		line += offset+"(";
 		// insert <formal>=<argument register>
 		for(i = 0; i < call.getArguments().size(); i++){
-			tr += thisMethod.getFormals().get(i).getNameDepth()+"=R"+(d+i+1)+",";
+			line += thisMethod.getFormals().get(i).getNameDepth()+"=R"+(d+i+1)+",";
 		}
 		// remove last comma
-		if (tr.endsWith(",")) tr = tr.substring(0, tr.length()-1);
-		tr += "),R"+d+"\n";
+		if (line.endsWith(",")) line = line.substring(0, line.length()-1);
+		tr.append(line+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -707,7 +797,7 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return translation
 	 */
 	public LIRUpType visit(This thisExpression, Integer d){
-		String tr = "Move this,R"+d+"\n";
+		LIRCode tr = new LIRCode("Move this,R"+d+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
 
@@ -719,8 +809,8 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	public LIRUpType visit(NewClass newClass, Integer d){
 
 		ClassLayout thisClassLayout = classLayouts.get(newClass.getName());
-		String tr = "Library __allocateObject("+thisClassLayout.getAllocSize()+"),R"+d+"\n";
-		tr += "MoveField _DV_"+thisClassLayout.getClassName()+",R"+d+".0\n";
+		LIRCode tr = new LIRCode("Library __allocateObject("+thisClassLayout.getAllocSize()+"),R"+d+"\n");
+		tr.append("MoveField _DV_"+thisClassLayout.getClassName()+",R"+d+".0\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -731,21 +821,21 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return LIR code
 	 */
 	public LIRUpType visit(NewArray newArray, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to size
 		LIRUpType size = newArray.getSize().accept(this, d);
-		tr += size.getLIRCode();
-		tr += getMoveCommand(size.getLIRInstType());
-		tr += size.getTargetRegister()+",R"+d+"\n";
+		tr.append(size.getCode());
+		tr.append(getMoveCommand(size.getLIRInstType()));
+		tr.append(size.getTargetRegister()+",R"+d+"\n");
 		// multiply by 4
-		tr += "Mul 4,R"+d+"\n";
+		tr.append("Mul 4,R"+d+"\n");
 		
 		// check given size n
-		tr += "StaticCall __checkSize(n=R"+d+"),Rdummy\n";
+		tr.append("StaticCall __checkSize(n=R"+d+"),Rdummy\n");
 		
 		// allocate memory
-		tr += "Library __allocateArray(R"+d+"),R"+d+"\n";
+		tr.append("Library __allocateArray(R"+d+"),R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -756,19 +846,19 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return LIR code
 	 */
 	public LIRUpType visit(Length length, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to array expression
 		LIRUpType array = length.getArray().accept(this, d);
-		tr += array.getLIRCode();
-		tr += getMoveCommand(array.getLIRInstType());
-		tr += array.getTargetRegister()+",R"+d+"\n";
+		tr.append(array.getCode());
+		tr.append(getMoveCommand(array.getLIRInstType()));
+		tr.append(array.getTargetRegister()+",R"+d+"\n");
 		
 		// check array null reference
-		tr += "StaticCall __checkNullRef(a=R"+d+"),Rdummy\n";
+		tr.append("StaticCall __checkNullRef(a=R"+d+"),Rdummy\n");
 		
 		// get length
-		tr += "ArrayLength R"+d+",R"+d+"\n";
+		tr.append("ArrayLength R"+d+",R"+d+"\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -779,44 +869,44 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(MathBinaryOp binaryOp, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to operands
 		LIRUpType operand1 = binaryOp.getFirstOperand().accept(this, d);
-		tr += operand1.getLIRCode();
-		tr += getMoveCommand(operand1.getLIRInstType());
-		tr += operand1.getTargetRegister()+",R"+d+"\n";
+		tr.append(operand1.getCode());
+		tr.append(getMoveCommand(operand1.getLIRInstType()));
+		tr.append(operand1.getTargetRegister()+",R"+d+"\n");
 		
 		LIRUpType operand2 = binaryOp.getSecondOperand().accept(this, d+1);
-		tr += operand2.getLIRCode();
-		tr += getMoveCommand(operand2.getLIRInstType());
-		tr += operand2.getTargetRegister()+",R"+(d+1)+"\n";
+		tr.append(operand2.getCode());
+		tr.append(getMoveCommand(operand2.getLIRInstType()));
+		tr.append(operand2.getTargetRegister()+",R"+(d+1)+"\n");
 		
 		// operation
 		switch (binaryOp.getOperator()){
 		case PLUS:
 			// check if operation is on strings or on integers
-			IC.TypeTable.Type operandsType = (IC.TypeTable.Type) binaryOp.getFirstOperand().accept(new SemanticChecks(global));
+			IC.TypeTable.Type operandsType = getPlusOperandsType(binaryOp);
 			if (operandsType.subtypeof(IC.TypeTable.TypeTable.getUniquePrimitiveTypes().get("int"))){
-				tr += "Add R"+(d+1)+",R"+d+"\n";
+				tr.append("Add R"+(d+1)+",R"+d+"\n");
 			} else { // strings
-				tr += "Library __stringCat(R"+d+",R"+(d+1)+"),R"+d+"\n";
+				tr.append("Library __stringCat(R"+d+",R"+(d+1)+"),R"+d+"\n");
 			}
 			break;
 		case MINUS:
-			tr += "Sub R"+(d+1)+",R"+d+"\n";
+			tr.append("Sub R"+(d+1)+",R"+d+"\n");
 			break;
 		case MULTIPLY:
-			tr += "Mul R"+(d+1)+",R"+d+"\n";
+			tr.append("Mul R"+(d+1)+",R"+d+"\n");
 			break;
 		case DIVIDE:
 			// check division by zero
-			tr += "StaticCall __checkZero(b=R"+(d+1)+"),Rdummy\n";
+			tr.append("StaticCall __checkZero(b=R"+(d+1)+"),Rdummy\n");
 			
-			tr += "Div R"+(d+1)+",R"+d+"\n";
+			tr.append("Div R"+(d+1)+",R"+d+"\n");
 			break;
 		case MOD:
-			tr += "Mod R"+(d+1)+",R"+d+"\n";
+			tr.append("Mod R"+(d+1)+",R"+d+"\n");
 			break;
 		default:
 			System.err.println("error in translate");
@@ -834,64 +924,64 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 		String trueLabel = "_true_label"+labelCounter;
 		String falseLabel = "_false_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to operands
 		LIRUpType operand1 = binaryOp.getFirstOperand().accept(this, d);
-		tr += operand1.getLIRCode();
-		tr += getMoveCommand(operand1.getLIRInstType());
-		tr += operand1.getTargetRegister()+",R"+d+"\n";
+		tr.append(operand1.getCode());
+		tr.append(getMoveCommand(operand1.getLIRInstType()));
+		tr.append(operand1.getTargetRegister()+",R"+d+"\n");
 		
 		LIRUpType operand2 = binaryOp.getSecondOperand().accept(this, d+1);
-		tr += operand2.getLIRCode();
-		tr += getMoveCommand(operand2.getLIRInstType());
-		tr += operand2.getTargetRegister()+",R"+(d+1)+"\n";
+		tr.append(operand2.getCode());
+		tr.append(getMoveCommand(operand2.getLIRInstType()));
+		tr.append(operand2.getTargetRegister()+",R"+(d+1)+"\n");
 		
 		// operation
 		if (binaryOp.getOperator() != BinaryOps.LAND && binaryOp.getOperator() != BinaryOps.LOR){
-			tr += "Compare R"+(d+1)+",R"+d+"\n";
+			tr.append("Compare R"+(d+1)+",R"+d+"\n");
 		}
 		switch (binaryOp.getOperator()){
 		case EQUAL:
-			tr += "JumpTrue "+trueLabel+"\n";
+			tr.append("JumpTrue "+trueLabel+"\n");
 			break;
 		case NEQUAL:
-			tr += "JumpFalse "+trueLabel+"\n";
+			tr.append("JumpFalse "+trueLabel+"\n");
 			break;
 		case GT:
-			tr += "JumpG "+trueLabel+"\n";
+			tr.append("JumpG "+trueLabel+"\n");
 			break;
 		case GTE:
-			tr += "JumpGE "+trueLabel+"\n";
+			tr.append("JumpGE "+trueLabel+"\n");
 			break;
 		case LT:
-			tr += "JumpL "+trueLabel+"\n";
+			tr.append("JumpL "+trueLabel+"\n");
 			break;
 		case LTE:
-			tr += "JumpLE "+trueLabel+"\n";
+			tr.append("JumpLE "+trueLabel+"\n");
 			break;
 		case LAND:
-			tr += "Compare 0,R"+d+"\n";
-			tr += "JumpTrue "+falseLabel+"\n";
-			tr += "Compare 0,R"+(d+1)+"\n";
-			tr += "JumpTrue "+falseLabel+"\n";
-			tr += "Jump "+trueLabel+"\n";
-			tr += falseLabel+":\n"; 
+			tr.append("Compare 0,R"+d+"\n");
+			tr.append("JumpTrue "+falseLabel+"\n");
+			tr.append("Compare 0,R"+(d+1)+"\n");
+			tr.append("JumpTrue "+falseLabel+"\n");
+			tr.append("Jump "+trueLabel+"\n");
+			tr.append(falseLabel+":\n"); 
 			break;
 		case LOR:
-			tr += "Compare 0,R"+d+"\n";
-			tr += "JumpFalse "+trueLabel+"\n";
-			tr += "Compare 0,R"+(d+1)+"\n";
-			tr += "JumpFalse "+trueLabel+"\n"; 
+			tr.append("Compare 0,R"+d+"\n");
+			tr.append("JumpFalse "+trueLabel+"\n");
+			tr.append("Compare 0,R"+(d+1)+"\n");
+			tr.append("JumpFalse "+trueLabel+"\n"); 
 			break;
 		default:
 			System.err.println("error in translate");	
 		}
-		tr += "Move 0,R"+d+"\n";
-		tr += "Jump "+endLabel+"\n";
-		tr += trueLabel+":\n";
-		tr += "Move 1,R"+d+"\n";
-		tr += endLabel+":\n";
+		tr.append("Move 0,R"+d+"\n");
+		tr.append("Jump "+endLabel+"\n");
+		tr.append(trueLabel+":\n");
+		tr.append("Move 1,R"+d+"\n");
+		tr.append(endLabel+":\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -902,15 +992,15 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(MathUnaryOp unaryOp, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		
 		// recursive call to operand
 		LIRUpType operand = unaryOp.getOperand().accept(this, d);
-		tr += operand.getLIRCode();
-		tr += getMoveCommand(operand.getLIRInstType());
-		tr += operand.getTargetRegister()+",R"+d+"\n";
+		tr.append(operand.getCode());
+		tr.append(getMoveCommand(operand.getLIRInstType()));
+		tr.append(operand.getTargetRegister()+",R"+d+"\n");
 		
-		tr += "Neg R"+d+"\n";
+		tr.append("Neg R"+d+"\n");
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
 
@@ -920,23 +1010,23 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * - return the LIR code
 	 */
 	public LIRUpType visit(LogicalUnaryOp unaryOp, Integer d){
-		String tr = "";
+		LIRCode tr = new LIRCode();
 		String trueLabel = "_true_label"+labelCounter;
 		String endLabel = "_end_label"+(labelCounter++);
 		
 		// recursive call to operand
 		LIRUpType operand = unaryOp.getOperand().accept(this, d);
-		tr += operand.getLIRCode();
-		tr += getMoveCommand(operand.getLIRInstType());
-		tr += operand.getTargetRegister()+",R"+d+"\n";
-		
-		tr += "Compare 0,R"+d+"\n";
-		tr += "JumpTrue "+trueLabel+"\n";
-		tr += "Move 0,R"+d+"\n";
-		tr += "Jump "+endLabel+"\n";
-		tr += trueLabel+":\n";
-		tr += "Move 1,R"+d+"\n";
-		tr += endLabel+":\n";
+		tr.append(operand.getCode());
+		tr.append(getMoveCommand(operand.getLIRInstType()));
+		tr.append(operand.getTargetRegister()+",R"+d+"\n");
+		
+		tr.append("Compare 0,R"+d+"\n");
+		tr.append("JumpTrue "+trueLabel+"\n");
+		tr.append("Move 0,R"+d+"\n");
+		tr.append("Jump "+endLabel+"\n");
+		tr.append(trueLabel+":\n");
+		tr.append("Move 1,R"+d+"\n");
+		tr.append(endLabel+":\n");
 		
 		return new LIRUpType(tr, LIRFlagEnum.REGISTER,"R"+d);
 	}
@@ -953,7 +1043,7 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 		case STRING:
 			String strVal = ((String) literal.getValue()).replaceAll("\n", "\\\\n");
 			if (!stringLiterals.containsKey(strVal))
-				stringLiterals.put(strVal, "str"+(stringLiteralsCounter++));
+				stringLiterals.put(strVal, (translatingFragment ? "str$" : "str")+(stringLiteralsCounter++));
 			litStr = stringLiterals.get(strVal);
 			break;
 		case INTEGER:
@@ -1032,6 +1122,34 @@ public class TranslatePropagatingVisitor implements LIRPropagatingVisitor<Intege
 	 * @param type
 	 * @return
 	 */
+	/**
+	 * returns the type of the operands of the given '+' operation (int or string):
+	 * the type of its first operand, found down the chain of '+' operations in a loop
+	 * and kept for every operand on the way (so a long chain is typed once)
+	 * @param binaryOp
+	 * @return
+	 */
+	protected IC.TypeTable.Type getPlusOperandsType(MathBinaryOp binaryOp){
+		List<Expression> chain = new ArrayList<Expression>();
+		Expression operand = binaryOp.getFirstOperand();
+		IC.TypeTable.Type type = plusOperandTypes.get(operand);
+		while (type == null){
+			chain.add(operand);
+			if (operand instanceof MathBinaryOp && ((MathBinaryOp) operand).getOperator() == BinaryOps.PLUS){
+				operand = ((MathBinaryOp) operand).getFirstOperand();
+				type = plusOperandTypes.get(operand);
+			} else if (operand instanceof MathBinaryOp || operand instanceof MathUnaryOp){
+				type = IC.TypeTable.TypeTable.getUniquePrimitiveTypes().get("int");
+			} else {
+				type = (IC.TypeTable.Type) operand.accept(new SemanticChecks(global));
+			}
+		}
+		for (Expression e: chain){
+			plusOperandTypes.put(e, type);
+		}
+		return type;
+	}
+
 	protected String getMoveCommand(LIRFlagEnum type){
 		switch(type){
 		case REGISTER: return "Move ";
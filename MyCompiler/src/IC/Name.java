@@ -0,0 +1,182 @@
+package IC;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A canonical identifier: the global identifier pool hands out a single Name
+ * for every distinct identifier, with its hash computed once.
+ * Names are compared by identity, so maps keyed by Names (the symbol tables,
+ * the type table and the class layouts) never re-hash or compare characters.
+ * The AST nodes resolve their identifiers to Names once, when they are built.
+ *
+ * The Lexer creates identifiers through the pool, so the String of an identifier
+ * in the AST is its Name's canonical String too (and String.equals of two equal
+ * identifiers returns on its identity check).
+ *
+ * The pool holds its names weakly: a name nothing refers to any more (e.g. of an
+ * earlier compilation under -watch) is collected, and its slot is dropped when the
+ * pool is rebuilt. Finding a name does not lock; adding one does.
+ */
+public final class Name {
+
+	/* a slot of the pool: a name, or a collected one (whose slot is kept, for the probes). */
+	private static final class Entry extends WeakReference<Name> {
+		final int hash;
+
+		Entry(Name name) {
+			super(name);
+			this.hash = name.hash;
+		}
+	}
+
+	/* the pool: an open addressing hash table of all the names.
+	 * A slot is only ever filled, or refilled over a collected name: a lookup that misses
+	 * (maybe while the name is being added) checks again under the lock. */
+	private static volatile Entry[] pool = new Entry[1024];
+	private static int used = 0;   /* the slots filled, including the collected names' */
+
+	public static final Name LIBRARY = of("Library");
+	public static final Name MAIN = of("main");
+
+	private final String text;
+	private final int hash;   /* == text.hashCode() */
+
+	private Name(String text, int hash) {
+		this.text = text;
+		this.hash = hash;
+	}
+
+	/**
+	 * Returns the canonical name of the given identifier.
+	 */
+	public static Name of(String text) {
+		int hash = text.hashCode();
+		Entry[] table = pool;
+		int mask = table.length - 1;
+		int slot = hash & mask;
+
+		for (Entry e = table[slot]; e != null; e = table[slot]) {
+			Name n = e.get();
+			if (n != null && (n.text == text || (n.hash == hash && n.text.equals(text))))
+				return n;
+			slot = (slot + 1) & mask;
+		}
+
+		return add(text, hash);
+	}
+
+	/**
+	 * Returns the canonical name of the identifier in the given chars range
+	 * (creating its String only if it is a new name).
+	 */
+	public static Name of(char[] chars, int offset, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + chars[offset + i];
+
+		Entry[] table = pool;
+		int mask = table.length - 1;
+		int slot = hash & mask;
+
+		for (Entry e = table[slot]; e != null; e = table[slot]) {
+			Name n = e.get();
+			if (n != null && n.hash == hash && n.matches(chars, offset, length))
+				return n;
+			slot = (slot + 1) & mask;
+		}
+
+		return add(new String(chars, offset, length), hash);
+	}
+
+	private boolean matches(char[] chars, int offset, int length) {
+		if (text.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) != chars[offset + i]) return false;
+		}
+		return true;
+	}
+
+	/* looks the name up again under the lock, and adds it if it is still not there. */
+	private static synchronized Name add(String text, int hash) {
+		Entry[] table = pool;
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		int collected = -1;
+
+		for (Entry e = table[slot]; e != null; e = table[slot]) {
+			Name n = e.get();
+			if (n == null) {
+				if (collected < 0) collected = slot;
+			} else if (n.hash == hash && n.text.equals(text)) {
+				return n;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		Name name = new Name(text, hash);
+		if (collected >= 0) {
+			table[collected] = new Entry(name);
+		} else {
+			table[slot] = new Entry(name);
+			if (++used * 2 > table.length)
+				rebuild(table);
+		}
+		return name;
+	}
+
+	/* rebuilds the pool with the live names only, at most a quarter full. */
+	private static void rebuild(Entry[] old) {
+		int live = 0;
+		for (Entry e : old) {
+			if (e != null && e.get() != null) live++;
+		}
+
+		int length = 1024;
+		while (live * 4 > length)
+			length *= 2;
+
+		Entry[] table = new Entry[length];
+		int mask = length - 1;
+		for (Entry e : old) {
+			if (e == null || e.get() == null) continue;
+			int s = e.hash & mask;
+			while (table[s] != null)
+				s = (s + 1) & mask;
+			table[s] = e;
+		}
+
+		used = live;
+		pool = table;
+	}
+
+	/**
+	 * Returns the number of live names in the pool.
+	 */
+	public static synchronized int poolSize() {
+		int live = 0;
+		for (Entry e : pool) {
+			if (e != null && e.get() != null) live++;
+		}
+		return live;
+	}
+
+	/**
+	 * Returns true iff the given identifier is this name.
+	 */
+	public boolean is(String s) {
+		return text == s || text.equals(s);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/* equals is Object's: names are canonical. */
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+}
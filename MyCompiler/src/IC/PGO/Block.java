@@ -0,0 +1,168 @@
+package IC.PGO;
+
+import java.util.*;
+
+/**
+ * Block
+ * =====
+ * a basic block of a method's LIR code: starts at a label (or after a jump
+ * or a return) and ends at the next one. the block's label line, if any, is its
+ * first line.
+ *
+ * a block is hot if the profile shows it was executed: it is reachable from
+ * the method's entry by edges the profile does not rule out (a conditional
+ * jump never taken, or never falling through).
+ */
+class Block {
+
+	private String label;
+	private List<CodeLine> lines = new ArrayList<CodeLine>();
+	private boolean hot = false;
+
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * labels the block (adds a label line, if it has none)
+	 * @param label
+	 */
+	public void setLabel(String label) {
+		if (this.label == null) lines.add(0, new CodeLine(label+":"));
+		this.label = label;
+	}
+
+	public List<CodeLine> getLines() {
+		return lines;
+	}
+
+	public boolean isHot() {
+		return hot;
+	}
+
+	/**
+	 * returns the last instruction of the block, null if it has none
+	 * @return
+	 */
+	public CodeLine getLastInstruction(){
+		for (int i = lines.size()-1; i >= 0; i--){
+			if (lines.get(i).isInstruction()) return lines.get(i);
+		}
+		return null;
+	}
+
+	/**
+	 * checks if the execution may continue from the end of the block to the next one
+	 * @return
+	 */
+	public boolean fallsThrough(){
+		CodeLine last = getLastInstruction();
+		return last == null || last.fallsThrough();
+	}
+
+	/**
+	 * returns the number of instructions of the block
+	 * @return
+	 */
+	public int getSize(){
+		int size = 0;
+		for (CodeLine line: lines){
+			if (line.isInstruction()) size++;
+		}
+		return size;
+	}
+
+	// method code
+	//////////////
+
+	/**
+	 * splits a method's code to blocks, in their order in the code
+	 * @param code
+	 * @return
+	 */
+	public static List<Block> split(List<CodeLine> code){
+		List<Block> blocks = new ArrayList<Block>();
+		Block curr = new Block();
+		blocks.add(curr);
+		for (CodeLine line: code){
+			CodeLine last = curr.getLastInstruction();
+			if (line.isLabel() || (line.isInstruction() && last != null && (!last.fallsThrough() || last.isCondJump()))){
+				curr = new Block();
+				blocks.add(curr);
+				if (line.isLabel()) curr.label = line.getLabel();
+			}
+			curr.lines.add(line);
+		}
+		return blocks;
+	}
+
+	/**
+	 * returns the blocks by their labels
+	 * @param blocks
+	 * @return
+	 */
+	public static Map<String,Block> labels(List<Block> blocks){
+		Map<String,Block> labels = new HashMap<String,Block>();
+		for (Block b: blocks){
+			if (b.label != null) labels.put(b.label, b);
+		}
+		return labels;
+	}
+
+	/**
+	 * marks the hot blocks (see above)
+	 * @param blocks
+	 * @return true iff all the blocks are hot
+	 */
+	public static boolean markHot(List<Block> blocks){
+		Map<String,Block> labels = labels(blocks);
+		Map<Block,Integer> indices = new HashMap<Block,Integer>();
+		for (int i = 0; i < blocks.size(); i++){
+			blocks.get(i).hot = false;
+			indices.put(blocks.get(i), i);
+		}
+
+		Deque<Block> worklist = new ArrayDeque<Block>();
+		worklist.add(blocks.get(0));
+		blocks.get(0).hot = true;
+		int hotBlocks = 1;
+		while (!worklist.isEmpty()){
+			Block b = worklist.poll();
+			int i = indices.get(b);
+			Block next = i+1 < blocks.size() ? blocks.get(i+1) : null;
+			CodeLine last = b.getLastInstruction();
+			List<Block> succs = new ArrayList<Block>();
+			if (last != null && last.isCondJump()){
+				long[] counts = last.getBranch();
+				if (counts == null || counts[0] > 0) succs.add(labels.get(last.getTarget()));
+				if (counts == null || counts[1] > 0) succs.add(next);
+			} else if (last != null && last.isJump()){
+				succs.add(labels.get(last.getTarget()));
+			} else if (b.fallsThrough()){
+				succs.add(next);
+			}
+			for (Block succ: succs){
+				// null: out of the method
+				if (succ != null && !succ.hot){
+					succ.hot = true;
+					hotBlocks++;
+					worklist.add(succ);
+				}
+			}
+		}
+		return hotBlocks == blocks.size();
+	}
+
+	/**
+	 * returns the lines of the given blocks, in order
+	 * @param blocks
+	 * @return
+	 */
+	public static List<CodeLine> join(List<Block> blocks){
+		List<CodeLine> code = new ArrayList<CodeLine>();
+		for (Block b: blocks){
+			code.addAll(b.lines);
+		}
+		return code;
+	}
+}
@@ -0,0 +1,99 @@
+package IC.PGO;
+
+import java.util.*;
+
+/**
+ * BlockLayout
+ * ===========
+ * lays out a method's blocks by the profile: the hot blocks keep their order,
+ * and the cold ones (never executed in the profiled run) move to the end of the
+ * method, so the hot code is contiguous and its branches mostly fall through.
+ * the control flow is kept by fixing the blocks whose next block changed:
+ * - a conditional jump to the new next block is inverted, to jump to the
+ *   block it used to fall through to.
+ * - any other block falling through to a block that is no longer next gets
+ *   a jump to it (which needs a label: a new one if it had none).
+ * - a jump to the new next block is dropped.
+ */
+class BlockLayout {
+
+	private ProfileGuidedOptimizer optimizer;
+	private int blocksMoved = 0;
+
+	/**
+	 * constructor
+	 * @param optimizer: the program being optimized
+	 */
+	public BlockLayout(ProfileGuidedOptimizer optimizer){
+		this.optimizer = optimizer;
+	}
+
+	public int getBlocksMoved() {
+		return blocksMoved;
+	}
+
+	/**
+	 * lays out the blocks of a method
+	 * @param code: the method's code
+	 * @param fallOffLabel: the label following the method's code (null if none)
+	 * @return the new code
+	 */
+	public List<CodeLine> run(List<CodeLine> code, String fallOffLabel){
+		List<Block> blocks = Block.split(code);
+		if (Block.markHot(blocks)) return code;
+
+		// the block every block falls through to (null: off the method's end)
+		Map<Block,Block> fallThrough = new HashMap<Block,Block>();
+		for (int i = 0; i < blocks.size(); i++){
+			if (blocks.get(i).fallsThrough()) fallThrough.put(blocks.get(i), i+1 < blocks.size() ? blocks.get(i+1) : null);
+		}
+		Block last = blocks.get(blocks.size()-1);
+		if (last.fallsThrough() && fallOffLabel == null) return code;
+
+		List<Block> layout = new ArrayList<Block>();
+		List<Block> cold = new ArrayList<Block>();
+		for (Block b: blocks){
+			if (b.isHot()) layout.add(b);
+			else cold.add(b);
+		}
+		layout.addAll(cold);
+		for (int i = 0; i < blocks.size(); i++){
+			if (layout.get(i) != blocks.get(i) && !layout.get(i).isHot()) blocksMoved++;
+		}
+
+		for (int i = 0; i < layout.size(); i++){
+			Block b = layout.get(i);
+			Block next = i+1 < layout.size() ? layout.get(i+1) : null;
+			List<CodeLine> lines = b.getLines();
+			CodeLine lastLine = b.getLastInstruction();
+
+			if (lastLine != null && lastLine.isJump()){
+				if (next != null && lastLine.getTarget().equals(next.getLabel())) lines.remove(lastLine);
+				continue;
+			}
+			if (!b.fallsThrough() || !fallThrough.containsKey(b)) continue;
+
+			Block succ = fallThrough.get(b);
+			if (succ == next) continue;
+			if (lastLine != null && lastLine.isCondJump() && next != null && lastLine.getTarget().equals(next.getLabel())){
+				// jump to the old fall through block when not going to the new one
+				long[] counts = lastLine.getBranch();
+				CodeLine inverted = lastLine.withText(CodeLine.invert(lastLine.getOpcode())+" "+labelOf(succ, fallOffLabel));
+				inverted.setBranch(counts == null ? null : new long[]{counts[1], counts[0]});
+				lines.set(lines.lastIndexOf(lastLine), inverted);
+			} else {
+				lines.add(new CodeLine("Jump "+labelOf(succ, fallOffLabel)));
+			}
+		}
+		return Block.join(layout);
+	}
+
+	/**
+	 * returns the label of a block, labeling it if needed (the fall off label for null)
+	 */
+	private String labelOf(Block b, String fallOffLabel){
+		if (b == null) return fallOffLabel;
+		if (b.getLabel() == null) b.setLabel("_pgo_label"+optimizer.newId());
+		return b.getLabel();
+	}
+}
@@ -0,0 +1,162 @@
+package IC.PGO;
+
+import java.util.*;
+
+import IC.Simulator.LIRLoader;
+
+/**
+ * CodeLine
+ * ========
+ * a line of a method's LIR code (an instruction, a label or a comment),
+ * with the profile of the instruction:
+ * - conditional jumps: how many times the jump was taken and not taken.
+ * - virtual calls: the receivers' dispatch tables histogram.
+ * the profile is null when unknown (the method has no valid profile).
+ */
+class CodeLine {
+
+	private String text;
+	private long[] branch;
+	private Map<String,Long> receivers;
+
+	/**
+	 * constructor
+	 * @param text: the line (trimmed)
+	 */
+	public CodeLine(String text){
+		this.text = text;
+	}
+
+	/**
+	 * returns a line with the given text and the profile of this line
+	 * @param text
+	 * @return
+	 */
+	public CodeLine withText(String text){
+		CodeLine line = new CodeLine(text);
+		line.branch = branch;
+		line.receivers = receivers;
+		return line;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * returns {taken, not taken} of a conditional jump, null if unknown
+	 * @return
+	 */
+	public long[] getBranch() {
+		return branch;
+	}
+
+	public void setBranch(long[] branch) {
+		this.branch = branch;
+	}
+
+	/**
+	 * returns the receivers histogram of a virtual call, null if unknown
+	 * @return
+	 */
+	public Map<String,Long> getReceivers() {
+		return receivers;
+	}
+
+	public void setReceivers(Map<String,Long> receivers) {
+		this.receivers = receivers;
+	}
+
+	public boolean isComment(){
+		return ProgramCode.isComment(text);
+	}
+
+	/**
+	 * checks if the line is the site id comment of the virtual call after it
+	 * (kept with the call when it is copied)
+	 * @return
+	 */
+	public boolean isSiteComment(){
+		return text.startsWith(LIRLoader.VIRTUAL_CALL_SITE_COMMENT);
+	}
+
+	public boolean isLabel(){
+		return ProgramCode.isLabel(text);
+	}
+
+	public boolean isInstruction(){
+		return ProgramCode.isInstruction(text);
+	}
+
+	/**
+	 * returns the label defined by a label line
+	 * @return
+	 */
+	public String getLabel(){
+		return text.substring(0, text.length()-1);
+	}
+
+	public String getOpcode(){
+		return ProgramCode.opcode(text);
+	}
+
+	/**
+	 * returns the operands of an instruction (everything after the opcode)
+	 * @return
+	 */
+	public String getOperands(){
+		int space = text.indexOf(' ');
+		return space < 0 ? "" : text.substring(space+1).trim();
+	}
+
+	/**
+	 * checks if this is an unconditional jump
+	 */
+	public boolean isJump(){
+		return isInstruction() && getOpcode().equals("Jump");
+	}
+
+	/**
+	 * checks if this is a conditional jump
+	 */
+	public boolean isCondJump(){
+		return isInstruction() && getOpcode().startsWith("Jump") && !getOpcode().equals("Jump");
+	}
+
+	public boolean isReturn(){
+		return isInstruction() && getOpcode().equals("Return");
+	}
+
+	/**
+	 * checks if the execution may continue to the next line
+	 */
+	public boolean fallsThrough(){
+		return !isJump() && !isReturn();
+	}
+
+	/**
+	 * returns the target label of a jump
+	 * @return
+	 */
+	public String getTarget(){
+		return getOperands();
+	}
+
+	/**
+	 * returns the conditional jump taken exactly when the given one is not
+	 * @param opcode
+	 * @return
+	 */
+	public static String invert(String opcode){
+		if (opcode.equals("JumpTrue")) return "JumpFalse";
+		if (opcode.equals("JumpFalse")) return "JumpTrue";
+		if (opcode.equals("JumpG")) return "JumpLE";
+		if (opcode.equals("JumpLE")) return "JumpG";
+		if (opcode.equals("JumpGE")) return "JumpL";
+		return "JumpGE"; // JumpL
+	}
+
+	public String toString(){
+		return text;
+	}
+}
@@ -0,0 +1,444 @@
+package IC.PGO;
+
+import java.util.*;
+
+import IC.Simulator.LIRLoader;
+
+/**
+ * Inliner
+ * =======
+ * replaces hot calls in a method's hot blocks by the code of their callees:
+ * - a StaticCall is inlined when its callee is hot (called at least HOT_CALLS
+ *   times) and small.
+ * - a VirtualCall whose receivers mostly (MIN_TARGET_SHARE) dispatch to a single
+ *   method is devirtualized under a guard: the receiver's dispatch table is
+ *   compared with the tables of the profiled classes, and if it matches, the
+ *   method's code runs inlined. otherwise the virtual call is made as before.
+ *
+ * the inlined code gets its own names: its labels, registers and variables
+ * are renamed with the number of the inlining, the arguments are moved to its
+ * formals (or replace them, when they are registers the callee never writes over),
+ * and Return becomes a move to the call's target register and a jump
+ * past the inlined code. variables the callee may read before writing them are
+ * zeroed first, as a called method finds them in its new frame.
+ */
+class Inliner {
+
+	// a callee / virtual call site is hot when called at least that many times
+	public static final long HOT_CALLS = 100;
+	// the largest callee inlined, in instructions
+	public static final int MAX_CALLEE_SIZE = 24;
+	// the most instructions added to a single method
+	public static final int MAX_GROWTH = 240;
+	// the share of a virtual call's receivers a single method must get to be devirtualized
+	public static final double MIN_TARGET_SHARE = 0.9;
+
+	private ProfileGuidedOptimizer optimizer;
+	private int staticCallsInlined = 0;
+	private int virtualCallsInlined = 0;
+
+	/**
+	 * a parsed call instruction
+	 */
+	private static class Call {
+		String opcode;
+		String callee;
+		// VirtualCall: receiver register and method offset
+		String receiver;
+		int offset;
+		List<String> formals = new ArrayList<String>();
+		List<String> args = new ArrayList<String>();
+		String dst;
+	}
+
+	/**
+	 * constructor
+	 * @param optimizer: the program being optimized
+	 */
+	public Inliner(ProfileGuidedOptimizer optimizer){
+		this.optimizer = optimizer;
+	}
+
+	public int getStaticCallsInlined() {
+		return staticCallsInlined;
+	}
+
+	public int getVirtualCallsInlined() {
+		return virtualCallsInlined;
+	}
+
+	/**
+	 * inlines the hot calls of a method
+	 * @param caller: the method's label
+	 * @param code: the method's code
+	 * @return the new code
+	 */
+	public List<CodeLine> run(String caller, List<CodeLine> code){
+		List<Block> blocks = Block.split(code);
+		Block.markHot(blocks);
+		List<CodeLine> result = new ArrayList<CodeLine>();
+		int growth = 0;
+		for (Block b: blocks){
+			for (CodeLine line: b.getLines()){
+				List<CodeLine> inlined = null;
+				if (b.isHot() && line.isInstruction() && growth < MAX_GROWTH){
+					if (line.getOpcode().equals("StaticCall")){
+						inlined = inlineStatic(caller, line);
+					} else if (line.getOpcode().equals("VirtualCall")){
+						// the site comment moves to the virtual call left for the other receivers
+						CodeLine prev = result.isEmpty() ? null : result.get(result.size()-1);
+						if (prev != null && !prev.isSiteComment()) prev = null;
+						inlined = inlineVirtual(caller, line, prev);
+						if (inlined != null && prev != null) result.remove(result.size()-1);
+					}
+				}
+				if (inlined == null){
+					result.add(line);
+				} else {
+					result.addAll(inlined);
+					growth += size(inlined)-1;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * returns the inlined code of a StaticCall, null if it is not to be inlined
+	 */
+	private List<CodeLine> inlineStatic(String caller, CodeLine line){
+		Call call = parseCall(line);
+		Profile.MethodProfile calleeProfile = optimizer.getProfile(call.callee);
+		if (call.callee.equals(caller) || calleeProfile == null || calleeProfile.getCalls() < HOT_CALLS) return null;
+		if (!canInline(call, call.callee)) return null;
+
+		int id = optimizer.newId();
+		List<CodeLine> result = expand(call, call.callee, id);
+		String end = "_inl_end"+id;
+		if (result.get(result.size()-1).isJump() && result.get(result.size()-1).getTarget().equals(end)){
+			result.remove(result.size()-1);
+		}
+		result.add(new CodeLine(end+":"));
+		staticCallsInlined++;
+		return result;
+	}
+
+	/**
+	 * returns the guarded inlined code of a VirtualCall, null if it is not to be devirtualized
+	 */
+	private List<CodeLine> inlineVirtual(String caller, CodeLine line, CodeLine siteComment){
+		Map<String,Long> receivers = line.getReceivers();
+		if (receivers == null) return null;
+		Call call = parseCall(line);
+
+		// the receivers count of every target method
+		long total = 0;
+		Map<String,Long> targets = new HashMap<String,Long>();
+		for (Map.Entry<String,Long> e: receivers.entrySet()){
+			total += e.getValue();
+			String target = optimizer.getVirtualTarget(e.getKey(), call.offset);
+			if (target == null) continue;
+			Long count = targets.get(target);
+			targets.put(target, (count == null ? 0 : count)+e.getValue());
+		}
+		String target = null;
+		long hits = 0;
+		for (Map.Entry<String,Long> e: targets.entrySet()){
+			if (e.getValue() > hits){
+				target = e.getKey();
+				hits = e.getValue();
+			}
+		}
+		if (total < HOT_CALLS || target == null || hits < MIN_TARGET_SHARE*total) return null;
+		if (target.equals(caller) || !canInline(call, target)) return null;
+
+		// the guard: the receiver's dispatch table is one of the target's (most frequent first)
+		List<String> tables = new ArrayList<String>();
+		for (Map.Entry<String,Long> e: receivers.entrySet()){
+			if (target.equals(optimizer.getVirtualTarget(e.getKey(), call.offset))) tables.add(e.getKey());
+		}
+		final Map<String,Long> counts = receivers;
+		Collections.sort(tables, new Comparator<String>(){
+			public int compare(String t1, String t2){
+				return counts.get(t2).compareTo(counts.get(t1));
+			}
+		});
+
+		int id = optimizer.newId();
+		String dv = "Rpgo"+id;
+		String fast = "_pgo_fast"+id;
+		String slow = "_pgo_slow"+id;
+		String end = "_inl_end"+id;
+		List<CodeLine> result = new ArrayList<CodeLine>();
+		result.add(new CodeLine("MoveField "+call.receiver+".0,"+dv));
+		long left = total;
+		for (int i = 0; i < tables.size(); i++){
+			long count = counts.get(tables.get(i));
+			result.add(new CodeLine("Compare "+tables.get(i)+","+dv));
+			CodeLine jump;
+			if (i < tables.size()-1){
+				jump = new CodeLine("JumpTrue "+fast);
+				jump.setBranch(new long[]{count, left-count});
+			} else {
+				jump = new CodeLine("JumpFalse "+slow);
+				jump.setBranch(new long[]{left-count, count});
+			}
+			result.add(jump);
+			left -= count;
+		}
+		if (tables.size() > 1) result.add(new CodeLine(fast+":"));
+		result.addAll(expand(call, target, id));
+		if (!result.get(result.size()-1).isJump()) result.add(new CodeLine("Jump "+end));
+
+		// the virtual call, for the other receivers
+		Map<String,Long> others = new TreeMap<String,Long>(receivers);
+		others.keySet().removeAll(tables);
+		CodeLine virtualCall = line.withText(line.getText());
+		virtualCall.setReceivers(others);
+		result.add(new CodeLine(slow+":"));
+		if (siteComment != null) result.add(siteComment);
+		result.add(virtualCall);
+		result.add(new CodeLine(end+":"));
+		virtualCallsInlined++;
+		return result;
+	}
+
+	/**
+	 * checks if the callee's code can be inlined at the given call: it is small, it
+	 * ends with a return or a jump, it only jumps to its own labels (or exits), and it
+	 * takes the formals of the call, in the same order (so calls by name and calls by
+	 * position agree)
+	 */
+	private boolean canInline(Call call, String callee){
+		List<CodeLine> code = optimizer.getMethodCode(callee);
+		if (code == null || size(code) > MAX_CALLEE_SIZE) return false;
+
+		Set<String> labels = labelsOf(code);
+		CodeLine last = null;
+		for (CodeLine line: code){
+			if (!line.isInstruction()) continue;
+			last = line;
+			if ((line.isJump() || line.isCondJump()) && !labels.contains(line.getTarget()) &&
+					!line.getTarget().equals(ProgramCode.ERROR_EXIT_LABEL)) return false;
+		}
+		if (last == null || last.fallsThrough()) return false;
+
+		List<String> formals = optimizer.getParameters(callee);
+		if (formals == null) return callee.startsWith("__"); // the runtime checks take their formals by name
+		if (call.receiver != null) formals = formals.subList(1, formals.size()); // 'this'
+		return formals.equals(call.formals);
+	}
+
+	/**
+	 * returns the callee's code, renamed, with its arguments and returns
+	 * (the returns jump to _inl_end<id>, which the caller places)
+	 */
+	private List<CodeLine> expand(Call call, String callee, int id){
+		List<CodeLine> code = optimizer.getMethodCode(callee);
+		Set<String> labels = labelsOf(code);
+		String end = "_inl_end"+id;
+		List<CodeLine> result = new ArrayList<CodeLine>();
+
+		// arguments, 'this' and the variables read before written. a formal the callee
+		// never writes is replaced by its argument register, instead of moving it
+		Set<String> names = new LinkedHashSet<String>();
+		for (CodeLine line: code){
+			if (line.isInstruction()) names.addAll(namesOf(line.getOperands()));
+		}
+		Set<String> assigned = assigned(code);
+		Map<String,String> renamed = new HashMap<String,String>();
+		for (String name: names){
+			renamed.put(name, rename(name, id));
+		}
+		if (call.receiver != null && names.contains("this")) bind("this", call.receiver, id, assigned, renamed, result);
+		for (int i = 0; i < call.formals.size(); i++){
+			if (names.contains(call.formals.get(i))) bind(call.formals.get(i), call.args.get(i), id, assigned, renamed, result);
+		}
+		Set<String> written = writtenFirst(code);
+		for (String name: names){
+			if (!name.startsWith("R") && !name.equals("this") && !call.formals.contains(name) && !written.contains(name))
+				result.add(new CodeLine("Move 0,"+rename(name, id)));
+		}
+
+		for (CodeLine line: code){
+			if (line.isComment()){
+				if (line.isSiteComment()) result.add(line);
+			} else if (line.isLabel()){
+				result.add(new CodeLine(line.getLabel()+"_inl"+id+":"));
+			} else if (line.isJump() || line.isCondJump()){
+				String target = line.getTarget();
+				result.add(line.withText(line.getOpcode()+" "+(labels.contains(target) ? target+"_inl"+id : target)));
+			} else if (line.isReturn()){
+				if (!call.dst.equals("Rdummy"))
+					result.add(new CodeLine("Move "+renameNames(line.getOperands(), renamed)+","+call.dst));
+				result.add(new CodeLine("Jump "+end));
+			} else {
+				result.add(line.withText(line.getOpcode()+" "+renameNames(line.getOperands(), renamed)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * passes an argument to the inlined formal: the argument register itself if
+	 * the callee never writes the formal (the caller's registers are not touched by
+	 * the inlined code), or a move to the renamed formal
+	 */
+	private void bind(String formal, String arg, int id, Set<String> assigned, Map<String,String> renamed, List<CodeLine> result){
+		if (!assigned.contains(formal) && arg.startsWith("R") && !arg.equals("Rdummy") && namesOf(arg).contains(arg)){
+			renamed.put(formal, arg);
+		} else {
+			result.add(new CodeLine("Move "+arg+","+rename(formal, id)));
+		}
+	}
+
+	/**
+	 * returns the registers and variables the code may write: the last operand of
+	 * every instruction but a compare, a jump or a return
+	 */
+	private Set<String> assigned(List<CodeLine> code){
+		Set<String> assigned = new HashSet<String>();
+		for (CodeLine line: code){
+			if (!line.isInstruction() || line.isJump() || line.isCondJump() || line.isReturn() || line.getOpcode().equals("Compare")) continue;
+			List<String> ops = LIRLoader.splitOperands(line.getOperands());
+			String dst = ops.get(ops.size()-1);
+			if (namesOf(dst).contains(dst)) assigned.add(dst);
+		}
+		return assigned;
+	}
+
+	/**
+	 * returns the variables the code writes (by a move) before anything else may
+	 * read them: in its first block, before any other use
+	 */
+	private Set<String> writtenFirst(List<CodeLine> code){
+		Set<String> written = new HashSet<String>();
+		Set<String> used = new HashSet<String>();
+		for (CodeLine line: code){
+			if (line.isLabel()) break;
+			if (!line.isInstruction()) continue;
+			String op = line.getOpcode();
+			List<String> ops = LIRLoader.splitOperands(line.getOperands());
+			if ((op.equals("Move") || op.equals("MoveField") || op.equals("MoveArray") || op.equals("ArrayLength")) && ops.size() == 2){
+				Set<String> read = namesOf(ops.get(0));
+				used.addAll(read);
+				String dst = ops.get(1);
+				if (!used.contains(dst) && namesOf(dst).contains(dst)) written.add(dst);
+				used.addAll(namesOf(dst));
+			} else {
+				used.addAll(namesOf(line.getOperands()));
+			}
+			if (!line.fallsThrough() || line.isCondJump()) break;
+		}
+		return written;
+	}
+
+	/**
+	 * parses a StaticCall / VirtualCall instruction
+	 */
+	private static Call parseCall(CodeLine line){
+		Call call = new Call();
+		String s = line.getOperands();
+		int open = s.indexOf('(');
+		int close = s.lastIndexOf(')');
+		call.opcode = line.getOpcode();
+		call.callee = s.substring(0, open).trim();
+		for (String arg: LIRLoader.splitOperands(s.substring(open+1, close))){
+			int eq = arg.indexOf('=');
+			call.formals.add(arg.substring(0, eq).trim());
+			call.args.add(arg.substring(eq+1).trim());
+		}
+		call.dst = s.substring(s.indexOf(',', close)+1).trim();
+		if (call.opcode.equals("VirtualCall")){
+			int dot = call.callee.indexOf('.');
+			call.receiver = call.callee.substring(0, dot);
+			call.offset = Integer.parseInt(call.callee.substring(dot+1));
+		}
+		return call;
+	}
+
+	// names
+	////////
+
+	/**
+	 * returns the inlined name of a register or a variable
+	 */
+	private static String rename(String name, int id){
+		// registers stay registers, and variables get a name no IC variable has
+		return name.startsWith("R") ? name+"_inl"+id : "Inl"+id+"_"+name;
+	}
+
+	/**
+	 * renames the registers and variables of an instruction's operands
+	 */
+	private String renameNames(String operands, Map<String,String> renamed){
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+		while (i < operands.length()){
+			int end = tokenEnd(operands, i);
+			if (end == i){
+				sb.append(operands.charAt(i++));
+				continue;
+			}
+			String token = operands.substring(i, end);
+			sb.append(isName(operands, i, end) ? renamed.get(token) : token);
+			i = end;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * returns the registers and variables in an instruction's operands
+	 */
+	private Set<String> namesOf(String operands){
+		Set<String> names = new LinkedHashSet<String>();
+		int i = 0;
+		while (i < operands.length()){
+			int end = tokenEnd(operands, i);
+			if (end == i){
+				i++;
+				continue;
+			}
+			if (isName(operands, i, end)) names.add(operands.substring(i, end));
+			i = end;
+		}
+		return names;
+	}
+
+	/**
+	 * returns the end of the word (letters, digits and '_') starting at i
+	 */
+	private static int tokenEnd(String s, int i){
+		int end = i;
+		while (end < s.length() && (Character.isLetterOrDigit(s.charAt(end)) || s.charAt(end) == '_')) end++;
+		return end;
+	}
+
+	/**
+	 * checks if the word at [start, end) is a register or a variable: not a number,
+	 * a label (method, runtime routine or dispatch table), a string literal, Rdummy
+	 * or a formal name of a call
+	 */
+	private boolean isName(String s, int start, int end){
+		String token = s.substring(start, end);
+		if (!Character.isLetter(token.charAt(0)) || token.equals("Rdummy")) return false;
+		if (optimizer.getConstantLabels().contains(token)) return false;
+		return end >= s.length() || s.charAt(end) != '=';
+	}
+
+	private static Set<String> labelsOf(List<CodeLine> code){
+		Set<String> labels = new HashSet<String>();
+		for (CodeLine line: code){
+			if (line.isLabel()) labels.add(line.getLabel());
+		}
+		return labels;
+	}
+
+	private static int size(List<CodeLine> code){
+		int size = 0;
+		for (CodeLine line: code){
+			if (line.isInstruction()) size++;
+		}
+		return size;
+	}
+}
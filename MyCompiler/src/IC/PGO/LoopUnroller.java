@@ -0,0 +1,170 @@
+package IC.PGO;
+
+import java.util.*;
+
+/**
+ * LoopUnroller
+ * ============
+ * unrolls the hot loops of a method. a loop is the code from a label H to the
+ * last "Jump H" after it, where no jump from outside the loop enters it other
+ * than at H. its exit test is the first conditional jump out of the loop, and
+ * the profile of that jump gives the number of iterations and of exits.
+ *
+ * a loop with at least HOT_ITERATIONS iterations, averaging at least
+ * MIN_TRIP_COUNT per entry, is unrolled by repeating its body (everything after
+ * H, exit test included) in place of the jump back to H:
+ * 		H: body; body'; body''; Jump H
+ * where the copies get their own labels. a jump back to H inside the body
+ * (continue) still goes to H, so the loop runs exactly as before, with fewer
+ * jumps back. inner loops are unrolled first, and every loop only once.
+ */
+class LoopUnroller {
+
+	// a loop is hot when it iterates at least that many times
+	public static final long HOT_ITERATIONS = 1000;
+	// the least average number of iterations per entry of an unrolled loop
+	public static final int MIN_TRIP_COUNT = 4;
+	// the most times a loop body is repeated
+	public static final int MAX_FACTOR = 4;
+	// the largest unrolled loop, in instructions
+	public static final int MAX_UNROLLED_SIZE = 96;
+	// the most instructions added to a single method
+	public static final int MAX_GROWTH = 240;
+
+	private ProfileGuidedOptimizer optimizer;
+	private int loopsUnrolled = 0;
+
+	/**
+	 * constructor
+	 * @param optimizer: the program being optimized
+	 */
+	public LoopUnroller(ProfileGuidedOptimizer optimizer){
+		this.optimizer = optimizer;
+	}
+
+	public int getLoopsUnrolled() {
+		return loopsUnrolled;
+	}
+
+	/**
+	 * unrolls the hot loops of a method
+	 * @param code: the method's code
+	 * @return the new code
+	 */
+	public List<CodeLine> run(List<CodeLine> code){
+		code = new ArrayList<CodeLine>(code);
+		Set<String> done = new HashSet<String>();
+		int growth = 0;
+		while (growth < MAX_GROWTH){
+			// the smallest (innermost) hot loop not unrolled yet
+			int bestStart = -1, bestEnd = -1, bestFactor = 0;
+			for (int h = 0; h < code.size(); h++){
+				CodeLine line = code.get(h);
+				if (!line.isLabel() || done.contains(line.getLabel())) continue;
+				int e = loopEnd(code, h);
+				if (e < 0 || (bestStart >= 0 && e-h >= bestEnd-bestStart)) continue;
+				int factor = unrollFactor(code, h, e);
+				while (factor > 1 && growth+(factor-1)*size(code.subList(h+1, e)) > MAX_GROWTH) factor--;
+				if (factor > 1){
+					bestStart = h;
+					bestEnd = e;
+					bestFactor = factor;
+				}
+			}
+			if (bestStart < 0) break;
+
+			// body: the lines between the label and the jump back
+			List<CodeLine> body = code.subList(bestStart+1, bestEnd);
+			Set<String> labels = new HashSet<String>();
+			for (CodeLine line: body){
+				if (line.isLabel()) labels.add(line.getLabel());
+			}
+			List<CodeLine> unrolled = new ArrayList<CodeLine>(body);
+			for (int k = 1; k < bestFactor; k++){
+				String suffix = "_u"+optimizer.newId();
+				for (CodeLine line: body){
+					if (line.isComment()){
+						if (line.isSiteComment()) unrolled.add(line);
+					} else if (line.isLabel()){
+						unrolled.add(new CodeLine(line.getLabel()+suffix+":"));
+						done.add(line.getLabel()+suffix);
+					} else if ((line.isJump() || line.isCondJump()) && labels.contains(line.getTarget())){
+						unrolled.add(line.withText(line.getOpcode()+" "+line.getTarget()+suffix));
+					} else {
+						unrolled.add(line);
+					}
+				}
+			}
+			growth += (bestFactor-1)*size(body);
+			done.add(code.get(bestStart).getLabel());
+			done.addAll(labels);
+			body.clear();
+			code.addAll(bestStart+1, unrolled);
+			loopsUnrolled++;
+		}
+		return code;
+	}
+
+	/**
+	 * returns the index of the loop's jump back to the label at h, or -1 if
+	 * the label does not start a loop (as defined above)
+	 */
+	private int loopEnd(List<CodeLine> code, int h){
+		String header = code.get(h).getLabel();
+		int e = -1;
+		for (int i = h+1; i < code.size(); i++){
+			if (code.get(i).isJump() && code.get(i).getTarget().equals(header)) e = i;
+		}
+		if (e < 0) return -1;
+
+		// no jumps into the loop from outside
+		Set<String> labels = new HashSet<String>();
+		for (int i = h+1; i < e; i++){
+			if (code.get(i).isLabel()) labels.add(code.get(i).getLabel());
+		}
+		for (int i = 0; i < code.size(); i++){
+			CodeLine line = code.get(i);
+			if ((i < h || i > e) && (line.isJump() || line.isCondJump()) && labels.contains(line.getTarget())) return -1;
+		}
+		return e;
+	}
+
+	/**
+	 * returns the unroll factor of the loop [h, e] (1 if it is not to be unrolled)
+	 */
+	private int unrollFactor(List<CodeLine> code, int h, int e){
+		Set<String> labels = new HashSet<String>();
+		labels.add(code.get(h).getLabel());
+		for (int i = h+1; i < e; i++){
+			if (code.get(i).isLabel()) labels.add(code.get(i).getLabel());
+		}
+
+		// the exit test
+		long[] counts = null;
+		for (int i = h+1; i < e && counts == null; i++){
+			CodeLine line = code.get(i);
+			if (line.isCondJump() && !labels.contains(line.getTarget())){
+				counts = line.getBranch();
+				if (counts == null) return 1;
+			}
+		}
+		if (counts == null) return 1;
+		// the exit is taken once per entry, and falls through once per iteration
+		long exits = counts[0];
+		long iterations = counts[1];
+		if (iterations < HOT_ITERATIONS || iterations < MIN_TRIP_COUNT*Math.max(exits, 1)) return 1;
+
+		int size = size(code.subList(h+1, e));
+		int factor = Math.min(MAX_FACTOR, MAX_UNROLLED_SIZE/Math.max(size, 1));
+		while (factor > 2 && iterations < 2*factor*Math.max(exits, 1)) factor--;
+		return factor;
+	}
+
+	private static int size(List<CodeLine> code){
+		int size = 0;
+		for (CodeLine line: code){
+			if (line.isInstruction()) size++;
+		}
+		return size;
+	}
+}
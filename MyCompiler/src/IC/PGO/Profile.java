@@ -0,0 +1,194 @@
+package IC.PGO;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Profile
+ * =======
+ * the execution profile of a LIR program, by method label:
+ * - the number of calls of every method.
+ * - for every conditional jump: how many times it was taken and not taken.
+ * - for every virtual call: a histogram of the receivers' dispatch tables.
+ * jumps and virtual calls are identified by their ordinal within their method
+ * (the first conditional jump of a method is branch 0, and so on), and every
+ * method keeps the hash of the code it was collected on, so the profile of a
+ * method that changed since is detected and ignored.
+ *
+ * the profile file is a text file with a line per record:
+ * 		method <label> <hash> <calls>
+ * 		branch <ordinal> <taken> <not taken>
+ * 		vcall <ordinal> <dispatch table>=<count> ...
+ * where branch and vcall records belong to the method above them.
+ */
+public class Profile {
+
+	/**
+	 * the profile of a single method
+	 */
+	public static class MethodProfile {
+		private String label;
+		private int hash;
+		private long calls;
+		private Map<Integer,long[]> branches = new TreeMap<Integer,long[]>();
+		private Map<Integer,Map<String,Long>> receivers = new TreeMap<Integer,Map<String,Long>>();
+
+		public MethodProfile(String label, int hash){
+			this.label = label;
+			this.hash = hash;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public int getHash() {
+			return hash;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		public void addCalls(long calls) {
+			this.calls += calls;
+		}
+
+		/**
+		 * returns {taken, not taken} of the given conditional jump, null if it was never reached
+		 * @param ordinal
+		 * @return
+		 */
+		public long[] getBranch(int ordinal){
+			return branches.get(ordinal);
+		}
+
+		public void addBranch(int ordinal, long taken, long notTaken){
+			long[] counts = branches.get(ordinal);
+			if (counts == null){
+				counts = new long[2];
+				branches.put(ordinal, counts);
+			}
+			counts[0] += taken;
+			counts[1] += notTaken;
+		}
+
+		/**
+		 * returns the receivers histogram of the given virtual call, null if it was never reached
+		 * @param ordinal
+		 * @return
+		 */
+		public Map<String,Long> getReceivers(int ordinal){
+			return receivers.get(ordinal);
+		}
+
+		public void addReceiver(int ordinal, String dispatchTable, long count){
+			Map<String,Long> histogram = receivers.get(ordinal);
+			if (histogram == null){
+				histogram = new TreeMap<String,Long>();
+				receivers.put(ordinal, histogram);
+			}
+			Long old = histogram.get(dispatchTable);
+			histogram.put(dispatchTable, (old == null ? 0 : old)+count);
+		}
+	}
+
+	private Map<String,MethodProfile> methods = new LinkedHashMap<String,MethodProfile>();
+
+	/**
+	 * returns the profile of the given method, null if there is none
+	 * @param label
+	 * @return
+	 */
+	public MethodProfile getMethod(String label){
+		return methods.get(label);
+	}
+
+	/**
+	 * adds an (empty) method profile
+	 * @param label
+	 * @param hash: hash of the method's code (see MethodCode.hash)
+	 * @return
+	 */
+	public MethodProfile addMethod(String label, int hash){
+		MethodProfile method = new MethodProfile(label, hash);
+		methods.put(label, method);
+		return method;
+	}
+
+	public Collection<MethodProfile> getMethods(){
+		return methods.values();
+	}
+
+	/**
+	 * writes the profile file
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void write(String fileName) throws IOException {
+		BufferedWriter buff = new BufferedWriter(new FileWriter(fileName));
+		try {
+			buff.write("# IC execution profile\n");
+			for (MethodProfile m: methods.values()){
+				buff.write("method "+m.label+" "+Integer.toHexString(m.hash)+" "+m.calls+"\n");
+				for (Map.Entry<Integer,long[]> e: m.branches.entrySet()){
+					buff.write("branch "+e.getKey()+" "+e.getValue()[0]+" "+e.getValue()[1]+"\n");
+				}
+				for (Map.Entry<Integer,Map<String,Long>> e: m.receivers.entrySet()){
+					String line = "vcall "+e.getKey();
+					for (Map.Entry<String,Long> r: e.getValue().entrySet()){
+						line += " "+r.getKey()+"="+r.getValue();
+					}
+					buff.write(line+"\n");
+				}
+			}
+		} finally {
+			buff.close();
+		}
+	}
+
+	/**
+	 * reads a profile file
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 * @throws ProfileFormatError
+	 */
+	public static Profile read(String fileName) throws IOException, ProfileFormatError {
+		Profile profile = new Profile();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			MethodProfile curr = null;
+			String line;
+			int lineNum = 0;
+			while ((line = reader.readLine()) != null){
+				lineNum++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) continue;
+				String[] tokens = line.split("\\s+");
+				try {
+					if (tokens[0].equals("method") && tokens.length == 4){
+						curr = profile.addMethod(tokens[1], (int) Long.parseLong(tokens[2], 16));
+						curr.addCalls(Long.parseLong(tokens[3]));
+					} else if (tokens[0].equals("branch") && tokens.length == 4 && curr != null){
+						curr.addBranch(Integer.parseInt(tokens[1]), Long.parseLong(tokens[2]), Long.parseLong(tokens[3]));
+					} else if (tokens[0].equals("vcall") && tokens.length >= 2 && curr != null){
+						int ordinal = Integer.parseInt(tokens[1]);
+						for (int i = 2; i < tokens.length; i++){
+							int eq = tokens[i].indexOf('=');
+							if (eq <= 0) throw new ProfileFormatError("malformed receiver count: "+tokens[i], lineNum);
+							curr.addReceiver(ordinal, tokens[i].substring(0, eq), Long.parseLong(tokens[i].substring(eq+1)));
+						}
+					} else {
+						throw new ProfileFormatError("unexpected record: "+line, lineNum);
+					}
+				} catch (NumberFormatException e){
+					throw new ProfileFormatError("malformed number: "+line, lineNum);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return profile;
+	}
+}
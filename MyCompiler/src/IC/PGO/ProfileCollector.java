@@ -0,0 +1,88 @@
+package IC.PGO;
+
+import java.util.*;
+
+import IC.Simulator.LIRInterpreter;
+import IC.Simulator.LIRProgram;
+
+/**
+ * ProfileCollector
+ * ================
+ * collects the execution profile of a LIR program run by the LIRInterpreter
+ * (-profile-gen): the counters are kept by instruction index while the program
+ * runs, and are mapped to their methods and ordinals by getProfile().
+ */
+public class ProfileCollector implements LIRInterpreter.Profiler {
+
+	private ProgramCode code;
+	private List<String> dispatchTableNames;
+
+	// per instruction: entries (of a method's first instruction), taken / not taken counts
+	private long[] entries;
+	private long[] taken;
+	private long[] notTaken;
+	// per instruction: receivers by dispatch table index (virtual calls only, allocated on demand)
+	private long[][] receivers;
+
+	/**
+	 * constructor
+	 * @param lir: the LIR program code
+	 * @param program: the program as loaded from lir (by LIRLoader)
+	 */
+	public ProfileCollector(String lir, LIRProgram program){
+		this.code = ProgramCode.parse(lir);
+		this.dispatchTableNames = program.dispatchTableNames;
+		entries = new long[program.instructionCount+1];
+		taken = new long[program.instructionCount];
+		notTaken = new long[program.instructionCount];
+		receivers = new long[program.instructionCount][];
+	}
+
+	public void enter(int entry){
+		entries[entry]++;
+	}
+
+	public void branch(int pc, boolean isTaken){
+		if (isTaken) taken[pc]++;
+		else notTaken[pc]++;
+	}
+
+	public void receiver(int pc, int dispatchTable){
+		if (receivers[pc] == null) receivers[pc] = new long[dispatchTableNames.size()];
+		receivers[pc][dispatchTable]++;
+	}
+
+	/**
+	 * returns the collected profile, by method
+	 * @return
+	 */
+	public Profile getProfile(){
+		Profile profile = new Profile();
+		int pc = 0;
+		for (ProgramCode.Chunk chunk: code.getChunks()){
+			Profile.MethodProfile method = null;
+			if (code.isMethod(chunk)){
+				method = profile.addMethod(chunk.label, ProgramCode.hash(chunk.lines));
+				method.addCalls(entries[pc]);
+			}
+			int branches = 0;
+			int calls = 0;
+			for (String line: chunk.lines){
+				line = line.trim();
+				if (!ProgramCode.isInstruction(line)) continue;
+				String opcode = ProgramCode.opcode(line);
+				if (method != null && opcode.startsWith("Jump") && !opcode.equals("Jump")){
+					if (taken[pc]+notTaken[pc] > 0) method.addBranch(branches, taken[pc], notTaken[pc]);
+					branches++;
+				} else if (method != null && opcode.equals("VirtualCall")){
+					for (int i = 0; receivers[pc] != null && i < receivers[pc].length; i++){
+						if (receivers[pc][i] > 0) method.addReceiver(calls, dispatchTableNames.get(i), receivers[pc][i]);
+					}
+					calls++;
+				}
+				pc++;
+			}
+		}
+		return profile;
+	}
+}
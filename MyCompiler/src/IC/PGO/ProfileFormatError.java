@@ -0,0 +1,35 @@
+package IC.PGO;
+
+/**
+ * Exception class for a malformed profile file, thrown by Profile.read.
+ * This exception class contains the profile line number and an error message.
+ *
+ */
+
+public class ProfileFormatError extends Exception {
+
+	private int line_number;
+
+	private static final long serialVersionUID = 52L;  /* impl. serializable. */
+
+
+	public ProfileFormatError(String message, int line) {
+		super(message);
+		this.line_number = line;
+	}
+
+
+	public int getLineNum() {
+		return this.line_number;
+	}
+
+
+	/**
+	 * Returns error string message with profile line number and message.
+	 */
+	@Override
+	public String toString() {
+		return ("Profile error at line " + this.line_number + ": " + super.getMessage());
+	}
+
+}
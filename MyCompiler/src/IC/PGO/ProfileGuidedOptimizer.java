@@ -0,0 +1,234 @@
+package IC.PGO;
+
+import java.util.*;
+
+/**
+ * ProfileGuidedOptimizer
+ * ======================
+ * optimizes a LIR program by an execution profile of the same program
+ * (-profile-use), method by method:
+ * (1) inlining: hot static calls are inlined, and virtual calls that
+ * 	   (almost) always reach the same method are devirtualized under a guard
+ * 	   and inlined (see Inliner).
+ * (2) loop unrolling of the hot loops (see LoopUnroller).
+ * (3) hot / cold block layout: the blocks the profiled run never executed move
+ * 	   to the end of their method (see BlockLayout).
+ * finally, methods that are no longer called are removed.
+ *
+ * the profile is matched to the program by method: a method whose code changed
+ * since it was profiled (see ProgramCode.hash) is left as it is, and so is a
+ * method the profiled run never called.
+ */
+public class ProfileGuidedOptimizer {
+
+	private Profile profile;
+	private Map<String,List<String>> parameters;
+
+	private ProgramCode code;
+	// the valid profile and the (profile annotated) code of every method
+	private Map<String,Profile.MethodProfile> profiles = new HashMap<String,Profile.MethodProfile>();
+	private Map<String,List<CodeLine>> methods = new HashMap<String,List<CodeLine>>();
+	private int idCounter = 0;
+
+	private Inliner inliner = new Inliner(this);
+	private LoopUnroller unroller = new LoopUnroller(this);
+	private BlockLayout layout = new BlockLayout(this);
+	private int staleMethods = 0;
+	private int methodsRemoved = 0;
+
+	/**
+	 * constructor
+	 * @param profile: the profile of the program
+	 * @param parameters: method label -> parameter names, 'this' first for
+	 * 		virtual methods (see X86Translator.getMethodParameters)
+	 */
+	public ProfileGuidedOptimizer(Profile profile, Map<String,List<String>> parameters){
+		this.profile = profile;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * optimizes the given LIR program
+	 * @param lir: the LIR program code (as profiled)
+	 * @return the optimized LIR program code
+	 */
+	public String optimize(String lir){
+		code = ProgramCode.parse(lir);
+		List<ProgramCode.Chunk> chunks = code.getChunks();
+
+		// (1) match the profile
+		for (ProgramCode.Chunk chunk: chunks){
+			if (!code.isMethod(chunk)) continue;
+			Profile.MethodProfile method = profile.getMethod(chunk.label);
+			if (method != null && method.getHash() != ProgramCode.hash(chunk.lines)){
+				staleMethods++;
+				method = null;
+			}
+			if (method != null) profiles.put(chunk.label, method);
+			methods.put(chunk.label, annotate(chunk.lines, method));
+		}
+
+		// (2) optimize the profiled methods (the runtime checks are only inlined)
+		for (int i = 0; i < chunks.size(); i++){
+			ProgramCode.Chunk chunk = chunks.get(i);
+			Profile.MethodProfile method = profiles.get(chunk.label);
+			if (!code.isMethod(chunk) || chunk.label.startsWith("__") || method == null || method.getCalls() == 0) continue;
+
+			String fallOffLabel = i+1 < chunks.size() ? chunks.get(i+1).label : null;
+			List<CodeLine> lines = methods.get(chunk.label);
+			lines = inliner.run(chunk.label, lines);
+			lines = unroller.run(lines);
+			lines = layout.run(lines, fallOffLabel);
+			if (lines == methods.get(chunk.label)) continue;
+
+			// trailing blank lines and comments belong to what follows
+			int end = chunk.lines.size();
+			while (end > 0 && ProgramCode.isComment(chunk.lines.get(end-1).trim())) end--;
+			List<String> text = new ArrayList<String>();
+			for (CodeLine line: lines){
+				text.add(line.getText());
+			}
+			text.addAll(chunk.lines.subList(end, chunk.lines.size()));
+			chunk.lines = text;
+		}
+
+		removeUncalledMethods();
+		return code.toString();
+	}
+
+	/**
+	 * returns the method's code lines with their profile
+	 */
+	private List<CodeLine> annotate(List<String> text, Profile.MethodProfile method){
+		List<CodeLine> lines = new ArrayList<CodeLine>();
+		int branches = 0;
+		int calls = 0;
+		for (String s: text){
+			CodeLine line = new CodeLine(s.trim());
+			if (line.isCondJump()){
+				if (method != null){
+					long[] counts = method.getBranch(branches);
+					line.setBranch(counts != null ? counts : new long[2]);
+				}
+				branches++;
+			} else if (line.isInstruction() && line.getOpcode().equals("VirtualCall")){
+				if (method != null){
+					Map<String,Long> receivers = method.getReceivers(calls);
+					line.setReceivers(receivers != null ? receivers : new TreeMap<String,Long>());
+				}
+				calls++;
+			}
+			lines.add(line);
+		}
+		// trailing blank lines and comments belong to what follows
+		while (!lines.isEmpty() && lines.get(lines.size()-1).isComment()) lines.remove(lines.size()-1);
+		return lines;
+	}
+
+	/**
+	 * removes the methods (and runtime checks) that are no longer called, when the
+	 * code before them does not fall through to them
+	 */
+	private void removeUncalledMethods(){
+		Set<String> called = new HashSet<String>();
+		called.add(ProgramCode.MAIN_LABEL);
+		for (String[] table: code.getDispatchTables().values()){
+			called.addAll(Arrays.asList(table));
+		}
+		for (ProgramCode.Chunk chunk: code.getChunks()){
+			for (String line: chunk.lines){
+				line = line.trim();
+				if (ProgramCode.isInstruction(line) && ProgramCode.opcode(line).equals("StaticCall"))
+					called.add(line.substring("StaticCall".length(), line.indexOf('(')).trim());
+			}
+		}
+
+		List<ProgramCode.Chunk> chunks = code.getChunks();
+		for (int i = chunks.size()-1; i > 0; i--){
+			ProgramCode.Chunk chunk = chunks.get(i);
+			if (!code.isMethod(chunk) || called.contains(chunk.label) || !methods.containsKey(chunk.label)) continue;
+			CodeLine last = null;
+			for (String line: chunks.get(i-1).lines){
+				if (ProgramCode.isInstruction(line.trim())) last = new CodeLine(line.trim());
+			}
+			if (last != null && !last.fallsThrough()){
+				chunks.remove(i);
+				methodsRemoved++;
+			}
+		}
+	}
+
+	// for the passes
+	/////////////////
+
+	/**
+	 * returns a new number for labels and names
+	 */
+	int newId(){
+		return idCounter++;
+	}
+
+	/**
+	 * returns the valid profile of a method, null if none
+	 */
+	Profile.MethodProfile getProfile(String label){
+		return profiles.get(label);
+	}
+
+	/**
+	 * returns the code of a method, as read (with its profile), null if not a method
+	 */
+	List<CodeLine> getMethodCode(String label){
+		return methods.get(label);
+	}
+
+	/**
+	 * returns the parameters of a method ('this' first for virtual methods), null if unknown
+	 */
+	List<String> getParameters(String label){
+		return parameters.get(label);
+	}
+
+	/**
+	 * returns the method at the given offset of a dispatch table, null if none
+	 */
+	String getVirtualTarget(String dispatchTable, int offset){
+		String[] table = code.getDispatchTables().get(dispatchTable);
+		return table != null && offset >= 0 && offset < table.length ? table[offset] : null;
+	}
+
+	Set<String> getConstantLabels(){
+		return code.getConstantLabels();
+	}
+
+	// statistics
+	/////////////
+
+	public int getStaticCallsInlined() {
+		return inliner.getStaticCallsInlined();
+	}
+
+	public int getVirtualCallsInlined() {
+		return inliner.getVirtualCallsInlined();
+	}
+
+	public int getLoopsUnrolled() {
+		return unroller.getLoopsUnrolled();
+	}
+
+	public int getBlocksMoved() {
+		return layout.getBlocksMoved();
+	}
+
+	public int getMethodsRemoved() {
+		return methodsRemoved;
+	}
+
+	/**
+	 * returns the number of methods whose profile does not match their code
+	 * @return
+	 */
+	public int getStaleMethods() {
+		return staleMethods;
+	}
+}
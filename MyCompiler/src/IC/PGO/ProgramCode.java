@@ -0,0 +1,186 @@
+package IC.PGO;
+
+import java.util.*;
+
+/**
+ * ProgramCode
+ * ===========
+ * a LIR program split to chunks: the header (string literals and dispatch
+ * tables), followed by a chunk per method or runtime routine, starting at its
+ * label, and the error exit. a chunk starts at:
+ * - _ic_main, every StaticCall target and every dispatch table entry.
+ * - every "__" label no jump refers to (the runtime checks).
+ * - _error_exit.
+ * the chunks are put back together exactly as they were read.
+ */
+class ProgramCode {
+
+	public static final String MAIN_LABEL = "_ic_main";
+	public static final String ERROR_EXIT_LABEL = "_error_exit";
+
+	/**
+	 * a chunk of code lines (as written, without its label)
+	 */
+	static class Chunk {
+		String label;
+		List<String> lines = new ArrayList<String>();
+
+		Chunk(String label){
+			this.label = label;
+		}
+	}
+
+	private List<Chunk> chunks = new ArrayList<Chunk>();
+	private Set<String> constantLabels = new HashSet<String>();
+	private Map<String,String[]> dispatchTables = new LinkedHashMap<String,String[]>();
+	private Set<String> methodLabels = new HashSet<String>();
+
+	/**
+	 * splits the given LIR program
+	 * @param lir
+	 * @return
+	 */
+	public static ProgramCode parse(String lir){
+		ProgramCode code = new ProgramCode();
+		String[] lines = lir.split("\n", -1);
+		Set<String> jumpTargets = new HashSet<String>();
+		code.methodLabels.add(MAIN_LABEL);
+
+		// (1) collect string literal / dispatch table labels, called methods and jump targets
+		for (String line: lines){
+			line = line.trim();
+			if (!isInstruction(line)){
+				int colon = line.indexOf(':');
+				if (isComment(line) || colon == line.length()-1) continue;
+				// "str0: ..." or "_DV_A: [_A_foo,_A_bar]"
+				String label = line.substring(0, colon);
+				code.constantLabels.add(label);
+				String rest = line.substring(colon+1).trim();
+				if (rest.startsWith("[") && rest.endsWith("]")){
+					String body = rest.substring(1, rest.length()-1).trim();
+					String[] entries = body.length() == 0 ? new String[0] : body.split("\\s*,\\s*");
+					code.dispatchTables.put(label, entries);
+					code.methodLabels.addAll(Arrays.asList(entries));
+				}
+			} else if (opcode(line).equals("StaticCall")){
+				code.methodLabels.add(line.substring("StaticCall".length(), line.indexOf('(')).trim());
+			} else if (opcode(line).startsWith("Jump")){
+				jumpTargets.add(line.substring(line.indexOf(' ')+1).trim());
+			}
+		}
+
+		// (2) split to chunks
+		Chunk curr = new Chunk(null);
+		code.chunks.add(curr);
+		for (String line: lines){
+			String trimmed = line.trim();
+			if (isLabel(trimmed)){
+				String label = trimmed.substring(0, trimmed.length()-1);
+				if (code.methodLabels.contains(label) || label.equals(ERROR_EXIT_LABEL) ||
+						(label.startsWith("__") && !jumpTargets.contains(label))){
+					curr = new Chunk(label);
+					code.chunks.add(curr);
+					continue;
+				}
+			}
+			curr.lines.add(line);
+		}
+		return code;
+	}
+
+	public List<Chunk> getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * returns the string literal and dispatch table labels (constant operands)
+	 * @return
+	 */
+	public Set<String> getConstantLabels() {
+		return constantLabels;
+	}
+
+	/**
+	 * returns the dispatch tables (method labels by offset), by their labels
+	 * @return
+	 */
+	public Map<String,String[]> getDispatchTables() {
+		return dispatchTables;
+	}
+
+	/**
+	 * checks if the chunk is the code of a method or a runtime routine
+	 * (and not the header or the error exit)
+	 * @param chunk
+	 * @return
+	 */
+	public boolean isMethod(Chunk chunk){
+		return chunk.label != null && !chunk.label.equals(ERROR_EXIT_LABEL);
+	}
+
+	/**
+	 * returns the program code
+	 */
+	public String toString(){
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < chunks.size(); i++){
+			Chunk chunk = chunks.get(i);
+			if (chunk.label != null) sb.append(chunk.label).append(":\n");
+			for (int j = 0; j < chunk.lines.size(); j++){
+				sb.append(chunk.lines.get(j));
+				if (i < chunks.size()-1 || j < chunk.lines.size()-1) sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	// lines
+	////////
+
+	/**
+	 * returns a hash of a chunk's code (its labels and instructions)
+	 * @param lines
+	 * @return
+	 */
+	public static int hash(List<String> lines){
+		int hash = 1;
+		for (String line: lines){
+			line = line.trim();
+			if (!isComment(line)) hash = 31*hash+line.hashCode();
+		}
+		return hash;
+	}
+
+	/**
+	 * checks if a (trimmed) line is empty or a comment
+	 */
+	public static boolean isComment(String line){
+		return line.length() == 0 || line.startsWith("#");
+	}
+
+	/**
+	 * checks if a (trimmed) line is a label definition
+	 */
+	public static boolean isLabel(String line){
+		return !isComment(line) && line.endsWith(":") && line.indexOf(' ') < 0;
+	}
+
+	/**
+	 * checks if a (trimmed) line is an instruction, as the LIRLoader reads it:
+	 * not a comment, a label, a string literal or a dispatch table
+	 */
+	public static boolean isInstruction(String line){
+		if (isComment(line)) return false;
+		int colon = line.indexOf(':');
+		int space = line.indexOf(' ');
+		return !(colon > 0 && (space < 0 || colon < space));
+	}
+
+	/**
+	 * returns the opcode of a (trimmed) instruction line
+	 */
+	public static String opcode(String line){
+		int space = line.indexOf(' ');
+		return space < 0 ? line : line.substring(0, space);
+	}
+}
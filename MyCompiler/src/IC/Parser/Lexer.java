@@ -1,14 +1,16 @@
 /* The following code was generated by JFlex 1.4.3 on 1/17/13 5:45 PM */
 
-package IC.Parser;
-
-/**
- * The lexical analyzer for the IC language.
- * This specification will be the input of JFlex.
- *
- */
- 
- 
+package IC.Parser;
+
+import IC.Name;
+
+/**
+ * The lexical analyzer for the IC language.
+ * This specification will be the input of JFlex.
+ *
+ */
+ 
+ 
 
 public class Lexer implements java_cup.runtime.Scanner {
 
@@ -329,22 +331,80 @@ public class Lexer implements java_cup.runtime.Scanner {
   private boolean zzEOFDone;
 
   /* user code: */
-      StringBuffer string = new StringBuffer(); /* to save strings' values. */
-     
-     /* to save comment and str. init. line, for lexical errors. */
-      private int comm_init_line=0; 
-      private int str_init_line=0;
-      
-      /* help functions for tokens return. */
-      
-      private Token token(int id) {
-		  return new Token(id, yyline+1);  /* as counting starts from 0 and we want from 1. */
-	  }
-		
-		
-	  private Token token(int id, Object value) {
-		  return new Token(id, yyline+1, value);
-	  }
+      StringBuffer string = new StringBuffer(); /* to save strings' values. */
+     
+     /* to save comment and str. init. line, for lexical errors. */
+      private int comm_init_line=0; 
+      private int str_init_line=0;
+      private int str_init_pos=0;  /* the string's start offset, for the token stream. */
+      
+      /* help functions for tokens return. */
+      
+      private Token token(int id) {
+		  return token(id, null);
+	  }
+		
+		
+	  private Token token(int id, Object value) {
+		  if (stream != null) {  /* recorded in the stream instead (see TokenStream.tokenize). */
+			  int start = (id == sym.QUOTE) ? str_init_pos : zzStartRead;
+			  stream.add(id, yyline+1, start, zzMarkedPos-start, value);
+			  return null;
+		  }
+		  return new Token(id, yyline+1, value);  /* as counting starts from 0 and we want from 1. */
+	  }
+
+	  /* the whole source, when scanned in place (see SourceBuffer). */
+	  private SourceBuffer source = null;
+
+	  /* the token stream being recorded, if any. */
+	  private TokenStream stream = null;
+
+	  /**
+	   * Creates a new scanner over a whole source buffer.
+	   * The buffer holds the whole input: the scanner starts at its end of file
+	   * (zzAtEOF), so it is never refilled (or shifted: the token values are
+	   * slices of it instead of copies), and its reader is empty.
+	   */
+	  public Lexer(SourceBuffer source) {
+		  this.zzReader = new java.io.StringReader("");
+		  this.source = source;
+		  this.zzBuffer = source.getChars();
+		  this.zzEndRead = source.length();
+		  this.zzAtEOF = true;
+	  }
+
+	  /**
+	   * Creates a new scanner that records the tokens of a whole source buffer
+	   * in the given stream, instead of returning Token objects (next_token returns null).
+	   */
+	  Lexer(SourceBuffer source, TokenStream stream) {
+		  this(source);
+		  this.stream = stream;
+	  }
+
+	  /* the matched text: a lazy slice of the source buffer, if there is one. */
+	  private Object slice() {
+		  if (source == null)
+			  return yytext();
+		  return source.slice(zzStartRead, zzMarkedPos-zzStartRead);
+	  }
+
+	  /* the matched text as a String value (null: the stream interns it from the source). */
+	  private Object text() {
+		  if (stream != null)
+			  return null;
+		  return yytext();
+	  }
+
+	  /* the matched identifier, as its canonical String (null: the stream interns it from the source). */
+	  private Object name() {
+		  if (stream != null)
+			  return null;
+		  if (source == null)
+			  return Name.of(yytext()).toString();
+		  return Name.of(zzBuffer, zzStartRead, zzMarkedPos-zzStartRead).toString();
+	  }
 
 
   /**
@@ -674,53 +734,53 @@ public class Lexer implements java_cup.runtime.Scanner {
 
       switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
         case 2: 
-          { return token(sym.ID,yytext());
+          { return token(sym.ID,name());
           }
         case 63: break;
         case 8: 
-          { return token(sym.LB,yytext());
+          { return token(sym.LB,slice());
           }
         case 64: break;
         case 61: 
-          { return token(sym.BOOLEAN,yytext());
+          { return token(sym.BOOLEAN,slice());
           }
         case 65: break;
         case 39: 
-          { return token(sym.IF,yytext());
+          { return token(sym.IF,slice());
           }
         case 66: break;
         case 12: 
-          { return token(sym.ASSIGN,yytext());
+          { return token(sym.ASSIGN,slice());
           }
         case 67: break;
         case 27: 
-          { yybegin(YYINITIAL); 
-						  string.append('\"'); 
+          { yybegin(YYINITIAL); 
+						  string.append('\"'); 
 		       			  return token(sym.QUOTE,string.toString());
           }
         case 68: break;
         case 56: 
-          { return token(sym.RETURN,yytext());
+          { return token(sym.RETURN,slice());
           }
         case 69: break;
         case 35: 
-          { return token(sym.LOR,yytext());
+          { return token(sym.LOR,slice());
           }
         case 70: break;
         case 52: 
-          { return token(sym.FALSE,yytext());
+          { return token(sym.FALSE,slice());
           }
         case 71: break;
         case 22: 
-          { return token(sym.SEMI,yytext());
+          { return token(sym.SEMI,slice());
           }
         case 72: break;
         case 32: 
-          { return token(sym.NEQUAL,yytext());
+          { return token(sym.NEQUAL,slice());
           }
         case 73: break;
         case 17: 
-          { return token(sym.MINUS,yytext());
+          { return token(sym.MINUS,slice());
           }
         case 74: break;
         case 1: 
@@ -728,23 +788,23 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 75: break;
         case 15: 
-          { return token(sym.GT,yytext());
+          { return token(sym.GT,slice());
           }
         case 76: break;
         case 11: 
-          { return token(sym.RCBR,yytext());
+          { return token(sym.RCBR,slice());
           }
         case 77: break;
         case 21: 
-          { return token(sym.COMMA,yytext());
+          { return token(sym.COMMA,slice());
           }
         case 78: break;
         case 9: 
-          { return token(sym.RB,yytext());
+          { return token(sym.RB,slice());
           }
         case 79: break;
         case 54: 
-          { return token(sym.BREAK,yytext());
+          { return token(sym.BREAK,slice());
           }
         case 80: break;
         case 5: 
@@ -756,7 +816,7 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 82: break;
         case 46: 
-          { return token(sym.NEW,yytext());
+          { return token(sym.NEW,slice());
           }
         case 83: break;
         case 41: 
@@ -764,15 +824,15 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 84: break;
         case 60: 
-          { return token(sym.EXTENDS,yytext());
+          { return token(sym.EXTENDS,slice());
           }
         case 85: break;
         case 45: 
-          { return token(sym.INT,yytext());
+          { return token(sym.INT,slice());
           }
         case 86: break;
         case 20: 
-          { return token(sym.MOD,yytext());
+          { return token(sym.MOD,slice());
           }
         case 87: break;
         case 29: 
@@ -784,15 +844,15 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 89: break;
         case 24: 
-          { str_init_line=yyline; string.setLength(0); string.append('\"'); yybegin(STRING);
+          { str_init_line=yyline; str_init_pos=zzStartRead; string.setLength(0); string.append('\"'); yybegin(STRING);
           }
         case 90: break;
         case 23: 
-          { return token(sym.DOT,yytext());
+          { return token(sym.DOT,slice());
           }
         case 91: break;
         case 16: 
-          { return token(sym.PLUS,yytext());
+          { return token(sym.PLUS,slice());
           }
         case 92: break;
         case 40: 
@@ -804,15 +864,15 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 94: break;
         case 53: 
-          { return token(sym.CLASS,yytext());
+          { return token(sym.CLASS,slice());
           }
         case 95: break;
         case 48: 
-          { return token(sym.THIS,yytext());
+          { return token(sym.THIS,slice());
           }
         case 96: break;
         case 10: 
-          { return token(sym.LCBR,yytext());
+          { return token(sym.LCBR,slice());
           }
         case 97: break;
         case 44: 
@@ -820,31 +880,31 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 98: break;
         case 6: 
-          { return token(sym.LP,yytext());
+          { return token(sym.LP,slice());
           }
         case 99: break;
         case 4: 
-          { return token(sym.INTEGER, yytext());
+          { return token(sym.INTEGER,text());
           }
         case 100: break;
         case 18: 
-          { return token(sym.MULTIPLY,yytext());
+          { return token(sym.MULTIPLY,slice());
           }
         case 101: break;
         case 33: 
-          { return token(sym.LTE,yytext());
+          { return token(sym.LTE,slice());
           }
         case 102: break;
         case 50: 
-          { return token(sym.NULL,yytext());
+          { return token(sym.NULL,slice());
           }
         case 103: break;
         case 55: 
-          { return token(sym.WHILE,yytext());
+          { return token(sym.WHILE,slice());
           }
         case 104: break;
         case 47: 
-          { return token(sym.TRUE,yytext());
+          { return token(sym.TRUE,slice());
           }
         case 105: break;
         case 30: 
@@ -852,7 +912,7 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 106: break;
         case 57: 
-          { return token(sym.LENGTH,yytext());
+          { return token(sym.LENGTH,slice());
           }
         case 107: break;
         case 26: 
@@ -860,15 +920,15 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 108: break;
         case 31: 
-          { return token(sym.EQUAL,yytext());
+          { return token(sym.EQUAL,slice());
           }
         case 109: break;
         case 14: 
-          { return token(sym.LT,yytext());
+          { return token(sym.LT,slice());
           }
         case 110: break;
         case 49: 
-          { return token(sym.ELSE,yytext());
+          { return token(sym.ELSE,slice());
           }
         case 111: break;
         case 43: 
@@ -876,31 +936,31 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 112: break;
         case 13: 
-          { return token(sym.LNEG,yytext());
+          { return token(sym.LNEG,slice());
           }
         case 113: break;
         case 19: 
-          { return token(sym.DIVIDE,yytext());
+          { return token(sym.DIVIDE,slice());
           }
         case 114: break;
         case 59: 
-          { return token(sym.STATIC,yytext());
+          { return token(sym.STATIC,slice());
           }
         case 115: break;
         case 7: 
-          { return token(sym.RP,yytext());
+          { return token(sym.RP,slice());
           }
         case 116: break;
         case 51: 
-          { return token(sym.VOID,yytext());
+          { return token(sym.VOID,slice());
           }
         case 117: break;
         case 58: 
-          { return token(sym.STRING,yytext());
+          { return token(sym.STRING,slice());
           }
         case 118: break;
         case 62: 
-          { return token(sym.CONTINUE,yytext());
+          { return token(sym.CONTINUE,slice());
           }
         case 119: break;
         case 42: 
@@ -912,29 +972,29 @@ public class Lexer implements java_cup.runtime.Scanner {
           }
         case 121: break;
         case 3: 
-          { return token(sym.CLASS_ID,yytext());
+          { return token(sym.CLASS_ID,name());
           }
         case 122: break;
         case 36: 
-          { return token(sym.LAND,yytext());
+          { return token(sym.LAND,slice());
           }
         case 123: break;
         case 34: 
-          { return token(sym.GTE,yytext());
+          { return token(sym.GTE,slice());
           }
         case 124: break;
         default: 
           if (zzInput == YYEOF && zzStartRead == zzCurrentPos) {
             zzAtEOF = true;
-              { 
-	if (yystate() == STRING)   /* EOF inside string. */
-		throw new LexicalError("Lexical error: Unclosed string at end of file.",str_init_line+1);
-		
- 	if (yystate() == REGULAR_COMMENT)  /* EOF inside comment. */
- 		throw new LexicalError("Lexical error: Unclosed comment at end of file.",comm_init_line+1);
- 		 
-  	return token(sym.EOF,"EOF");
-  	
+              { 
+	if (yystate() == STRING)   /* EOF inside string. */
+		throw new LexicalError("Lexical error: Unclosed string at end of file.",str_init_line+1);
+		
+ 	if (yystate() == REGULAR_COMMENT)  /* EOF inside comment. */
+ 		throw new LexicalError("Lexical error: Unclosed comment at end of file.",comm_init_line+1);
+ 		 
+  	return token(sym.EOF,"EOF");
+  	
  }
           } 
           else {
@@ -0,0 +1,114 @@
+package IC.Parser;
+
+import java.io.IOException;
+
+import IC.AST.ASTNode;
+import IC.AST.PrettyPrinter;
+
+/**
+ * ParserBenchmark
+ * ===============
+ * compares the CUP parsers with the RecursiveDescentParser, and times them:
+ * 		ParserBenchmark [-n <iterations>] <file.ic|file.sig>...
+ * every file (.sig files as library signatures) is parsed by both parsers: their ASTs
+ * (printed with line numbers by the PrettyPrinter) or their errors must be identical.
+ * then each parser parses the file the given number of times (default 100), lexing
+ * included, and the average parse times are printed (-n 0: compare only).
+ * exits with 1 if any file was parsed differently.
+ */
+public class ParserBenchmark {
+
+	public static void main(String[] args) {
+
+		int iterations = 100;
+		int first = 0;
+		if (args.length >= 2 && args[0].equals("-n")) {
+			iterations = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (first == args.length) {
+			System.out.println("Error: usage: ParserBenchmark [-n <iterations>] <file.ic|file.sig>...");
+			System.exit(1);
+		}
+
+		boolean allSame = true;
+		long totalCup = 0, totalDescent = 0;
+
+		for (int i = first; i < args.length; i++) {
+			String path = args[i];
+			boolean library = path.endsWith(".sig");
+
+			SourceBuffer source = null;
+			try {
+				source = SourceBuffer.map(path);
+			} catch (IOException e) {
+				System.out.println("Error in reading from " + path + ": " + e.getMessage());
+				System.exit(1);
+			}
+
+			String cup = parse(source, path, library, false);
+			String descent = parse(source, path, library, true);
+			boolean same = cup.equals(descent);
+			allSame &= same;
+
+			long cupTime = time(source, path, library, false, iterations);
+			long descentTime = time(source, path, library, true, iterations);
+			totalCup += cupTime;
+			totalDescent += descentTime;
+
+			System.out.println(path + ": " + (same ? "same" : "DIFFERENT") +
+					", CUP " + cupTime/1000 + "us, recursive descent " + descentTime/1000 + "us");
+		}
+
+		System.out.println("total: CUP " + totalCup/1000 + "us, recursive descent " + totalDescent/1000 + "us" +
+				(totalDescent > 0 ? String.format(" (%.2fx)", (double)totalCup / totalDescent) : ""));
+
+		System.exit(allSame ? 0 : 1);
+	}
+
+	/**
+	 * parses the source with one of the parsers, and returns its AST as printed
+	 * by the PrettyPrinter, or its error
+	 */
+	private static String parse(SourceBuffer source, String path, boolean library, boolean descent) {
+		try {
+			ASTNode root = parseTree(source, library, descent);
+			return (String)root.accept(new PrettyPrinter(path));
+		} catch (Exception e) {
+			return e.toString();
+		}
+	}
+
+	private static ASTNode parseTree(SourceBuffer source, boolean library, boolean descent) throws Exception {
+		Lexer scanner = new Lexer(source);
+		if (descent) {
+			RecursiveDescentParser parser = new RecursiveDescentParser(scanner);
+			return library ? parser.parseLibrary() : parser.parseProgram();
+		}
+		if (library)
+			return (ASTNode)new LibraryParser(scanner).parse().value;
+		return (ASTNode)new Parser(scanner).parse().value;
+	}
+
+	/**
+	 * returns the average time of parsing the source with one of the parsers, in nanoseconds
+	 * (after as many warm-up parses)
+	 */
+	private static long time(SourceBuffer source, String path, boolean library, boolean descent, int iterations) {
+		if (iterations == 0) return 0;
+
+		for (int i = 0; i < iterations; i++)
+			parse(source, path, library, descent);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			try {
+				parseTree(source, library, descent);
+			} catch (Exception e) {
+				/* timed all the same: the errors were compared already. */
+			}
+		}
+		return (System.nanoTime() - start) / iterations;
+	}
+
+}
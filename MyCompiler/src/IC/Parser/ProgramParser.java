@@ -0,0 +1,199 @@
+package IC.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import java_cup.runtime.Scanner;
+
+import IC.AST.ICClass;
+import IC.AST.Program;
+
+/**
+ * Parses the source files of an IC program (with the parser the Compiler was asked for),
+ * and merges them into one Program.
+ *
+ * The files of a program are independent until the semantic analysis, so they are
+ * lexed and parsed in parallel. Their classes are then merged in a deterministic order:
+ * the files' order (a directory's .ic files by name), and the classes' order in every
+ * file, except that a class is moved after its superclass when the superclass is
+ * declared later (so the SymbolTableBuilder sees every superclass first, as it requires).
+ *
+ */
+
+public class ProgramParser {
+
+	private final boolean tokenStream;
+	private final boolean descentParser;
+	private final boolean lazyBodies;
+
+
+	/**
+	 * @param tokenStream lex every file into a TokenStream first
+	 * @param descentParser parse with the RecursiveDescentParser (instead of the CUP parser)
+	 * @param lazyBodies parse the method bodies after the signatures, in parallel
+	 * 			(implies both of the above)
+	 */
+	public ProgramParser(boolean tokenStream, boolean descentParser, boolean lazyBodies) {
+		this.tokenStream = tokenStream;
+		this.descentParser = descentParser;
+		this.lazyBodies = lazyBodies;
+	}
+
+
+	/**
+	 * returns the source files of the given paths: a file is taken as is,
+	 * and a directory stands for all its .ic files, sorted by name
+	 * @param paths
+	 * @return
+	 * @throws IOException if a directory cannot be listed
+	 */
+	public static List<String> sourceFiles(List<String> paths) throws IOException {
+
+		List<String> files = new ArrayList<String>();
+		for (String path : paths) {
+			File file = new File(path);
+			if (!file.isDirectory()) {
+				files.add(path);
+				continue;
+			}
+
+			String[] names = file.list();
+			if (names == null)
+				throw new IOException(path + " (cannot list directory)");
+			Arrays.sort(names);
+			for (String name : names) {
+				if (name.endsWith(".ic") && !new File(file, name).isDirectory())
+					files.add(new File(file, name).getPath());
+			}
+		}
+		return files;
+	}
+
+
+	/**
+	 * parses a single source file
+	 * @param path
+	 * @param pool the pool to parse the method bodies on (-lazy-bodies; null: one by one)
+	 * @return
+	 * @throws IOException if the file cannot be read
+	 * @throws Exception the file's LexicalError or SyntaxError
+	 */
+	public Program parse(String path, ForkJoinPool pool) throws Exception {
+
+		SourceBuffer source = SourceBuffer.map(path);
+
+		if (lazyBodies) {
+			RecursiveDescentParser parser = new RecursiveDescentParser(TokenStream.tokenize(source), true);
+			Program program = parser.parseProgram();  //signatures only
+			parser.parseBodies(pool);
+			return program;
+		}
+
+		Scanner scanner = tokenStream ? new TokenStreamScanner(TokenStream.tokenize(source)) : new Lexer(source);
+		if (descentParser)
+			return new RecursiveDescentParser(scanner).parseProgram();
+		return (Program)new Parser(scanner).parse().value;
+	}
+
+	/**
+	 * parses the source files in parallel, and merges them into one program
+	 * (a single file is parsed as is, with its classes in their order)
+	 * @param paths
+	 * @param pool
+	 * @return
+	 * @throws SourceFileError the error of the first file (in the given order) that failed
+	 */
+	public Program parse(final List<String> paths, final ForkJoinPool pool) throws Exception {
+
+		if (paths.size() == 1)
+			return parse(paths.get(0), pool);
+
+		/* the errors are kept as they are (the pool would wrap them). */
+		final Exception[] errors = new Exception[paths.size()];
+
+		List<Callable<Program>> tasks = new ArrayList<Callable<Program>>();
+		for (int i = 0; i < paths.size(); i++) {
+			final int file = i;
+			tasks.add(new Callable<Program>() {
+				public Program call() {
+					try {
+						return parse(paths.get(file), pool);
+					} catch (Exception e) {
+						errors[file] = e;
+						return null;
+					}
+				}
+			});
+		}
+
+		List<Program> programs = new ArrayList<Program>();
+		List<Future<Program>> results = pool.invokeAll(tasks);
+		for (int i = 0; i < results.size(); i++) {
+			Program program = results.get(i).get();
+			if (errors[i] != null)
+				throw new SourceFileError(paths.get(i), errors[i]);
+			for (ICClass c : program.getClasses())
+				c.setSourceFile(paths.get(i));  //for the semantic errors
+			programs.add(program);
+		}
+
+		return merge(programs);
+	}
+
+
+	/**
+	 * merges the classes of the given programs, in order, moving every class after
+	 * its superclass.
+	 * a class whose superclass is missing is left in place (and so is a class that
+	 * closes an inheritance cycle), for the semantic analysis to report.
+	 * @param programs
+	 * @return
+	 */
+	public static Program merge(List<Program> programs) {
+
+		List<ICClass> classes = new ArrayList<ICClass>();
+		for (Program program : programs)
+			classes.addAll(program.getClasses());
+
+		/* the first declaration of every class name (duplicates are reported later). */
+		Map<String,ICClass> byName = new HashMap<String,ICClass>();
+		for (ICClass c : classes) {
+			if (!byName.containsKey(c.getName()))
+				byName.put(c.getName(), c);
+		}
+
+		List<ICClass> merged = new ArrayList<ICClass>(classes.size());
+		Set<ICClass> placed = new HashSet<ICClass>();
+
+		for (ICClass c : classes) {
+			if (placed.contains(c)) continue;
+
+			/* the superclasses chain of c that is not placed yet, from c up. */
+			List<ICClass> chain = new ArrayList<ICClass>();
+			Set<ICClass> inChain = new HashSet<ICClass>();
+			ICClass current = c;
+			while (current != null && !placed.contains(current) && inChain.add(current)) {
+				chain.add(current);
+				current = current.hasSuperClass() ? byName.get(current.getSuperClassName()) : null;
+			}
+
+			for (int i = chain.size() - 1; i >= 0; i--) {
+				merged.add(chain.get(i));
+				placed.add(chain.get(i));
+			}
+		}
+
+		return new Program(merged);
+	}
+
+}
@@ -0,0 +1,820 @@
+package IC.Parser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+import IC.BinaryOps;
+import IC.DataTypes;
+import IC.LiteralTypes;
+import IC.StackGuard;
+import IC.UnaryOps;
+import IC.AST.*;
+
+/**
+ * A hand-written recursive-descent parser for IC programs (IC.cup) and library
+ * signatures (Library.cup), with precedence climbing for the expressions.
+ * It builds the same AST as Parser and LibraryParser, with the same line numbers,
+ * and throws the same SyntaxError: at the first token the CUP parsers cannot shift.
+ *
+ * Like the CUP parsers, it keeps a single lookahead token, and reads the next token
+ * as soon as the current one is consumed (so lexical errors are thrown at the same point).
+ *
+ * Over a TokenStream, method bodies can be parsed lazily: parseProgram then builds the
+ * classes, fields and method signatures only, and records where every body starts.
+ * The bodies are parsed later, on demand (parseBody) or all together, in parallel
+ * (parseBodies), and attached to their Method nodes. The error reported is still the
+ * one the CUP parser would report: the first in the source.
+ *
+ * Statements and expressions may nest as deep as the source does: the recursion is
+ * continued on a fresh stack when the current one is deep (see IC.StackGuard).
+ *
+ */
+
+public class RecursiveDescentParser {
+
+	private final Scanner scanner;
+
+	private Symbol token;   /* the lookahead token. */
+
+	/* lazy method bodies: the token stream, and the start of every body not parsed yet. */
+	private final TokenStream stream;
+	private final boolean lazyBodies;
+	private final Map<Method,Integer> pendingBodies = new LinkedHashMap<Method,Integer>();
+
+	/* the last parenthesized expression: "(e)" is an expression, but not a location or a call. */
+	private Expression parenthesized = null;
+
+
+	public RecursiveDescentParser(Scanner scanner) {
+		this(scanner, null, false);
+	}
+
+	/**
+	 * @param stream
+	 * @param lazyBodies true to parse the method bodies lazily
+	 */
+	public RecursiveDescentParser(TokenStream stream, boolean lazyBodies) {
+		this(new TokenStreamScanner(stream), stream, lazyBodies);
+	}
+
+	private RecursiveDescentParser(Scanner scanner, TokenStream stream, boolean lazyBodies) {
+		this.scanner = scanner;
+		this.stream = stream;
+		this.lazyBodies = lazyBodies;
+	}
+
+
+	/**
+	 * parses an IC program (see IC.cup).
+	 * @return
+	 * @throws Exception LexicalError, SyntaxError, or an I/O exception of the scanner
+	 */
+	public Program parseProgram() throws Exception {
+
+		try {
+			next();
+
+			List<ICClass> classes = new ArrayList<ICClass>();
+			while (token.sym != sym.EOF)
+				classes.add(classDecl());
+
+			return new Program(classes);
+
+		} catch (Exception e) {
+			if (!lazyBodies) throw e;
+
+			/* a skipped body may hold an earlier error (where the CUP parser would have stopped). */
+			Failure first = new Failure(e, errorIndex(e));
+			for (Failure f : parsePendingBodies(null)) {
+				if (f.index < first.index) first = f;
+			}
+			throw first.error;
+		}
+	}
+
+	/**
+	 * parses the body of a method whose body was skipped by parseProgram (if not parsed yet)
+	 * @param method
+	 * @return the method's statements
+	 * @throws Exception the body's LexicalError or SyntaxError
+	 */
+	public List<Statement> parseBody(Method method) throws Exception {
+		Integer start = pendingBodies.remove(method);
+		if (start != null) {
+			Failure f = parseBody(stream, method, start);
+			if (f != null) throw f.error;
+		}
+		return method.getStatements();
+	}
+
+	/**
+	 * parses all the bodies skipped by parseProgram
+	 * @param pool the pool to parse the bodies on, in parallel (null: one by one)
+	 * @throws Exception the first error in the source (of the bodies with errors)
+	 */
+	public void parseBodies(ForkJoinPool pool) throws Exception {
+		Failure first = null;
+		for (Failure f : parsePendingBodies(pool)) {
+			if (first == null || f.index < first.index) first = f;
+		}
+		if (first != null) throw first.error;
+	}
+
+	public int getPendingBodiesCount() {
+		return pendingBodies.size();
+	}
+
+	/**
+	 * parses a library signature file (see Library.cup).
+	 * @return
+	 * @throws Exception LexicalError, SyntaxError, or an I/O exception of the scanner
+	 */
+	public ICClass parseLibrary() throws Exception {
+
+		next();
+
+		expect(sym.CLASS);
+		Symbol cid = expect(sym.CLASS_ID);
+		expect(sym.LCBR);
+
+		List<Method> methods = new ArrayList<Method>();
+		do {
+			methods.add(libraryMethod());
+		} while (token.sym != sym.RCBR);
+
+		next();
+		if (token.sym != sym.EOF) throw error();
+
+		return new ICClass(cid.left, name(cid), new ArrayList<Field>(), methods);
+	}
+
+
+	//////////////
+	//	tokens	//
+	//////////////
+
+	private void next() throws Exception {
+		token = scanner.next_token();
+	}
+
+	/**
+	 * consumes the lookahead token, which must be of the given kind
+	 * @param kind
+	 * @return the consumed token
+	 * @throws Exception
+	 */
+	private Symbol expect(int kind) throws Exception {
+		if (token.sym != kind) throw error();
+		Symbol t = token;
+		next();
+		return t;
+	}
+
+	/* a syntax error at the lookahead token, as the CUP parsers report it. */
+	private SyntaxError error() {
+		return new SyntaxError(token.left, token.value.toString());
+	}
+
+	private static String name(Symbol t) {
+		return (String)t.value;
+	}
+
+	/* the stream index of the token an error was thrown at (a lexical error is after all the tokens). */
+	private int errorIndex(Exception e) {
+		if (e instanceof LexicalError) return stream.size();
+		if (e instanceof SyntaxError) return ((TokenStreamScanner)scanner).position();
+		return Integer.MAX_VALUE;
+	}
+
+
+	//////////////////////////
+	//	lazy method bodies	//
+	//////////////////////////
+
+	/* an error, and the stream index of its token. */
+	private static class Failure {
+		final Exception error;
+		final int index;
+
+		Failure(Exception error, int index) {
+			this.error = error;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * parses all the pending bodies, and returns their failures
+	 */
+	private List<Failure> parsePendingBodies(ForkJoinPool pool) throws Exception {
+
+		List<Callable<Failure>> tasks = new ArrayList<Callable<Failure>>();
+		for (final Map.Entry<Method,Integer> body : pendingBodies.entrySet()) {
+			tasks.add(new Callable<Failure>() {
+				public Failure call() {
+					return parseBody(stream, body.getKey(), body.getValue());
+				}
+			});
+		}
+		pendingBodies.clear();
+
+		List<Failure> failures = new ArrayList<Failure>();
+		if (pool == null) {
+			for (Callable<Failure> task : tasks) {
+				Failure f = task.call();
+				if (f != null) failures.add(f);
+			}
+		} else {
+			for (Future<Failure> result : pool.invokeAll(tasks)) {
+				Failure f = result.get();
+				if (f != null) failures.add(f);
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * parses a method body, from its "{" at the given stream index, and attaches it to the method
+	 * @return the body's failure, or null
+	 */
+	private static Failure parseBody(TokenStream stream, Method method, int start) {
+		RecursiveDescentParser parser = new RecursiveDescentParser(new TokenStreamScanner(stream, start), stream, false);
+		try {
+			parser.next();
+			parser.expect(sym.LCBR);
+			method.setStatements(parser.statements());
+			return null;
+		} catch (Exception e) {
+			return new Failure(e, parser.errorIndex(e));
+		}
+	}
+
+
+	//////////////////////////////
+	//	classes and methods		//
+	//////////////////////////////
+
+	private ICClass classDecl() throws Exception {
+
+		expect(sym.CLASS);
+		Symbol cid = expect(sym.CLASS_ID);
+
+		Symbol superId = null;
+		if (token.sym == sym.EXTENDS) {
+			next();
+			superId = expect(sym.CLASS_ID);
+		}
+
+		expect(sym.LCBR);
+
+		List<Field> fields = new ArrayList<Field>();
+		List<Method> methods = new ArrayList<Method>();
+		while (token.sym != sym.RCBR)
+			member(fields, methods);
+		next();
+
+		if (superId == null)
+			return new ICClass(cid.left, name(cid), fields, methods);
+		return new ICClass(cid.left, name(cid), name(superId), fields, methods);
+	}
+
+	/**
+	 * parses a field declaration (of one or more fields) or a method,
+	 * and adds it to the given lists
+	 */
+	private void member(List<Field> fields, List<Method> methods) throws Exception {
+
+		boolean isStatic = false;
+		if (token.sym == sym.STATIC) {
+			next();
+			isStatic = true;
+		}
+
+		if (token.sym == sym.VOID) {
+			next();
+			Symbol mid = expect(sym.ID);
+			methods.add(method(new PrimitiveType(mid.left, DataTypes.VOID), mid, isStatic));
+			return;
+		}
+
+		Type type = type();
+		Symbol id = expect(sym.ID);
+
+		if (isStatic || token.sym == sym.LP) {
+			methods.add(method(type, id, isStatic));
+			return;
+		}
+
+		fields.add(new Field(type, name(id)));
+		while (token.sym == sym.COMMA) {
+			next();
+			fields.add(new Field(type, name(expect(sym.ID))));
+		}
+		expect(sym.SEMI);
+	}
+
+	private Method method(Type type, Symbol mid, boolean isStatic) throws Exception {
+
+		List<Formal> formals = formals();
+
+		if (lazyBodies && token.sym == sym.LCBR) {  /* skipped, and parsed later. */
+			Method method = isStatic ? new StaticMethod(type, name(mid), formals, null)
+									 : new VirtualMethod(type, name(mid), formals, null);
+
+			/* recorded first: a body that runs into a lexical error still has to be parsed. */
+			pendingBodies.put(method, ((TokenStreamScanner)scanner).position());
+			((TokenStreamScanner)scanner).skipBlock();
+			next();
+			return method;
+		}
+
+		expect(sym.LCBR);
+		List<Statement> statements = statements();
+
+		if (isStatic)
+			return new StaticMethod(type, name(mid), formals, statements);
+		return new VirtualMethod(type, name(mid), formals, statements);
+	}
+
+	private Method libraryMethod() throws Exception {
+
+		expect(sym.STATIC);
+
+		Type type;
+		Symbol mid;
+		if (token.sym == sym.VOID) {
+			next();
+			mid = expect(sym.ID);
+			type = new PrimitiveType(mid.left, DataTypes.VOID);
+		} else {
+			type = type();
+			mid = expect(sym.ID);
+		}
+
+		List<Formal> formals = formals();
+		expect(sym.SEMI);
+
+		return new LibraryMethod(type, name(mid), formals);
+	}
+
+	/* "( formal, ... )" */
+	private List<Formal> formals() throws Exception {
+
+		expect(sym.LP);
+
+		List<Formal> formals = new ArrayList<Formal>();
+		if (token.sym == sym.RP) {
+			next();
+			return formals;
+		}
+
+		while (true) {
+			Type type = type();
+			formals.add(new Formal(type, name(expect(sym.ID))));
+			if (token.sym != sym.COMMA) break;
+			next();
+		}
+		expect(sym.RP);
+
+		return formals;
+	}
+
+	private Type type() throws Exception {
+
+		Type type;
+		Symbol t = token;
+		switch (t.sym) {
+			case sym.INT:		type = new PrimitiveType(t.left, DataTypes.INT); break;
+			case sym.BOOLEAN:	type = new PrimitiveType(t.left, DataTypes.BOOLEAN); break;
+			case sym.STRING:	type = new PrimitiveType(t.left, DataTypes.STRING); break;
+			case sym.CLASS_ID:	type = new UserType(t.left, name(t)); break;
+			default:			throw error();
+		}
+		next();
+
+		return arrayDimensions(type);
+	}
+
+	/* "[]"* after a type */
+	private Type arrayDimensions(Type type) throws Exception {
+		while (token.sym == sym.LB) {
+			next();
+			expect(sym.RB);
+			type.incrementDimension();
+		}
+		return type;
+	}
+
+
+	//////////////////
+	//	statements	//
+	//////////////////
+
+	/* statements up to (and including) the closing "}" */
+	private List<Statement> statements() throws Exception {
+		List<Statement> statements = new ArrayList<Statement>();
+		while (token.sym != sym.RCBR)
+			statements.add(statement(true));
+		next();
+		return statements;
+	}
+
+	/**
+	 * parses a statement
+	 * @param allowDeclaration false for the operations of if and while (stmt_without_var_decl)
+	 * @return
+	 * @throws Exception
+	 */
+	private Statement statement(final boolean allowDeclaration) throws Exception {
+
+		if (!StackGuard.enter()) {
+			return StackGuard.onFreshStack(new Callable<Statement>() {
+				public Statement call() throws Exception {
+					return statement(allowDeclaration);
+				}
+			});
+		}
+		try {
+			return parseStatement(allowDeclaration);
+		} finally {
+			StackGuard.exit();
+		}
+	}
+
+	private Statement parseStatement(boolean allowDeclaration) throws Exception {
+
+		Symbol t = token;
+		switch (t.sym) {
+
+			case sym.LCBR:
+				next();
+				return new StatementsBlock(t.left, statements());
+
+			case sym.IF: {
+				next();
+				Expression condition = condition();
+				Statement operation = statement(false);
+				if (token.sym != sym.ELSE)
+					return new If(condition, operation);
+				next();
+				return new If(condition, operation, statement(false));
+			}
+
+			case sym.WHILE: {
+				next();
+				Expression condition = condition();
+				return new While(condition, statement(false));
+			}
+
+			case sym.RETURN: {
+				next();
+				if (token.sym == sym.SEMI) {
+					next();
+					return new Return(t.left);
+				}
+				Expression value = expression(0);
+				expect(sym.SEMI);
+				return new Return(t.left, value);
+			}
+
+			case sym.BREAK:
+				next();
+				expect(sym.SEMI);
+				return new Break(t.left);
+
+			case sym.CONTINUE:
+				next();
+				expect(sym.SEMI);
+				return new Continue(t.left);
+
+			case sym.INT:
+			case sym.BOOLEAN:
+			case sym.STRING:
+				if (!allowDeclaration) throw error();
+				return declaration(type());
+
+			case sym.CLASS_ID:
+				next();
+				if (allowDeclaration && (token.sym == sym.ID || token.sym == sym.LB))
+					return declaration(arrayDimensions(new UserType(t.left, name(t))));
+				return expressionStatement(binary(postfix(staticCall(t)), 0));
+
+			default:
+				if (!startsExpression(t.sym)) throw error();
+				return expressionStatement(expression(0));
+		}
+	}
+
+	/* "( expr )" of if and while */
+	private Expression condition() throws Exception {
+		expect(sym.LP);
+		Expression e = expression(0);
+		expect(sym.RP);
+		return e;
+	}
+
+	/* "type ID ;" or "type ID = expr ;", after the type */
+	private Statement declaration(Type type) throws Exception {
+
+		Symbol id = expect(sym.ID);
+
+		if (token.sym == sym.ASSIGN) {
+			next();
+			Expression init = expression(0);
+			expect(sym.SEMI);
+			return new LocalVariable(type, name(id), init);
+		}
+
+		expect(sym.SEMI);
+		return new LocalVariable(type, name(id));
+	}
+
+	/* "location = expr ;" or "call ;", after the location or the call */
+	private Statement expressionStatement(Expression e) throws Exception {
+
+		boolean plain = (e != parenthesized);
+
+		if (token.sym == sym.ASSIGN && plain && e instanceof Location) {
+			next();
+			Expression value = expression(0);
+			expect(sym.SEMI);
+			return new Assignment((Location)e, value);
+		}
+
+		if (token.sym == sym.SEMI && plain && e instanceof Call) {
+			next();
+			return new CallStatement((Call)e);
+		}
+
+		throw error();
+	}
+
+
+	//////////////////
+	//	expressions	//
+	//////////////////
+
+	/**
+	 * parses an expression whose binary operators are all of the given precedence or higher
+	 * (see binaryPrecedence)
+	 */
+	private Expression expression(int minPrecedence) throws Exception {
+		return binary(unary(), minPrecedence);
+	}
+
+	/* precedence climbing: all the binary operators are left associative. */
+	private Expression binary(Expression left, int minPrecedence) throws Exception {
+
+		while (true) {
+			int op = token.sym;
+			int precedence = binaryPrecedence(op);
+			if (precedence < minPrecedence) return left;
+
+			next();
+			Expression right = expression(precedence + 1);
+
+			switch (op) {
+				case sym.PLUS:		left = new MathBinaryOp(left, BinaryOps.PLUS, right); break;
+				case sym.MINUS:		left = new MathBinaryOp(left, BinaryOps.MINUS, right); break;
+				case sym.MULTIPLY:	left = new MathBinaryOp(left, BinaryOps.MULTIPLY, right); break;
+				case sym.DIVIDE:	left = new MathBinaryOp(left, BinaryOps.DIVIDE, right); break;
+				case sym.MOD:		left = new MathBinaryOp(left, BinaryOps.MOD, right); break;
+				case sym.LAND:		left = new LogicalBinaryOp(left, BinaryOps.LAND, right); break;
+				case sym.LOR:		left = new LogicalBinaryOp(left, BinaryOps.LOR, right); break;
+				case sym.LT:		left = new LogicalBinaryOp(left, BinaryOps.LT, right); break;
+				case sym.LTE:		left = new LogicalBinaryOp(left, BinaryOps.LTE, right); break;
+				case sym.GT:		left = new LogicalBinaryOp(left, BinaryOps.GT, right); break;
+				case sym.GTE:		left = new LogicalBinaryOp(left, BinaryOps.GTE, right); break;
+				case sym.EQUAL:		left = new LogicalBinaryOp(left, BinaryOps.EQUAL, right); break;
+				default:			left = new LogicalBinaryOp(left, BinaryOps.NEQUAL, right); break;
+			}
+		}
+	}
+
+	/**
+	 * returns the precedence of a binary operator (the IC.cup precedence declarations),
+	 * or -1 if the token is not one
+	 */
+	private static int binaryPrecedence(int kind) {
+		switch (kind) {
+			case sym.LOR:		return 1;
+			case sym.LAND:		return 2;
+			case sym.EQUAL:
+			case sym.NEQUAL:	return 3;
+			case sym.LT:
+			case sym.LTE:
+			case sym.GT:
+			case sym.GTE:		return 4;
+			case sym.PLUS:
+			case sym.MINUS:		return 5;
+			case sym.MULTIPLY:
+			case sym.DIVIDE:
+			case sym.MOD:		return 6;
+			default:			return -1;
+		}
+	}
+
+	/* the unary operators bind tighter than the binary ones, and looser than the postfix ones. */
+	private Expression unary() throws Exception {
+
+		if (!StackGuard.enter()) {
+			return StackGuard.onFreshStack(new Callable<Expression>() {
+				public Expression call() throws Exception {
+					return unary();
+				}
+			});
+		}
+		try {
+			return parseUnary();
+		} finally {
+			StackGuard.exit();
+		}
+	}
+
+	private Expression parseUnary() throws Exception {
+
+		if (token.sym == sym.MINUS) {
+			next();
+			return new MathUnaryOp(UnaryOps.UMINUS, unary());
+		}
+
+		if (token.sym == sym.LNEG) {
+			next();
+			return new LogicalUnaryOp(UnaryOps.LNEG, unary());
+		}
+
+		return postfix(primary());
+	}
+
+	/* ".length", ".ID", ".ID(...)" and "[expr]" after an expression */
+	private Expression postfix(Expression e) throws Exception {
+
+		while (true) {
+
+			if (token.sym == sym.DOT) {
+				next();
+				if (token.sym == sym.LENGTH) {
+					next();
+					e = new Length(e);
+					continue;
+				}
+				Symbol id = expect(sym.ID);
+				if (token.sym == sym.LP)
+					e = new VirtualCall(id.left, e, name(id), arguments());
+				else
+					e = new VariableLocation(id.left, e, name(id));
+
+			} else if (token.sym == sym.LB) {
+				next();
+				Expression index = expression(0);
+				expect(sym.RB);
+				e = new ArrayLocation(e, index);
+
+			} else {
+				return e;
+			}
+		}
+	}
+
+	private Expression primary() throws Exception {
+
+		Symbol t = token;
+		switch (t.sym) {
+
+			case sym.ID:
+				next();
+				if (token.sym == sym.LP)
+					return new VirtualCall(t.left, name(t), arguments());
+				return new VariableLocation(t.left, name(t));
+
+			case sym.CLASS_ID:
+				next();
+				return staticCall(t);
+
+			case sym.THIS:
+				next();
+				return new This(t.left);
+
+			case sym.NEW:
+				next();
+				return allocation();
+
+			case sym.INTEGER:
+				next();
+				return new Literal(t.left, LiteralTypes.INTEGER, t.value);
+
+			case sym.QUOTE:
+				next();
+				return new Literal(t.left, LiteralTypes.STRING, t.value);
+
+			case sym.TRUE:
+				next();
+				return new Literal(t.left, LiteralTypes.TRUE);
+
+			case sym.FALSE:
+				next();
+				return new Literal(t.left, LiteralTypes.FALSE);
+
+			case sym.NULL:
+				next();
+				return new Literal(t.left, LiteralTypes.NULL);
+
+			case sym.LP: {
+				next();
+				Expression e = expression(0);
+				expect(sym.RP);
+				parenthesized = e;
+				return e;
+			}
+
+			default:
+				throw error();
+		}
+	}
+
+	private static boolean startsExpression(int kind) {
+		switch (kind) {
+			case sym.ID: case sym.CLASS_ID: case sym.THIS: case sym.NEW:
+			case sym.INTEGER: case sym.QUOTE: case sym.TRUE: case sym.FALSE: case sym.NULL:
+			case sym.LP: case sym.MINUS: case sym.LNEG:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/* "CLASS_ID . ID ( ... )", after the class name */
+	private Expression staticCall(Symbol cid) throws Exception {
+		expect(sym.DOT);
+		Symbol id = expect(sym.ID);
+		return new StaticCall(cid.left, name(cid), name(id), arguments());
+	}
+
+	/* "new CLASS_ID()" or "new type[expr]", after new */
+	private Expression allocation() throws Exception {
+
+		Symbol t = token;
+		Type type;
+		switch (t.sym) {
+			case sym.CLASS_ID:
+				next();
+				if (token.sym == sym.LP) {
+					next();
+					expect(sym.RP);
+					return new NewClass(t.left, name(t));
+				}
+				type = new UserType(t.left, name(t));
+				break;
+			case sym.INT:		next(); type = new PrimitiveType(t.left, DataTypes.INT); break;
+			case sym.BOOLEAN:	next(); type = new PrimitiveType(t.left, DataTypes.BOOLEAN); break;
+			case sym.STRING:	next(); type = new PrimitiveType(t.left, DataTypes.STRING); break;
+			default:			throw error();
+		}
+
+		return newArray(type);
+	}
+
+	/* "[]"* "[expr]" after the type of new */
+	private Expression newArray(Type type) throws Exception {
+
+		while (true) {
+			expect(sym.LB);
+			if (token.sym != sym.RB) break;
+			next();
+			type.incrementDimension();
+		}
+
+		Expression size = expression(0);
+		expect(sym.RB);
+		return new NewArray(type, size);
+	}
+
+	/* "( expr, ... )" of a call */
+	private List<Expression> arguments() throws Exception {
+
+		expect(sym.LP);
+
+		List<Expression> arguments = new ArrayList<Expression>();
+		if (token.sym == sym.RP) {
+			next();
+			return arguments;
+		}
+
+		while (true) {
+			arguments.add(expression(0));
+			if (token.sym != sym.COMMA) break;
+			next();
+		}
+		expect(sym.RP);
+
+		return arguments;
+	}
+
+}
@@ -0,0 +1,81 @@
+package IC.Parser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * The whole text of a source file, as one char array.
+ * The file is memory-mapped and decoded in one pass: ASCII bytes (all of IC's
+ * legal characters) are widened directly, and only a file with other bytes is
+ * decoded with the platform-default charset (as FileReader does).
+ * The Lexer scans the array in place (see Lexer(SourceBuffer)), without refills,
+ * and its token values are SourceSlice objects over it.
+ *
+ */
+
+public class SourceBuffer {
+
+	private final char[] chars;
+	private final int length;
+
+
+	public SourceBuffer(char[] chars, int length) {
+		this.chars = chars;
+		this.length = length;
+	}
+
+
+	/**
+	 * maps the given file and decodes it.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static SourceBuffer map(String path) throws IOException {
+
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(path + " is too large");
+
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int n = (int)size;
+			char[] chars = new char[n];
+
+			for (int i = 0; i < n; i++) {
+				byte b = bytes.get(i);
+				if (b < 0) {   /* not ASCII: decode the whole file. */
+					bytes.rewind();
+					CharBuffer decoded = Charset.defaultCharset().decode(bytes);
+					return new SourceBuffer(decoded.array(), decoded.limit());
+				}
+				chars[i] = (char)b;
+			}
+
+			return new SourceBuffer(chars, n);
+
+		} finally {
+			file.close();
+		}
+	}
+
+
+	public char[] getChars() {
+		return this.chars;
+	}
+
+	public int length() {
+		return this.length;
+	}
+
+	public SourceSlice slice(int offset, int length) {
+		return new SourceSlice(this.chars, offset, length);
+	}
+
+}
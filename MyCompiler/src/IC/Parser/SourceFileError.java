@@ -0,0 +1,35 @@
+package IC.Parser;
+
+/**
+ * Exception class for the errors of a program split across several source files:
+ * the (lexical, syntax or reading) error of one of the files, and the file's path.
+ * 
+ */
+
+public class SourceFileError extends Exception {
+	
+	private String path;
+	
+	private static final long serialVersionUID = 54L;  /* impl. serializable. */ 
+	
+	
+	public SourceFileError(String path, Throwable cause) {
+		super(cause);
+		this.path = path;
+	}
+	
+	
+	public String getPath() {
+		return this.path;
+	}
+	
+	
+	/**
+	 * Returns the error string message of the file's error, after the file's path.
+	 */
+	@Override
+	public String toString() {
+		return (this.path + ": " + getCause());
+	}
+	
+}
@@ -0,0 +1,56 @@
+package IC.Parser;
+
+/**
+ * A token's text as an offset/length slice of its SourceBuffer.
+ * The String is created only when asked for (toString), and then kept.
+ *
+ */
+
+public class SourceSlice implements CharSequence {
+
+	private final char[] chars;
+	private final int offset;
+	private final int length;
+
+	private String text = null;  /* created lazily. */
+
+
+	public SourceSlice(char[] chars, int offset, int length) {
+		this.chars = chars;
+		this.offset = offset;
+		this.length = length;
+	}
+
+
+	public int getOffset() {
+		return this.offset;
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= this.length)
+			throw new IndexOutOfBoundsException("index " + index + ", length " + this.length);
+		return this.chars[this.offset + index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > this.length || start > end)
+			throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + this.length);
+		return new SourceSlice(this.chars, this.offset + start, end - start);
+	}
+
+
+	@Override
+	public String toString() {
+		if (this.text == null)
+			this.text = new String(this.chars, this.offset, this.length);
+		return this.text;
+	}
+
+}
@@ -0,0 +1,237 @@
+package IC.Parser;
+
+import java.io.IOException;
+
+import IC.Name;
+
+/**
+ * The whole token stream of a source file, stored in parallel int arrays
+ * (kind, line, start offset, length and value index) instead of Token objects.
+ * The values of ID, CLASS_ID, INTEGER and QUOTE tokens (and of EOF) are interned
+ * in one value table: every distinct value is a single String, created the first
+ * time it is seen (the canonical String of its IC.Name, for identifiers).
+ * The text of any other token is a slice of the source buffer.
+ *
+ * A stream is recorded by tokenize(), and parsed through a TokenStreamScanner,
+ * as many times as needed, without lexing the source again.
+ *
+ */
+
+public class TokenStream {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final SourceBuffer source;
+
+	private int size = 0;
+	private int[] kinds = new int[INITIAL_CAPACITY];
+	private int[] lines = new int[INITIAL_CAPACITY];
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] lengths = new int[INITIAL_CAPACITY];
+	private int[] valueIndices = new int[INITIAL_CAPACITY];   /* -1: no value. */
+
+	/* the value table, and its open addressing hash (value index + 1, 0: empty). */
+	private int valueCount = 0;
+	private String[] values = new String[64];
+	private int[] valueHashes = new int[64];
+	private int[] valueSlots = new int[128];
+
+	/* the lexical error that ended the stream, thrown when the parser reaches it. */
+	private LexicalError error = null;
+
+
+	private TokenStream(SourceBuffer source) {
+		this.source = source;
+	}
+
+
+	/**
+	 * lexes the whole source into a token stream.
+	 * a lexical error ends the stream: it is kept, and thrown by the scanner only
+	 * when the parser reaches it (as if the source was lexed during the parse).
+	 * @param source
+	 * @return
+	 * @throws IOException
+	 */
+	public static TokenStream tokenize(SourceBuffer source) throws IOException {
+
+		TokenStream stream = new TokenStream(source);
+		Lexer lexer = new Lexer(source, stream);
+
+		try {
+			do {
+				lexer.next_token();
+			} while (stream.kinds[stream.size-1] != sym.EOF);
+
+		} catch (LexicalError e) {
+			stream.error = e;
+		}
+
+		return stream;
+	}
+
+
+	/**
+	 * records a token (called by the Lexer, instead of creating a Token).
+	 * @param kind
+	 * @param line
+	 * @param start
+	 * @param length
+	 * @param value the token value (interned only for the kinds that have one;
+	 * 			null: the token's text, interned directly from the source)
+	 */
+	void add(int kind, int line, int start, int length, Object value) {
+
+		if (size == kinds.length) {
+			kinds = grow(kinds);
+			lines = grow(lines);
+			starts = grow(starts);
+			lengths = grow(lengths);
+			valueIndices = grow(valueIndices);
+		}
+
+		kinds[size] = kind;
+		lines[size] = line;
+		starts[size] = start;
+		lengths[size] = length;
+		if (!hasValue(kind)) {
+			valueIndices[size] = -1;
+		} else if (value == null) {
+			valueIndices[size] = intern(source.getChars(), start, length, null, kind == sym.ID || kind == sym.CLASS_ID);
+		} else {
+			String text = value.toString();
+			valueIndices[size] = intern(text.toCharArray(), 0, text.length(), text, false);
+		}
+		size++;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] newArray = new int[array.length * 2];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	/**
+	 * checks if tokens of the given kind have a value of their own
+	 * (other tokens' value is their text)
+	 * @param kind
+	 * @return
+	 */
+	public static boolean hasValue(int kind) {
+		return kind == sym.ID || kind == sym.CLASS_ID || kind == sym.INTEGER ||
+			   kind == sym.QUOTE || kind == sym.EOF;
+	}
+
+
+	/**
+	 * returns the index of the given value in the value table, adding it if needed
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @param text the value as a String, if there is one (null: created when added)
+	 * @param isName the value is an identifier (created as a canonical name)
+	 * @return
+	 */
+	private int intern(char[] chars, int offset, int length, String text, boolean isName) {
+
+		int hash = 0;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + chars[offset + i];
+
+		int mask = valueSlots.length - 1;
+		int slot = hash & mask;
+		while (valueSlots[slot] != 0) {
+			int index = valueSlots[slot] - 1;
+			if (valueHashes[index] == hash && equal(values[index], chars, offset, length))
+				return index;
+			slot = (slot + 1) & mask;
+		}
+
+		if (valueCount == values.length) {
+			String[] newValues = new String[values.length * 2];
+			System.arraycopy(values, 0, newValues, 0, values.length);
+			values = newValues;
+			valueHashes = grow(valueHashes);
+		}
+
+		int index = valueCount++;
+		if (text == null)
+			text = isName ? Name.of(chars, offset, length).toString() : new String(chars, offset, length);
+		values[index] = text;
+		valueHashes[index] = hash;
+		valueSlots[slot] = index + 1;
+
+		if (valueCount * 2 > valueSlots.length)
+			rehash();
+
+		return index;
+	}
+
+	private static boolean equal(String s, char[] chars, int offset, int length) {
+		if (s.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) != chars[offset + i]) return false;
+		}
+		return true;
+	}
+
+	private void rehash() {
+		valueSlots = new int[valueSlots.length * 2];
+		int mask = valueSlots.length - 1;
+		for (int index = 0; index < valueCount; index++) {
+			int slot = valueHashes[index] & mask;
+			while (valueSlots[slot] != 0)
+				slot = (slot + 1) & mask;
+			valueSlots[slot] = index + 1;
+		}
+	}
+
+
+	public SourceBuffer getSource() {
+		return this.source;
+	}
+
+	/**
+	 * returns the tokens count (EOF included, if the stream was not ended by an error)
+	 * @return
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public int getKind(int i) {
+		return this.kinds[i];
+	}
+
+	public int getLine(int i) {
+		return this.lines[i];
+	}
+
+	public int getStart(int i) {
+		return this.starts[i];
+	}
+
+	public int getLength(int i) {
+		return this.lengths[i];
+	}
+
+	/**
+	 * returns the value of the i-th token: its interned value, or its text
+	 * @param i
+	 * @return
+	 */
+	public Object getValue(int i) {
+		if (valueIndices[i] >= 0)
+			return values[valueIndices[i]];
+		return source.slice(starts[i], lengths[i]);
+	}
+
+	public int getValueCount() {
+		return this.valueCount;
+	}
+
+	public LexicalError getError() {
+		return this.error;
+	}
+
+}
@@ -0,0 +1,72 @@
+package IC.Parser;
+
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+
+/**
+ * The adapter of a TokenStream to the CUP parsers: returns the stream's tokens
+ * as Token symbols, one at a time, and throws the stream's lexical error (if any)
+ * when it is reached.
+ * It can start at any token, and skip a block (for lazy method bodies).
+ *
+ */
+
+public class TokenStreamScanner implements Scanner {
+
+	private final TokenStream stream;
+	private int next = 0;
+
+
+	public TokenStreamScanner(TokenStream stream) {
+		this(stream, 0);
+	}
+
+	/**
+	 * @param stream
+	 * @param start the index of the first token to return
+	 */
+	public TokenStreamScanner(TokenStream stream, int start) {
+		this.stream = stream;
+		this.next = start;
+	}
+
+
+	@Override
+	public Symbol next_token() throws LexicalError {
+
+		if (next == stream.size()) {
+			if (stream.getError() != null)
+				throw stream.getError();
+			next--;   /* the parser may ask for EOF more than once. */
+		}
+
+		int i = next++;
+		return new Token(stream.getKind(i), stream.getLine(i), stream.getValue(i));
+	}
+
+	/**
+	 * returns the index of the last returned token
+	 * @return
+	 */
+	public int position() {
+		return next - 1;
+	}
+
+	/**
+	 * skips the tokens of a block, up to and including the "}" matching the
+	 * last returned token (a "{"), or up to the end of the stream
+	 */
+	public void skipBlock() {
+		int depth = 1;
+		int size = stream.size();
+		while (next < size) {
+			int kind = stream.getKind(next++);
+			if (kind == sym.LCBR) {
+				depth++;
+			} else if (kind == sym.RCBR && --depth == 0) {
+				return;
+			}
+		}
+	}
+
+}
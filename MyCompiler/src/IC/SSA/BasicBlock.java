@@ -0,0 +1,151 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * BasicBlock
+ * ==========
+ * a basic block of a method's control flow graph.
+ * phis are always at the beginning of the instructions list,
+ * and only the last instruction may be a terminator.
+ */
+public class BasicBlock {
+
+	private int id;
+	// LIR label of the block (null if the block is only reached by falling through)
+	private String label;
+	private List<Instruction> instructions = new ArrayList<Instruction>();
+	private List<BasicBlock> predecessors = new ArrayList<BasicBlock>();
+	private List<BasicBlock> successors = new ArrayList<BasicBlock>();
+	// the successor reached by falling through (null if none)
+	private BasicBlock fallThrough;
+
+	// dominance information
+	private BasicBlock idom;
+	private List<BasicBlock> domChildren = new ArrayList<BasicBlock>();
+	private Set<BasicBlock> dominanceFrontier = new LinkedHashSet<BasicBlock>();
+
+	/**
+	 * constructor
+	 * @param id
+	 * @param label
+	 */
+	public BasicBlock(int id, String label){
+		this.id = id;
+		this.label = label;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName(){
+		return "B"+id;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public void setLabel(String label) {
+		this.label = label;
+	}
+
+	public List<Instruction> getInstructions() {
+		return instructions;
+	}
+
+	public List<BasicBlock> getPredecessors() {
+		return predecessors;
+	}
+
+	public List<BasicBlock> getSuccessors() {
+		return successors;
+	}
+
+	public BasicBlock getFallThrough() {
+		return fallThrough;
+	}
+
+	public void setFallThrough(BasicBlock fallThrough) {
+		this.fallThrough = fallThrough;
+	}
+
+	public BasicBlock getIdom() {
+		return idom;
+	}
+
+	public void setIdom(BasicBlock idom) {
+		this.idom = idom;
+	}
+
+	public List<BasicBlock> getDomChildren() {
+		return domChildren;
+	}
+
+	public Set<BasicBlock> getDominanceFrontier() {
+		return dominanceFrontier;
+	}
+
+	/**
+	 * appends an instruction to the block
+	 * @param inst
+	 */
+	public void add(Instruction inst){
+		instructions.add(inst);
+		inst.setBlock(this);
+	}
+
+	/**
+	 * inserts a phi at the beginning of the block
+	 * @param phi
+	 */
+	public void addPhi(Instruction phi){
+		instructions.add(0, phi);
+		phi.setBlock(this);
+	}
+
+	/**
+	 * returns the phis of the block
+	 * @return
+	 */
+	public List<Instruction> getPhis(){
+		List<Instruction> phis = new ArrayList<Instruction>();
+		for (Instruction inst: instructions){
+			if (!inst.isPhi()) break;
+			phis.add(inst);
+		}
+		return phis;
+	}
+
+	/**
+	 * returns the terminator of the block, null if the block falls through
+	 * @return
+	 */
+	public Instruction getTerminator(){
+		if (instructions.isEmpty()) return null;
+		Instruction last = instructions.get(instructions.size()-1);
+		return last.isTerminator() ? last : null;
+	}
+
+	/**
+	 * adds a control flow edge from this block to succ
+	 * @param succ
+	 */
+	public void addSuccessor(BasicBlock succ){
+		successors.add(succ);
+		succ.predecessors.add(this);
+	}
+
+	/**
+	 * checks if this block dominates the given block
+	 * @param other
+	 * @return
+	 */
+	public boolean dominates(BasicBlock other){
+		for (BasicBlock b = other; b != null; b = b.idom){
+			if (b == this) return true;
+		}
+		return false;
+	}
+}
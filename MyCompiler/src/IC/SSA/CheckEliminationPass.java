@@ -0,0 +1,116 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * CheckEliminationPass
+ * ====================
+ * removes runtime check calls that are known to pass:
+ * - null checks of values that are never null (new objects / arrays,
+ * 	 string concatenations, string literals and this)
+ * - size checks of non negative constants, zero checks of non zero constants
+ * - any check repeated on the same values as a check that dominates it
+ */
+public class CheckEliminationPass implements Pass {
+
+	public String getName(){
+		return "check-elimination";
+	}
+
+	public boolean run(MethodIR ir){
+		ir.computeDominators();
+		boolean changed = false;
+		Set<String> available = new HashSet<String>();
+		List<Instruction> removed = new ArrayList<Instruction>();
+
+		// (non recursive) walk over the dominator tree, a null marks leaving the block below it
+		Deque<BasicBlock> work = new LinkedList<BasicBlock>(); // allows nulls
+		Deque<List<String>> added = new ArrayDeque<List<String>>();
+		work.push(ir.getEntry());
+		while (!work.isEmpty()){
+			BasicBlock b = work.pop();
+			if (b == null){
+				for (String key: added.pop()){
+					available.remove(key);
+				}
+				continue;
+			}
+
+			List<String> blockKeys = new ArrayList<String>();
+			for (Instruction inst: b.getInstructions()){
+				if (!inst.isRuntimeCheck()) continue;
+				String key = getKey(inst);
+				if (key == null) continue;
+				if (isRedundant(inst) || available.contains(key)){
+					removed.add(inst);
+					changed = true;
+				} else {
+					available.add(key);
+					blockKeys.add(key);
+				}
+			}
+
+			added.push(blockKeys);
+			work.push(null);
+			for (BasicBlock child: b.getDomChildren()){
+				work.push(child);
+			}
+		}
+		Instruction.removeAll(removed);
+		return changed;
+	}
+
+	/**
+	 * returns the key identifying what the check verifies (null for unknown checks)
+	 */
+	private String getKey(Instruction check){
+		String target = check.getTarget();
+		Operand a = check.getArgument("a");
+		if (target.equals("__checkNullRef") && a != null){
+			return "null:"+a;
+		} else if (target.equals("__checkArrayAccess") && a != null && check.getArgument("i") != null){
+			return "arr:"+a+":"+check.getArgument("i");
+		} else if (target.equals("__checkSize") && check.getArgument("n") != null){
+			return "size:"+check.getArgument("n");
+		} else if (target.equals("__checkZero") && check.getArgument("b") != null){
+			return "zero:"+check.getArgument("b");
+		}
+		return null;
+	}
+
+	/**
+	 * checks if the check passes regardless of the checks before it
+	 */
+	private boolean isRedundant(Instruction check){
+		String target = check.getTarget();
+		if (target.equals("__checkNullRef")){
+			return isNonNull(check.getArgument("a"));
+		} else if (target.equals("__checkSize")){
+			Operand n = check.getArgument("n");
+			return n.isIntConstant() && n.getIntValue() >= 0;
+		} else if (target.equals("__checkZero")){
+			Operand b = check.getArgument("b");
+			return b.isIntConstant() && b.getIntValue() != 0;
+		}
+		return false;
+	}
+
+	/**
+	 * checks if the operand is known to hold a non null reference
+	 */
+	private boolean isNonNull(Operand op){
+		while (op.isValue()){
+			Value v = op.getValue();
+			if (v.isEntryValue()) return v.getBase().equals("this");
+			Instruction def = v.getDef();
+			if (def.getKind() == Instruction.Kind.LIBRARY){
+				String target = def.getTarget();
+				return target.equals("__allocateObject") || target.equals("__allocateArray") || target.equals("__stringCat");
+			}
+			if (def.getKind() != Instruction.Kind.MOVE) return false;
+			op = def.getOperand(0);
+		}
+		// string literal labels
+		return op.isConstant() && !op.isIntConstant();
+	}
+}
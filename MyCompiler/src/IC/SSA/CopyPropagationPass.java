@@ -0,0 +1,157 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * CopyPropagationPass
+ * ===================
+ * propagates copies and constants to the uses of moved values, as far as
+ * the LIR operand rules allow, and folds the results:
+ * - arithmetic on constants is computed (division by zero is left for run time)
+ * - adding / subtracting 0 and multiplying / dividing by 1 become moves
+ * - phis with a single distinct operand are replaced by it
+ * moves left without uses are removed by dead code elimination.
+ *
+ * the instructions are taken from a worklist: an instruction is looked at again
+ * only when one of its operands is replaced, and an instruction folded into a move
+ * is propagated at once, so a chain of folds takes a single pass over it.
+ */
+public class CopyPropagationPass implements Pass {
+
+	public String getName(){
+		return "copy-propagation";
+	}
+
+	/* the instructions to look at, and the set of them (an instruction is queued once) */
+	private Deque<Instruction> worklist;
+	private Set<Instruction> queued;
+
+	public boolean run(MethodIR ir){
+		worklist = new ArrayDeque<Instruction>(ir.getAllInstructions());
+		queued = new HashSet<Instruction>(worklist);
+		boolean changed = false;
+		while (!worklist.isEmpty()){
+			Instruction inst = worklist.poll();
+			queued.remove(inst);
+			if (inst.getBlock() == null) continue; // removed
+			switch (inst.getKind()){
+			case MOVE:
+				changed |= replaceUses(inst.getDst(), inst.getOperand(0));
+				break;
+			case BINARY:
+			case UNARY:
+				if (fold(inst)){
+					// now a move: its uses need not wait for another look at it
+					replaceUses(inst.getDst(), inst.getOperand(0));
+					changed = true;
+				}
+				break;
+			case PHI:
+				changed |= simplifyPhi(inst);
+				break;
+			default:
+				break;
+			}
+		}
+		worklist = null;
+		queued = null;
+		return changed;
+	}
+
+	/**
+	 * replaces the uses of v by op, where allowed, and queues the uses replaced
+	 * @return true iff any use was replaced
+	 */
+	private boolean replaceUses(Value v, Operand op){
+		if (op.isValue() && op.getValue() == v) return false;
+		boolean replaced = false;
+		for (Instruction use: new ArrayList<Instruction>(v.getUses())){
+			for (int i: use.getOperandIndices(v)){
+				if (use.canUse(i, op)){
+					use.setOperand(i, op);
+					replaced = true;
+					if (queued.add(use)) worklist.add(use);
+				}
+			}
+		}
+		return replaced;
+	}
+
+	/**
+	 * folds arithmetic with constant operands into moves
+	 */
+	private boolean fold(Instruction inst){
+		String opcode = inst.getOpcode();
+		if (inst.getKind() == Instruction.Kind.UNARY){
+			Operand op = inst.getOperand(0);
+			if (!op.isIntConstant()) return false;
+			int x = op.getIntValue();
+			if (opcode.equals("Inc")) x++;
+			else if (opcode.equals("Dec")) x--;
+			else if (opcode.equals("Neg")) x = -x;
+			else return false;
+			inst.replaceWithMove(Operand.constant(x));
+			return true;
+		}
+
+		Operand src = inst.getOperand(0);
+		Operand prev = inst.getOperand(1);
+		if (src.isIntConstant() && prev.isIntConstant()){
+			int a = src.getIntValue();
+			int b = prev.getIntValue();
+			Integer result = null;
+			if (opcode.equals("Add")) result = b+a;
+			else if (opcode.equals("Sub")) result = b-a;
+			else if (opcode.equals("Mul")) result = b*a;
+			else if (opcode.equals("Div") && a != 0) result = b/a;
+			else if (opcode.equals("Mod") && a != 0) result = b%a;
+			else if (opcode.equals("And")) result = b&a;
+			else if (opcode.equals("Or")) result = b|a;
+			else if (opcode.equals("Xor")) result = b^a;
+			if (result == null) return false;
+			inst.replaceWithMove(Operand.constant(result));
+			return true;
+		}
+
+		// neutral constants
+		if (src.isIntConstant() && inst.canUseAsMove(prev)){
+			int a = src.getIntValue();
+			if ((a == 0 && (opcode.equals("Add") || opcode.equals("Sub"))) ||
+					(a == 1 && (opcode.equals("Mul") || opcode.equals("Div")))){
+				inst.replaceWithMove(prev);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * replaces a phi that merges a single distinct operand (besides itself)
+	 */
+	private boolean simplifyPhi(Instruction phi){
+		Value dst = phi.getDst();
+		Operand unique = null;
+		for (int i = 0; i < phi.getOperandCount(); i++){
+			Operand op = phi.getOperand(i);
+			if (op.isValue() && op.getValue() == dst) continue;
+			if (unique == null) unique = op;
+			else if (!unique.sameAs(op)) return false;
+		}
+		if (unique == null) return false;
+
+		boolean changed = replaceUses(dst, unique);
+		if (dst.getUses().isEmpty()){
+			phi.remove();
+			return true;
+		}
+		if (phi.canUseAsMove(unique)){
+			// the remaining uses need dst: turn the phi into a move after the phis
+			BasicBlock b = phi.getBlock();
+			phi.replaceWithMove(unique);
+			b.getInstructions().remove(phi);
+			b.getInstructions().add(b.getPhis().size(), phi);
+			return true;
+		}
+		return changed;
+	}
+}
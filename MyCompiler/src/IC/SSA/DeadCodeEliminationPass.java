@@ -0,0 +1,71 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * DeadCodeEliminationPass
+ * =======================
+ * removes instructions whose results are never used (mark and sweep, so
+ * dead phi cycles of loops are removed too).
+ * instructions with side effects - stores, calls, jumps, and divisions
+ * that may divide by zero - are always kept.
+ */
+public class DeadCodeEliminationPass implements Pass {
+
+	public String getName(){
+		return "dead-code-elimination";
+	}
+
+	public boolean run(MethodIR ir){
+		List<Instruction> all = ir.getAllInstructions();
+		Set<Instruction> live = new HashSet<Instruction>();
+		Deque<Instruction> worklist = new ArrayDeque<Instruction>();
+		for (Instruction inst: all){
+			if (!isRemovable(inst)){
+				live.add(inst);
+				worklist.add(inst);
+			}
+		}
+
+		// mark everything the kept instructions depend on
+		while (!worklist.isEmpty()){
+			Instruction inst = worklist.poll();
+			for (int i = 0; i < inst.getOperandCount(); i++){
+				Operand op = inst.getOperand(i);
+				if (!op.isValue() || op.getValue().isEntryValue()) continue;
+				Instruction def = op.getValue().getDef();
+				if (live.add(def)) worklist.add(def);
+			}
+		}
+
+		List<Instruction> dead = new ArrayList<Instruction>();
+		for (Instruction inst: all){
+			if (!live.contains(inst)) dead.add(inst);
+		}
+		Instruction.removeAll(dead);
+		return !dead.isEmpty();
+	}
+
+	/**
+	 * checks if the instruction has no effect other than defining its dst
+	 */
+	private boolean isRemovable(Instruction inst){
+		switch (inst.getKind()){
+		case MOVE:
+		case PHI:
+		case UNARY:
+		case LOAD_FIELD:
+		case LOAD_ARRAY:
+		case ARRAY_LENGTH:
+			return true;
+		case BINARY:
+			if (inst.getOpcode().equals("Div") || inst.getOpcode().equals("Mod")){
+				Operand divisor = inst.getOperand(0);
+				return divisor.isIntConstant() && divisor.getIntValue() != 0;
+			}
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * DominatorTree
+ * =============
+ * computes the immediate dominators, dominator tree and dominance frontiers
+ * of a method's control flow graph, using the iterative algorithm of
+ * Cooper, Harvey and Kennedy ("A Simple, Fast Dominance Algorithm").
+ * all blocks are expected to be reachable from the entry block.
+ */
+public class DominatorTree {
+
+	private MethodIR ir;
+
+	/**
+	 * constructor
+	 * @param ir
+	 */
+	public DominatorTree(MethodIR ir){
+		this.ir = ir;
+	}
+
+	/**
+	 * computes and stores the dominance information in the blocks
+	 */
+	public void compute(){
+		List<BasicBlock> rpo = reversePostOrder(ir.getEntry());
+		Map<BasicBlock,Integer> order = new HashMap<BasicBlock,Integer>();
+		for (int i = 0; i < rpo.size(); i++){
+			order.put(rpo.get(i), i);
+		}
+
+		// immediate dominators, by reverse post order index
+		int[] idom = new int[rpo.size()];
+		Arrays.fill(idom, -1);
+		idom[0] = 0;
+		boolean changed = true;
+		while (changed){
+			changed = false;
+			for (int i = 1; i < rpo.size(); i++){
+				int newIdom = -1;
+				for (BasicBlock pred: rpo.get(i).getPredecessors()){
+					Integer p = order.get(pred);
+					if (p == null || idom[p] == -1) continue; // unreachable or not processed yet
+					newIdom = (newIdom == -1) ? p : intersect(idom, p, newIdom);
+				}
+				if (idom[i] != newIdom){
+					idom[i] = newIdom;
+					changed = true;
+				}
+			}
+		}
+
+		// dominator tree
+		for (BasicBlock b: ir.getBlocks()){
+			b.setIdom(null);
+			b.getDomChildren().clear();
+			b.getDominanceFrontier().clear();
+		}
+		for (int i = 1; i < rpo.size(); i++){
+			BasicBlock parent = rpo.get(idom[i]);
+			rpo.get(i).setIdom(parent);
+			parent.getDomChildren().add(rpo.get(i));
+		}
+
+		// dominance frontiers
+		for (BasicBlock b: rpo){
+			if (b.getPredecessors().size() < 2) continue;
+			for (BasicBlock pred: b.getPredecessors()){
+				BasicBlock runner = pred;
+				while (runner != null && runner != b.getIdom()){
+					runner.getDominanceFrontier().add(b);
+					runner = runner.getIdom();
+				}
+			}
+		}
+	}
+
+	/**
+	 * walks up the (partial) dominator tree from both blocks to their common dominator
+	 */
+	private static int intersect(int[] idom, int b1, int b2){
+		while (b1 != b2){
+			while (b1 > b2) b1 = idom[b1];
+			while (b2 > b1) b2 = idom[b2];
+		}
+		return b1;
+	}
+
+	/**
+	 * returns the blocks reachable from entry, in reverse post order
+	 * @param entry
+	 * @return
+	 */
+	public static List<BasicBlock> reversePostOrder(BasicBlock entry){
+		List<BasicBlock> postOrder = new ArrayList<BasicBlock>();
+		Set<BasicBlock> visited = new HashSet<BasicBlock>();
+		// explicit stack of (block, next successor index)
+		Deque<BasicBlock> blocks = new ArrayDeque<BasicBlock>();
+		Deque<Integer> indices = new ArrayDeque<Integer>();
+		blocks.push(entry);
+		indices.push(0);
+		visited.add(entry);
+		while (!blocks.isEmpty()){
+			BasicBlock b = blocks.peek();
+			int i = indices.pop();
+			if (i < b.getSuccessors().size()){
+				indices.push(i+1);
+				BasicBlock succ = b.getSuccessors().get(i);
+				if (visited.add(succ)){
+					blocks.push(succ);
+					indices.push(0);
+				}
+			} else {
+				blocks.pop();
+				postOrder.add(b);
+			}
+		}
+		Collections.reverse(postOrder);
+		return postOrder;
+	}
+}
@@ -0,0 +1,439 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * IRBuilder
+ * =========
+ * builds the SSA IR of a single method from its LIR code:
+ * (1) parse the instructions and split them to basic blocks
+ * (2) connect the control flow graph and drop unreachable blocks
+ * (3) place phis at the iterated dominance frontiers of the definitions
+ * 	   of every name that is live across blocks (semi-pruned SSA)
+ * (4) rename all definitions and uses to SSA values, walking the dominator tree
+ */
+public class IRBuilder {
+
+	// string literal and dispatch table labels (constant operands)
+	private Set<String> constantLabels;
+
+	/**
+	 * constructor
+	 * @param constantLabels: string literal and dispatch table labels of the program
+	 */
+	public IRBuilder(Set<String> constantLabels){
+		this.constantLabels = constantLabels;
+	}
+
+	/**
+	 * builds the SSA IR of a method
+	 * @param label: the method's label
+	 * @param lines: the method's LIR code lines (without the label)
+	 * @return
+	 * @throws IRConstructionError
+	 */
+	public MethodIR build(String label, List<String> lines) throws IRConstructionError {
+		MethodIR ir = new MethodIR(label);
+		createBlocks(ir, lines);
+		connectBlocks(ir);
+		removeUnreachableBlocks(ir);
+		ir.computeDominators();
+		placePhis(ir);
+		rename(ir);
+		return ir;
+	}
+
+	// (1) blocks
+	/////////////
+
+	/**
+	 * parses the code lines into basic blocks
+	 */
+	private void createBlocks(MethodIR ir, List<String> lines) throws IRConstructionError {
+		List<BasicBlock> blocks = ir.getBlocks();
+		blocks.add(new BasicBlock(0, null)); // empty entry block
+		BasicBlock curr = new BasicBlock(1, null);
+		blocks.add(curr);
+		String comment = null;
+
+		for (String line: lines){
+			line = line.trim();
+			if (line.startsWith("#")) comment = line;
+			if (line.length() == 0 || line.startsWith("#")) continue;
+
+			if (line.endsWith(":")){
+				String label = line.substring(0, line.length()-1);
+				if (curr.getInstructions().isEmpty() && curr.getLabel() == null){
+					curr.setLabel(label);
+				} else {
+					curr = new BasicBlock(blocks.size(), label);
+					blocks.add(curr);
+				}
+				continue;
+			}
+
+			if (curr.getTerminator() != null){
+				// an unlabeled block after a terminator
+				curr = new BasicBlock(blocks.size(), null);
+				blocks.add(curr);
+			}
+			Instruction inst = parseInstruction(line);
+			// the virtual call site comment identifies the call (see LIRLoader)
+			if (inst.getKind() == Instruction.Kind.VIRTUAL_CALL && comment != null && comment.startsWith("# virtual call site "))
+				inst.setComment(comment);
+			comment = null;
+			curr.add(inst);
+		}
+	}
+
+	/**
+	 * parses a single LIR instruction
+	 */
+	private Instruction parseInstruction(String line) throws IRConstructionError {
+		int space = line.indexOf(' ');
+		String opcode = space < 0 ? line : line.substring(0, space);
+		String rest = space < 0 ? "" : line.substring(space+1).trim();
+		Instruction inst;
+
+		if (opcode.equals("Library") || opcode.equals("StaticCall") || opcode.equals("VirtualCall")){
+			return parseCall(opcode, rest);
+		}
+
+		String[] ops = rest.split(",");
+		for (int i = 0; i < ops.length; i++){
+			ops[i] = ops[i].trim();
+		}
+
+		if (opcode.equals("Move")){
+			checkOperands(line, ops, 2);
+			inst = new Instruction(Instruction.Kind.MOVE, opcode, new Operand[]{ operand(ops[0]) });
+			inst.setDstName(name(ops[1]));
+		} else if (opcode.equals("MoveField")){
+			checkOperands(line, ops, 2);
+			int dot = ops[1].indexOf('.');
+			if (dot >= 0){
+				inst = new Instruction(Instruction.Kind.STORE_FIELD, opcode, new Operand[]{
+						operand(ops[0]), operand(ops[1].substring(0, dot)), operand(ops[1].substring(dot+1)) });
+			} else {
+				dot = ops[0].indexOf('.');
+				if (dot < 0) throw new IRConstructionError("malformed field access: "+line);
+				inst = new Instruction(Instruction.Kind.LOAD_FIELD, opcode, new Operand[]{
+						operand(ops[0].substring(0, dot)), operand(ops[0].substring(dot+1)) });
+				inst.setDstName(name(ops[1]));
+			}
+		} else if (opcode.equals("MoveArray")){
+			checkOperands(line, ops, 2);
+			int open = ops[1].indexOf('[');
+			if (open >= 0){
+				inst = new Instruction(Instruction.Kind.STORE_ARRAY, opcode, new Operand[]{
+						operand(ops[0]), operand(ops[1].substring(0, open)), operand(indexOf(ops[1], open, line)) });
+			} else {
+				open = ops[0].indexOf('[');
+				if (open < 0) throw new IRConstructionError("malformed array access: "+line);
+				inst = new Instruction(Instruction.Kind.LOAD_ARRAY, opcode, new Operand[]{
+						operand(ops[0].substring(0, open)), operand(indexOf(ops[0], open, line)) });
+				inst.setDstName(name(ops[1]));
+			}
+		} else if (opcode.equals("ArrayLength")){
+			checkOperands(line, ops, 2);
+			inst = new Instruction(Instruction.Kind.ARRAY_LENGTH, opcode, new Operand[]{ operand(ops[0]) });
+			inst.setDstName(name(ops[1]));
+		} else if (opcode.equals("Add") || opcode.equals("Sub") || opcode.equals("Mul") || opcode.equals("Div") ||
+				opcode.equals("Mod") || opcode.equals("And") || opcode.equals("Or") || opcode.equals("Xor")){
+			checkOperands(line, ops, 2);
+			inst = new Instruction(Instruction.Kind.BINARY, opcode, new Operand[]{ operand(ops[0]), Operand.name(name(ops[1])) });
+			inst.setDstName(ops[1]);
+		} else if (opcode.equals("Inc") || opcode.equals("Dec") || opcode.equals("Neg") || opcode.equals("Not")){
+			checkOperands(line, ops, 1);
+			inst = new Instruction(Instruction.Kind.UNARY, opcode, new Operand[]{ Operand.name(name(ops[0])) });
+			inst.setDstName(ops[0]);
+		} else if (opcode.equals("Compare")){
+			checkOperands(line, ops, 2);
+			inst = new Instruction(Instruction.Kind.COMPARE, opcode, new Operand[]{ operand(ops[0]), operand(ops[1]) });
+		} else if (opcode.equals("Jump")){
+			checkOperands(line, ops, 1);
+			if (ops[0].equals("_error_exit")){
+				inst = new Instruction(Instruction.Kind.EXIT, opcode, new Operand[0]);
+			} else {
+				inst = new Instruction(Instruction.Kind.JUMP, opcode, new Operand[0]);
+				inst.setTarget(ops[0]);
+			}
+		} else if (opcode.equals("JumpTrue") || opcode.equals("JumpFalse") || opcode.equals("JumpG") ||
+				opcode.equals("JumpGE") || opcode.equals("JumpL") || opcode.equals("JumpLE")){
+			checkOperands(line, ops, 1);
+			inst = new Instruction(Instruction.Kind.COND_JUMP, opcode, new Operand[0]);
+			inst.setTarget(ops[0]);
+		} else if (opcode.equals("Return")){
+			checkOperands(line, ops, 1);
+			inst = new Instruction(Instruction.Kind.RETURN, opcode, new Operand[]{ operand(ops[0]) });
+		} else {
+			throw new IRConstructionError("unsupported instruction: "+line);
+		}
+		return inst;
+	}
+
+	/**
+	 * parses Library / StaticCall / VirtualCall instructions
+	 */
+	private Instruction parseCall(String opcode, String rest) throws IRConstructionError {
+		int open = rest.indexOf('(');
+		int close = rest.lastIndexOf(')');
+		if (open < 0 || close < open || !rest.startsWith("),", close))
+			throw new IRConstructionError("malformed call: "+rest);
+		String callee = rest.substring(0, open);
+		String argsStr = rest.substring(open+1, close).trim();
+		String dst = rest.substring(close+2).trim();
+		String[] args = argsStr.length() == 0 ? new String[0] : argsStr.split(",");
+
+		Instruction.Kind kind = opcode.equals("Library") ? Instruction.Kind.LIBRARY :
+			(opcode.equals("StaticCall") ? Instruction.Kind.STATIC_CALL : Instruction.Kind.VIRTUAL_CALL);
+		int first = kind == Instruction.Kind.VIRTUAL_CALL ? 1 : 0;
+		Operand[] operands = new Operand[first+args.length];
+		String[] formals = new String[args.length];
+
+		String target = callee;
+		if (kind == Instruction.Kind.VIRTUAL_CALL){
+			int dot = callee.indexOf('.');
+			if (dot < 0) throw new IRConstructionError("malformed virtual call: "+rest);
+			operands[0] = operand(callee.substring(0, dot));
+			target = callee.substring(dot+1);
+		}
+		for (int i = 0; i < args.length; i++){
+			String arg = args[i].trim();
+			if (kind != Instruction.Kind.LIBRARY){
+				int eq = arg.indexOf('=');
+				if (eq < 0) throw new IRConstructionError("malformed call argument: "+arg);
+				formals[i] = arg.substring(0, eq).trim();
+				arg = arg.substring(eq+1).trim();
+			}
+			operands[first+i] = operand(arg);
+		}
+
+		Instruction inst = new Instruction(kind, opcode, operands);
+		inst.setTarget(target);
+		if (kind != Instruction.Kind.LIBRARY) inst.setFormals(formals);
+		if (!dst.equals("Rdummy")) inst.setDstName(name(dst));
+		return inst;
+	}
+
+	private void checkOperands(String line, String[] ops, int count) throws IRConstructionError {
+		if (ops.length != count || ops[0].length() == 0)
+			throw new IRConstructionError("wrong number of operands: "+line);
+	}
+
+	private String indexOf(String access, int open, String line) throws IRConstructionError {
+		if (!access.endsWith("]")) throw new IRConstructionError("malformed array access: "+line);
+		return access.substring(open+1, access.length()-1);
+	}
+
+	/**
+	 * parses a simple operand (integer, label or name)
+	 */
+	private Operand operand(String s) throws IRConstructionError {
+		if (s.length() == 0) throw new IRConstructionError("missing operand");
+		char c = s.charAt(0);
+		if (c == '-' || Character.isDigit(c)){
+			try {
+				Long.parseLong(s);
+			} catch (NumberFormatException e){
+				throw new IRConstructionError("malformed immediate: "+s);
+			}
+			return Operand.constant(s);
+		}
+		if (constantLabels.contains(s)) return Operand.constant(s);
+		return Operand.name(name(s));
+	}
+
+	/**
+	 * checks that the given string is a plain LIR name
+	 */
+	private String name(String s) throws IRConstructionError {
+		if (s.length() == 0 || !Character.isLetter(s.charAt(0)) || constantLabels.contains(s))
+			throw new IRConstructionError("malformed name: "+s);
+		for (int i = 1; i < s.length(); i++){
+			if (!Character.isLetterOrDigit(s.charAt(i)) && s.charAt(i) != '_')
+				throw new IRConstructionError("malformed name: "+s);
+		}
+		return s;
+	}
+
+	// (2) control flow graph
+	/////////////////////////
+
+	/**
+	 * adds the control flow edges between the blocks
+	 */
+	private void connectBlocks(MethodIR ir) throws IRConstructionError {
+		List<BasicBlock> blocks = ir.getBlocks();
+		Map<String,BasicBlock> labels = new HashMap<String,BasicBlock>();
+		for (BasicBlock b: blocks){
+			if (b.getLabel() != null) labels.put(b.getLabel(), b);
+		}
+
+		for (int i = 0; i < blocks.size(); i++){
+			BasicBlock b = blocks.get(i);
+			BasicBlock next = i+1 < blocks.size() ? blocks.get(i+1) : null;
+			Instruction term = b.getTerminator();
+
+			if (term == null){
+				// falls through (off the end of the method if last)
+				if (next != null){
+					b.addSuccessor(next);
+					b.setFallThrough(next);
+				}
+			} else if (term.getKind() == Instruction.Kind.JUMP || term.getKind() == Instruction.Kind.COND_JUMP){
+				BasicBlock target = labels.get(term.getTarget());
+				if (target == null) throw new IRConstructionError("jump out of method: "+term.getTarget());
+				b.addSuccessor(target);
+				if (term.getKind() == Instruction.Kind.COND_JUMP){
+					// the condition is set by a Compare right before the jump
+					List<Instruction> insts = b.getInstructions();
+					if (insts.size() < 2 || insts.get(insts.size()-2).getKind() != Instruction.Kind.COMPARE)
+						throw new IRConstructionError("conditional jump without a compare: "+term);
+					if (next == null) throw new IRConstructionError("conditional jump at method end");
+					b.addSuccessor(next);
+					b.setFallThrough(next);
+				}
+			}
+		}
+	}
+
+	/**
+	 * removes blocks that cannot be reached from the entry
+	 */
+	private void removeUnreachableBlocks(MethodIR ir){
+		Set<BasicBlock> reachable = new HashSet<BasicBlock>(DominatorTree.reversePostOrder(ir.getEntry()));
+		List<BasicBlock> kept = new ArrayList<BasicBlock>();
+		for (BasicBlock b: ir.getBlocks()){
+			if (reachable.contains(b)){
+				kept.add(b);
+			} else {
+				for (BasicBlock succ: b.getSuccessors()){
+					succ.getPredecessors().remove(b);
+				}
+			}
+		}
+		ir.getBlocks().clear();
+		ir.getBlocks().addAll(kept);
+	}
+
+	// (3) phi placement
+	////////////////////
+
+	/**
+	 * places phis for every name used in a block other than the one defining it
+	 */
+	private void placePhis(MethodIR ir){
+		Map<String,Set<BasicBlock>> defBlocks = new LinkedHashMap<String,Set<BasicBlock>>();
+		Set<String> globals = new HashSet<String>();
+
+		for (BasicBlock b: ir.getBlocks()){
+			Set<String> defined = new HashSet<String>();
+			for (Instruction inst: b.getInstructions()){
+				for (int i = 0; i < inst.getOperandCount(); i++){
+					Operand op = inst.getOperand(i);
+					if (op.isName() && !defined.contains(op.getName())) globals.add(op.getName());
+				}
+				if (inst.getDstName() != null){
+					defined.add(inst.getDstName());
+					if (!defBlocks.containsKey(inst.getDstName()))
+						defBlocks.put(inst.getDstName(), new LinkedHashSet<BasicBlock>());
+					defBlocks.get(inst.getDstName()).add(b);
+				}
+			}
+		}
+
+		for (Map.Entry<String,Set<BasicBlock>> e: defBlocks.entrySet()){
+			String name = e.getKey();
+			if (!globals.contains(name)) continue;
+
+			Set<BasicBlock> hasPhi = new HashSet<BasicBlock>();
+			Deque<BasicBlock> worklist = new ArrayDeque<BasicBlock>(e.getValue());
+			worklist.add(ir.getEntry()); // the entry value
+			Set<BasicBlock> queued = new HashSet<BasicBlock>(worklist);
+			while (!worklist.isEmpty()){
+				BasicBlock b = worklist.poll();
+				for (BasicBlock frontier: b.getDominanceFrontier()){
+					if (!hasPhi.add(frontier)) continue;
+					Operand[] ops = new Operand[frontier.getPredecessors().size()];
+					for (int i = 0; i < ops.length; i++){
+						ops[i] = Operand.name(name);
+					}
+					Instruction phi = new Instruction(Instruction.Kind.PHI, "phi", ops);
+					phi.setDstName(name);
+					frontier.addPhi(phi);
+					if (queued.add(frontier)) worklist.add(frontier);
+				}
+			}
+		}
+	}
+
+	// (4) renaming
+	///////////////
+
+	/**
+	 * renames all names to SSA values, in a (non recursive) walk over the dominator tree
+	 */
+	private void rename(MethodIR ir){
+		Map<String,Deque<Value>> stacks = new HashMap<String,Deque<Value>>();
+		// blocks to visit; a null marks the exit from the block below it
+		Deque<BasicBlock> work = new LinkedList<BasicBlock>(); // allows nulls
+		Deque<List<String>> pushedNames = new ArrayDeque<List<String>>();
+		work.push(ir.getEntry());
+
+		while (!work.isEmpty()){
+			BasicBlock b = work.pop();
+			if (b == null){
+				// leaving a block: pop its definitions
+				for (String name: pushedNames.pop()){
+					stacks.get(name).pop();
+				}
+				continue;
+			}
+
+			List<String> pushed = new ArrayList<String>();
+			for (Instruction inst: b.getInstructions()){
+				if (!inst.isPhi()){
+					for (int i = 0; i < inst.getOperandCount(); i++){
+						Operand op = inst.getOperand(i);
+						if (op.isName()) inst.setOperand(i, Operand.value(current(ir, stacks, op.getName())));
+					}
+				}
+				if (inst.getDstName() != null){
+					String name = inst.getDstName();
+					inst.setDst(ir.newValue(name));
+					if (!stacks.containsKey(name)) stacks.put(name, new ArrayDeque<Value>());
+					stacks.get(name).push(inst.getDst());
+					pushed.add(name);
+				}
+			}
+
+			// fill the phi operands of this block's edges
+			for (BasicBlock succ: new LinkedHashSet<BasicBlock>(b.getSuccessors())){
+				for (int k = 0; k < succ.getPredecessors().size(); k++){
+					if (succ.getPredecessors().get(k) != b) continue;
+					for (Instruction phi: succ.getPhis()){
+						Operand op = phi.getOperand(k);
+						if (op.isName()) phi.setOperand(k, Operand.value(current(ir, stacks, op.getName())));
+					}
+				}
+			}
+
+			pushedNames.push(pushed);
+			work.push(null);
+			List<BasicBlock> children = b.getDomChildren();
+			for (int i = children.size()-1; i >= 0; i--){
+				work.push(children.get(i));
+			}
+		}
+	}
+
+	/**
+	 * returns the current value of a name
+	 */
+	private Value current(MethodIR ir, Map<String,Deque<Value>> stacks, String name){
+		Deque<Value> stack = stacks.get(name);
+		if (stack == null || stack.isEmpty()) return ir.getEntryValue(name);
+		return stack.peek();
+	}
+}
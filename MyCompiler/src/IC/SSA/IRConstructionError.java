@@ -0,0 +1,28 @@
+package IC.SSA;
+
+/**
+ * Exception class for LIR code that cannot be converted to the SSA IR
+ * (e.g. a conditional jump that does not follow a Compare).
+ * methods that fail to convert are left as they are.
+ *
+ */
+
+public class IRConstructionError extends Exception {
+
+	private static final long serialVersionUID = 47L;  /* impl. serializable. */
+
+
+	public IRConstructionError(String message) {
+		super(message);
+	}
+
+
+	/**
+	 * Returns error string message.
+	 */
+	@Override
+	public String toString() {
+		return ("IR construction error: " + super.getMessage());
+	}
+
+}
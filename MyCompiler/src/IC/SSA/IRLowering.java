@@ -0,0 +1,403 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * IRLowering
+ * ==========
+ * translates a method's SSA IR back to LIR code:
+ * - every value gets a LIR name: its original name, unless its live range
+ * 	 interferes with another value of that name, in which case it gets a new register
+ * - phis become parallel copies at the end of the predecessors. edges from
+ * 	 conditional jumps are split: copies of the fall through edge follow the
+ * 	 jump, and copies of the taken edge get a new labeled block at the end of the method
+ * - two address instructions whose dst was renamed get an extra move
+ */
+public class IRLowering {
+
+	// temporaries for breaking copy cycles and memory to memory moves
+	private static final String TEMP = "RssaT";
+	private static final String MEMORY_TEMP = "RssaM";
+
+	// labels are global to the LIR program
+	private static int edgeLabelCounter = 0;
+
+	private MethodIR ir;
+	private String fallOffLabel;
+	private Map<Value,String> names = new HashMap<Value,String>();
+	private int newRegsCounter = 0;
+	private List<String> lines = new ArrayList<String>();
+
+	/**
+	 * constructor
+	 * @param ir
+	 * @param fallOffLabel: the label following the method's code (null if none)
+	 */
+	public IRLowering(MethodIR ir, String fallOffLabel){
+		this.ir = ir;
+		this.fallOffLabel = fallOffLabel;
+	}
+
+	/**
+	 * returns the LIR code of the method, including its label
+	 * @return
+	 * @throws IRConstructionError
+	 */
+	public String lower() throws IRConstructionError {
+		ir.computeDominators();
+		assignNames(computeInterference());
+
+		lines.add(ir.getLabel()+":");
+		List<String> edgeLines = new ArrayList<String>();
+		List<BasicBlock> blocks = ir.getBlocks();
+		for (BasicBlock b: blocks){
+			if (b.getLabel() != null) lines.add(b.getLabel()+":");
+			for (Instruction inst: b.getInstructions()){
+				if (!inst.isPhi() && !inst.isTerminator()) lowerInstruction(inst);
+			}
+
+			Instruction term = b.getTerminator();
+			if (term == null || term.getKind() == Instruction.Kind.JUMP){
+				if (b.getSuccessors().size() == 1) addCopies(b, 0, lines);
+				if (term != null) lines.add("Jump "+b.getSuccessors().get(0).getLabel());
+			} else if (term.getKind() == Instruction.Kind.COND_JUMP){
+				BasicBlock taken = b.getSuccessors().get(0);
+				String target = taken.getLabel();
+				List<String> takenCopies = new ArrayList<String>();
+				addCopies(b, 0, takenCopies);
+				if (!takenCopies.isEmpty()){
+					target = "_ssa_edge_label"+(edgeLabelCounter++);
+					edgeLines.add(target+":");
+					edgeLines.addAll(takenCopies);
+					edgeLines.add("Jump "+taken.getLabel());
+				}
+				lines.add(term.getOpcode()+" "+target);
+				addCopies(b, 1, lines);
+			} else {
+				lowerInstruction(term);
+			}
+		}
+
+		if (!edgeLines.isEmpty()){
+			if (blocks.get(blocks.size()-1).getTerminator() == null){
+				// the method's code falls off its end
+				if (fallOffLabel == null) throw new IRConstructionError("no code after "+ir.getLabel());
+				lines.add("Jump "+fallOffLabel);
+			}
+			lines.addAll(edgeLines);
+		}
+
+		StringBuilder code = new StringBuilder();
+		for (String line: lines){
+			code.append(line).append('\n');
+		}
+		return code.toString();
+	}
+
+	// naming
+	/////////
+
+	/**
+	 * computes, for every value, the values of the same name that are live where it is defined
+	 */
+	private Map<Value,Set<Value>> computeInterference(){
+		List<BasicBlock> blocks = ir.getBlocks();
+		Map<BasicBlock,Set<Value>> uses = new HashMap<BasicBlock,Set<Value>>();
+		Map<BasicBlock,Set<Value>> defs = new HashMap<BasicBlock,Set<Value>>();
+		Map<BasicBlock,Set<Value>> liveIn = new HashMap<BasicBlock,Set<Value>>();
+		Map<BasicBlock,Set<Value>> liveOut = new HashMap<BasicBlock,Set<Value>>();
+
+		for (BasicBlock b: blocks){
+			Set<Value> use = new HashSet<Value>();
+			Set<Value> def = new HashSet<Value>();
+			for (Instruction inst: b.getInstructions()){
+				if (!inst.isPhi()){
+					for (int i = 0; i < inst.getOperandCount(); i++){
+						Operand op = inst.getOperand(i);
+						if (op.isValue() && !def.contains(op.getValue())) use.add(op.getValue());
+					}
+				}
+				if (inst.getDst() != null) def.add(inst.getDst());
+			}
+			uses.put(b, use);
+			defs.put(b, def);
+			liveIn.put(b, new HashSet<Value>(use));
+			liveOut.put(b, new HashSet<Value>());
+		}
+
+		// liveness (phi operands are live at the end of their predecessors)
+		boolean changed = true;
+		while (changed){
+			changed = false;
+			for (int i = blocks.size()-1; i >= 0; i--){
+				BasicBlock b = blocks.get(i);
+				Set<Value> out = liveOut.get(b);
+				for (BasicBlock succ: b.getSuccessors()){
+					changed |= out.addAll(liveIn.get(succ));
+					for (int k = 0; k < succ.getPredecessors().size(); k++){
+						if (succ.getPredecessors().get(k) != b) continue;
+						for (Instruction phi: succ.getPhis()){
+							Operand op = phi.getOperand(k);
+							if (op.isValue()) changed |= out.add(op.getValue());
+						}
+					}
+				}
+				Set<Value> in = liveIn.get(b);
+				for (Value v: out){
+					if (!defs.get(b).contains(v)) changed |= in.add(v);
+				}
+			}
+		}
+
+		// interference between values of the same name
+		Map<Value,Set<Value>> interference = new HashMap<Value,Set<Value>>();
+		for (BasicBlock b: blocks){
+			Set<Value> live = new HashSet<Value>(liveOut.get(b));
+			List<Instruction> insts = b.getInstructions();
+			for (int i = insts.size()-1; i >= 0; i--){
+				Instruction inst = insts.get(i);
+				if (inst.isPhi()) break;
+				if (inst.getDst() != null){
+					live.remove(inst.getDst());
+					interfere(interference, inst.getDst(), live);
+				}
+				for (int j = 0; j < inst.getOperandCount(); j++){
+					if (inst.getOperand(j).isValue()) live.add(inst.getOperand(j).getValue());
+				}
+			}
+			List<Instruction> phis = b.getPhis();
+			for (Instruction phi: phis){
+				live.remove(phi.getDst());
+			}
+			for (Instruction phi: phis){
+				interfere(interference, phi.getDst(), live);
+				for (Instruction other: phis){
+					if (other != phi) interfere(interference, phi.getDst(), Collections.singleton(other.getDst()));
+				}
+			}
+		}
+		return interference;
+	}
+
+	private void interfere(Map<Value,Set<Value>> interference, Value v, Collection<Value> live){
+		for (Value w: live){
+			if (w == v || !w.getBase().equals(v.getBase())) continue;
+			if (!interference.containsKey(v)) interference.put(v, new HashSet<Value>());
+			if (!interference.containsKey(w)) interference.put(w, new HashSet<Value>());
+			interference.get(v).add(w);
+			interference.get(w).add(v);
+		}
+	}
+
+	/**
+	 * gives every value its original name, unless it interferes with a value already holding it
+	 */
+	private void assignNames(Map<Value,Set<Value>> interference){
+		Map<String,List<Value>> holders = new HashMap<String,List<Value>>();
+		for (Value v: ir.getEntryValues()){
+			names.put(v, v.getBase());
+			List<Value> list = new ArrayList<Value>();
+			list.add(v);
+			holders.put(v.getBase(), list);
+		}
+
+		for (BasicBlock b: DominatorTree.reversePostOrder(ir.getEntry())){
+			for (Instruction inst: b.getInstructions()){
+				Value v = inst.getDst();
+				if (v == null) continue;
+				List<Value> list = holders.get(v.getBase());
+				boolean free = true;
+				Set<Value> conflicts = interference.get(v);
+				if (conflicts != null){
+					for (Value holder: list){
+						if (conflicts.contains(holder)){
+							free = false;
+							break;
+						}
+					}
+				}
+				if (free){
+					names.put(v, v.getBase());
+					list.add(v);
+				} else {
+					names.put(v, "Rssa"+(newRegsCounter++));
+				}
+			}
+		}
+	}
+
+	private String name(Operand op){
+		if (op.isConstant()) return op.getConstant();
+		return names.get(op.getValue());
+	}
+
+	private boolean isMemory(Operand op){
+		return !op.isConstant() && isMemory(name(op));
+	}
+
+	private boolean isMemory(String name){
+		return !Value.isRegisterName(name);
+	}
+
+	// code
+	///////
+
+	/**
+	 * appends the LIR code of a non terminator instruction (or a return / exit)
+	 */
+	private void lowerInstruction(Instruction inst){
+		String dst = inst.getDst() != null ? names.get(inst.getDst()) : null;
+		String op = inst.getOpcode();
+		switch (inst.getKind()){
+		case MOVE:
+			move(name(inst.getOperand(0)), isMemory(inst.getOperand(0)), dst, lines);
+			break;
+		case LOAD_FIELD:
+			lines.add(op+" "+name(inst.getOperand(0))+"."+name(inst.getOperand(1))+","+dst);
+			break;
+		case STORE_FIELD:
+			lines.add(op+" "+name(inst.getOperand(0))+","+name(inst.getOperand(1))+"."+name(inst.getOperand(2)));
+			break;
+		case LOAD_ARRAY:
+			lines.add(op+" "+name(inst.getOperand(0))+"["+name(inst.getOperand(1))+"],"+dst);
+			break;
+		case STORE_ARRAY:
+			lines.add(op+" "+name(inst.getOperand(0))+","+name(inst.getOperand(1))+"["+name(inst.getOperand(2))+"]");
+			break;
+		case ARRAY_LENGTH:
+			lines.add(op+" "+name(inst.getOperand(0))+","+dst);
+			break;
+		case BINARY: {
+			String src = name(inst.getOperand(0));
+			boolean srcMemory = isMemory(inst.getOperand(0));
+			String prev = name(inst.getOperand(1));
+			if (!prev.equals(dst)){
+				if (!src.equals(dst)){
+					move(prev, isMemory(inst.getOperand(1)), dst, lines);
+				} else if (op.equals("Add") || op.equals("Mul") || op.equals("And") || op.equals("Or") || op.equals("Xor")){
+					// dst already holds src: swap the operands
+					src = prev;
+					srcMemory = isMemory(inst.getOperand(1));
+				} else {
+					move(src, srcMemory, TEMP, lines);
+					src = TEMP;
+					srcMemory = false;
+					move(prev, isMemory(inst.getOperand(1)), dst, lines);
+				}
+			}
+			if (srcMemory && isMemory(dst)){
+				move(src, true, TEMP, lines);
+				src = TEMP;
+			}
+			lines.add(op+" "+src+","+dst);
+			break;
+		}
+		case UNARY:
+			move(name(inst.getOperand(0)), isMemory(inst.getOperand(0)), dst, lines);
+			lines.add(op+" "+dst);
+			break;
+		case COMPARE:
+			lines.add(op+" "+name(inst.getOperand(0))+","+name(inst.getOperand(1)));
+			break;
+		case RETURN:
+			lines.add(op+" "+name(inst.getOperand(0)));
+			break;
+		case EXIT:
+			lines.add("Jump _error_exit");
+			break;
+		case LIBRARY:
+		case STATIC_CALL:
+		case VIRTUAL_CALL: {
+			String str = op+" ";
+			int first = 0;
+			if (inst.getComment() != null) lines.add(inst.getComment());
+			if (inst.getKind() == Instruction.Kind.VIRTUAL_CALL){
+				str += name(inst.getOperand(0))+".";
+				first = 1;
+			}
+			str += inst.getTarget()+"(";
+			for (int i = first; i < inst.getOperandCount(); i++){
+				if (i > first) str += ",";
+				if (inst.getFormals() != null) str += inst.getFormals()[i-first]+"=";
+				str += name(inst.getOperand(i));
+			}
+			// unused results go to Rdummy
+			boolean used = inst.getDst() != null && !inst.getDst().getUses().isEmpty();
+			lines.add(str+"),"+(used ? dst : "Rdummy"));
+			break;
+		}
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * appends "Move src,dst" (unless both are the same, through a register if both are in memory)
+	 */
+	private void move(String src, boolean srcMemory, String dst, List<String> out){
+		if (src.equals(dst)) return;
+		if (srcMemory && isMemory(dst)){
+			out.add("Move "+src+","+MEMORY_TEMP);
+			src = MEMORY_TEMP;
+		}
+		out.add("Move "+src+","+dst);
+	}
+
+	/**
+	 * appends the copies of the phis on the given edge, sequentialized
+	 * @param b: the edge's source block
+	 * @param succIndex: the edge's index in b's successors
+	 * @param out
+	 */
+	private void addCopies(BasicBlock b, int succIndex, List<String> out){
+		BasicBlock succ = b.getSuccessors().get(succIndex);
+		List<Instruction> phis = succ.getPhis();
+		if (phis.isEmpty()) return;
+
+		// the matching predecessor index (b may reach succ by both edges)
+		int occurrence = 0;
+		for (int i = 0; i < succIndex; i++){
+			if (b.getSuccessors().get(i) == succ) occurrence++;
+		}
+		int k = -1;
+		for (int i = 0; i < succ.getPredecessors().size() && occurrence >= 0; i++){
+			if (succ.getPredecessors().get(i) == b){
+				k = i;
+				occurrence--;
+			}
+		}
+
+		List<String> dsts = new ArrayList<String>();
+		List<String> srcs = new ArrayList<String>();
+		List<Boolean> srcsMemory = new ArrayList<Boolean>();
+		for (Instruction phi: phis){
+			Operand op = phi.getOperand(k);
+			String dst = names.get(phi.getDst());
+			if (name(op).equals(dst)) continue;
+			dsts.add(dst);
+			srcs.add(name(op));
+			srcsMemory.add(isMemory(op));
+		}
+
+		// parallel copies: emit a copy once no other copy reads its dst
+		while (!dsts.isEmpty()){
+			int ready = -1;
+			for (int i = 0; i < dsts.size() && ready < 0; i++){
+				if (!srcs.contains(dsts.get(i))) ready = i;
+			}
+			if (ready >= 0){
+				move(srcs.remove(ready), srcsMemory.remove(ready), dsts.remove(ready), out);
+			} else {
+				// a cycle: save one dst aside
+				String saved = dsts.get(0);
+				move(saved, isMemory(saved), TEMP, out);
+				for (int i = 0; i < srcs.size(); i++){
+					if (srcs.get(i).equals(saved)){
+						srcs.set(i, TEMP);
+						srcsMemory.set(i, false);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package IC.SSA;
+
+/**
+ * Error class for an invalid SSA IR (an optimization pass bug).
+ *
+ */
+
+public class IRVerificationError extends RuntimeException {
+
+	private static final long serialVersionUID = 48L;  /* impl. serializable. */
+
+
+	public IRVerificationError(String message) {
+		super(message);
+	}
+
+
+	/**
+	 * Returns error string message.
+	 */
+	@Override
+	public String toString() {
+		return ("IR verification error: " + super.getMessage());
+	}
+
+}
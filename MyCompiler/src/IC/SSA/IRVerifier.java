@@ -0,0 +1,88 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * IRVerifier
+ * ==========
+ * checks the SSA IR invariants:
+ * - every value is defined once, and its definition dominates its uses
+ * 	 (a phi operand's definition dominates the end of the matching predecessor)
+ * - phis are at the beginning of their block, with an operand per predecessor
+ * - terminators are last, and every conditional jump follows a Compare
+ * - successors match the terminators
+ */
+public class IRVerifier {
+
+	/**
+	 * verifies the given method, throws IRVerificationError on failure
+	 * @param ir
+	 */
+	public static void verify(MethodIR ir){
+		ir.computeDominators();
+		Set<Value> defined = new HashSet<Value>();
+
+		for (BasicBlock b: ir.getBlocks()){
+			List<Instruction> insts = b.getInstructions();
+			boolean phisEnded = false;
+			for (int i = 0; i < insts.size(); i++){
+				Instruction inst = insts.get(i);
+				if (inst.getBlock() != b) fail(ir, b, inst, "wrong block");
+				if (inst.isPhi()){
+					if (phisEnded) fail(ir, b, inst, "phi after a non phi instruction");
+					if (inst.getOperandCount() != b.getPredecessors().size()) fail(ir, b, inst, "phi operands mismatch predecessors");
+				} else {
+					phisEnded = true;
+				}
+				if (inst.isTerminator() && i != insts.size()-1) fail(ir, b, inst, "terminator in the middle of a block");
+				if (inst.getKind() == Instruction.Kind.COND_JUMP &&
+						(i == 0 || insts.get(i-1).getKind() != Instruction.Kind.COMPARE))
+					fail(ir, b, inst, "conditional jump without a compare");
+
+				// definition
+				if (inst.getDst() != null){
+					if (!defined.add(inst.getDst())) fail(ir, b, inst, "value defined twice");
+					if (inst.getDst().getDef() != inst) fail(ir, b, inst, "broken definition link");
+				}
+
+				// uses
+				for (int j = 0; j < inst.getOperandCount(); j++){
+					Operand op = inst.getOperand(j);
+					if (op.isName()) fail(ir, b, inst, "unrenamed operand "+op);
+					if (!op.isValue()) continue;
+					Value v = op.getValue();
+					if (!v.getUses().contains(inst)) fail(ir, b, inst, "broken use link of "+v);
+					if (v.isEntryValue()) continue;
+					Instruction def = v.getDef();
+					if (def.getBlock() == null) fail(ir, b, inst, "use of removed value "+v);
+					if (inst.isPhi()){
+						if (!def.getBlock().dominates(b.getPredecessors().get(j)))
+							fail(ir, b, inst, "phi operand "+v+" does not dominate its predecessor");
+					} else if (def.getBlock() == b){
+						if (insts.indexOf(def) >= i) fail(ir, b, inst, "use of "+v+" before its definition");
+					} else if (!def.getBlock().dominates(b)){
+						fail(ir, b, inst, "definition of "+v+" does not dominate its use");
+					}
+				}
+			}
+
+			// successors
+			Instruction term = b.getTerminator();
+			int expected = 1;
+			if (term != null){
+				switch (term.getKind()){
+				case COND_JUMP: expected = 2; break;
+				case JUMP: expected = 1; break;
+				default: expected = 0;
+				}
+			} else if (b == ir.getBlocks().get(ir.getBlocks().size()-1)){
+				expected = 0;
+			}
+			if (b.getSuccessors().size() != expected) fail(ir, b, term, "successors mismatch the terminator");
+		}
+	}
+
+	private static void fail(MethodIR ir, BasicBlock b, Instruction inst, String message){
+		throw new IRVerificationError(ir.getLabel()+", "+b.getName()+(inst != null ? " ("+inst+")" : "")+": "+message);
+	}
+}
@@ -0,0 +1,354 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * Instruction
+ * ===========
+ * an IR instruction, corresponding to a single LIR instruction (or a phi).
+ *
+ * operands layout by kind:
+ * 		MOVE:			[src]							dst
+ * 		LOAD_FIELD:		[object, offset]				dst
+ * 		STORE_FIELD:	[src, object, offset]
+ * 		LOAD_ARRAY:		[array, index]					dst
+ * 		STORE_ARRAY:	[src, array, index]
+ * 		ARRAY_LENGTH:	[array]							dst
+ * 		BINARY:			[src, previous dst value]		dst		(Add src,dst)
+ * 		UNARY:			[previous dst value]			dst		(Neg dst)
+ * 		COMPARE:		[first, second]
+ * 		JUMP, COND_JUMP: target label
+ * 		LIBRARY:		[arguments]						dst		target = library method
+ * 		STATIC_CALL:	[arguments]						dst		target = method label, formals
+ * 		VIRTUAL_CALL:	[receiver, arguments]			dst		target = method offset, formals
+ * 		RETURN:			[value]
+ * 		EXIT:			(Jump _error_exit)
+ * 		PHI:			[one operand per block predecessor]	dst
+ * a call with no dst returns into Rdummy.
+ */
+public class Instruction {
+
+	public enum Kind {
+		MOVE, LOAD_FIELD, STORE_FIELD, LOAD_ARRAY, STORE_ARRAY, ARRAY_LENGTH,
+		BINARY, UNARY, COMPARE, JUMP, COND_JUMP,
+		LIBRARY, STATIC_CALL, VIRTUAL_CALL, RETURN, EXIT, PHI
+	}
+
+	private Kind kind;
+	// LIR mnemonic (Add, JumpTrue, ...)
+	private String opcode;
+	private Operand[] operands;
+	private Value dst;
+	// LIR name of dst before renaming
+	private String dstName;
+	private String target;
+	private String[] formals;
+	// the comment line before the instruction, kept for virtual call sites (their id)
+	private String comment;
+	private BasicBlock block;
+
+	/**
+	 * constructor
+	 * @param kind
+	 * @param opcode
+	 * @param operands
+	 */
+	public Instruction(Kind kind, String opcode, Operand[] operands){
+		this.kind = kind;
+		this.opcode = opcode;
+		this.operands = operands;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getOpcode() {
+		return opcode;
+	}
+
+	public int getOperandCount(){
+		return operands.length;
+	}
+
+	public Operand getOperand(int i){
+		return operands[i];
+	}
+
+	/**
+	 * replaces an operand, keeping the def-use chains
+	 * @param i
+	 * @param op
+	 */
+	public void setOperand(int i, Operand op){
+		if (operands[i] != null && operands[i].isValue()){
+			operands[i].getValue().getUses().remove(this);
+		}
+		operands[i] = op;
+		if (op.isValue()){
+			op.getValue().getUses().add(this);
+		}
+	}
+
+	public Value getDst() {
+		return dst;
+	}
+
+	/**
+	 * sets the defined value, keeping the def-use chains
+	 * @param dst
+	 */
+	public void setDst(Value dst) {
+		this.dst = dst;
+		if (dst != null) dst.setDef(this);
+	}
+
+	public String getDstName() {
+		return dstName;
+	}
+
+	public void setDstName(String dstName) {
+		this.dstName = dstName;
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public void setTarget(String target) {
+		this.target = target;
+	}
+
+	public String[] getFormals() {
+		return formals;
+	}
+
+	public void setFormals(String[] formals) {
+		this.formals = formals;
+	}
+
+	public String getComment() {
+		return comment;
+	}
+
+	public void setComment(String comment) {
+		this.comment = comment;
+	}
+
+	public BasicBlock getBlock() {
+		return block;
+	}
+
+	public void setBlock(BasicBlock block) {
+		this.block = block;
+	}
+
+	/**
+	 * turns this instruction into "Move src,dst", keeping dst
+	 * @param src
+	 */
+	public void replaceWithMove(Operand src){
+		detachOperands();
+		kind = Kind.MOVE;
+		opcode = "Move";
+		operands = new Operand[1];
+		setOperand(0, src);
+	}
+
+	/**
+	 * removes this instruction from its block and from the def-use chains
+	 */
+	public void remove(){
+		detachOperands();
+		block.getInstructions().remove(this);
+		block = null;
+	}
+
+	/**
+	 * removes the given instructions from their blocks and from the def-use chains
+	 * (every block and every value's uses are filtered once: removing the instructions
+	 * one at a time would take time linear in their block, and in their values' uses)
+	 * @param instructions
+	 */
+	public static void removeAll(Collection<Instruction> instructions){
+		if (instructions.isEmpty()) return;
+		Set<Instruction> removed = new HashSet<Instruction>(instructions);
+		Set<BasicBlock> blocks = new LinkedHashSet<BasicBlock>();
+		Set<Value> values = new LinkedHashSet<Value>();
+		for (Instruction inst: removed){
+			blocks.add(inst.block);
+			for (int i = 0; i < inst.operands.length; i++){
+				if (inst.operands[i] != null && inst.operands[i].isValue()){
+					values.add(inst.operands[i].getValue());
+				}
+			}
+		}
+		for (BasicBlock b: blocks){
+			b.getInstructions().removeAll(removed);
+		}
+		for (Value v: values){
+			v.getUses().removeAll(removed);
+		}
+		for (Instruction inst: removed){
+			inst.block = null;
+		}
+	}
+
+	private void detachOperands(){
+		for (int i = 0; i < operands.length; i++){
+			if (operands[i] != null && operands[i].isValue()){
+				operands[i].getValue().getUses().remove(this);
+			}
+		}
+	}
+
+	/**
+	 * returns the indices of the operands using the given value
+	 * @param value
+	 * @return
+	 */
+	public List<Integer> getOperandIndices(Value value){
+		List<Integer> indices = new ArrayList<Integer>();
+		for (int i = 0; i < operands.length; i++){
+			if (operands[i].isValue() && operands[i].getValue() == value) indices.add(i);
+		}
+		return indices;
+	}
+
+	/**
+	 * checks if the given operand may replace operand i, according to the
+	 * LIR operand rules (e.g. no memory to memory moves, registers only as
+	 * call arguments and as field / array bases)
+	 * @param i
+	 * @param op
+	 * @return
+	 */
+	public boolean canUse(int i, Operand op){
+		boolean reg = op.isRegister();
+		boolean imm = op.isConstant();
+		switch (kind){
+		case MOVE:
+			return canUseAsMove(op);
+		case LOAD_FIELD:
+			return i == 0 ? reg : op.isIntConstant();
+		case STORE_FIELD:
+			return i == 0 ? (reg || imm) : (i == 1 ? reg : op.isIntConstant());
+		case LOAD_ARRAY:
+			return i == 0 ? reg : (reg || imm);
+		case STORE_ARRAY:
+			return i == 1 ? reg : (reg || imm);
+		case ARRAY_LENGTH:
+			return reg;
+		case BINARY:
+			return !(i == 0 && op.isMemory() && dst != null && !dst.isRegister());
+		case COMPARE:
+			return i == 0 ? true : reg;
+		case LIBRARY:
+		case STATIC_CALL:
+		case VIRTUAL_CALL:
+			return reg;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * checks if this instruction's dst may be set by "Move op,dst"
+	 * @param op
+	 * @return
+	 */
+	public boolean canUseAsMove(Operand op){
+		return !(op.isMemory() && dst != null && !dst.isRegister());
+	}
+
+	/**
+	 * checks if this instruction ends a basic block
+	 * @return
+	 */
+	public boolean isTerminator(){
+		return kind == Kind.JUMP || kind == Kind.COND_JUMP || kind == Kind.RETURN || kind == Kind.EXIT;
+	}
+
+	public boolean isPhi(){
+		return kind == Kind.PHI;
+	}
+
+	/**
+	 * checks if this is a runtime check call (__checkNullRef, __checkArrayAccess, ...)
+	 * @return
+	 */
+	public boolean isRuntimeCheck(){
+		return kind == Kind.STATIC_CALL && target.startsWith("__check");
+	}
+
+	/**
+	 * returns the argument passed to the given formal of a call, or null
+	 * @param formal
+	 * @return
+	 */
+	public Operand getArgument(String formal){
+		int first = kind == Kind.VIRTUAL_CALL ? 1 : 0;
+		for (int i = 0; i < formals.length; i++){
+			if (formals[i].equals(formal)) return operands[first+i];
+		}
+		return null;
+	}
+
+	/**
+	 * returns the IR representation of the instruction
+	 */
+	public String toString(){
+		String dstStr = dst != null ? dst.toString() : (dstName != null ? dstName : "Rdummy");
+		String str = "";
+		switch (kind){
+		case PHI:
+			str = dstStr+" = phi(";
+			for (int i = 0; i < operands.length; i++){
+				str += (i > 0 ? ", " : "")+operands[i]+" from "+block.getPredecessors().get(i).getName();
+			}
+			return str+")";
+		case MOVE:
+		case ARRAY_LENGTH:
+			return opcode+" "+operands[0]+","+dstStr;
+		case LOAD_FIELD:
+			return opcode+" "+operands[0]+"."+operands[1]+","+dstStr;
+		case STORE_FIELD:
+			return opcode+" "+operands[0]+","+operands[1]+"."+operands[2];
+		case LOAD_ARRAY:
+			return opcode+" "+operands[0]+"["+operands[1]+"],"+dstStr;
+		case STORE_ARRAY:
+			return opcode+" "+operands[0]+","+operands[1]+"["+operands[2]+"]";
+		case BINARY:
+			return dstStr+" = "+opcode+" "+operands[0]+","+operands[1];
+		case UNARY:
+			return dstStr+" = "+opcode+" "+operands[0];
+		case COMPARE:
+			return opcode+" "+operands[0]+","+operands[1];
+		case JUMP:
+		case COND_JUMP:
+			return opcode+" "+target;
+		case EXIT:
+			return "Jump _error_exit";
+		case RETURN:
+			return opcode+" "+operands[0];
+		case LIBRARY:
+		case STATIC_CALL:
+		case VIRTUAL_CALL:
+			str = opcode+" ";
+			int first = 0;
+			if (kind == Kind.VIRTUAL_CALL){
+				str += operands[0]+".";
+				first = 1;
+			}
+			str += target+"(";
+			for (int i = first; i < operands.length; i++){
+				if (i > first) str += ",";
+				if (formals != null) str += formals[i-first]+"=";
+				str += operands[i];
+			}
+			return str+"),"+dstStr;
+		default:
+			return opcode;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * MethodIR
+ * ========
+ * the SSA form of a single LIR method: its control flow graph
+ * (blocks in LIR layout order, the first one being an empty entry block)
+ * and its values.
+ */
+public class MethodIR {
+
+	private String label;
+	private List<BasicBlock> blocks = new ArrayList<BasicBlock>();
+	private Map<String,Value> entryValues = new LinkedHashMap<String,Value>();
+	private Map<String,Integer> versions = new HashMap<String,Integer>();
+	private boolean dominatorsValid = false;
+
+	/**
+	 * constructor
+	 * @param label: the method's LIR label
+	 */
+	public MethodIR(String label){
+		this.label = label;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public List<BasicBlock> getBlocks() {
+		return blocks;
+	}
+
+	public BasicBlock getEntry(){
+		return blocks.get(0);
+	}
+
+	/**
+	 * returns the value of the given name on method entry
+	 * @param base
+	 * @return
+	 */
+	public Value getEntryValue(String base){
+		Value v = entryValues.get(base);
+		if (v == null){
+			v = new Value(base, 0);
+			entryValues.put(base, v);
+			versions.put(base, 0);
+		}
+		return v;
+	}
+
+	public Collection<Value> getEntryValues(){
+		return entryValues.values();
+	}
+
+	/**
+	 * creates a new version of the given name
+	 * @param base
+	 * @return
+	 */
+	public Value newValue(String base){
+		getEntryValue(base);
+		int version = versions.get(base)+1;
+		versions.put(base, version);
+		return new Value(base, version);
+	}
+
+	/**
+	 * computes the dominator tree (if the control flow graph changed since last computed)
+	 */
+	public void computeDominators(){
+		if (!dominatorsValid){
+			new DominatorTree(this).compute();
+			dominatorsValid = true;
+		}
+	}
+
+	/**
+	 * to be called whenever blocks or edges change
+	 */
+	public void invalidateDominators(){
+		dominatorsValid = false;
+	}
+
+	/**
+	 * returns the number of (non phi) instructions
+	 * @return
+	 */
+	public int getInstructionCount(){
+		int count = 0;
+		for (BasicBlock b: blocks){
+			for (Instruction inst: b.getInstructions()){
+				if (!inst.isPhi()) count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * returns the number of runtime check calls
+	 * @return
+	 */
+	public int getRuntimeCheckCount(){
+		int count = 0;
+		for (BasicBlock b: blocks){
+			for (Instruction inst: b.getInstructions()){
+				if (inst.isRuntimeCheck()) count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * returns all instructions, block by block
+	 * @return
+	 */
+	public List<Instruction> getAllInstructions(){
+		List<Instruction> all = new ArrayList<Instruction>();
+		for (BasicBlock b: blocks){
+			all.addAll(b.getInstructions());
+		}
+		return all;
+	}
+
+	/**
+	 * returns a printable representation of the IR
+	 */
+	public String toString(){
+		StringBuilder str = new StringBuilder("method "+label+":\n");
+		for (BasicBlock b: blocks){
+			str.append(b.getName());
+			if (b.getLabel() != null) str.append(" (").append(b.getLabel()).append(")");
+			str.append(":  preds [");
+			for (int i = 0; i < b.getPredecessors().size(); i++){
+				str.append(i > 0 ? " " : "").append(b.getPredecessors().get(i).getName());
+			}
+			str.append("]  succs [");
+			for (int i = 0; i < b.getSuccessors().size(); i++){
+				str.append(i > 0 ? " " : "").append(b.getSuccessors().get(i).getName());
+			}
+			str.append("]");
+			if (b.getIdom() != null) str.append("  idom ").append(b.getIdom().getName());
+			str.append("\n");
+			for (Instruction inst: b.getInstructions()){
+				str.append("\t").append(inst).append("\n");
+			}
+		}
+		return str.toString();
+	}
+}
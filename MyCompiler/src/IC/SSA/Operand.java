@@ -0,0 +1,127 @@
+package IC.SSA;
+
+/**
+ * Operand
+ * =======
+ * an instruction operand: either a constant (integer, string literal label
+ * or dispatch table label) or an SSA value.
+ * while the IR is being built, operands refer to LIR names that are
+ * resolved to values when renaming to SSA form.
+ */
+public class Operand {
+
+	private String constant;
+	private String name;
+	private Value value;
+
+	private Operand(String constant, String name, Value value){
+		this.constant = constant;
+		this.name = name;
+		this.value = value;
+	}
+
+	/**
+	 * returns a constant operand (as written in LIR)
+	 */
+	public static Operand constant(String text){
+		return new Operand(text, null, null);
+	}
+
+	/**
+	 * returns an integer constant operand
+	 */
+	public static Operand constant(int val){
+		return new Operand(Integer.toString(val), null, null);
+	}
+
+	/**
+	 * returns an operand referring to a (not yet renamed) LIR name
+	 */
+	public static Operand name(String name){
+		return new Operand(null, name, null);
+	}
+
+	/**
+	 * returns an operand referring to an SSA value
+	 */
+	public static Operand value(Value value){
+		return new Operand(null, null, value);
+	}
+
+	public boolean isConstant(){
+		return constant != null;
+	}
+
+	public boolean isName(){
+		return name != null;
+	}
+
+	public boolean isValue(){
+		return value != null;
+	}
+
+	/**
+	 * checks if this is an integer constant (and not a label)
+	 * @return
+	 */
+	public boolean isIntConstant(){
+		if (constant == null) return false;
+		char c = constant.charAt(0);
+		return c == '-' || Character.isDigit(c);
+	}
+
+	/**
+	 * returns the value of an integer constant (32-bit wrap around, as the target)
+	 * @return
+	 */
+	public int getIntValue(){
+		return (int) Long.parseLong(constant);
+	}
+
+	public String getConstant() {
+		return constant;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Value getValue() {
+		return value;
+	}
+
+	/**
+	 * checks if this operand is a register (or a name of a register, before renaming)
+	 * @return
+	 */
+	public boolean isRegister(){
+		if (value != null) return value.isRegister();
+		if (name != null) return Value.isRegisterName(name);
+		return false;
+	}
+
+	/**
+	 * checks if this operand is a LIR memory location (a variable)
+	 * @return
+	 */
+	public boolean isMemory(){
+		return !isConstant() && !isRegister();
+	}
+
+	/**
+	 * checks if both operands are the same constant or the same value
+	 * @param other
+	 * @return
+	 */
+	public boolean sameAs(Operand other){
+		if (constant != null) return constant.equals(other.constant);
+		if (value != null) return value == other.value;
+		return name.equals(other.name);
+	}
+
+	public String toString(){
+		if (constant != null) return constant;
+		if (value != null) return value.toString();
+		return name;
+	}
+}
@@ -0,0 +1,19 @@
+package IC.SSA;
+
+/**
+ * an optimization pass over the SSA IR of a single method.
+ */
+public interface Pass {
+
+	/**
+	 * returns the pass name (for statistics and dumps)
+	 */
+	public String getName();
+
+	/**
+	 * runs the pass on the given method
+	 * @param ir
+	 * @return true iff the IR was changed
+	 */
+	public boolean run(MethodIR ir);
+}
@@ -0,0 +1,89 @@
+package IC.SSA;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * PassManager
+ * ===========
+ * runs a sequence of passes over a method, repeating the whole sequence
+ * until no pass changes the IR (or the iterations limit is reached).
+ * optionally verifies the IR after every pass and dumps it between passes.
+ */
+public class PassManager {
+
+	// iterations limit of the passes sequence, per method
+	private static final int MAX_ITERATIONS = 10;
+
+	private List<Pass> passes = new ArrayList<Pass>();
+	private Map<String,PassStatistics> statistics = new LinkedHashMap<String,PassStatistics>();
+	private boolean verify = false;
+	private PrintStream dump = null;
+
+	/**
+	 * adds a pass to the end of the sequence
+	 * @param pass
+	 */
+	public void addPass(Pass pass){
+		passes.add(pass);
+		if (!statistics.containsKey(pass.getName()))
+			statistics.put(pass.getName(), new PassStatistics(pass.getName()));
+	}
+
+	/**
+	 * verify the IR after every pass
+	 * @param verify
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	/**
+	 * dump the IR to the given stream before and after every pass (null for no dumps)
+	 * @param dump
+	 */
+	public void setDump(PrintStream dump) {
+		this.dump = dump;
+	}
+
+	/**
+	 * returns the statistics of every pass, in the passes order
+	 * @return
+	 */
+	public Collection<PassStatistics> getStatistics(){
+		return statistics.values();
+	}
+
+	/**
+	 * runs the passes on the given method
+	 * @param ir
+	 * @return true iff the IR was changed
+	 */
+	public boolean run(MethodIR ir){
+		if (verify) IRVerifier.verify(ir);
+		if (dump != null) dump.println("# SSA of "+ir.getLabel()+"\n"+ir);
+
+		boolean changed = false;
+		for (int i = 0; i < MAX_ITERATIONS; i++){
+			boolean iterationChanged = false;
+			for (Pass pass: passes){
+				int instructions = ir.getInstructionCount();
+				int checks = ir.getRuntimeCheckCount();
+				long start = System.nanoTime();
+				boolean passChanged = pass.run(ir);
+				long time = System.nanoTime()-start;
+				statistics.get(pass.getName()).addRun(passChanged, time,
+						instructions-ir.getInstructionCount(), checks-ir.getRuntimeCheckCount());
+
+				if (passChanged){
+					iterationChanged = true;
+					if (verify) IRVerifier.verify(ir);
+					if (dump != null) dump.println("# after "+pass.getName()+"\n"+ir);
+				}
+			}
+			if (!iterationChanged) break;
+			changed = true;
+		}
+		return changed;
+	}
+}
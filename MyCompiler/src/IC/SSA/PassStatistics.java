@@ -0,0 +1,71 @@
+package IC.SSA;
+
+/**
+ * PassStatistics
+ * ==============
+ * accumulated statistics of a single pass, over all the methods it ran on.
+ */
+public class PassStatistics {
+
+	private String name;
+	private int runs = 0;
+	private int changingRuns = 0;
+	private long time = 0;
+	private int instructionsRemoved = 0;
+	private int checksRemoved = 0;
+
+	/**
+	 * constructor
+	 * @param name: the pass name
+	 */
+	public PassStatistics(String name){
+		this.name = name;
+	}
+
+	/**
+	 * records a single run of the pass
+	 * @param changed: whether the run changed the IR
+	 * @param time: run time, in nanoseconds
+	 * @param instructionsRemoved
+	 * @param checksRemoved
+	 */
+	public void addRun(boolean changed, long time, int instructionsRemoved, int checksRemoved){
+		runs++;
+		if (changed) changingRuns++;
+		this.time += time;
+		this.instructionsRemoved += instructionsRemoved;
+		this.checksRemoved += checksRemoved;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getRuns() {
+		return runs;
+	}
+
+	public int getChangingRuns() {
+		return changingRuns;
+	}
+
+	/**
+	 * total run time, in nanoseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	public int getInstructionsRemoved() {
+		return instructionsRemoved;
+	}
+
+	public int getChecksRemoved() {
+		return checksRemoved;
+	}
+
+	public String toString(){
+		return name+": "+runs+" runs ("+changingRuns+" changed), "+instructionsRemoved+" instructions removed, "+
+			checksRemoved+" runtime checks removed, "+(time/1000)+" us";
+	}
+}
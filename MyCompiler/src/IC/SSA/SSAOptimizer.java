@@ -0,0 +1,142 @@
+package IC.SSA;
+
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * SSAOptimizer
+ * ============
+ * optimizes a whole LIR program through the SSA IR, method by method:
+ * each method is built into SSA form, run through the pass manager and
+ * lowered back to LIR. the program header (string literals, dispatch tables),
+ * the runtime checks and the error exit label are kept as they are, and so is
+ * any method that cannot be converted.
+ */
+public class SSAOptimizer {
+
+	private PassManager passManager;
+	private int methodsOptimized = 0;
+	private int methodsSkipped = 0;
+
+	/**
+	 * constructor
+	 * @param passManager: the passes to run on every method
+	 */
+	public SSAOptimizer(PassManager passManager){
+		this.passManager = passManager;
+	}
+
+	/**
+	 * returns a pass manager with the default passes
+	 * @param verify: verify the IR after every pass
+	 * @param dump: stream to dump the IR to between passes (null for no dumps)
+	 * @return
+	 */
+	public static PassManager createDefaultPassManager(boolean verify, PrintStream dump){
+		PassManager pm = new PassManager();
+		pm.addPass(new CopyPropagationPass());
+		pm.addPass(new CheckEliminationPass());
+		pm.addPass(new DeadCodeEliminationPass());
+		pm.setVerify(verify);
+		pm.setDump(dump);
+		return pm;
+	}
+
+	public PassManager getPassManager() {
+		return passManager;
+	}
+
+	public int getMethodsOptimized() {
+		return methodsOptimized;
+	}
+
+	public int getMethodsSkipped() {
+		return methodsSkipped;
+	}
+
+	/**
+	 * optimizes the given LIR program
+	 * @param lir: the LIR program code
+	 * @return the optimized LIR program code
+	 */
+	public String optimize(String lir){
+		String[] lines = lir.split("\n", -1);
+		Set<String> constantLabels = new HashSet<String>();
+		Set<String> methodLabels = new HashSet<String>();
+		methodLabels.add("_ic_main");
+
+		// (1) collect string literal / dispatch table labels and called methods
+		for (String line: lines){
+			line = line.trim();
+			int colon = line.indexOf(':');
+			if (line.startsWith("StaticCall")){
+				int open = line.indexOf('(');
+				if (open > 0) methodLabels.add(line.substring("StaticCall".length(), open).trim());
+			} else if (!line.startsWith("#") && colon > 0 && colon < line.length()-1){
+				// "str0: ..." or "_DV_A: [_A_foo,_A_bar]"
+				String label = line.substring(0, colon);
+				constantLabels.add(label);
+				if (label.startsWith("_DV_")){
+					String methods = line.substring(colon+1).trim();
+					if (methods.startsWith("[") && methods.endsWith("]")){
+						for (String m: methods.substring(1, methods.length()-1).split(",")){
+							if (m.trim().length() > 0) methodLabels.add(m.trim());
+						}
+					}
+				}
+			}
+		}
+
+		// (2) split to chunks, each starting at a method, runtime check or error exit label
+		List<String> chunkLabels = new ArrayList<String>();
+		List<List<String>> chunks = new ArrayList<List<String>>();
+		List<String> curr = new ArrayList<String>();
+		chunkLabels.add(null); // the header
+		chunks.add(curr);
+		for (String line: lines){
+			String trimmed = line.trim();
+			if (trimmed.endsWith(":") && !trimmed.startsWith("#")){
+				String label = trimmed.substring(0, trimmed.length()-1);
+				if (methodLabels.contains(label) || label.startsWith("__") || label.equals("_error_exit")){
+					curr = new ArrayList<String>();
+					chunkLabels.add(label);
+					chunks.add(curr);
+					continue;
+				}
+			}
+			curr.add(line);
+		}
+
+		// (3) optimize the methods
+		IRBuilder builder = new IRBuilder(constantLabels);
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < chunks.size(); i++){
+			String label = chunkLabels.get(i);
+			List<String> chunk = chunks.get(i);
+			if (label != null && !label.startsWith("__") && methodLabels.contains(label)){
+				// trailing blank lines and comments belong to what follows
+				int end = chunk.size();
+				while (end > 0 && (chunk.get(end-1).trim().length() == 0 || chunk.get(end-1).trim().startsWith("#"))) end--;
+				String fallOffLabel = i+1 < chunks.size() ? chunkLabels.get(i+1) : null;
+				try {
+					MethodIR ir = builder.build(label, chunk.subList(0, end));
+					passManager.run(ir);
+					result.append(new IRLowering(ir, fallOffLabel).lower());
+					for (String line: chunk.subList(end, chunk.size())){
+						result.append(line).append('\n');
+					}
+					methodsOptimized++;
+					continue;
+				} catch (IRConstructionError e){
+					methodsSkipped++;
+				}
+			}
+			if (label != null) result.append(label).append(":\n");
+			for (int j = 0; j < chunk.size(); j++){
+				result.append(chunk.get(j));
+				if (i < chunks.size()-1 || j < chunk.size()-1) result.append('\n');
+			}
+		}
+		return result.toString();
+	}
+}
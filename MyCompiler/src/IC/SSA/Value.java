@@ -0,0 +1,78 @@
+package IC.SSA;
+
+import java.util.*;
+
+/**
+ * Value
+ * =====
+ * an SSA value: a single definition of a LIR register or variable.
+ * version 0 is the value the name holds on method entry
+ * (formals, this, or undefined), and has no defining instruction.
+ */
+public class Value {
+
+	private String base;
+	private int version;
+	private Instruction def;
+	private List<Instruction> uses = new ArrayList<Instruction>();
+
+	/**
+	 * constructor
+	 * @param base: the LIR register / variable name
+	 * @param version
+	 */
+	public Value(String base, int version){
+		this.base = base;
+		this.version = version;
+	}
+
+	public String getBase() {
+		return base;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public Instruction getDef() {
+		return def;
+	}
+
+	public void setDef(Instruction def) {
+		this.def = def;
+	}
+
+	public List<Instruction> getUses() {
+		return uses;
+	}
+
+	/**
+	 * registers (R0, Rdummy, ...) vs. memory (local variables, formals, this)
+	 * @return
+	 */
+	public boolean isRegister(){
+		return isRegisterName(base);
+	}
+
+	/**
+	 * checks if the given LIR name is a register name
+	 * (IC variables always start with a lower case letter)
+	 * @param name
+	 * @return
+	 */
+	public static boolean isRegisterName(String name){
+		return name.startsWith("R");
+	}
+
+	/**
+	 * checks if this is the entry value of its name
+	 * @return
+	 */
+	public boolean isEntryValue(){
+		return def == null;
+	}
+
+	public String toString(){
+		return base+"#"+version;
+	}
+}
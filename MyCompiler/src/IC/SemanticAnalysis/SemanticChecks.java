@@ -29,6 +29,8 @@ public class SemanticChecks implements Visitor {
 	
 	//to know when we got to visit Literal form MathUnaryOp, and check integer literal range correctly.
 	private boolean negativeIntLiteral = false;  
+	
+	private String sourceFile = null;  //of the class checked, in a program of several files.
 
 	/**
 	 * Constructor.
@@ -45,7 +47,18 @@ public class SemanticChecks implements Visitor {
 	 * 
 	 */
 	public Object visit(Program program) {
-		for (ICClass c : program.getClasses()) {
+		return checkClasses(program.getClasses());
+	}
+	
+	
+	/**
+	 * Recursive visit in the given classes of the program only (an incremental build
+	 * checks the classes that changed, see IC.Cache.IncrementalBuild).
+	 * Checks if class hierarchy has 'main' method.
+	 * 
+	 */
+	public Object checkClasses(Collection<ICClass> classes) {
+		for (ICClass c : classes) {
 			if (c.accept(this) == null) {
 				return null;
 			}
@@ -54,7 +67,7 @@ public class SemanticChecks implements Visitor {
 		//at this stage, due to recursive visits, we've visited everywhere.
 		//so, we can check existence of 'main' method.
 		if (this.GST.hasMainMethod() == false) {
-			System.out.println(new SemanticError("Class hierarchy doesn't have main method",1,"main"));
+			report(new SemanticError("Class hierarchy doesn't have main method",1,"main"));
 			return null;
 		}
 		
@@ -67,14 +80,27 @@ public class SemanticChecks implements Visitor {
 	 * 
 	 */
 	public Object visit(ICClass icClass) {
+		String enclosingFile = sourceFile;
+		sourceFile = icClass.getSourceFile();
 		for (Method m : icClass.getMethods()) {
 			if (m.accept(this) == null) {
 				return null;
 			}
 		}
+		sourceFile = enclosingFile;
 		
 		return true;
 	}
+	
+	
+	/**
+	 * Prints a semantic error, after the source file of the class checked (if known).
+	 * 
+	 */
+	private void report(SemanticError se) {
+		se.setFile(sourceFile);
+		System.out.println(se);
+	}
 
 	
 	/**
@@ -168,7 +194,7 @@ public class SemanticChecks implements Visitor {
 
 		//Type check - checks if LHS and RHS types fit.
 		if (!ass.subtypeof(loc)) {
-			System.out.println(new SemanticError("Types mismatch, not of type " + loc.getName(), assignment.getLine(), ass.getName()));
+			report(new SemanticError("Types mismatch, not of type " + loc.getName(), assignment.getLine(), ass.getName()));
 			return null;
 		}
 
@@ -218,7 +244,7 @@ public class SemanticChecks implements Visitor {
 		IC.TypeTable.Type methReturnType = ((BlockSymbolTable)(returnStatement.getEnclosingScope())).getReturnType();
 
 		if (!returnedType.subtypeof(methReturnType)) {
-			System.out.println(new SemanticError("Types mismatch, not of type " + methReturnType.getName(), 
+			report(new SemanticError("Types mismatch, not of type " + methReturnType.getName(), 
 															returnStatement.getLine(), returnedType.getName()));
 			return null;
 		}
@@ -241,7 +267,7 @@ public class SemanticChecks implements Visitor {
 		//Type check - checks that the condition is of type boolean.
 		try {
 			if (!condType.subtypeof(IC.TypeTable.TypeTable.getType("boolean"))) {
-				System.out.println(new SemanticError("Condition in If statement is not of type boolean",
+				report(new SemanticError("Condition in If statement is not of type boolean",
 											ifStatement.getCondition().getLine(), condType.getName()));
 				return null;
 			}
@@ -279,7 +305,7 @@ public class SemanticChecks implements Visitor {
 		//Type check - checks that the condition is of type boolean.
 		try {
 			if (!condType.subtypeof(IC.TypeTable.TypeTable.getType("boolean"))) {
-				System.out.println(new SemanticError("Condition in While statement not of type boolean",
+				report(new SemanticError("Condition in While statement not of type boolean",
 										whileStatement.getLine(), condType.getName()));
 				return null;
 			}
@@ -307,7 +333,7 @@ public class SemanticChecks implements Visitor {
 	public Object visit(Break breakStatement) {
 		
 		if (insideLoop == 0) {  //not inside while.
-			System.out.println(new SemanticError("Break statement outside of a loop", breakStatement.getLine(), "break"));
+			report(new SemanticError("Break statement outside of a loop", breakStatement.getLine(), "break"));
 			return null;
 		}
 
@@ -322,7 +348,7 @@ public class SemanticChecks implements Visitor {
 	public Object visit(Continue continueStatement) {
 		
 		if (insideLoop == 0) {   //not inside while.
-			System.out.println(new SemanticError("Continue statement outside of a loop", continueStatement.getLine(), "continue"));
+			report(new SemanticError("Continue statement outside of a loop", continueStatement.getLine(), "continue"));
 			return null;
 		}
 
@@ -362,10 +388,10 @@ public class SemanticChecks implements Visitor {
 			try {
 				//Type check - checks that the initValue type fits to variable's type.
 				IC.TypeTable.Type localVarType = 
-						((BlockSymbolTable)localVariable.getEnclosingScope()).lookupVariable(localVariable.getName()).getType();
+						((BlockSymbolTable)localVariable.getEnclosingScope()).lookupVariable(localVariable.getIdentifier()).getType();
 
 				if (!initValueType.subtypeof(localVarType)) {
-					System.out.println(new SemanticError("Types mismatch, not of type " + localVarType.getName(),
+					report(new SemanticError("Types mismatch, not of type " + localVarType.getName(),
 												localVariable.getLine(), initValueType.getName()));
 					
 					return null;
@@ -401,16 +427,16 @@ public class SemanticChecks implements Visitor {
 				
 				IC.SymbolTable.ClassSymbolTable cst = this.GST.lookupCST(locationType.getName());
 					
-				FieldSymbol fs = (FieldSymbol)(cst.lookup(location.getName()));
+				FieldSymbol fs = (FieldSymbol)(cst.lookup(location.getIdentifier()));
 				
 				if (fs == null) {
-					System.out.println(new SemanticError("Symbol cannot be resolved", location.getLine(), location.getName()));						return null;
+					report(new SemanticError("Symbol cannot be resolved", location.getLine(), location.getName()));						return null;
 				} else {
 					return fs.getType();   //return the type of the field.
 				}
 						
 			} catch (SemanticError se) {
-				System.out.println(new SemanticError("Location of type " + locationType.getName() + " does not have a field",
+				report(new SemanticError("Location of type " + locationType.getName() + " does not have a field",
 															location.getLine(), location.getName()));
 				return null;
 			}
@@ -421,13 +447,13 @@ public class SemanticChecks implements Visitor {
 			
 			//to deal with shadowing.
 			if (location.getVarDeclarationScope() == null) {
-				System.out.println(new SemanticError("Symbol cannot be resolved", location.getLine(), location.getName()));
+				report(new SemanticError("Symbol cannot be resolved", location.getLine(), location.getName()));
 				return null;
 			}
 			
-			IC.TypeTable.Type variableType = location.getVarDeclarationScope().lookup(location.getName()).getType();
+			IC.TypeTable.Type variableType = location.getVarDeclarationScope().lookup(location.getIdentifier()).getType();
 			if (variableType == null) {  //never true.
-				System.out.println(new SemanticError("Symbol cannot be resolved", location.getLine(), location.getName()));
+				report(new SemanticError("Symbol cannot be resolved", location.getLine(), location.getName()));
 				return null;
 			}
 
@@ -450,7 +476,7 @@ public class SemanticChecks implements Visitor {
 		}
 		
 		if (!arrayType.getName().endsWith("[]")) {
-			System.out.println(new SemanticError("Using [n] syntax on non-array type", 
+			report(new SemanticError("Using [n] syntax on non-array type", 
 					location.getLine(), arrayType.getName()));
 			return null;
 		}
@@ -463,7 +489,7 @@ public class SemanticChecks implements Visitor {
 		//checks that index is integer.
 		try {
 			if (!indexType.subtypeof(IC.TypeTable.TypeTable.getType("int"))) {
-				System.out.println(new SemanticError("The index of array must be of type int", 
+				report(new SemanticError("The index of array must be of type int", 
 											location.getLine(), arrayType.getName()));
 				return null;
 			}
@@ -486,20 +512,20 @@ public class SemanticChecks implements Visitor {
 		
 		IC.SymbolTable.ClassSymbolTable cst;
 		try {  //check if class of the call exists.
-			cst = GST.lookupCST(call.getClassName());
+			cst = GST.lookupCST(call.getClassIdentifier());
 		} catch (SemanticError se) {
 			se.setLine(call.getLine());
-			System.out.println(se);
+			report(se);
 			return null;
 		}
 		
 		//Check that method is defined in enclosing class.
 		try {
-			MethodSymbol method = (MethodSymbol)cst.getMethod(call.getName()); //jump to catch if not found.
+			MethodSymbol method = (MethodSymbol)cst.getMethod(call.getIdentifier()); //jump to catch if not found.
 			
 			//check if static.
 			if (!method.isStaticMethod()) {
-				System.out.println(new SemanticError("Method is not static", call.getLine(), call.getName()));
+				report(new SemanticError("Method is not static", call.getLine(), call.getName()));
 				return null;
 			}
 			
@@ -510,7 +536,7 @@ public class SemanticChecks implements Visitor {
 			
 			//number of parameters and arguments isn't the same.
 			if (call.getArguments().size() != methodParamsTypes.size()) {
-				System.out.println(new SemanticError("Wrong number of arguments passed to method", 
+				report(new SemanticError("Wrong number of arguments passed to method", 
 												call.getLine(), call.getName()));
 				return null;
 			}
@@ -527,7 +553,7 @@ public class SemanticChecks implements Visitor {
 
 				//wrong argument type.
 				if (!argType.subtypeof(methodParamsTypes.get(i))) {
-					System.out.println(new SemanticError("Wrong argument type passed to method", 
+					report(new SemanticError("Wrong argument type passed to method", 
 													call.getLine(), argType.getName()));
 					return null;
 				}
@@ -539,7 +565,7 @@ public class SemanticChecks implements Visitor {
 			
 		} catch (SemanticError se) {  //method not found.
 			se.setLine(call.getLine());
-			System.out.println(se);
+			report(se);
 			return null;
 			
 		} 
@@ -569,7 +595,7 @@ public class SemanticChecks implements Visitor {
 			try {
 				cst = GST.lookupCST(locType.getName()); 
 			} catch (SemanticError se) {
-				System.out.println(new SemanticError("Location is not of user defined type", 
+				report(new SemanticError("Location is not of user defined type", 
 											call.getLine(), locType.getName()));
 				return null;
 			}
@@ -579,21 +605,21 @@ public class SemanticChecks implements Visitor {
 		}
 
 		try {
-			ms = (MethodSymbol)cst.getMethod(call.getName());  //jump to catch if not found.
+			ms = (MethodSymbol)cst.getMethod(call.getIdentifier());  //jump to catch if not found.
 		} catch (SemanticError se) {
 			se.setLine(call.getLine());
-			System.out.println(se);
+			report(se);
 			return null;
 		}
 
 		if (!call.isExternal() && insideStatic && !(ms.isStaticMethod())) {
-			System.out.println(new SemanticError("Calling virtual method from static scope", 
+			report(new SemanticError("Calling virtual method from static scope", 
 										call.getLine(), call.getName()));
 			return null;
 		}
 		
 		if (call.isExternal() && ms.isStaticMethod()) {
-			System.out.println(new SemanticError("External call to static method", 
+			report(new SemanticError("External call to static method", 
 										call.getLine(), call.getName()));
 			return null;
 		}
@@ -605,7 +631,7 @@ public class SemanticChecks implements Visitor {
 		
 		//number of parameters and arguments isn't the same.
 		if (call.getArguments().size() != methodParamsTypes.size()) {
-			System.out.println(new SemanticError("Wrong number of arguments passed to method", 
+			report(new SemanticError("Wrong number of arguments passed to method", 
 											call.getLine(), call.getName()));
 			return null;
 		}
@@ -622,7 +648,7 @@ public class SemanticChecks implements Visitor {
 
 			//wrong argument type.
 			if (!argType.subtypeof(methodParamsTypes.get(i))) {
-				System.out.println(new SemanticError("Wrong argument type passed to method", 
+				report(new SemanticError("Wrong argument type passed to method", 
 												call.getLine(), argType.getName()));
 				return null;
 			}
@@ -640,7 +666,7 @@ public class SemanticChecks implements Visitor {
 	 */
 	public Object visit(This thisExpression) {
 		if (insideStatic) {
-			System.out.println(new SemanticError("Cannot use 'this' in a static method", thisExpression.getLine(), "this"));
+			report(new SemanticError("Cannot use 'this' in a static method", thisExpression.getLine(), "this"));
 			return null;
 		}
 
@@ -659,12 +685,12 @@ public class SemanticChecks implements Visitor {
 		IC.TypeTable.ClassType ct;
 		
 		try {
-			ct = IC.TypeTable.TypeTable.getClassType(newClass.getName());
-			GST.lookupCST(newClass.getName());  //goes to catch if class not found.
+			ct = IC.TypeTable.TypeTable.getClassType(newClass.getIdentifier());
+			GST.lookupCST(newClass.getIdentifier());  //goes to catch if class not found.
 			
 		} catch (SemanticError se) {
 			se.setLine(newClass.getLine());
-			System.out.println(se);
+			report(se);
 			return null;
 		}
 
@@ -683,11 +709,11 @@ public class SemanticChecks implements Visitor {
 		IC.TypeTable.Type elemType;
 
 		try {            
-			elemType = IC.TypeTable.TypeTable.getType(newArray.getType().toString());
+			elemType = IC.TypeTable.TypeTable.getType(newArray.getType());
 		} catch (SemanticError se) { //not defined type.
 			
 			se.setLine(newArray.getLine());
-			System.out.println(se);
+			report(se);
 			return null;
 		}
 
@@ -698,7 +724,7 @@ public class SemanticChecks implements Visitor {
 		
 		try {
 			if (!sizeType.subtypeof(IC.TypeTable.TypeTable.getType("int"))) {
-					System.out.println(new SemanticError("The size of array is not an integer", 
+					report(new SemanticError("The size of array is not an integer", 
 							                        newArray.getLine(), sizeType.getName()));
 				return null;
 			}
@@ -732,7 +758,7 @@ public class SemanticChecks implements Visitor {
 		}
 
 		if (!arrType.getName().endsWith("[]")) {
-			System.out.println(new SemanticError("Length requested not on array type", length.getLine(), arrType.getName()));
+			report(new SemanticError("Length requested not on array type", length.getLine(), arrType.getName()));
 			return null;
 		}
 
@@ -762,7 +788,7 @@ public class SemanticChecks implements Visitor {
 		
 		if (op1Type != op2Type) 
 		{
-			System.out.println(new SemanticError("Different operand types", 
+			report(new SemanticError("Different operand types", 
 										binaryOp.getLine(), binaryOp.getOperator().getOperatorString()));
 			return null;
 		}
@@ -771,7 +797,7 @@ public class SemanticChecks implements Visitor {
 		if (binaryOp.getOperator() != IC.BinaryOps.PLUS) {
 			try {
 				if (!op1Type.subtypeof(IC.TypeTable.TypeTable.getType("int"))) {
-					System.out.println(new SemanticError("Math operation on non-int type", 
+					report(new SemanticError("Math operation on non-int type", 
 											binaryOp.getLine(), op1Type.getName()));
 					return null;
 				}
@@ -784,7 +810,7 @@ public class SemanticChecks implements Visitor {
 				if (!op1Type.subtypeof(IC.TypeTable.TypeTable.getType("int")) && 
 						!op1Type.subtypeof(IC.TypeTable.TypeTable.getType("string"))) {
 					
-					System.out.println(new SemanticError("Plus operation on illegal types", binaryOp.getLine(), 
+					report(new SemanticError("Plus operation on illegal types", binaryOp.getLine(), 
 																op1Type.getName()));
 					return null;
 				}
@@ -815,21 +841,21 @@ public class SemanticChecks implements Visitor {
 		if (!op1Type.subtypeof(op2Type) && !op2Type.subtypeof(op1Type)) {  //error in any case.
 			
 			if (binaryOp.getOperator() == IC.BinaryOps.LAND || binaryOp.getOperator() == IC.BinaryOps.LOR) {
-				System.out.println(new SemanticError("Logical AND/OR on non-boolean types", binaryOp.getLine(),
+				report(new SemanticError("Logical AND/OR on non-boolean types", binaryOp.getLine(),
 														    binaryOp.getOperator().getOperatorString()));
 				return null;
 			}
 			
 			
 			if (binaryOp.getOperator() == IC.BinaryOps.EQUAL || binaryOp.getOperator() == IC.BinaryOps.NEQUAL) {
-				System.out.println(new SemanticError("Comparing types that are not subtypes of one another",
+				report(new SemanticError("Comparing types that are not subtypes of one another",
 														binaryOp.getLine(), binaryOp.getOperator().getOperatorString()));
 				return null;
 			}
 			
 			
 			//here, operator is "<=", ">=", "<" or ">".
-			System.out.println(new SemanticError("Comparing non-int types", binaryOp.getLine(), 
+			report(new SemanticError("Comparing non-int types", binaryOp.getLine(), 
 													binaryOp.getOperator().getOperatorString()));
 			return null;
 			
@@ -840,7 +866,7 @@ public class SemanticChecks implements Visitor {
 		
 		try {
 			if (op1Type.subtypeof(IC.TypeTable.TypeTable.getType("void"))) {
-				System.out.println(new SemanticError("Cannot perform logical operation on void types",
+				report(new SemanticError("Cannot perform logical operation on void types",
 															binaryOp.getLine(), op1Type.getName()));
 				return null;
 			}
@@ -852,7 +878,7 @@ public class SemanticChecks implements Visitor {
 		if ((binaryOp.getOperator() == IC.BinaryOps.LAND) || (binaryOp.getOperator() == IC.BinaryOps.LOR)) {
 			try {
 				if (!op1Type.subtypeof(IC.TypeTable.TypeTable.getType("boolean"))) {
-					System.out.println(new SemanticError("Cannot perform logical operation on non-boolean types",
+					report(new SemanticError("Cannot perform logical operation on non-boolean types",
 																binaryOp.getLine(), op1Type.getName()));
 					return null;
 				}
@@ -867,7 +893,7 @@ public class SemanticChecks implements Visitor {
 				(binaryOp.getOperator() == IC.BinaryOps.LT) || (binaryOp.getOperator() == IC.BinaryOps.LTE) ) {
 			try {
 				if (!op1Type.subtypeof(IC.TypeTable.TypeTable.getType("int"))) {
-					System.out.println(new SemanticError("Comparing non-int types", 
+					report(new SemanticError("Comparing non-int types", 
 												binaryOp.getLine(), op1Type.getName()));
 					
 					return null;
@@ -913,7 +939,7 @@ public class SemanticChecks implements Visitor {
 
 		try {
 			if (!uopType.subtypeof(IC.TypeTable.TypeTable.getType("int"))) {
-				System.out.println(new SemanticError("Math unary operation on a non-int type",
+				report(new SemanticError("Math unary operation on a non-int type",
 											unaryOp.getLine(), uopType.getName()));
 				return null;
 			}
@@ -940,7 +966,7 @@ public class SemanticChecks implements Visitor {
 		}
 		try {
 			if (!uopType.subtypeof(IC.TypeTable.TypeTable.getType("boolean"))) {
-				System.out.println(new SemanticError("Logical unary operand is not boolean", unaryOp.getLine(), uopType.getName()));
+				report(new SemanticError("Logical unary operand is not boolean", unaryOp.getLine(), uopType.getName()));
 				return null;
 			}
 		} catch (SemanticError se) {
@@ -974,7 +1000,7 @@ public class SemanticChecks implements Visitor {
 						}
 						Integer.parseInt(val);  
 					} catch (NumberFormatException e) {
-						System.out.println(new SemanticError("Integer out of range", literal.getLine(), val));
+						report(new SemanticError("Integer out of range", literal.getLine(), val));
 						return null;
 					}
 					
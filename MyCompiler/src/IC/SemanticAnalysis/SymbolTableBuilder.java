@@ -19,6 +19,8 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 
 	public static GlobalSymbolTable gst;
 	
+	private String sourceFile = null;  //of the class visited, in a program of several files.
+	
 	public SymbolTableBuilder(String icFileName) {
 		gst = new GlobalSymbolTable();
 		gst.setID(icFileName);
@@ -34,6 +36,7 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 		if(se.getLine() == -1) {
 			se.setLine(astnode.getLine());
 		}
+		se.setFile(sourceFile);
 		System.out.println(se);   
 		return null;
 	}
@@ -49,6 +52,7 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 
 		for (ICClass c : program.getClasses()) {
 			try {
+				sourceFile = c.getSourceFile();
 				TypeTable.addClassType(c);   //adds class types to type table.
 			} catch (SemanticError se) {
 				return handleSemanticError(se, c);
@@ -68,6 +72,7 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 	public Object visit(ICClass c, Object global_scope) {
 		
 		ClassSymbol cs = null;
+		sourceFile = c.getSourceFile();
 		
 		try {
 			//adds class symbol to GST, and creates class sym. table.
@@ -249,7 +254,7 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 		statementsBlock.setEnclosingScope((SymbolTable)scope);
 		
 		//creating block sym. table.
-		BlockSymbolTable bst = new BlockSymbolTable("statement block in " + ((SymbolTable)scope).getID(), (SymbolTable)scope);
+		BlockSymbolTable bst = new BlockSymbolTable((SymbolTable)scope);
 		
 		((SymbolTable)scope).addChild(bst);
 		
@@ -291,7 +296,7 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 		
 		if (!location.isExternal()) {
 			//keeping scope of declaration of given variable.
-			location.setVarDeclarationScope(location.getEnclosingScope().getEnclosingST(location.getName()));
+			location.setVarDeclarationScope(location.getEnclosingScope().getEnclosingST(location.getIdentifier()));
 		}
 		
 		if (location.isExternal()) {
@@ -324,8 +329,8 @@ public class SymbolTableBuilder implements PropagatingVisitor {
 		call.setEnclosingScope((SymbolTable)scope);
 
 		try {
-			ClassSymbolTable cst = gst.lookupCST(call.getClassName());
-			cst.getMethod(call.getName());  //checks if method was defined.
+			ClassSymbolTable cst = gst.lookupCST(call.getClassIdentifier());
+			cst.getMethod(call.getIdentifier());  //checks if method was defined.
 			
 		} catch (SemanticError se) {
 			return handleSemanticError(se, call);
@@ -0,0 +1,35 @@
+package IC.Simulator;
+
+/**
+ * Exception class for malformed LIR input, thrown by LIRLoader.
+ * This exception class contains the LIR line number and an error message.
+ *
+ */
+
+public class LIRFormatError extends Exception {
+
+	private int line_number;
+
+	private static final long serialVersionUID = 45L;  /* impl. serializable. */
+
+
+	public LIRFormatError(String message, int line) {
+		super(message);
+		this.line_number = line;
+	}
+
+
+	public int getLineNum() {
+		return this.line_number;
+	}
+
+
+	/**
+	 * Returns error string message with LIR line number and message.
+	 */
+	@Override
+	public String toString() {
+		return ("LIR error at line " + this.line_number + ": " + super.getMessage());
+	}
+
+}
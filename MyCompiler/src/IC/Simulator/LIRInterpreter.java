@@ -0,0 +1,793 @@
+package IC.Simulator;
+
+import java.io.*;
+import java.util.*;
+
+import IC.LIR.BinaryLIRFormatError;
+import IC.LIR.BinaryLIRReader;
+import IC.Simulator.LIRProgram.CallSite;
+import IC.Simulator.LIRProgram.Function;
+
+/**
+ * LIRInterpreter
+ * ==============
+ * executes a pre-decoded LIRProgram.
+ *
+ * values are 32-bit ints. references are indices into an int heap, where
+ * every block is preceded by a header word holding its kind and length
+ * (0 is the null reference). string literals are allocated on the heap
+ * before execution starts.
+ *
+ * when a Profiler is set, it is told of every function entry, conditional
+ * jump and virtual call receiver (see IC.PGO.ProfileCollector).
+ *
+ * every VirtualCall instruction has an inline cache: the receiver dispatch
+ * tables it has seen, up to POLYMORPHIC_LIMIT of them, with their callees. a
+ * call whose receiver table is in the cache skips the dispatch table lookup;
+ * a miss looks the callee up and adds it, unless the cache is full (the site
+ * is megamorphic). the caches count the calls and misses of every site, and
+ * getStatistics reports them by the site ids of the translator.
+ */
+public class LIRInterpreter {
+
+	// heap block kinds (stored in the upper bits of the header word)
+	public static final int KIND_OBJECT = 1;
+	public static final int KIND_ARRAY = 2;
+	public static final int KIND_STRING = 3;
+	private static final int KIND_SHIFT = 28;
+	private static final int LENGTH_MASK = (1 << KIND_SHIFT) - 1;
+
+	// the most receiver dispatch tables an inline cache holds
+	public static final int POLYMORPHIC_LIMIT = 4;
+
+	/**
+	 * a call frame
+	 */
+	private static class Frame {
+		int[] slots;
+		int returnPc;
+		int dstSlot;
+
+		Frame(int size){
+			slots = new int[size];
+		}
+	}
+
+	/**
+	 * the inline cache of a VirtualCall instruction
+	 */
+	private static class InlineCache {
+		int size = 0;
+		// the receiver dispatch tables (as found in the objects) and their callees
+		int[] tables = new int[POLYMORPHIC_LIMIT];
+		int[] callees = new int[POLYMORPHIC_LIMIT];
+		int[][] formalSlots = new int[POLYMORPHIC_LIMIT][];
+		// dispatch counters
+		long calls = 0;
+		long misses = 0;
+		// a receiver table was missing from the full cache
+		boolean megamorphic = false;
+
+		/**
+		 * adds a looked up callee to the cache, if it is not full
+		 */
+		void add(int table, int callee, int[] slots){
+			if (size == POLYMORPHIC_LIMIT){
+				megamorphic = true;
+				return;
+			}
+			tables[size] = table;
+			callees[size] = callee;
+			formalSlots[size] = slots;
+			size++;
+		}
+	}
+
+	/**
+	 * receives the execution events counted for a profile (see setProfiler)
+	 */
+	public interface Profiler {
+		/**
+		 * a function was entered (by a call, or as main)
+		 * @param entry: the function's first instruction
+		 */
+		public void enter(int entry);
+
+		/**
+		 * a conditional jump was executed
+		 * @param pc
+		 * @param taken
+		 */
+		public void branch(int pc, boolean taken);
+
+		/**
+		 * a virtual call was executed
+		 * @param pc
+		 * @param dispatchTable: index of the receiver's dispatch table
+		 */
+		public void receiver(int pc, int dispatchTable);
+	}
+
+	/**
+	 * thrown when the executed program misbehaves (bad reference, out of memory, ...)
+	 */
+	public static class LIRRuntimeError extends RuntimeException {
+		private static final long serialVersionUID = 46L;
+
+		public LIRRuntimeError(String message){
+			super(message);
+		}
+	}
+
+	private LIRProgram program;
+	private int[] code;
+	private int[] frameSizes;
+
+	// heap
+	private int[] heap = new int[1 << 16];
+	private int heapTop = 1;
+	private int[] stringPointers;
+
+	// call stack
+	private Frame[] stack = new Frame[64];
+	private int stackDepth = 0;
+
+	// per call site: callee function -> formal slots (virtual calls only)
+	private int[][][] virtualFormalSlots;
+	// per call site: its inline cache (virtual calls only)
+	private InlineCache[] inlineCaches;
+
+	// i/o
+	private PrintStream out;
+	private BufferedReader in;
+	private Random random = new Random();
+	private long startTime;
+
+	// profiling (null when not profiling)
+	private Profiler profiler;
+
+	// statistics
+	private long executedInstructions = 0;
+	private long[] opcodeCounts = new long[LIRProgram.OPCODE_NAMES.length];
+	private int exitCode = 0;
+
+	/**
+	 * constructor
+	 * @param program
+	 * @param in
+	 * @param out
+	 */
+	public LIRInterpreter(LIRProgram program, InputStream in, PrintStream out){
+		this.program = program;
+		this.in = new BufferedReader(new InputStreamReader(in));
+		this.out = out;
+
+		frameSizes = new int[program.functions.size()];
+		for (int i = 0; i < frameSizes.length; i++){
+			frameSizes[i] = program.functions.get(i).getFrameSize();
+		}
+		virtualFormalSlots = new int[program.callSites.size()][][];
+		inlineCaches = new InlineCache[program.callSites.size()];
+		for (int pc = 0; pc < program.instructionCount; pc++){
+			if (program.code[pc*LIRProgram.STRIDE] == LIRProgram.VIRTUAL_CALL)
+				inlineCaches[program.code[pc*LIRProgram.STRIDE+7]] = new InlineCache();
+		}
+
+		// allocate string literals and bind STR operands to their heap references,
+		// and DV operands to their encoded dispatch table
+		stringPointers = new int[program.stringLiterals.size()];
+		for (int i = 0; i < stringPointers.length; i++){
+			stringPointers[i] = newString(program.stringLiterals.get(i));
+		}
+		code = program.code.clone();
+		for (int pc = 0; pc < program.instructionCount; pc++){
+			int base = pc*LIRProgram.STRIDE;
+			for (int k = 1; k < 7; k += 2){
+				if (code[base+k] == LIRProgram.STR){
+					code[base+k] = LIRProgram.IMM;
+					code[base+k+1] = stringPointers[code[base+k+1]];
+				} else if (code[base+k] == LIRProgram.DV){
+					code[base+k] = LIRProgram.IMM;
+					code[base+k+1] = LIRProgram.encodeDispatchTable(code[base+k+1]);
+				}
+			}
+		}
+		for (CallSite site: program.callSites){
+			for (int i = 0; i < site.argKinds.length; i++){
+				if (site.argKinds[i] == LIRProgram.STR){
+					site.argKinds[i] = LIRProgram.IMM;
+					site.argValues[i] = stringPointers[site.argValues[i]];
+				} else if (site.argKinds[i] == LIRProgram.DV){
+					site.argKinds[i] = LIRProgram.IMM;
+					site.argValues[i] = LIRProgram.encodeDispatchTable(site.argValues[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * counts the execution events of the next run to the given profiler
+	 * @param profiler
+	 */
+	public void setProfiler(Profiler profiler){
+		this.profiler = profiler;
+	}
+
+	/**
+	 * runs the program from _ic_main until it returns, exits or reaches the end of the code
+	 * @return the program exit code
+	 */
+	public int run(){
+		startTime = System.currentTimeMillis();
+		try {
+			execute();
+		} finally {
+			out.flush();
+		}
+		return exitCode;
+	}
+
+	/**
+	 * the interpreter loop
+	 */
+	private void execute(){
+		final int[] code = this.code;
+		final int end = program.instructionCount;
+		final int S = LIRProgram.STRIDE;
+		final Profiler profiler = this.profiler;
+
+		Frame frame = new Frame(frameSizes[program.mainFunction]);
+		int[] slots = frame.slots;
+		int pc = program.functions.get(program.mainFunction).entry;
+		int cmp = 0;
+		if (profiler != null) profiler.enter(pc);
+
+		while (pc < end){
+			int b = pc*S;
+			int op = code[b];
+			executedInstructions++;
+			opcodeCounts[op]++;
+
+			switch (op){
+			case LIRProgram.MOVE:
+				slots[code[b+4]] = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.LOAD_FIELD: {
+				int obj = slots[code[b+2]];
+				int off = code[b+3] == LIRProgram.IMM ? code[b+4] : slots[code[b+4]];
+				slots[code[b+6]] = heap[checkAccess(obj, off)];
+				pc++;
+				break;
+			}
+			case LIRProgram.STORE_FIELD: {
+				int val = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				int obj = slots[code[b+4]];
+				int off = code[b+5] == LIRProgram.IMM ? code[b+6] : slots[code[b+6]];
+				heap[checkAccess(obj, off)] = val;
+				pc++;
+				break;
+			}
+			case LIRProgram.LOAD_ARRAY: {
+				int arr = slots[code[b+2]];
+				int idx = code[b+3] == LIRProgram.IMM ? code[b+4] : slots[code[b+4]];
+				slots[code[b+6]] = heap[checkAccess(arr, idx)];
+				pc++;
+				break;
+			}
+			case LIRProgram.STORE_ARRAY: {
+				int val = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				int arr = slots[code[b+4]];
+				int idx = code[b+5] == LIRProgram.IMM ? code[b+6] : slots[code[b+6]];
+				heap[checkAccess(arr, idx)] = val;
+				pc++;
+				break;
+			}
+			case LIRProgram.ARRAY_LENGTH: {
+				int arr = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				slots[code[b+4]] = lengthOf(arr);
+				pc++;
+				break;
+			}
+			case LIRProgram.ADD:
+				slots[code[b+4]] += code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.SUB:
+				slots[code[b+4]] -= code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.MUL:
+				slots[code[b+4]] *= code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.DIV: {
+				int d = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				if (d == 0) throw new LIRRuntimeError("division by zero at instruction "+pc);
+				slots[code[b+4]] /= d;
+				pc++;
+				break;
+			}
+			case LIRProgram.MOD: {
+				int d = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				if (d == 0) throw new LIRRuntimeError("division by zero at instruction "+pc);
+				slots[code[b+4]] %= d;
+				pc++;
+				break;
+			}
+			case LIRProgram.AND:
+				slots[code[b+4]] &= code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.OR:
+				slots[code[b+4]] |= code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.XOR:
+				slots[code[b+4]] ^= code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.INC:
+				slots[code[b+2]]++;
+				pc++;
+				break;
+			case LIRProgram.DEC:
+				slots[code[b+2]]--;
+				pc++;
+				break;
+			case LIRProgram.NEG:
+				slots[code[b+2]] = -slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.NOT:
+				slots[code[b+2]] = ~slots[code[b+2]];
+				pc++;
+				break;
+			case LIRProgram.COMPARE: {
+				int x = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				int y = code[b+3] == LIRProgram.IMM ? code[b+4] : slots[code[b+4]];
+				// Compare x,y sets the condition to y-x (without overflow)
+				cmp = y < x ? -1 : (y == x ? 0 : 1);
+				pc++;
+				break;
+			}
+			case LIRProgram.JUMP:
+				pc = code[b+7];
+				break;
+			case LIRProgram.JUMP_TRUE:
+				if (profiler != null) profiler.branch(pc, cmp == 0);
+				pc = cmp == 0 ? code[b+7] : pc+1;
+				break;
+			case LIRProgram.JUMP_FALSE:
+				if (profiler != null) profiler.branch(pc, cmp != 0);
+				pc = cmp != 0 ? code[b+7] : pc+1;
+				break;
+			case LIRProgram.JUMP_G:
+				if (profiler != null) profiler.branch(pc, cmp > 0);
+				pc = cmp > 0 ? code[b+7] : pc+1;
+				break;
+			case LIRProgram.JUMP_GE:
+				if (profiler != null) profiler.branch(pc, cmp >= 0);
+				pc = cmp >= 0 ? code[b+7] : pc+1;
+				break;
+			case LIRProgram.JUMP_L:
+				if (profiler != null) profiler.branch(pc, cmp < 0);
+				pc = cmp < 0 ? code[b+7] : pc+1;
+				break;
+			case LIRProgram.JUMP_LE:
+				if (profiler != null) profiler.branch(pc, cmp <= 0);
+				pc = cmp <= 0 ? code[b+7] : pc+1;
+				break;
+			case LIRProgram.LIBRARY: {
+				CallSite site = program.callSites.get(code[b+7]);
+				int[] args = new int[site.argKinds.length];
+				for (int i = 0; i < args.length; i++){
+					args[i] = site.argKinds[i] == LIRProgram.IMM ? site.argValues[i] : slots[site.argValues[i]];
+				}
+				int res = library(site.target, args);
+				if (site.target == 13) return; // __exit
+				slots[site.dstSlot] = res;
+				pc++;
+				break;
+			}
+			case LIRProgram.STATIC_CALL:
+			case LIRProgram.VIRTUAL_CALL: {
+				CallSite site = program.callSites.get(code[b+7]);
+				int callee;
+				int[] formalSlots;
+				int receiver = 0;
+				if (op == LIRProgram.STATIC_CALL){
+					callee = site.target;
+					formalSlots = site.formalSlots;
+				} else {
+					receiver = slots[site.receiverSlot];
+					if (receiver == 0) throw new LIRRuntimeError("virtual call on a null reference");
+					int table = heap[checkAccess(receiver, 0)];
+					InlineCache ic = inlineCaches[code[b+7]];
+					ic.calls++;
+					int k = 0;
+					while (k < ic.size && ic.tables[k] != table) k++;
+					if (k < ic.size){
+						callee = ic.callees[k];
+						formalSlots = ic.formalSlots[k];
+					} else {
+						ic.misses++;
+						callee = program.dispatchTables.get(LIRProgram.decodeDispatchTable(table))[site.target];
+						formalSlots = virtualFormalSlots(code[b+7], site, callee);
+						ic.add(table, callee, formalSlots);
+					}
+					if (profiler != null) profiler.receiver(pc, LIRProgram.decodeDispatchTable(table));
+				}
+				Frame calleeFrame = new Frame(frameSizes[callee]);
+				for (int i = 0; i < formalSlots.length; i++){
+					calleeFrame.slots[formalSlots[i]] =
+						site.argKinds[i] == LIRProgram.IMM ? site.argValues[i] : slots[site.argValues[i]];
+				}
+				if (op == LIRProgram.VIRTUAL_CALL){
+					int thisSlot = program.functions.get(callee).thisSlot;
+					if (thisSlot >= 0) calleeFrame.slots[thisSlot] = receiver;
+				}
+				frame.returnPc = pc+1;
+				frame.dstSlot = site.dstSlot;
+				push(frame);
+				frame = calleeFrame;
+				slots = frame.slots;
+				pc = program.functions.get(callee).entry;
+				if (profiler != null) profiler.enter(pc);
+				break;
+			}
+			case LIRProgram.RETURN: {
+				int val = code[b+1] == LIRProgram.IMM ? code[b+2] : slots[code[b+2]];
+				if (stackDepth == 0) return; // return from main
+				frame = stack[--stackDepth];
+				stack[stackDepth] = null;
+				slots = frame.slots;
+				slots[frame.dstSlot] = val;
+				pc = frame.returnPc;
+				break;
+			}
+			default:
+				throw new LIRRuntimeError("unknown opcode "+op+" at instruction "+pc);
+			}
+		}
+	}
+
+	/**
+	 * pushes a frame to the call stack
+	 */
+	private void push(Frame frame){
+		if (stackDepth == stack.length){
+			if (stackDepth >= 1 << 20) throw new LIRRuntimeError("call stack overflow");
+			stack = Arrays.copyOf(stack, stack.length*2);
+		}
+		stack[stackDepth++] = frame;
+	}
+
+	/**
+	 * returns (and caches) the callee frame slots of a virtual call site's formals
+	 */
+	private int[] virtualFormalSlots(int siteIndex, CallSite site, int callee){
+		int[][] cache = virtualFormalSlots[siteIndex];
+		if (cache == null){
+			cache = new int[program.functions.size()][];
+			virtualFormalSlots[siteIndex] = cache;
+		}
+		int[] formalSlots = cache[callee];
+		if (formalSlots == null){
+			Function f = program.functions.get(callee);
+			formalSlots = new int[site.formals.length];
+			for (int i = 0; i < formalSlots.length; i++){
+				Integer slot = f.slots.get(site.formals[i]);
+				// a formal the callee never reads goes to a scratch slot
+				formalSlots[i] = slot != null ? slot : frameSizes[callee];
+			}
+			for (int i = 0; i < formalSlots.length; i++){
+				if (formalSlots[i] == frameSizes[callee]) frameSizes[callee]++;
+			}
+			cache[callee] = formalSlots;
+		}
+		return formalSlots;
+	}
+
+	// heap
+	///////
+
+	/**
+	 * allocates a zeroed heap block and returns its reference
+	 * @param kind
+	 * @param length
+	 * @return
+	 */
+	private int allocate(int kind, int length){
+		if (length < 0 || length > LENGTH_MASK) throw new LIRRuntimeError("illegal allocation size "+length);
+		int needed = heapTop+1+length;
+		if (needed > heap.length){
+			if (needed < 0 || needed > (1 << 30)) throw new LIRRuntimeError("out of memory");
+			heap = Arrays.copyOf(heap, Math.max(heap.length*2, needed));
+		}
+		heap[heapTop] = (kind << KIND_SHIFT) | length;
+		int ref = heapTop+1;
+		heapTop = needed;
+		return ref;
+	}
+
+	/**
+	 * returns the heap index of slot i of the block at ref
+	 */
+	private int checkAccess(int ref, int i){
+		if (ref <= 0 || ref > heapTop) throw new LIRRuntimeError("invalid reference "+ref);
+		if (i < 0 || i >= (heap[ref-1] & LENGTH_MASK)) throw new LIRRuntimeError("access out of block bounds: "+i);
+		return ref+i;
+	}
+
+	/**
+	 * returns the length of the block at ref
+	 */
+	private int lengthOf(int ref){
+		if (ref <= 0 || ref > heapTop) throw new LIRRuntimeError("invalid reference "+ref);
+		return heap[ref-1] & LENGTH_MASK;
+	}
+
+	/**
+	 * allocates a string on the heap
+	 */
+	private int newString(String s){
+		int ref = allocate(KIND_STRING, s.length());
+		for (int i = 0; i < s.length(); i++){
+			heap[ref+i] = s.charAt(i);
+		}
+		return ref;
+	}
+
+	/**
+	 * reads a heap string
+	 */
+	private String stringAt(int ref){
+		if (ref == 0) return "null";
+		int len = lengthOf(ref);
+		char[] chars = new char[len];
+		for (int i = 0; i < len; i++){
+			chars[i] = (char)heap[ref+i];
+		}
+		return new String(chars);
+	}
+
+	// library
+	//////////
+
+	/**
+	 * executes a library method (indices as in LIRLoader.LIBRARY_METHODS)
+	 * @param method
+	 * @param args
+	 * @return
+	 */
+	private int library(int method, int[] args){
+		switch (method){
+		case 0: // println
+			out.print(stringAt(args[0]));
+			out.print('\n');
+			return 0;
+		case 1: // print
+			out.print(stringAt(args[0]));
+			return 0;
+		case 2: // printi
+			out.print(args[0]);
+			return 0;
+		case 3: // printb
+			out.print(args[0] != 0 ? "true" : "false");
+			return 0;
+		case 4: // readi
+			return readInt();
+		case 5: { // readln
+			String line = readLine();
+			return line == null ? 0 : newString(line);
+		}
+		case 6: // eof
+			return isEof() ? 1 : 0;
+		case 7: // stoi
+			try {
+				return Integer.parseInt(stringAt(args[0]).trim());
+			} catch (NumberFormatException e){
+				return args[1];
+			}
+		case 8: // itos
+			return newString(Integer.toString(args[0]));
+		case 9: { // stoa
+			String s = stringAt(args[0]);
+			int arr = allocate(KIND_ARRAY, s.length());
+			for (int i = 0; i < s.length(); i++){
+				heap[arr+i] = s.charAt(i);
+			}
+			return arr;
+		}
+		case 10: { // atos
+			int len = lengthOf(args[0]);
+			StringBuilder sb = new StringBuilder(len);
+			for (int i = 0; i < len; i++){
+				sb.append((char)heap[args[0]+i]);
+			}
+			return newString(sb.toString());
+		}
+		case 11: // random
+			return args[0] > 0 ? random.nextInt(args[0]) : 0;
+		case 12: // time
+			return (int)(System.currentTimeMillis()-startTime);
+		case 13: // exit
+			exitCode = args[0];
+			return 0;
+		case 14: // stringCat
+			return newString(stringAt(args[0])+stringAt(args[1]));
+		case 15: // allocateObject (size in bytes)
+			return allocate(KIND_OBJECT, args[0]/4);
+		case 16: // allocateArray (size in bytes)
+			return allocate(KIND_ARRAY, args[0]/4);
+		default:
+			throw new LIRRuntimeError("unknown library method "+method);
+		}
+	}
+
+	/**
+	 * reads a line from the input, null at end of file
+	 */
+	private String readLine(){
+		try {
+			return in.readLine();
+		} catch (IOException e){
+			return null;
+		}
+	}
+
+	/**
+	 * reads a whitespace-delimited integer from the input (0 if none)
+	 */
+	private int readInt(){
+		try {
+			StringBuilder sb = new StringBuilder();
+			int c;
+			while ((c = in.read()) != -1 && Character.isWhitespace(c));
+			while (c != -1 && !Character.isWhitespace(c)){
+				sb.append((char)c);
+				c = in.read();
+			}
+			return Integer.parseInt(sb.toString());
+		} catch (IOException e){
+			return 0;
+		} catch (NumberFormatException e){
+			return 0;
+		}
+	}
+
+	/**
+	 * checks for end of input
+	 */
+	private boolean isEof(){
+		try {
+			in.mark(1);
+			int c = in.read();
+			if (c == -1) return true;
+			in.reset();
+			return false;
+		} catch (IOException e){
+			return true;
+		}
+	}
+
+	// statistics
+	/////////////
+
+	public long getExecutedInstructions(){
+		return executedInstructions;
+	}
+
+	public long[] getOpcodeCounts(){
+		return opcodeCounts;
+	}
+
+	/**
+	 * returns a printable summary of the executed instructions
+	 * @return
+	 */
+	public String getStatistics(){
+		String stats = "# executed instructions: "+executedInstructions+"\n";
+		for (int i = 0; i < opcodeCounts.length; i++){
+			if (opcodeCounts[i] > 0)
+				stats += "#   "+LIRProgram.OPCODE_NAMES[i]+": "+opcodeCounts[i]+"\n";
+		}
+		return stats+getInlineCacheStatistics();
+	}
+
+	/**
+	 * returns a printable summary of the virtual call sites: every executed site
+	 * (the instructions of the same site id together) with its calls, its inline
+	 * cache misses and its receiver dispatch tables
+	 * @return
+	 */
+	public String getInlineCacheStatistics(){
+		// site id -> [calls, misses, megamorphic], and its receiver tables
+		Map<Integer,long[]> counters = new TreeMap<Integer,long[]>();
+		Map<Integer,Set<Integer>> receivers = new HashMap<Integer,Set<Integer>>();
+		Map<Integer,String> names = new HashMap<Integer,String>();
+		for (int i = 0; i < inlineCaches.length; i++){
+			InlineCache ic = inlineCaches[i];
+			if (ic == null || ic.calls == 0) continue;
+			CallSite site = program.callSites.get(i);
+			long[] c = counters.get(site.siteId);
+			if (c == null){
+				c = new long[3];
+				counters.put(site.siteId, c);
+				receivers.put(site.siteId, new TreeSet<Integer>());
+				names.put(site.siteId, site.siteName);
+			}
+			c[0] += ic.calls;
+			c[1] += ic.misses;
+			if (ic.megamorphic) c[2] = 1;
+			for (int k = 0; k < ic.size; k++){
+				receivers.get(site.siteId).add(LIRProgram.decodeDispatchTable(ic.tables[k]));
+			}
+		}
+
+		int monomorphic = 0, polymorphic = 0, megamorphic = 0;
+		String sites = "";
+		for (Map.Entry<Integer,long[]> e: counters.entrySet()){
+			long[] c = e.getValue();
+			Set<Integer> tables = receivers.get(e.getKey());
+			String kind;
+			if (c[2] != 0 || tables.size() > POLYMORPHIC_LIMIT){
+				kind = "megamorphic";
+				megamorphic++;
+			} else if (tables.size() > 1){
+				kind = "polymorphic";
+				polymorphic++;
+			} else {
+				kind = "monomorphic";
+				monomorphic++;
+			}
+			String tableNames = "";
+			for (int t: tables){
+				tableNames += " "+program.dispatchTableNames.get(t);
+			}
+			sites += "#   site "+e.getKey()+" ("+names.get(e.getKey())+"): "+c[0]+" calls, "+c[1]+" misses, "+
+					kind+":"+tableNames+(c[2] != 0 ? " ..." : "")+"\n";
+		}
+		return "# virtual call sites: "+counters.size()+" executed, "+monomorphic+" monomorphic, "+
+				polymorphic+" polymorphic, "+megamorphic+" megamorphic\n"+sites;
+	}
+
+	/**
+	 * runs a LIR file, text or binary (see IC.LIR.BinaryLIRFormat): LIRInterpreter <file.lir|file.lirb> [-stats]
+	 * @param args
+	 */
+	public static void main(String[] args){
+		if (args.length == 0){
+			System.out.println("Error: Missing lir input file argument.");
+			System.exit(1);
+		}
+		LIRProgram program = null;
+		try {
+			program = BinaryLIRReader.isBinaryFile(args[0]) ? LIRLoader.loadBinaryFile(args[0]) : LIRLoader.loadFile(args[0]);
+		} catch (IOException e){
+			System.out.println("Error in reading from input lir file: " + e.getMessage());
+			System.exit(1);
+		} catch (LIRFormatError e){
+			System.out.println(e);
+			System.exit(1);
+		} catch (BinaryLIRFormatError e){
+			System.out.println(e);
+			System.exit(1);
+		}
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+		LIRInterpreter interpreter = new LIRInterpreter(program, System.in, out);
+		int exitCode;
+		try {
+			exitCode = interpreter.run();
+		} catch (LIRRuntimeError e){
+			System.out.println("LIR runtime error: "+e.getMessage());
+			exitCode = 1;
+		}
+		if (args.length > 1 && args[1].equals("-stats")){
+			System.err.print(interpreter.getStatistics());
+		}
+		System.exit(exitCode);
+	}
+}
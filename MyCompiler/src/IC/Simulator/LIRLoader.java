@@ -0,0 +1,781 @@
+package IC.Simulator;
+
+import java.io.*;
+import java.util.*;
+
+import IC.LIR.BinaryLIRFormat;
+import IC.LIR.BinaryLIRFormatError;
+import IC.LIR.BinaryLIRReader;
+import IC.Simulator.LIRProgram.CallSite;
+import IC.Simulator.LIRProgram.Function;
+
+/**
+ * LIRLoader
+ * =========
+ * parses the textual LIR emitted by the translators and decodes it into
+ * a LIRProgram: string literals, dispatch tables, labels and instructions.
+ *
+ * the program is split into functions: the main method (_ic_main), every
+ * StaticCall target and every dispatch table entry. each function has its own
+ * namespace of registers and variables, both mapped to frame slots.
+ *
+ * a VirtualCall preceded by a "# virtual call site <id>: <class>.<method>"
+ * comment (as the translators emit) gets that site id. other virtual calls get
+ * ids of their own, after the largest one used.
+ *
+ * binary LIR (see IC.LIR.BinaryLIRFormat) is decoded directly from its reader:
+ * its names are already pool indices, and its labels instruction indices.
+ */
+public class LIRLoader {
+
+	public static final String VIRTUAL_CALL_SITE_COMMENT = "# virtual call site ";
+
+	// library methods known to the interpreter (index = library call target)
+	public static final String[] LIBRARY_METHODS = {
+		"__println", "__print", "__printi", "__printb", "__readi", "__readln", "__eof",
+		"__stoi", "__itos", "__stoa", "__atos", "__random", "__time", "__exit",
+		"__stringCat", "__allocateObject", "__allocateArray"
+	};
+
+	/**
+	 * an instruction line, before decoding
+	 */
+	private static class RawInstruction {
+		int line;
+		String opcode;
+		String operands;
+		// the comment line right before the instruction, null if none
+		String comment;
+
+		RawInstruction(int line, String opcode, String operands){
+			this.line = line;
+			this.opcode = opcode;
+			this.operands = operands;
+		}
+	}
+
+	private LIRProgram program = new LIRProgram();
+	private List<RawInstruction> raw = new ArrayList<RawInstruction>();
+	private Map<String,Integer> labels = new HashMap<String,Integer>();
+	private Map<String,Integer> labelLines = new HashMap<String,Integer>();
+	private Map<String,Integer> stringLabels = new HashMap<String,Integer>();
+	private Map<String,Integer> dispatchLabels = new HashMap<String,Integer>();
+	private List<String[]> dispatchEntries = new ArrayList<String[]>();
+	private List<Integer> dispatchLines = new ArrayList<Integer>();
+	private String comment;
+	// binary LIR: the slot of every pool name in the function that used it last
+	private int[] nameSlots;
+	private int[] nameFunctions;
+
+	/**
+	 * loads a LIR file
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 * @throws LIRFormatError
+	 */
+	public static LIRProgram loadFile(String fileName) throws IOException, LIRFormatError {
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			return new LIRLoader().load(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * loads LIR code given as a string
+	 * @param lirCode
+	 * @return
+	 * @throws LIRFormatError
+	 */
+	public static LIRProgram loadString(String lirCode) throws LIRFormatError {
+		try {
+			return new LIRLoader().load(new BufferedReader(new StringReader(lirCode)));
+		} catch (IOException e) { // never happens for a string reader
+			throw new LIRFormatError(e.getMessage(), 0);
+		}
+	}
+
+	/**
+	 * loads a binary LIR file, decoding its code straight from the mapped file
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 * @throws BinaryLIRFormatError
+	 */
+	public static LIRProgram loadBinaryFile(String fileName) throws IOException, BinaryLIRFormatError {
+		return new LIRLoader().load(BinaryLIRReader.open(fileName));
+	}
+
+	/**
+	 * loads binary LIR given as bytes
+	 * @param bytes
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public static LIRProgram loadBinary(byte[] bytes) throws BinaryLIRFormatError {
+		return new LIRLoader().load(BinaryLIRReader.wrap(bytes));
+	}
+
+	/**
+	 * reads all the LIR lines and decodes the program
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 * @throws LIRFormatError
+	 */
+	public LIRProgram load(BufferedReader reader) throws IOException, LIRFormatError {
+		String line;
+		int lineNum = 0;
+		while ((line = reader.readLine()) != null){
+			lineNum++;
+			readLine(line.trim(), lineNum);
+		}
+
+		createFunctions();
+		createDispatchTables();
+		decodeInstructions();
+
+		return program;
+	}
+
+	/**
+	 * classifies a single LIR line: comment, string literal, dispatch table, label or instruction
+	 * @param line
+	 * @param lineNum
+	 * @throws LIRFormatError
+	 */
+	private void readLine(String line, int lineNum) throws LIRFormatError {
+		if (line.startsWith("#")) comment = line;
+		if (line.length() == 0 || line.startsWith("#")) return;
+
+		int colon = line.indexOf(':');
+		int space = line.indexOf(' ');
+		boolean definition = colon > 0 && (space < 0 || colon < space);
+
+		if (!definition){
+			// instruction
+			RawInstruction inst = space < 0 ? new RawInstruction(lineNum, line, "") :
+				new RawInstruction(lineNum, line.substring(0, space), line.substring(space+1).trim());
+			inst.comment = comment;
+			comment = null;
+			raw.add(inst);
+			return;
+		}
+
+		String name = line.substring(0, colon);
+		String rest = line.substring(colon+1).trim();
+
+		if (rest.length() == 0){
+			// label
+			if (labels.containsKey(name)) throw new LIRFormatError("label defined twice: "+name, lineNum);
+			labels.put(name, raw.size());
+			labelLines.put(name, lineNum);
+		} else if (rest.startsWith("\"")){
+			// string literal
+			if (!rest.endsWith("\"") || rest.length() < 2)
+				throw new LIRFormatError("malformed string literal: "+rest, lineNum);
+			stringLabels.put(name, program.stringLiterals.size());
+			program.stringLiterals.add(unescape(rest.substring(1, rest.length()-1)));
+		} else if (rest.startsWith("[")){
+			// dispatch table
+			if (!rest.endsWith("]")) throw new LIRFormatError("malformed dispatch table: "+rest, lineNum);
+			String body = rest.substring(1, rest.length()-1).trim();
+			dispatchLabels.put(name, dispatchEntries.size());
+			dispatchEntries.add(body.length() == 0 ? new String[0] : body.split("\\s*,\\s*"));
+			dispatchLines.add(lineNum);
+			program.dispatchTableNames.add(name);
+		} else {
+			throw new LIRFormatError("unexpected definition: "+line, lineNum);
+		}
+	}
+
+	/**
+	 * finds all function entry labels and assigns each instruction to its function
+	 * @throws LIRFormatError
+	 */
+	private void createFunctions() throws LIRFormatError {
+		Set<String> functionLabels = new HashSet<String>();
+		functionLabels.add("_ic_main");
+		for (String[] entries: dispatchEntries){
+			functionLabels.addAll(Arrays.asList(entries));
+		}
+		for (RawInstruction inst: raw){
+			if (inst.opcode.equals("StaticCall")){
+				functionLabels.add(inst.operands.substring(0, inst.operands.indexOf('(')).trim());
+			}
+		}
+
+		// order functions by entry point
+		List<String> ordered = new ArrayList<String>();
+		for (String label: functionLabels){
+			if (!labels.containsKey(label)){
+				if (label.equals("_ic_main")) throw new LIRFormatError("missing main method label _ic_main", 0);
+				throw new LIRFormatError("undefined method label: "+label, 0);
+			}
+			ordered.add(label);
+		}
+		Collections.sort(ordered, new Comparator<String>(){
+			public int compare(String l1, String l2){
+				int c = labels.get(l1) - labels.get(l2);
+				return c != 0 ? c : labelLines.get(l1) - labelLines.get(l2);
+			}
+		});
+		for (String label: ordered){
+			program.functions.add(new Function(label, labels.get(label)));
+		}
+		program.mainFunction = program.getFunctionIndex("_ic_main");
+		assignFunctions(raw.size());
+	}
+
+	/**
+	 * assigns instructions to functions (code before the first entry belongs to the first function)
+	 * @param instructionCount
+	 */
+	private void assignFunctions(int instructionCount){
+		program.functionOf = new int[instructionCount];
+		int curr = 0;
+		for (int i = 0; i < instructionCount; i++){
+			while (curr+1 < program.functions.size() && program.functions.get(curr+1).entry <= i) curr++;
+			program.functionOf[i] = curr;
+		}
+	}
+
+	/**
+	 * resolves dispatch table entries to function indices
+	 * @throws LIRFormatError
+	 */
+	private void createDispatchTables() throws LIRFormatError {
+		for (int t = 0; t < dispatchEntries.size(); t++){
+			String[] entries = dispatchEntries.get(t);
+			int[] table = new int[entries.length];
+			for (int i = 0; i < entries.length; i++){
+				table[i] = program.getFunctionIndex(entries[i]);
+				if (table[i] < 0) throw new LIRFormatError("undefined method in dispatch table: "+entries[i], dispatchLines.get(t));
+			}
+			program.dispatchTables.add(table);
+		}
+	}
+
+	/**
+	 * decodes all raw instructions into the code array
+	 * @throws LIRFormatError
+	 */
+	private void decodeInstructions() throws LIRFormatError {
+		program.instructionCount = raw.size();
+		program.code = new int[raw.size()*LIRProgram.STRIDE];
+
+		for (int i = 0; i < raw.size(); i++){
+			decode(raw.get(i), i);
+		}
+
+		numberVirtualCallSites();
+	}
+
+	/**
+	 * gives ids to the unmarked virtual call sites, named by their LIR line
+	 * (their instruction index for binary LIR)
+	 */
+	private void numberVirtualCallSites(){
+		int siteId = 0;
+		for (CallSite site: program.callSites){
+			siteId = Math.max(siteId, site.siteId+1);
+		}
+		for (int i = 0; i < program.instructionCount; i++){
+			if (program.code[i*LIRProgram.STRIDE] != LIRProgram.VIRTUAL_CALL) continue;
+			CallSite site = program.callSites.get(program.code[i*LIRProgram.STRIDE+7]);
+			if (site.siteId < 0){
+				site.siteId = siteId++;
+				site.siteName = raw.isEmpty() ? "instruction "+i : "line "+raw.get(i).line;
+			}
+		}
+	}
+
+	/**
+	 * decodes a single instruction into position pc of the code array
+	 * @param inst
+	 * @param pc
+	 * @throws LIRFormatError
+	 */
+	private void decode(RawInstruction inst, int pc) throws LIRFormatError {
+		Function f = program.functions.get(program.functionOf[pc]);
+		int base = pc*LIRProgram.STRIDE;
+		int[] code = program.code;
+		String op = inst.opcode;
+		int line = inst.line;
+
+		if (op.equals("Library") || op.equals("StaticCall") || op.equals("VirtualCall")){
+			decodeCall(inst, pc, f);
+			return;
+		}
+
+		if (op.startsWith("Jump")){
+			int opcode;
+			if (op.equals("Jump")) opcode = LIRProgram.JUMP;
+			else if (op.equals("JumpTrue")) opcode = LIRProgram.JUMP_TRUE;
+			else if (op.equals("JumpFalse")) opcode = LIRProgram.JUMP_FALSE;
+			else if (op.equals("JumpG")) opcode = LIRProgram.JUMP_G;
+			else if (op.equals("JumpGE")) opcode = LIRProgram.JUMP_GE;
+			else if (op.equals("JumpL")) opcode = LIRProgram.JUMP_L;
+			else if (op.equals("JumpLE")) opcode = LIRProgram.JUMP_LE;
+			else throw new LIRFormatError("unknown instruction: "+op, line);
+			Integer target = labels.get(inst.operands);
+			if (target == null) throw new LIRFormatError("undefined label: "+inst.operands, line);
+			code[base] = opcode;
+			code[base+7] = target;
+			return;
+		}
+
+		List<String> ops = splitOperands(inst.operands);
+
+		if (op.equals("Return")){
+			expectOperands(ops, 1, inst);
+			code[base] = LIRProgram.RETURN;
+			setOperand(base+1, ops.get(0), f, line);
+			return;
+		}
+
+		if (op.equals("Inc") || op.equals("Dec") || op.equals("Neg") || op.equals("Not")){
+			expectOperands(ops, 1, inst);
+			code[base] = op.equals("Inc") ? LIRProgram.INC : op.equals("Dec") ? LIRProgram.DEC :
+						 op.equals("Neg") ? LIRProgram.NEG : LIRProgram.NOT;
+			setSlot(base+1, ops.get(0), f, line);
+			return;
+		}
+
+		expectOperands(ops, 2, inst);
+		String a = ops.get(0);
+		String b = ops.get(1);
+
+		if (op.equals("Move")){
+			code[base] = LIRProgram.MOVE;
+			setOperand(base+1, a, f, line);
+			setSlot(base+3, b, f, line);
+		} else if (op.equals("MoveField")){
+			if (a.indexOf('.') > 0){
+				code[base] = LIRProgram.LOAD_FIELD;
+				setSlot(base+1, a.substring(0, a.indexOf('.')), f, line);
+				setOperand(base+3, a.substring(a.indexOf('.')+1), f, line);
+				setSlot(base+5, b, f, line);
+			} else if (b.indexOf('.') > 0){
+				code[base] = LIRProgram.STORE_FIELD;
+				setOperand(base+1, a, f, line);
+				setSlot(base+3, b.substring(0, b.indexOf('.')), f, line);
+				setOperand(base+5, b.substring(b.indexOf('.')+1), f, line);
+			} else {
+				throw new LIRFormatError("MoveField without a field operand", line);
+			}
+		} else if (op.equals("MoveArray")){
+			if (a.indexOf('[') > 0){
+				code[base] = LIRProgram.LOAD_ARRAY;
+				setSlot(base+1, a.substring(0, a.indexOf('[')), f, line);
+				setOperand(base+3, arrayIndex(a, line), f, line);
+				setSlot(base+5, b, f, line);
+			} else if (b.indexOf('[') > 0){
+				code[base] = LIRProgram.STORE_ARRAY;
+				setOperand(base+1, a, f, line);
+				setSlot(base+3, b.substring(0, b.indexOf('[')), f, line);
+				setOperand(base+5, arrayIndex(b, line), f, line);
+			} else {
+				throw new LIRFormatError("MoveArray without an array operand", line);
+			}
+		} else if (op.equals("ArrayLength")){
+			code[base] = LIRProgram.ARRAY_LENGTH;
+			setOperand(base+1, a, f, line);
+			setSlot(base+3, b, f, line);
+		} else if (op.equals("Compare")){
+			code[base] = LIRProgram.COMPARE;
+			setOperand(base+1, a, f, line);
+			setOperand(base+3, b, f, line);
+		} else {
+			int opcode;
+			if (op.equals("Add")) opcode = LIRProgram.ADD;
+			else if (op.equals("Sub")) opcode = LIRProgram.SUB;
+			else if (op.equals("Mul")) opcode = LIRProgram.MUL;
+			else if (op.equals("Div")) opcode = LIRProgram.DIV;
+			else if (op.equals("Mod")) opcode = LIRProgram.MOD;
+			else if (op.equals("And")) opcode = LIRProgram.AND;
+			else if (op.equals("Or")) opcode = LIRProgram.OR;
+			else if (op.equals("Xor")) opcode = LIRProgram.XOR;
+			else throw new LIRFormatError("unknown instruction: "+op, line);
+			code[base] = opcode;
+			setOperand(base+1, a, f, line);
+			setSlot(base+3, b, f, line);
+		}
+	}
+
+	/**
+	 * decodes Library, StaticCall and VirtualCall instructions
+	 * @param inst
+	 * @param pc
+	 * @param f
+	 * @throws LIRFormatError
+	 */
+	private void decodeCall(RawInstruction inst, int pc, Function f) throws LIRFormatError {
+		int line = inst.line;
+		String s = inst.operands;
+		int open = s.indexOf('(');
+		int close = s.lastIndexOf(')');
+		if (open < 0 || close < open) throw new LIRFormatError("malformed call: "+s, line);
+
+		String callee = s.substring(0, open).trim();
+		List<String> args = splitOperands(s.substring(open+1, close));
+		String dst = s.substring(close+1).trim();
+		if (!dst.startsWith(",")) throw new LIRFormatError("call without a target register: "+s, line);
+		dst = dst.substring(1).trim();
+
+		CallSite site = new CallSite();
+		int n = args.size();
+		site.argKinds = new int[n];
+		site.argValues = new int[n];
+		site.formals = new String[n];
+		int[] tmp = new int[2];
+
+		for (int i = 0; i < n; i++){
+			String arg = args.get(i);
+			if (!inst.opcode.equals("Library")){
+				int eq = arg.indexOf('=');
+				if (eq < 0) throw new LIRFormatError("call argument without a formal name: "+arg, line);
+				site.formals[i] = arg.substring(0, eq).trim();
+				arg = arg.substring(eq+1).trim();
+			}
+			parseOperand(arg, f, line, tmp);
+			site.argKinds[i] = tmp[0];
+			site.argValues[i] = tmp[1];
+		}
+		parseOperand(dst, f, line, tmp);
+		if (tmp[0] != LIRProgram.SLOT) throw new LIRFormatError("call target must be a register: "+dst, line);
+		site.dstSlot = tmp[1];
+
+		int opcode;
+		if (inst.opcode.equals("Library")){
+			opcode = LIRProgram.LIBRARY;
+			site.target = Arrays.asList(LIBRARY_METHODS).indexOf(callee);
+			if (site.target < 0) throw new LIRFormatError("unknown library method: "+callee, line);
+		} else if (inst.opcode.equals("StaticCall")){
+			opcode = LIRProgram.STATIC_CALL;
+			site.target = program.getFunctionIndex(callee);
+			Function calleeFunction = program.functions.get(site.target);
+			site.formalSlots = new int[n];
+			for (int i = 0; i < n; i++){
+				site.formalSlots[i] = slotOf(calleeFunction, site.formals[i]);
+			}
+		} else {
+			opcode = LIRProgram.VIRTUAL_CALL;
+			int dot = callee.indexOf('.');
+			if (dot < 0) throw new LIRFormatError("malformed virtual call: "+callee, line);
+			parseOperand(callee.substring(0, dot), f, line, tmp);
+			if (tmp[0] != LIRProgram.SLOT) throw new LIRFormatError("virtual call receiver must be a register: "+callee, line);
+			site.receiverSlot = tmp[1];
+			try {
+				site.target = Integer.parseInt(callee.substring(dot+1));
+			} catch (NumberFormatException e){
+				throw new LIRFormatError("malformed method offset: "+callee, line);
+			}
+			readSiteComment(inst, site);
+		}
+
+		int base = pc*LIRProgram.STRIDE;
+		program.code[base] = opcode;
+		program.code[base+7] = program.callSites.size();
+		program.callSites.add(site);
+	}
+
+	/**
+	 * sets the id and name of a virtual call site by its comment, if any
+	 * @param inst
+	 * @param site
+	 */
+	private void readSiteComment(RawInstruction inst, CallSite site){
+		if (inst.comment == null || !inst.comment.startsWith(VIRTUAL_CALL_SITE_COMMENT)) return;
+		String rest = inst.comment.substring(VIRTUAL_CALL_SITE_COMMENT.length());
+		int colon = rest.indexOf(':');
+		try {
+			site.siteId = Integer.parseInt((colon < 0 ? rest : rest.substring(0, colon)).trim());
+			site.siteName = colon < 0 ? "" : rest.substring(colon+1).trim();
+		} catch (NumberFormatException e){
+			// not a site comment after all
+		}
+	}
+
+	// binary LIR
+	//////////////
+
+	/**
+	 * decodes a binary LIR program
+	 * @param reader
+	 * @return
+	 * @throws BinaryLIRFormatError
+	 */
+	public LIRProgram load(BinaryLIRReader reader) throws BinaryLIRFormatError {
+		for (int i = 0; i < reader.getLiteralCount(); i++){
+			program.stringLiterals.add(unescape(reader.getLiteralValue(i)));
+		}
+
+		// functions: the method entry labels (the symbols are in the code order)
+		int[] functionOfSymbol = new int[reader.getSymbolCount()];
+		for (int s = 0; s < functionOfSymbol.length; s++){
+			functionOfSymbol[s] = -1;
+			if (reader.isMethodEntry(s)){
+				functionOfSymbol[s] = program.functions.size();
+				program.functions.add(new Function(reader.getSymbolName(s), reader.getSymbolPosition(s)));
+			}
+		}
+		program.mainFunction = program.getFunctionIndex("_ic_main");
+		if (program.mainFunction < 0) throw new BinaryLIRFormatError("missing main method label _ic_main", 0);
+		program.instructionCount = reader.getInstructionCount();
+		assignFunctions(program.instructionCount);
+
+		for (int t = 0; t < reader.getTableCount(); t++){
+			int[] entries = reader.getTableEntries(t);
+			int[] table = new int[entries.length];
+			for (int i = 0; i < entries.length; i++){
+				table[i] = functionOfSymbol[entries[i]];
+				if (table[i] < 0) throw new BinaryLIRFormatError("dispatch table entry is not a method: "+reader.getSymbolName(entries[i]), 0);
+			}
+			program.dispatchTableNames.add(reader.getTableName(t));
+			program.dispatchTables.add(table);
+		}
+
+		nameSlots = new int[reader.getPoolSize()];
+		nameFunctions = new int[reader.getPoolSize()];
+		Arrays.fill(nameFunctions, -1);
+		program.code = new int[program.instructionCount*LIRProgram.STRIDE];
+		int[] code = program.code;
+		int[] tmp = new int[2];
+		reader.rewind();
+		for (int pc = 0; pc < program.instructionCount; pc++){
+			int f = program.functionOf[pc];
+			int base = pc*LIRProgram.STRIDE;
+			int op = reader.readOpcode();
+			code[base] = op;
+			if (BinaryLIRFormat.isJump(op)){
+				code[base+7] = reader.getSymbolPosition(reader.readIndex(functionOfSymbol.length));
+			} else if (op == LIRProgram.LIBRARY || op == LIRProgram.STATIC_CALL || op == LIRProgram.VIRTUAL_CALL){
+				decodeBinaryCall(reader, op, pc, f, functionOfSymbol);
+			} else {
+				for (int i = 0; i < BinaryLIRFormat.OPERAND_COUNTS[op]; i++){
+					readBinaryOperand(reader, f, (BinaryLIRFormat.NAME_OPERANDS[op] & (1 << i)) != 0, tmp);
+					code[base+1+2*i] = tmp[0];
+					code[base+2+2*i] = tmp[1];
+				}
+			}
+		}
+		if (reader.hasNext()) throw new BinaryLIRFormatError("code after the last instruction", reader.getOffset());
+		numberVirtualCallSites();
+		return program;
+	}
+
+	/**
+	 * decodes a binary Library, StaticCall or VirtualCall instruction
+	 */
+	private void decodeBinaryCall(BinaryLIRReader reader, int op, int pc, int f, int[] functionOfSymbol) throws BinaryLIRFormatError {
+		CallSite site = new CallSite();
+		int[] tmp = new int[2];
+		if (op == LIRProgram.LIBRARY){
+			String callee = reader.getString(reader.readIndex(reader.getPoolSize()));
+			site.target = Arrays.asList(LIBRARY_METHODS).indexOf(callee);
+			if (site.target < 0) throw new BinaryLIRFormatError("unknown library method: "+callee, reader.getOffset());
+		} else if (op == LIRProgram.STATIC_CALL){
+			int symbol = reader.readIndex(functionOfSymbol.length);
+			site.target = functionOfSymbol[symbol];
+			if (site.target < 0) throw new BinaryLIRFormatError("static call target is not a method: "+reader.getSymbolName(symbol), reader.getOffset());
+		} else {
+			readBinaryOperand(reader, f, true, tmp);
+			site.receiverSlot = tmp[1];
+			site.target = reader.readVarint();
+			site.siteId = reader.readVarint()-1;
+			int siteName = reader.readIndex(reader.getPoolSize()+1);
+			site.siteName = siteName > 0 ? reader.getString(siteName-1) : "";
+		}
+
+		int n = reader.readCount();
+		site.argKinds = new int[n];
+		site.argValues = new int[n];
+		site.formals = new String[n];
+		for (int i = 0; i < n; i++){
+			int formal = reader.readIndex(reader.getPoolSize()+1);
+			if (formal > 0) site.formals[i] = reader.getString(formal-1);
+			readBinaryOperand(reader, f, false, tmp);
+			site.argKinds[i] = tmp[0];
+			site.argValues[i] = tmp[1];
+		}
+		readBinaryOperand(reader, f, true, tmp);
+		site.dstSlot = tmp[1];
+		if (op == LIRProgram.STATIC_CALL){
+			Function callee = program.functions.get(site.target);
+			site.formalSlots = new int[n];
+			for (int i = 0; i < n; i++){
+				site.formalSlots[i] = slotOf(callee, site.formals[i]);
+			}
+		}
+
+		program.code[pc*LIRProgram.STRIDE+7] = program.callSites.size();
+		program.callSites.add(site);
+	}
+
+	/**
+	 * reads a binary operand into [kind, value], names as slots of function f
+	 */
+	private void readBinaryOperand(BinaryLIRReader reader, int f, boolean slot, int[] out) throws BinaryLIRFormatError {
+		reader.readOperand(out);
+		if (out[0] == BinaryLIRFormat.NAME){
+			int name = out[1];
+			if (nameFunctions[name] != f){
+				nameSlots[name] = slotOf(program.functions.get(f), reader.getString(name));
+				nameFunctions[name] = f;
+			}
+			out[0] = LIRProgram.SLOT;
+			out[1] = nameSlots[name];
+		} else if (slot){
+			throw new BinaryLIRFormatError("expected a register or variable", reader.getOffset());
+		}
+	}
+
+	// helpers
+	//////////
+
+	/**
+	 * returns the slot for the given name in the function's frame, allocating one if needed
+	 * @param f
+	 * @param name
+	 * @return
+	 */
+	public static int slotOf(Function f, String name){
+		Integer slot = f.slots.get(name);
+		if (slot == null){
+			slot = f.slots.size();
+			f.slots.put(name, slot);
+			if (name.equals("this")) f.thisSlot = slot;
+		}
+		return slot;
+	}
+
+	/**
+	 * parses a simple operand (immediate, string literal, dispatch table, register or variable)
+	 * into kind and value
+	 * @param s
+	 * @param f
+	 * @param line
+	 * @param out [kind, value]
+	 * @throws LIRFormatError
+	 */
+	private void parseOperand(String s, Function f, int line, int[] out) throws LIRFormatError {
+		if (s.length() == 0) throw new LIRFormatError("missing operand", line);
+		char c = s.charAt(0);
+		if (c == '-' || Character.isDigit(c)){
+			try {
+				out[0] = LIRProgram.IMM;
+				// 32-bit immediates wrap (2147483648 is only written as -2147483648)
+				out[1] = (int) Long.parseLong(s);
+				return;
+			} catch (NumberFormatException e){
+				throw new LIRFormatError("malformed immediate: "+s, line);
+			}
+		}
+		Integer strIndex = stringLabels.get(s);
+		if (strIndex != null){
+			out[0] = LIRProgram.STR;
+			out[1] = strIndex;
+			return;
+		}
+		Integer dvIndex = dispatchLabels.get(s);
+		if (dvIndex != null){
+			out[0] = LIRProgram.DV;
+			out[1] = dvIndex;
+			return;
+		}
+		if (!Character.isLetter(c)) throw new LIRFormatError("malformed operand: "+s, line);
+		for (int i = 1; i < s.length(); i++){
+			// memory operands (R1.2, R1[R2]) are only allowed in MoveField / MoveArray
+			if (!Character.isLetterOrDigit(s.charAt(i)) && s.charAt(i) != '_')
+				throw new LIRFormatError("malformed operand: "+s, line);
+		}
+		out[0] = LIRProgram.SLOT;
+		out[1] = slotOf(f, s);
+	}
+
+	/**
+	 * parses an operand into code[pos] (kind) and code[pos+1] (value)
+	 */
+	private void setOperand(int pos, String s, Function f, int line) throws LIRFormatError {
+		int[] tmp = new int[2];
+		parseOperand(s, f, line, tmp);
+		program.code[pos] = tmp[0];
+		program.code[pos+1] = tmp[1];
+	}
+
+	/**
+	 * parses an operand that must be a register or a variable
+	 */
+	private void setSlot(int pos, String s, Function f, int line) throws LIRFormatError {
+		setOperand(pos, s, f, line);
+		if (program.code[pos] != LIRProgram.SLOT)
+			throw new LIRFormatError("expected a register or variable: "+s, line);
+	}
+
+	/**
+	 * returns the index part of an array operand R1[R2]
+	 */
+	private static String arrayIndex(String s, int line) throws LIRFormatError {
+		if (!s.endsWith("]")) throw new LIRFormatError("malformed array operand: "+s, line);
+		return s.substring(s.indexOf('[')+1, s.length()-1).trim();
+	}
+
+	/**
+	 * checks the number of operands of an instruction
+	 */
+	private static void expectOperands(List<String> ops, int n, RawInstruction inst) throws LIRFormatError {
+		if (ops.size() != n)
+			throw new LIRFormatError(inst.opcode+" expects "+n+" operand(s): "+inst.operands, inst.line);
+	}
+
+	/**
+	 * splits an operand list at top-level commas (commas inside brackets are kept)
+	 * @param s
+	 * @return
+	 */
+	public static List<String> splitOperands(String s){
+		List<String> ops = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if (c == '(' || c == '[') depth++;
+			else if (c == ')' || c == ']') depth--;
+			else if (c == ',' && depth == 0){
+				ops.add(s.substring(start, i).trim());
+				start = i+1;
+			}
+		}
+		String last = s.substring(start).trim();
+		if (last.length() > 0 || !ops.isEmpty()) ops.add(last);
+		return ops;
+	}
+
+	/**
+	 * translates the escape sequences of a LIR string literal
+	 * @param s
+	 * @return
+	 */
+	public static String unescape(String s){
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if (c == '\\' && i+1 < s.length()){
+				char n = s.charAt(++i);
+				switch (n){
+				case 'n': sb.append('\n'); break;
+				case 't': sb.append('\t'); break;
+				case '"': sb.append('"'); break;
+				case '\\': sb.append('\\'); break;
+				default: sb.append('\\').append(n);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
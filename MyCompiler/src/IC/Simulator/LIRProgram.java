@@ -0,0 +1,156 @@
+package IC.Simulator;
+
+import java.util.*;
+
+/**
+ * LIRProgram
+ * ==========
+ * a pre-decoded LIR program, ready for execution by the LIRInterpreter.
+ *
+ * every instruction occupies STRIDE consecutive ints of the code array:
+ * 		[opcode, kind1, value1, kind2, value2, kind3, value3, aux]
+ * operand kinds are IMM (the value is the operand itself) or SLOT (the value
+ * is an index into the frame of the function the instruction belongs to).
+ * labels are resolved to code indices, and call / library instructions keep
+ * their arguments in side tables pointed to by the aux field.
+ */
+public class LIRProgram {
+
+	// instruction stride in the code array
+	public static final int STRIDE = 8;
+
+	// operand kinds
+	public static final int IMM = 0;
+	public static final int SLOT = 1;
+	// string literal (value is its index in the literal pool), bound to IMM when the program is loaded to a heap
+	public static final int STR = 2;
+	// dispatch table (value is its index), bound to IMM the same way
+	public static final int DV = 3;
+
+	// opcodes
+	public static final int MOVE = 0;
+	public static final int LOAD_FIELD = 1;
+	public static final int STORE_FIELD = 2;
+	public static final int LOAD_ARRAY = 3;
+	public static final int STORE_ARRAY = 4;
+	public static final int ARRAY_LENGTH = 5;
+	public static final int ADD = 6;
+	public static final int SUB = 7;
+	public static final int MUL = 8;
+	public static final int DIV = 9;
+	public static final int MOD = 10;
+	public static final int AND = 11;
+	public static final int OR = 12;
+	public static final int XOR = 13;
+	public static final int INC = 14;
+	public static final int DEC = 15;
+	public static final int NEG = 16;
+	public static final int NOT = 17;
+	public static final int COMPARE = 18;
+	public static final int JUMP = 19;
+	public static final int JUMP_TRUE = 20;
+	public static final int JUMP_FALSE = 21;
+	public static final int JUMP_G = 22;
+	public static final int JUMP_GE = 23;
+	public static final int JUMP_L = 24;
+	public static final int JUMP_LE = 25;
+	public static final int LIBRARY = 26;
+	public static final int STATIC_CALL = 27;
+	public static final int VIRTUAL_CALL = 28;
+	public static final int RETURN = 29;
+
+	public static final String[] OPCODE_NAMES = {
+		"Move", "MoveField(load)", "MoveField(store)", "MoveArray(load)", "MoveArray(store)",
+		"ArrayLength", "Add", "Sub", "Mul", "Div", "Mod", "And", "Or", "Xor", "Inc", "Dec",
+		"Neg", "Not", "Compare", "Jump", "JumpTrue", "JumpFalse", "JumpG", "JumpGE", "JumpL",
+		"JumpLE", "Library", "StaticCall", "VirtualCall", "Return"
+	};
+
+	/**
+	 * a decoded call site (StaticCall, VirtualCall or Library)
+	 */
+	public static class CallSite {
+		// callee function index (StaticCall), method offset (VirtualCall) or library method (Library)
+		public int target;
+		// slot of the receiver (VirtualCall only)
+		public int receiverSlot;
+		// argument operands
+		public int[] argKinds;
+		public int[] argValues;
+		// formal parameter names, as written in the call
+		public String[] formals;
+		// formal parameter slots in the callee frame (StaticCall only)
+		public int[] formalSlots;
+		// destination slot of the returned value
+		public int dstSlot;
+		// VirtualCall only: the id of the call site, as emitted by the translator (copies of
+		// a call made by the optimizations share it), and its called method
+		public int siteId = -1;
+		public String siteName;
+	}
+
+	/**
+	 * a decoded function: an entry label and its frame layout
+	 */
+	public static class Function {
+		public String label;
+		public int entry;
+		public Map<String,Integer> slots = new HashMap<String,Integer>();
+		// slot of 'this', -1 if the function never refers to it
+		public int thisSlot = -1;
+
+		public Function(String label, int entry){
+			this.label = label;
+			this.entry = entry;
+		}
+
+		public int getFrameSize(){
+			return slots.size();
+		}
+	}
+
+	public int[] code;
+	public int instructionCount;
+	public List<CallSite> callSites = new ArrayList<CallSite>();
+	public List<Function> functions = new ArrayList<Function>();
+	// function index of every instruction
+	public int[] functionOf;
+	// string literals, indexed by their position in the literal pool
+	public List<String> stringLiterals = new ArrayList<String>();
+	// dispatch tables, each entry is a function index
+	public List<int[]> dispatchTables = new ArrayList<int[]>();
+	public List<String> dispatchTableNames = new ArrayList<String>();
+	// index of the main function
+	public int mainFunction = -1;
+
+	/**
+	 * returns the function index for the given label, or -1 if not a function
+	 * @param label
+	 * @return
+	 */
+	public int getFunctionIndex(String label){
+		for (int i = 0; i < functions.size(); i++){
+			if (functions.get(i).label.equals(label)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * encodes a dispatch table index as an (always negative) runtime value,
+	 * so it can never be confused with a heap reference
+	 * @param index
+	 * @return
+	 */
+	public static int encodeDispatchTable(int index){
+		return -(index+1);
+	}
+
+	/**
+	 * decodes a runtime dispatch table value back to its index
+	 * @param value
+	 * @return
+	 */
+	public static int decodeDispatchTable(int value){
+		return -value-1;
+	}
+}
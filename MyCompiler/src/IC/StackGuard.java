@@ -0,0 +1,194 @@
+package IC;
+
+import java.util.concurrent.Callable;
+
+/**
+ * StackGuard
+ * ==========
+ * lets the recursive passes of the compiler nest as deep as the program does, with the
+ * default thread stack (no -Xss): the AST visitors (through the accept methods of the
+ * nodes that nest, see ASTNode.acceptOnFreshStack) and the recursive-descent parser.
+ *
+ * the nested calls are counted on every thread. when a thread nested as deep as its
+ * stack allows, the next call is continued on a fresh stack: the thread's stack segment
+ * (a thread with a large stack) runs it, while the calling thread waits for it.
+ * so a pass still runs one call at a time, in order, and need not be thread-safe;
+ * the result, or the exception thrown, is handed back to the caller.
+ *
+ * a thread has a single segment, which runs all the calls it continues: so the many
+ * statements of a block at the limit run on one thread, not a thread each. a segment
+ * ends once idle for SEGMENT_IDLE_MILLIS (the next call at the limit starts another).
+ *
+ * the depth is then bounded by the memory only: a deep traversal takes about the stack
+ * it would take on a single huge stack, and a thread per SEGMENT_DEPTH nested calls.
+ * a traversal that does not nest deep never leaves its thread (a counter per call).
+ */
+public final class StackGuard {
+
+	/* the nested calls allowed on a thread of an unknown stack size (a default stack
+	 * holds several times as many), and on a stack segment of SEGMENT_STACK bytes. */
+	private static final int THREAD_DEPTH = 400;
+	private static final int SEGMENT_DEPTH = 4000;
+	private static final long SEGMENT_STACK = 64L << 20;
+	private static final long SEGMENT_IDLE_MILLIS = 1000;
+
+	/* the depth of the current thread: {nested calls, nested calls allowed} */
+	private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+		protected int[] initialValue() {
+			return new int[] { 0, THREAD_DEPTH };
+		}
+	};
+
+	/* the stack segment of the current thread, if it started one */
+	private static final ThreadLocal<Segment> segment = new ThreadLocal<Segment>();
+
+	private StackGuard() {
+	}
+
+	/**
+	 * a stack segment: a thread that runs the calls handed to it, one at a time
+	 * (the thread that hands a call waits for it: see onFreshStack)
+	 */
+	private static final class Segment implements Runnable {
+
+		private Callable<?> call;   /* the call handed, until it is run */
+		private boolean done;       /* the call handed returned, or threw */
+		private Object result;
+		private Throwable thrown;
+		private boolean ended;      /* the thread ended: no more calls are run */
+
+		/**
+		 * hands a call to the segment
+		 * @return false if the segment ended (idle)
+		 */
+		synchronized boolean hand(Callable<?> c) {
+			if (ended) return false;
+			call = c;
+			notifyAll();
+			return true;
+		}
+
+		/**
+		 * waits for the call handed (the call cannot be abandoned half way)
+		 */
+		synchronized void await() {
+			boolean interrupted = false;
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			done = false;
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		public void run() {
+			depth.get()[1] = SEGMENT_DEPTH;
+			while (true) {
+				Callable<?> c;
+				synchronized (this) {
+					long idle = System.currentTimeMillis() + SEGMENT_IDLE_MILLIS;
+					while (call == null) {
+						long left = idle - System.currentTimeMillis();
+						if (left <= 0) {
+							ended = true;
+							return;
+						}
+						try {
+							wait(left);
+						} catch (InterruptedException e) {  //only an idle segment waits.
+						}
+					}
+					c = call;
+					call = null;
+				}
+
+				Object r = null;
+				Throwable t = null;
+				try {
+					r = c.call();
+				} catch (Throwable e) {
+					t = e;
+				}
+
+				synchronized (this) {
+					result = r;
+					thrown = t;
+					done = true;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * counts a nested call on the current thread, if its stack has room for it
+	 * @return true if the call may run on the current stack (and must then call exit()
+	 * 			when it returns), false if it must be continued on a fresh stack (onFreshStack)
+	 */
+	public static boolean enter() {
+		int[] d = depth.get();
+		if (d[0] >= d[1]) return false;
+		d[0]++;
+		return true;
+	}
+
+	/**
+	 * ends a nested call counted by enter()
+	 */
+	public static void exit() {
+		depth.get()[0]--;
+	}
+
+	/**
+	 * runs a call on a fresh stack, and waits for it
+	 * @param call the nested call (it calls enter() again, on the fresh stack)
+	 * @return the call's result
+	 * @throws Exception the exception thrown by the call (an Error is thrown as is)
+	 */
+	public static <T> T onFreshStack(Callable<T> call) throws Exception {
+		Segment s = segment.get();
+		if (s == null || !s.hand(call)) {
+			s = new Segment();
+			Thread thread = new Thread(null, s, "stack segment", SEGMENT_STACK);
+			thread.setDaemon(true);  //a call that exits the compiler does not wait for its callers.
+			thread.start();
+			segment.set(s);
+			s.hand(call);
+		}
+		s.await();
+
+		Object result = s.result;
+		Throwable thrown = s.thrown;
+		s.result = null;
+		s.thrown = null;
+
+		if (thrown instanceof Exception)
+			throw (Exception)thrown;
+		if (thrown != null)
+			throw (Error)thrown;
+		@SuppressWarnings("unchecked")
+		T t = (T)result;
+		return t;
+	}
+
+	/**
+	 * runs a call that throws no checked exceptions on a fresh stack (see onFreshStack)
+	 * @param call
+	 * @return the call's result
+	 */
+	public static <T> T onFreshStackUnchecked(Callable<T> call) {
+		try {
+			return onFreshStack(call);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {  //never: the call throws no checked exceptions.
+			throw new RuntimeException(e);
+		}
+	}
+
+}
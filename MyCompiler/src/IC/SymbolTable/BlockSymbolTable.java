@@ -1,5 +1,6 @@
 package IC.SymbolTable;
 
+import IC.Name;
 import IC.AST.LocalVariable;
 import IC.TypeTable.*;
 
@@ -26,6 +27,34 @@ public class BlockSymbolTable extends SymbolTable {
 
 	}
 
+	/**
+	 * the symbol table of a statement block: its id, "statement block in <parent's id>",
+	 * is made only when asked for (the ids of nested blocks grow with their depth).
+	 */
+	public BlockSymbolTable(SymbolTable parent) {
+		this(null, parent);
+	}
+
+	@Override
+	public String getID() {
+		if (this.id != null) {
+			return this.id;
+		}
+
+		//the enclosing statement blocks, up to a named table.
+		int blocks = 0;
+		SymbolTable st = this;
+		while (st.id == null) {
+			blocks++;
+			st = st.getParent();
+		}
+		StringBuilder id = new StringBuilder();
+		for (int i = 0; i < blocks; i++) {
+			id.append("statement block in ");
+		}
+		return id.append(st.getID()).toString();
+	}
+
 	
 	public ClassSymbolTable getEnclosingCST() {
 		return this.enclosingClass;
@@ -40,23 +69,27 @@ public class BlockSymbolTable extends SymbolTable {
 		super.insert(v);
 	}
 	
-	public int getVarDepthRec(String name) {
-		int vd = entries.containsKey(name) ? this.getDepth() : ((BlockSymbolTable) parentSymbolTable).getVarDepthRec(name);
-		return vd;
+	public int getVarDepthRec(Name name) {
+		//the block or method declaring it (through the tables found before: blocks may nest deep).
+		SymbolTable st = getEnclosingST(name);
+		if (st instanceof BlockSymbolTable) {
+			return st.getDepth();
+		}
+		return this.enclosingClass.getFieldDepthRec(name);
 	}
 
-	public Symbol lookupVariable(String name) throws SemanticError {
+	public Symbol lookupVariable(Name name) throws SemanticError {
 		
 		Symbol vs = super.lookup(name); 
 		
 		if (vs == null) {
-			throw new SemanticError("Variable not found", name); 
+			throw new SemanticError("Variable not found", name.toString()); 
 		}
 		
 		return vs;
 	}
 	
-	public boolean isVarField (String name) { 
+	public boolean isVarField (Name name) { 
 		
 		Symbol s = super.lookup(name);
 		
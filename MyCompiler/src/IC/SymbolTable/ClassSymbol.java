@@ -18,7 +18,7 @@ public class ClassSymbol extends Symbol {
 
 	public ClassSymbol(ICClass c) throws SemanticError {
 		
-		super(c.getLine(), c.getName(), Kind.CLASS, TypeTable.getClassType(c.getName()));
+		super(c.getLine(), c.getIdentifier(), Kind.CLASS, TypeTable.getClassType(c.getIdentifier()));
 		
 		initClassSymbolTable(c);
 		
@@ -39,7 +39,7 @@ public class ClassSymbol extends Symbol {
 			
 			GlobalSymbolTable gst = SymbolTableBuilder.gst;   //getting global sym. table.
 															
-			ClassSymbol superClass = (ClassSymbol)(gst.lookup(c.getSuperClassName())); 
+			ClassSymbol superClass = (ClassSymbol)(gst.lookup(c.getSuperClassIdentifier())); 
 			if (superClass == null) {
 				//super class not found.
 				throw new SemanticError("Symbol cannot be resolved - super class wasn't previously defined", 
@@ -1,5 +1,6 @@
 package IC.SymbolTable;
 
+import IC.Name;
 import IC.AST.ICClass;
 import IC.AST.Method;
 import IC.AST.Field;
@@ -39,7 +40,7 @@ public class ClassSymbolTable extends SymbolTable {
 	 */
 	private void addField(Field fld) throws SemanticError {
 		
-		Symbol sym = lookup(fld.getName());
+		Symbol sym = lookup(fld.getIdentifier());
 		
 		if ((sym != null) && (sym.getKind() == Kind.FIELD || sym.getKind() == Kind.METHOD)) {
 			//we already have field or method with same name in this class hierarchy.
@@ -56,7 +57,7 @@ public class ClassSymbolTable extends SymbolTable {
 	 */
 	private void addMethod(Method meth) throws SemanticError {
 		
-		Symbol sym = lookup(meth.getName());
+		Symbol sym = lookup(meth.getIdentifier());
 		
 		MethodSymbol meth_sym = new MethodSymbol(meth);
 		
@@ -98,23 +99,27 @@ public class ClassSymbolTable extends SymbolTable {
 
 	}
 
-	public Symbol getField(String name) throws SemanticError {
+	public Symbol getField(Name name) throws SemanticError {
 		
 		Symbol f = super.lookup(name); 
 		
 		if (f == null) {
-			throw new SemanticError("Field not found", name); 
+			throw new SemanticError("Field not found", name.toString()); 
 		}
 		
 		return f;
 	}
 
 	public Symbol getMethod(String name) throws SemanticError {
+		return getMethod(Name.of(name));
+	}
+
+	public Symbol getMethod(Name name) throws SemanticError {
 		
 		Symbol m = super.lookup(name); 
 		
 		if (m == null) {
-			throw new SemanticError("Method not found", name); 
+			throw new SemanticError("Method not found", name.toString()); 
 		}
 		
 		return m;
@@ -129,7 +134,7 @@ public class ClassSymbolTable extends SymbolTable {
 		return str;
 	}
 	
-	public int getFieldDepthRec(String name) {
+	public int getFieldDepthRec(Name name) {
 		int fd;
 		if (entries.containsKey(name)) {
 			fd = this.getDepth();
@@ -10,7 +10,7 @@ import IC.AST.Field;
 public class FieldSymbol extends Symbol {
 	
 	public FieldSymbol(Field fld) throws SemanticError {
-		super(fld.getLine(), fld.getName(), Kind.FIELD, TypeTable.getType(fld.getType().toString()));
+		super(fld.getLine(), fld.getIdentifier(), Kind.FIELD, TypeTable.getType(fld.getType()));
 	}
 	
 	@Override
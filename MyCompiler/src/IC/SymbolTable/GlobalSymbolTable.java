@@ -2,6 +2,7 @@ package IC.SymbolTable;
 
 import java.util.*; 
 
+import IC.Name;
 import IC.AST.ICClass;
 
 import IC.TypeTable.*;
@@ -23,11 +24,15 @@ public class GlobalSymbolTable extends SymbolTable {
 	 * 
 	 */
 	public ClassSymbolTable lookupCST(String name) throws SemanticError {
+		return lookupCST(Name.of(name));
+	}
+
+	public ClassSymbolTable lookupCST(Name name) throws SemanticError {
 		
 		Symbol cs = super.lookup(name);
 		
 		if (cs == null) {
-			throw new SemanticError("Class not found", name); 
+			throw new SemanticError("Class not found", name.toString()); 
 		}
 		
 		return ((ClassSymbol)cs).getClassSymbolTable();
@@ -45,7 +50,7 @@ public class GlobalSymbolTable extends SymbolTable {
 		return cs;
 	}
 	
-	public ClassSymbol getClass(String name){
+	public ClassSymbol getClass(Name name){
 		return (ClassSymbol) entries.get(name);
 	}
 
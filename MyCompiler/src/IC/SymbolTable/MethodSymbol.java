@@ -1,5 +1,6 @@
 package IC.SymbolTable;
 
+import IC.Name;
 import IC.AST.Method; 
 import IC.TypeTable.*;
 
@@ -12,7 +13,7 @@ public class MethodSymbol extends Symbol {
 	private boolean isStaticMethod;
 
 	public MethodSymbol(Method method) throws SemanticError {
-		super(method.getLine(), method.getName(), Kind.METHOD, TypeTable.getMethodType(method));
+		super(method.getLine(), method.getIdentifier(), Kind.METHOD, TypeTable.getMethodType(method));
 														
 		this.isStaticMethod = method.isStatic();
 
@@ -28,7 +29,7 @@ public class MethodSymbol extends Symbol {
 
 	public boolean isMainMethod() throws SemanticError {
 		//main method type and name 'main' and static.
-		return ((MethodType)super.getType()).isMainMethodType() && super.getID().equals("main") && isStaticMethod();
+		return ((MethodType)super.getType()).isMainMethodType() && super.getName() == Name.MAIN && isStaticMethod();
 	}
 
 	@Override
@@ -1,5 +1,6 @@
 package IC.SymbolTable;
 
+import IC.Name;
 import IC.AST.LocalVariable; 
 import IC.AST.Method;
 import IC.AST.Formal;
@@ -16,6 +17,10 @@ public class MethodSymbolTable extends BlockSymbolTable {
 	public MethodSymbolTable(Method meth, SymbolTable parent) throws SemanticError {
 		super(meth.getName(), parent);
 		
+		//as deep as the method of a class without a superclass (global, class, method), wherever the
+		//class is: an overriding method names its formals (by depth, in the LIR) like the method it overrides.
+		super.setDepth(2);
+		
 		//adding all formal params. to method sym. table.
 		for (Formal f : meth.getFormals()) {
 			VarSymbol form = new VarSymbol(f);
@@ -25,12 +30,12 @@ public class MethodSymbolTable extends BlockSymbolTable {
 		
 		super.StaticScope = meth.isStatic();
 		
-		super.returnType = TypeTable.getType(meth.getType().toString()); //return type of method.
+		super.returnType = TypeTable.getType(meth.getType()); //return type of method.
 															
 		super.enclosingClass = (ClassSymbolTable)(parent);   //CST of enclosing class.
 	}
 
-	public int getVarDepthRec(String name) {
+	public int getVarDepthRec(Name name) {
 		int vd = entries.containsKey(name) ? this.getDepth() : ((ClassSymbolTable) parentSymbolTable).getFieldDepthRec(name);
 		return vd;
 	}
@@ -1,5 +1,6 @@
 package IC.SymbolTable;
 
+import IC.Name;
 import IC.TypeTable.*;
 
 /**
@@ -9,12 +10,16 @@ import IC.TypeTable.*;
 public class Symbol {
 	
 	private int line;
-	private String id; //symbol name.
+	private Name id; //symbol name.
 	private Kind kind;
 
 	protected Type type = null;
 
 	public Symbol(int line, String id, Kind kind, Type type) {
+		this(line, Name.of(id), kind, type);
+	}
+
+	public Symbol(int line, Name id, Kind kind, Type type) {
 		this.line = line;
 		this.kind = kind;
 		this.id = id;
@@ -22,6 +27,10 @@ public class Symbol {
 	}
 
 	public String getID() {
+		return this.id.toString();
+	}
+
+	public Name getName() {
 		return this.id;
 	}
 
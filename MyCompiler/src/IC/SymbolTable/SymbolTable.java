@@ -2,11 +2,12 @@ package IC.SymbolTable;
 
 import java.util.*; 
 
+import IC.Name;
 import IC.TypeTable.*;
 
 /**
  * Base class for symbol tables. 
- * Holds entries map, parent and children symbol tables.
+ * Holds entries map (keyed by canonical names, see IC.Name), parent and children symbol tables.
  *
  */
 
@@ -16,15 +17,32 @@ public class SymbolTable {
     protected String id;
     protected SymbolTable parentSymbolTable;
     private List<SymbolTable> childrenTables;
-    protected Map<String, Symbol> entries;
+    protected Map<Name, Symbol> entries;
     protected boolean StaticScope;
 
+    private SymbolTable global;  //the root of the tables.
+    private Map<Name, Integer> declarations;  //global table only: the times each name was declared in a table.
+    private Map<Name, Found> found;  //the tables the names looked up from this table were found in.
+
+    /* a table a name was found in (null: not found), and the times the name was declared then. */
+    private static class Found {
+    	final SymbolTable table;
+    	final int declared;
+
+    	Found(SymbolTable table, int declared) {
+    		this.table = table;
+    		this.declared = declared;
+    	}
+    }
+
     public SymbolTable(String id, SymbolTable parent) {
             
     	this.id = id;
     	this.parentSymbolTable = parent;
+    	this.global = (parent == null ? this : parent.global);
+    	this.declarations = (parent == null ? new HashMap<Name, Integer>() : null);
         this.depth = (parent == null ? 0 : parent.depth + 1);   
-        this.entries = new LinkedHashMap<String, Symbol>();
+        this.entries = new LinkedHashMap<Name, Symbol>();
         this.childrenTables = new ArrayList<SymbolTable>();
         
         if (this.parentSymbolTable == null) { //global scope.
@@ -50,7 +68,7 @@ public class SymbolTable {
     }
     
     public void setDepth(int Depth) {
-    	this.depth = depth;
+    	this.depth = Depth;
     }
     
     public String getID() {
@@ -87,35 +105,29 @@ public class SymbolTable {
      */
     public void insert(Symbol sym) throws SemanticError {
 
-    	if (this.entries.containsKey(sym.getID())) {
+    	if (this.entries.containsKey(sym.getName())) {
     		throw new SemanticError("Multiple definitions for symbol in scope", sym.getID());
         }
             
-    	this.entries.put(sym.getID(), sym);
+    	this.entries.put(sym.getName(), sym);
+
+    	Integer declared = global.declarations.get(sym.getName());
+    	global.declarations.put(sym.getName(), declared == null ? 1 : declared + 1);
     }
 
     
     /**
-     * Lookup a symbol name in table, recursively.
+     * Lookup a symbol name in table, and up the enclosing tables.
      *
      */
     public Symbol lookup(String sym_name) {
+    	return lookup(Name.of(sym_name));
+    }
+    
+    public Symbol lookup(Name sym_name) {
             
-    	Symbol ret = this.entries.get(sym_name);
-    	
-        if (ret == null) {
-                    
-        	if (this.hasNoParentScope() == true) {
-        		
-        		return null;   
-        		
-        	} else {
-        		return this.parentSymbolTable.lookup(sym_name);
-            } 
-        	
-        } else {
-        	return ret;
-        }
+    	SymbolTable st = getEnclosingST(sym_name);
+    	return (st == null ? null : st.entries.get(sym_name));
     }
     
     /**
@@ -123,16 +135,46 @@ public class SymbolTable {
      *
      */
     public SymbolTable getEnclosingST(String sym_name) { 
-            
+    	return getEnclosingST(Name.of(sym_name));
+    }
+
+    /**
+     * Up the enclosing tables in a loop, not recursively: blocks may nest deep.
+     * The table found is kept by this table, until the name is declared again anywhere:
+     * so a lookup from a nested block stops at the first enclosing block that looked
+     * the name up (else a use in every nested block walks up all the blocks).
+     *
+     */
+    public SymbolTable getEnclosingST(Name name) {
+
+    	if (this.entries.containsKey(name)) {
+    		return this;
+    	}
+
+    	Integer counted = global.declarations.get(name);
+    	int declared = (counted == null ? 0 : counted);
+
     	SymbolTable ret = this;
-    	
-    	while (ret.entries.get(sym_name) == null) {
+    	while (true) {
+    		Found f = (ret.found == null ? null : ret.found.get(name));
+    		if (f != null && f.declared == declared) {
+    			ret = f.table;
+    			break;
+    		}
     		if (ret.hasNoParentScope()) {
-    			return null;
+    			ret = null;
+    			break;
     		}
     		ret = ret.getParent();
+    		if (ret.entries.containsKey(name)) {
+    			break;
+    		}
+    	}
+
+    	if (this.found == null) {
+    		this.found = new HashMap<Name, Found>();
     	}
-    	
+    	this.found.put(name, new Found(ret, declared));
         return ret;
     }
     
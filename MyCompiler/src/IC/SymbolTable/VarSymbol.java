@@ -15,16 +15,16 @@ public class VarSymbol extends Symbol {
 	private boolean isFormal;   //true iff this instance represents formal param.
 	
 	public VarSymbol(LocalVariable lv) throws SemanticError {
-		super(lv.getLine(), lv.getName(), Kind.VARIABLE, TypeTable.getType(lv.getType().toString()));
-		super.type = TypeTable.getType(lv.getType().toString()); 
+		super(lv.getLine(), lv.getIdentifier(), Kind.VARIABLE, TypeTable.getType(lv.getType()));
+		super.type = TypeTable.getType(lv.getType()); 
 		
 		this.isFormal = false;
 	}
 	
 
 	public VarSymbol(Formal f) throws SemanticError {
-		super(f.getLine(), f.getName(), Kind.VARIABLE, TypeTable.getType(f.getType().toString()));
-		super.type = TypeTable.getType(f.getType().toString());
+		super(f.getLine(), f.getIdentifier(), Kind.VARIABLE, TypeTable.getType(f.getType()));
+		super.type = TypeTable.getType(f.getType());
 		
 		this.isFormal = true;
 	}
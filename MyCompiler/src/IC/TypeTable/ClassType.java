@@ -1,5 +1,6 @@
 package IC.TypeTable;
 
+import IC.Name;
 import IC.AST.*;  
 
 /**
@@ -31,7 +32,7 @@ public class ClassType extends Type {
 			return true;    
 		}
 		
-		String super_name = this.classAST.getSuperClassName();
+		Name super_name = this.classAST.getSuperClassIdentifier();
 		
 		//no super class.
 		if (super_name == null) {
@@ -56,7 +57,7 @@ public class ClassType extends Type {
         if (this.classAST.hasSuperClass()) {
         	try {
         		
-        		String super_name = this.classAST.getSuperClassName();
+        		Name super_name = this.classAST.getSuperClassIdentifier();
         		str += ", Superclass ID: " + TypeTable.getClassType(super_name).getTypeID();
         		
             } catch (SemanticError se) { //will never be thrown.
@@ -11,6 +11,7 @@ public class SemanticError extends Exception {
 	
 	private int line_number;
     private String tok;
+    private String file = null;  /* the source file, in a program of several files. */
         
     private static final long serialVersionUID = 44L;  /* impl. serializable. */ 
         
@@ -34,14 +35,18 @@ public class SemanticError extends Exception {
     	return this.line_number;
     }
     
+    public void setFile(String file) {
+    	this.file = file;
+    }
+    
     
     /**
      * Returns error string message with line number, message and the token that
-     * caused the semantic error.
+     * caused the semantic error (after the source file, if it is known).
      */
     @Override
     public String toString() {
-    	 return ("semantic error at line " + this.line_number + 
+    	 return ((this.file == null ? "" : this.file + ": ") + "semantic error at line " + this.line_number + 
     			 	": " + super.getMessage() + ": " + this.tok);
     } 
 
@@ -1,6 +1,7 @@
 package IC.TypeTable;
 
 import java.util.*;  
+import IC.Name;
 import IC.AST.*;
 
 /**
@@ -17,7 +18,7 @@ public class TypeTable {
 	
 	
 	
-	private static Map<String,ClassType> uniqueClassTypes = new LinkedHashMap<String,ClassType>();
+	private static Map<Name,ClassType> uniqueClassTypes = new LinkedHashMap<Name,ClassType>();  //by canonical class name
 	private static Map<Type,ArrayType> uniqueArrayTypes = new LinkedHashMap<Type,ArrayType>();  
 	private static Map<String,MethodType> uniqueMethodTypes = new LinkedHashMap<String,MethodType>();
 	private static Map<String,Type> uniquePrimitiveTypes = new LinkedHashMap<String,Type>();
@@ -31,10 +32,16 @@ public class TypeTable {
     
 	
     /**
-     * Initializes the type table.
+     * Initializes the type table (dropping the types of a program checked before).
      */
     public static void initializeTypeTable(String FileName) {
     	
+        uniqueClassTypes.clear();
+        uniqueArrayTypes.clear();
+        uniqueMethodTypes.clear();
+        uniquePrimitiveTypes.clear();
+        uniqueIdCounter = 0;
+        
         uniquePrimitiveTypes.put(intType.getName(), intType);
         uniquePrimitiveTypes.put(boolType.getName(), boolType);
         uniquePrimitiveTypes.put(nullType.getName(), nullType);
@@ -70,13 +77,13 @@ public class TypeTable {
      */
 	public static MethodType getMethodType(Method meth) throws SemanticError {
 		
-		Type returnType = getType(meth.getType().toString()); 
+		Type returnType = getType(meth.getType()); 
 		
         List<Type> paramTypes = new ArrayList<Type>();
         
         //getting parameters.
         for (Formal f : meth.getFormals()) {
-        	paramTypes.add(getType(f.getType().toString()));
+        	paramTypes.add(getType(f.getType()));
         }
          
 		MethodType mt1 = new MethodType(returnType, paramTypes);
@@ -103,17 +110,18 @@ public class TypeTable {
 	 public static void addClassType(ICClass c) throws SemanticError {
 		 
          String class_name = c.getName();
+         Name name = c.getIdentifier();
          
-         if (uniqueClassTypes.containsKey(class_name)) {
+         if (uniqueClassTypes.containsKey(name)) {
         	 throw new SemanticError("Multiple definitons for class", c.getLine(), class_name);
          }
          
-         if (c.hasSuperClass() && !(uniqueClassTypes.containsKey(c.getSuperClassName()))) {
+         if (c.hasSuperClass() && !(uniqueClassTypes.containsKey(c.getSuperClassIdentifier()))) {
         	 
         	 throw new SemanticError("Class inherits from undefined class", c.getLine(), c.getSuperClassName());
          }
          
-         uniqueClassTypes.put(class_name, new ClassType(c));
+         uniqueClassTypes.put(name, new ClassType(c));
 	}
 	 
 	 
@@ -122,11 +130,17 @@ public class TypeTable {
 	 * 
 	 */
 	public static ClassType getClassType(String name) throws SemanticError {
+		return getClassType(Name.of(name));
+	}
 
-		if (uniqueClassTypes.containsKey(name) == false) {
-			throw new SemanticError("Class is undefined", name);
+	public static ClassType getClassType(Name name) throws SemanticError {
+
+		ClassType ct = uniqueClassTypes.get(name);
+		
+		if (ct == null) {
+			throw new SemanticError("Class is undefined", name.toString());
 		} else { 
-			return uniqueClassTypes.get(name);
+			return ct;
 		}
 	}
 	
@@ -153,6 +167,25 @@ public class TypeTable {
         return getClassType(typeName);
         
     }
+
+	/**
+     * Returns type object of a declared type (a class type by its canonical name, not by its type string).
+     * 
+     */
+    public static Type getType(IC.AST.Type declared) throws SemanticError {
+        Type t;
+
+        if (declared instanceof UserType) {
+        	t = getClassType(((UserType) declared).getIdentifier());
+        } else {
+        	t = uniquePrimitiveTypes.get(declared.getName());
+        }
+
+        for (int i = 0; i < declared.getDimension(); i++) {
+        	t = getArrayType(t);
+        }
+        return t;
+    }
 	
     
 	/**
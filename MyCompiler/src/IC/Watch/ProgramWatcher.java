@@ -0,0 +1,291 @@
+package IC.Watch;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import java_cup.runtime.Scanner;
+
+import IC.AST.ICClass;
+import IC.AST.Program;
+import IC.Cache.IncrementalBuild;
+import IC.LIR.OptTranslatePropagatingVisitor;
+import IC.LIR.RegCounterVisitor;
+import IC.LIR.TranslatePropagatingVisitor;
+import IC.Parser.*;
+import IC.SSA.SSAOptimizer;
+import IC.SemanticAnalysis.SemanticChecks;
+import IC.SemanticAnalysis.SymbolTableBuilder;
+import IC.SymbolTable.GlobalSymbolTable;
+
+/**
+ * ProgramWatcher
+ * ==============
+ * compiles a program to LIR, and compiles it again whenever one of its source files
+ * or the library signature is saved (-watch), until the compiler is stopped.
+ *
+ * the state of the last compilation is kept in memory between compilations:
+ * 		- the AST of every source file: only the files that were saved are parsed again
+ * 		- the library class: parsed again only when the library signature is saved
+ * 		- an IncrementalBuild: only the classes that changed, and the classes that depend
+ * 		  on them, are checked and translated again
+ * the symbol tables and the type table are built again for every compilation (they
+ * hold the classes of the program, and are cheap to build).
+ *
+ * an error is reported, and the program is compiled again after the next save.
+ * after every compilation, the time from the save to the updated .lir file is printed.
+ */
+public class ProgramWatcher {
+
+	/* the saves within this time of each other are compiled together (an editor may
+	 * write a file in several steps, or several files at once). */
+	private static final long QUIET_MILLIS = 50;
+
+	private final List<String> paths;
+	private final String programPath;
+	private final String libraryPath;
+	private final String lirPath;
+
+	private final ProgramParser parser;
+	private final boolean tokenStream;
+	private final boolean descentParser;
+	private final int optLevel;
+	private final boolean ssa;
+
+	private final IncrementalBuild build;
+	private final ForkJoinPool pool = new ForkJoinPool();
+
+	// the ASTs of the source files: source file -> its classes
+	private Map<String,Program> parsed = new HashMap<String,Program>();
+	private ICClass library = null;
+
+	// the watched directories: the program's directories, and the directories of its files
+	private Set<Path> watched = new HashSet<Path>();
+
+	// the files saved since they were parsed (a directory: all of its files)
+	private Set<Path> stale = new HashSet<Path>();
+
+
+	/**
+	 * @param paths the program's source files and directories (see ProgramParser.sourceFiles)
+	 * @param programPath the path the program is compiled as (the .lir file is named after it)
+	 * @param libraryPath the library signature file
+	 * @param tokenStream
+	 * @param descentParser
+	 * @param lazyBodies the parser flags (see ProgramParser)
+	 * @param optLevel the optimization level (see Compiler)
+	 * @param ssa optimize the LIR code in SSA form at any level (-ssa-lir)
+	 * @param buildDir the directory to keep the incremental build in (-incremental),
+	 * 			or null to keep it in memory only
+	 */
+	public ProgramWatcher(List<String> paths, String programPath, String libraryPath,
+			boolean tokenStream, boolean descentParser, boolean lazyBodies, int optLevel, boolean ssa, File buildDir) {
+		this.paths = paths;
+		this.programPath = programPath;
+		this.libraryPath = libraryPath;
+		this.lirPath = programPath.substring(0, programPath.length()-2) + "lir";
+		this.parser = new ProgramParser(tokenStream, descentParser, lazyBodies);
+		this.tokenStream = tokenStream;
+		this.descentParser = descentParser;
+		this.optLevel = optLevel;
+		this.ssa = ssa;
+		this.build = new IncrementalBuild(buildDir, programPath, optLevel >= 1);
+	}
+
+
+	/**
+	 * compiles the program, and then again after every save of its files. never returns.
+	 * @throws IOException if the files cannot be watched
+	 */
+	public void run() throws IOException, InterruptedException {
+
+		WatchService watcher = FileSystems.getDefault().newWatchService();
+		Map<WatchKey,Path> dirs = new HashMap<WatchKey,Path>();
+
+		/* a file is watched through its directory. */
+		for (String path : paths) {
+			Path p = absolute(path);
+			watched.add(Files.isDirectory(p) ? p : p.getParent());
+		}
+		watched.add(absolute(libraryPath).getParent());
+		for (Path dir : watched) {
+			WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			dirs.put(key, dir);
+		}
+
+		compile(System.currentTimeMillis());
+
+		while (true) {
+			Set<Path> saved = new HashSet<Path>();
+			WatchKey key = watcher.take();
+			do {
+				Path dir = dirs.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() != StandardWatchEventKinds.OVERFLOW)
+						saved.add(dir.resolve((Path)event.context()).normalize());
+					else
+						saved.add(dir);  //events were lost: everything in dir is parsed again.
+				}
+				key.reset();
+			} while ((key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+			if (!isRelevant(saved)) continue;
+			stale.addAll(saved);
+
+			/* the time of the latest save. */
+			long savedAt = 0;
+			for (Path p : saved) {
+				File f = p.toFile();
+				if (f.isFile())
+					savedAt = Math.max(savedAt, f.lastModified());
+			}
+			compile(savedAt == 0 ? System.currentTimeMillis() : savedAt);
+		}
+	}
+
+	private static Path absolute(String path) {
+		return Paths.get(path).toAbsolutePath().normalize();
+	}
+
+	/* true if one of the saved paths is the library signature, a source file, a .ic file
+	 * in one of the program's directories, or a watched directory (its events were lost). */
+	private boolean isRelevant(Set<Path> saved) throws IOException {
+		Set<Path> files = new HashSet<Path>();
+		for (String file : ProgramParser.sourceFiles(paths))
+			files.add(absolute(file));
+		files.add(absolute(libraryPath));
+
+		for (String path : paths) {
+			Path dir = absolute(path);
+			if (!Files.isDirectory(dir)) continue;
+			for (Path p : saved) {
+				if (dir.equals(p.getParent()) && p.toString().endsWith(".ic"))
+					return true;
+			}
+		}
+		for (Path p : saved) {
+			if (files.contains(p) || watched.contains(p))
+				return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * compiles the program to LIR, parsing again the files saved since they were parsed,
+	 * and prints the time from the save to the updated .lir file
+	 * @param savedAt the time of the save (as File.lastModified)
+	 */
+	private void compile(long savedAt) {
+		long start = System.nanoTime();
+
+		Program program;
+		List<String> files;
+		try {
+			files = ProgramParser.sourceFiles(paths);
+			if (files.isEmpty()) {
+				System.out.println("Error: no .ic files in " + paths);
+				return;
+			}
+
+			parsed.keySet().retainAll(files);
+			for (String file : files) {
+				if (parsed.containsKey(file) && !isStale(file)) continue;
+				try {
+					parsed.put(file, parser.parse(file, pool));
+				} catch (IOException e) {
+					System.out.println("Error in reading from input code file " + file + ": " + e.getMessage());
+					return;
+				} catch (Exception e) {  //lexical or syntax error.
+					System.out.println(files.size() > 1 ? new SourceFileError(file, e) : e);
+					return;
+				}
+				stale.remove(absolute(file));
+			}
+
+			if (library == null || isStale(libraryPath)) {
+				library = null;
+				library = parseLibrary();
+			}
+			stale.clear();
+
+		} catch (IOException e) {
+			System.out.println("Error in reading from input code file: " + e.getMessage());
+			return;
+		} catch (Exception e) {  //lexical or syntax error in the library signature.
+			System.out.println(e);
+			return;
+		}
+
+		/* the program's classes, as the Compiler merges them (the ASTs are kept as parsed). */
+		if (files.size() == 1) {
+			program = new Program(new ArrayList<ICClass>(parsed.get(files.get(0)).getClasses()));
+		} else {
+			List<Program> programs = new ArrayList<Program>();
+			for (String file : files)
+				programs.add(parsed.get(file));
+			program = ProgramParser.merge(programs);
+		}
+		program.insertClass(library);
+
+		/* semantic analysis of the classes that changed. */
+		Object globalSymbolTable = program.accept(new SymbolTableBuilder(programPath), null);
+		if (globalSymbolTable == null) {
+			System.out.println("Error while constructing global symbol table.");
+			return;
+		}
+		GlobalSymbolTable global = (GlobalSymbolTable)globalSymbolTable;
+
+		Set<ICClass> changedClasses = build.changedClasses(program);
+		if (new SemanticChecks(global).checkClasses(changedClasses) == null) {
+			System.out.println("Encountered an error during semantic checks.");
+			return;
+		}
+
+		/* LIR translation of the classes that changed. */
+		TranslatePropagatingVisitor translator = optLevel >= 1 ? new OptTranslatePropagatingVisitor(global) : new TranslatePropagatingVisitor(global);
+		if (optLevel >= 1) {
+			for (ICClass c : changedClasses)
+				c.accept(new RegCounterVisitor());
+		}
+		String lir = build.translate(program, translator);
+		build.store();
+
+		if (optLevel >= 2 || ssa) {
+			lir = new SSAOptimizer(SSAOptimizer.createDefaultPassManager(false, null)).optimize(lir);
+		}
+
+		try {
+			BufferedWriter buff = new BufferedWriter(new FileWriter(lirPath));
+			buff.write(lir);
+			buff.flush();
+			buff.close();
+		} catch (IOException e) {
+			System.out.println("Failed writing to file: " + lirPath);
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		System.out.println(String.format("Updated %s: %d ms after the save (%.1f ms to compile, %d of %d classes recompiled)",
+				lirPath, Math.max(0, now - savedAt), (System.nanoTime() - start) / 1e6,
+				build.getTranslatedCount(), program.getClasses().size() - 1));
+	}
+
+	/* true if the file was saved since it was parsed. */
+	private boolean isStale(String file) {
+		Path p = absolute(file);
+		return stale.contains(p) || stale.contains(p.getParent());
+	}
+
+	private ICClass parseLibrary() throws Exception {
+		SourceBuffer source = SourceBuffer.map(libraryPath);
+		Scanner scanner = tokenStream ? new TokenStreamScanner(TokenStream.tokenize(source)) : new Lexer(source);
+		if (descentParser)
+			return new RecursiveDescentParser(scanner).parseLibrary();
+		return (ICClass)new LibraryParser(scanner).parse().value;
+	}
+
+}
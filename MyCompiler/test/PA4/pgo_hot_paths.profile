@@ -0,0 +1,29 @@
+# IC execution profile
+method __checkNullRef 6cade66c 6241
+branch 0 0 6241
+method __checkArrayAccess 2c8242d3 2100
+branch 0 0 2100
+branch 1 0 2100
+method __checkSize 5217fd2d 1
+branch 0 0 1
+method __checkZero 63d1c6b8 0
+method _Shape_area 9461ed29 0
+method _Square_area 9461ed29 1960
+method _Twice_area 7f254aca 40
+method _Main_clamp 19a4356 2000
+branch 0 0 2000
+branch 1 2000 0
+method _ic_main 748e533e 1
+branch 0 50 1
+branch 1 1 50
+branch 2 1 49
+branch 3 49 1
+branch 4 40 1
+branch 5 1 40
+branch 6 2000 40
+branch 7 40 2000
+branch 8 2000 1
+branch 9 1 2000
+branch 10 0 1
+branch 11 1 0
+vcall 0 _DV_Square=1960 _DV_Twice=40